@@ -1,5 +1,6 @@
 package com.wmz7year.synyed.module;
 
+import java.io.File;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -14,7 +15,16 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.wmz7year.synyed.entity.RedisServer;
+import com.wmz7year.synyed.net.buffer.PooledIoBufferAllocator;
+import com.wmz7year.synyed.net.link.AgentLinkClient;
+import com.wmz7year.synyed.net.link.AgentLinkCodecFactory;
+import com.wmz7year.synyed.net.link.AgentLinkServer;
+import com.wmz7year.synyed.net.proroc.RedisProtocolBuffer;
+import com.wmz7year.synyed.net.proroc.RedisProtocolBufferManager;
+import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
+import com.wmz7year.synyed.net.spi.DefaultRedisConnection;
 import com.wmz7year.synyed.net.spi.RuntimeBeanFactory;
+import com.wmz7year.synyed.worker.AgentLinkApplier;
 import com.wmz7year.synyed.worker.ProtocolSyncWorker;
 
 /**
@@ -58,7 +68,7 @@ public class ProtocolManager extends BasicModule {
 	 * 源服务器端口
 	 */
 	@Value("${protocol.src.port}")
-	private int srcPort;
+	private Integer srcPort;
 
 	/**
 	 * 源服务器验证密码
@@ -76,7 +86,7 @@ public class ProtocolManager extends BasicModule {
 	 * 目标服务器端口
 	 */
 	@Value("${protocol.desc.port}")
-	private int descPort;
+	private Integer descPort;
 
 	/**
 	 * 目标服务验证密码
@@ -84,6 +94,135 @@ public class ProtocolManager extends BasicModule {
 	@Value("${protocol.desc.auth}")
 	private String descAuth;
 
+	/**
+	 * 是否使用缓存的IoBuffer分配器
+	 */
+	@Value("${server.buffer.pool.enabled:true}")
+	private boolean bufferPoolEnabled = true;
+
+	/**
+	 * IoBuffer是否使用直接内存
+	 */
+	@Value("${server.buffer.pool.direct:true}")
+	private boolean bufferPoolDirect = true;
+
+	/**
+	 * 缓存的IoBuffer最大容量 超过该容量的缓冲区不缓存
+	 */
+	@Value("${server.buffer.pool.max.capacity:262144}")
+	private int bufferPoolMaxCapacity = PooledIoBufferAllocator.DEFAULT_MAX_POOLED_CAPACITY;
+
+	/**
+	 * 协议解析缓冲区初始容量
+	 */
+	@Value("${protocol.parser.buffer.initial.capacity:4096}")
+	private int parserBufferInitialCapacity = RedisProtocolBuffer.DEFAULT_INITIAL_CAPACITY;
+
+	/**
+	 * 协议解析缓冲区最大容量
+	 */
+	@Value("${protocol.parser.buffer.max.capacity:1048576}")
+	private int parserBufferMaxCapacity = RedisProtocolBuffer.DEFAULT_MAX_CAPACITY;
+
+	/**
+	 * 协议解析缓冲区是否使用直接内存
+	 */
+	@Value("${protocol.parser.buffer.direct:false}")
+	private boolean parserBufferDirect = false;
+
+	/**
+	 * 协议解析缓冲区收缩检查间隔 毫秒
+	 */
+	@Value("${protocol.parser.buffer.trim.interval:10000}")
+	private long parserBufferTrimInterval = 10000;
+
+	/**
+	 * 协议解析缓冲区空闲多久后收缩到初始容量 毫秒
+	 */
+	@Value("${protocol.parser.buffer.idle.time:30000}")
+	private long parserBufferIdleTime = 30000;
+
+	/**
+	 * 命令中超过该长度的bulk字符串解析时写入临时文件 小于等于0时不写入
+	 */
+	@Value("${protocol.parser.spill.threshold:16777216}")
+	private int parserSpillThreshold = RedisProtocolParser.DEFAULT_SPILL_THRESHOLD;
+
+	/**
+	 * 超大bulk字符串临时文件的目录 为空时使用系统临时目录
+	 */
+	@Value("${protocol.parser.spill.dir:}")
+	private String parserSpillDir = "";
+
+	/**
+	 * 接收远程Agent批量命令的监听端口 0为不监听
+	 */
+	@Value("${agent.link.listen.port:0}")
+	private int agentLinkListenPort = 0;
+
+	/**
+	 * 远程Agent地址 为空时直接同步到目标服务器
+	 */
+	@Value("${agent.link.remote.host:}")
+	private String agentLinkRemoteHost;
+
+	/**
+	 * 远程Agent端口
+	 */
+	@Value("${agent.link.remote.port:0}")
+	private int agentLinkRemotePort = 0;
+
+	/**
+	 * 批量命令压缩阈值 小于0为不压缩
+	 */
+	@Value("${agent.link.compress.threshold:256}")
+	private int agentLinkCompressThreshold = AgentLinkCodecFactory.DEFAULT_COMPRESS_THRESHOLD;
+
+	/**
+	 * 每个批量最多包含的命令数量
+	 */
+	@Value("${agent.link.batch.commands:512}")
+	private int agentLinkBatchCommands = 512;
+
+	/**
+	 * 每个批量最多包含的数据长度
+	 */
+	@Value("${agent.link.batch.bytes:262144}")
+	private int agentLinkBatchBytes = 256 * 1024;
+
+	/**
+	 * 未确认批量数量的上限
+	 */
+	@Value("${agent.link.window:64}")
+	private int agentLinkWindow = 64;
+
+	/**
+	 * 执行远程Agent批量命令使用的目标服务器连接数量
+	 */
+	@Value("${agent.link.apply.pool.size:4}")
+	private int agentLinkApplyPoolSize = AgentLinkApplier.DEFAULT_POOL_SIZE;
+
+	/**
+	 * 执行远程Agent批量命令时管道中一次发送的命令数量
+	 */
+	@Value("${agent.link.apply.pipeline.size:1000}")
+	private int agentLinkApplyPipelineSize = AgentLinkApplier.DEFAULT_PIPELINE_SIZE;
+
+	/**
+	 * 接收远程Agent批量命令的服务
+	 */
+	private AgentLinkServer agentLinkServer;
+
+	/**
+	 * 将远程Agent批量命令执行到目标服务器的处理类
+	 */
+	private AgentLinkApplier agentLinkApplier;
+
+	/**
+	 * 发送批量命令到远程Agent的链路
+	 */
+	private AgentLinkClient agentLinkClient;
+
 	/**
 	 * 执行同步操作的任务类
 	 */
@@ -119,14 +258,59 @@ public class ProtocolManager extends BasicModule {
 			}
 		});
 
+		// 初始化Redis连接使用的IoBuffer分配器 需要在创建连接之前设置 不修改MINA全局的分配器
+		if (bufferPoolEnabled) {
+			logger.info("使用缓存的IoBuffer分配器  最大缓存容量：" + bufferPoolMaxCapacity + " 直接内存：" + bufferPoolDirect);
+			DefaultRedisConnection.setDefaultBufferAllocator(
+					new PooledIoBufferAllocator(PooledIoBufferAllocator.DEFAULT_MIN_CAPACITY, bufferPoolMaxCapacity,
+							PooledIoBufferAllocator.DEFAULT_THREAD_CACHE_SIZE,
+							PooledIoBufferAllocator.DEFAULT_SHARED_CACHE_SIZE),
+					bufferPoolDirect);
+		}
+
+		// 初始化协议解析缓冲区设置 并启动后台收缩线程
+		logger.info("协议解析缓冲区  初始容量：" + parserBufferInitialCapacity + " 最大容量：" + parserBufferMaxCapacity
+				+ " 直接内存：" + parserBufferDirect);
+		RedisProtocolBufferManager.configure(parserBufferInitialCapacity, parserBufferMaxCapacity,
+				parserBufferDirect);
+		RedisProtocolBufferManager.startTrim(parserBufferTrimInterval, parserBufferIdleTime);
+		logger.info("超大bulk字符串写入临时文件阈值：" + parserSpillThreshold + " 目录：" + parserSpillDir);
+		RedisProtocolParser.setDefaultSpill(parserSpillThreshold,
+				parserSpillDir.isEmpty() ? null : new File(parserSpillDir));
+
+		// 靠近目标服务器的Agent 接收远程Agent的批量命令并执行到目标服务器
+		if (agentLinkListenPort > 0) {
+			logger.info("接收远程Agent批量命令 端口：" + agentLinkListenPort + " 连接数：" + agentLinkApplyPoolSize + " 管道大小："
+					+ agentLinkApplyPipelineSize);
+			agentLinkApplier = new AgentLinkApplier(new RedisServer(descHost, descPort, descAuth),
+					agentLinkApplyPoolSize, agentLinkApplyPipelineSize);
+			agentLinkServer = new AgentLinkServer("0.0.0.0", agentLinkListenPort, agentLinkApplier);
+			agentLinkServer.start();
+		}
+		if (srcHost == null || srcHost.isEmpty()) {
+			logger.info("未配置源服务器 不启动同步管道");
+			return;
+		}
+
 		// TODO 以后会去掉这部分代码
 
 		RedisServer srcServer = new RedisServer(srcHost, srcPort, srcAuth);
-		RedisServer descServer = new RedisServer(descHost, descPort, descAuth);
-
 		syncWorker = runtimeBeanFactory.createRuntimeProtocolSyncWorker();
 		syncWorker.setSrcRedis(srcServer);
-		syncWorker.setDescRedis(descServer);
+		if (agentLinkRemoteHost != null && !agentLinkRemoteHost.isEmpty()) {
+			// 靠近源服务器的Agent 命令批量压缩后发送到远程Agent
+			logger.info("通过远程Agent同步：" + agentLinkRemoteHost + ":" + agentLinkRemotePort);
+			agentLinkClient = new AgentLinkClient(agentLinkRemoteHost, agentLinkRemotePort, 5000);
+			agentLinkClient.setCompressThreshold(agentLinkCompressThreshold);
+			agentLinkClient.setBatchMaxCommands(agentLinkBatchCommands);
+			agentLinkClient.setBatchMaxBytes(agentLinkBatchBytes);
+			agentLinkClient.setWindow(agentLinkWindow);
+			agentLinkClient.connect();
+			syncWorker.setAgentLink(agentLinkClient, 0);
+			syncWorker.setDescRedis(new RedisServer(agentLinkRemoteHost, agentLinkRemotePort, null));
+		} else {
+			syncWorker.setDescRedis(new RedisServer(descHost, descPort, descAuth));
+		}
 		syncWorker.start();
 	}
 
@@ -136,7 +320,16 @@ public class ProtocolManager extends BasicModule {
 	 * @return true为处理过 false为未处理
 	 */
 	public boolean isRDBFileProcessed() {
-		return syncWorker.isRDBFileProcessed();
+		return syncWorker != null && syncWorker.isRDBFileProcessed();
+	}
+
+	/**
+	 * 判断同步任务是否因为同步失败而停止的方法<br>
+	 * 
+	 * @return true为已经停止 false为正在同步或者没有同步任务
+	 */
+	public boolean isSyncFailed() {
+		return syncWorker != null && syncWorker.isFailed();
 	}
 
 	/*
@@ -152,6 +345,24 @@ public class ProtocolManager extends BasicModule {
 		if (syncWorker != null) {
 			syncWorker.shutdown();
 		}
+		// 关闭Agent链路
+		if (agentLinkClient != null) {
+			agentLinkClient.close();
+		}
+		if (agentLinkServer != null) {
+			agentLinkServer.close();
+		}
+		if (agentLinkApplier != null) {
+			agentLinkApplier.close();
+		}
+		// 停止协议解析缓冲区收缩线程
+		RedisProtocolBufferManager.stopTrim();
+		// 新建的连接不再使用缓存的分配器 释放缓存的缓冲区
+		PooledIoBufferAllocator allocator = DefaultRedisConnection.getDefaultBufferAllocator();
+		if (allocator != null) {
+			DefaultRedisConnection.setDefaultBufferAllocator(null, false);
+			allocator.dispose();
+		}
 	}
 
 }
@@ -1,6 +1,9 @@
 package com.wmz7year.synyed.net;
 
 import java.io.Closeable;
+import java.util.List;
+
+import org.apache.mina.core.buffer.IoBuffer;
 
 import com.wmz7year.synyed.entity.RedisCommand;
 import com.wmz7year.synyed.exception.RedisProtocolException;
@@ -69,6 +72,53 @@ public interface RedisConnection extends Closeable {
 	 */
 	public RedisPacket sendCommand(RedisCommand command) throws RedisProtocolException;
 
+	/**
+	 * 使用管道批量发送Redis命令的方法<br>
+	 * 先写出所有命令再按顺序读取响应 只需要一次网络往返<br>
+	 * 该方法会阻塞当前线程直到获取到所有响应内容或者超时
+	 * 
+	 * @param commands
+	 *            需要执行的redis命令对象集合
+	 * @return 与命令顺序一致的redis响应包集合
+	 * @throws RedisProtocolException
+	 *             当发生错误时抛出该异常
+	 */
+	public List<RedisPacket> sendCommands(List<RedisCommand> commands) throws RedisProtocolException;
+
+	/**
+	 * 发送已经编码为RESP格式的命令数据的方法<br>
+	 * 数据直接写入连接 不等待响应 响应需要通过readResponses读取<br>
+	 * 缓冲区发送完成后由mina释放
+	 * 
+	 * @param data
+	 *            RESP格式的命令数据
+	 * @throws RedisProtocolException
+	 *             当发生错误时抛出该异常
+	 */
+	public void writeEncodedCommands(IoBuffer data) throws RedisProtocolException;
+
+	/**
+	 * 使用该连接的缓冲区分配器分配缓冲区的方法<br>
+	 * 分配的缓冲区通过writeEncodedCommands写出后由连接回收
+	 * 
+	 * @param capacity
+	 *            缓冲区容量
+	 * @return 缓冲区
+	 */
+	public IoBuffer allocateBuffer(int capacity);
+
+	/**
+	 * 按顺序读取多个响应的方法<br>
+	 * 该方法会阻塞当前线程直到获取到所有响应内容或者超时
+	 * 
+	 * @param count
+	 *            需要读取的响应数量
+	 * @return redis响应包集合
+	 * @throws RedisProtocolException
+	 *             当发生错误时抛出该异常
+	 */
+	public List<RedisPacket> readResponses(int count) throws RedisProtocolException;
+
 	/**
 	 * 发送Redis命令的方法<br>
 	 * 调用该方法后会监听所有响应内容<br>
@@ -92,4 +142,15 @@ public interface RedisConnection extends Closeable {
 	 *            监听器对象
 	 */
 	public void cancalResponseListener(RedisResponseListener listener);
+
+	/**
+	 * 暂停从Redis服务器读取数据的方法<br>
+	 * 暂停期间数据保留在服务器端以及TCP接收缓冲区中
+	 */
+	public void suspendRead();
+
+	/**
+	 * 恢复从Redis服务器读取数据的方法
+	 */
+	public void resumeRead();
 }
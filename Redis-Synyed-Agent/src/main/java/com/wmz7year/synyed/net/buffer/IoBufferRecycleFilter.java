@@ -0,0 +1,51 @@
+package com.wmz7year.synyed.net.buffer;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+
+/**
+ * 回收IoBuffer的过滤器<br>
+ * 需要放在编解码过滤器与IoProcessor之间 也就是过滤器链的最前面<br>
+ * 写出的缓冲区在MINA发送完成后回收 读取的缓冲区由MINA全局分配器分配 不回收<br>
+ * MINA的IoProcessor在缓冲区写出完成 不再使用时调用{@link IoBuffer#free()} 由此回收<br>
+ * 编码器写出的请求不会经过过滤器链的messageSent 并且messageSent之后IoProcessor还会修改缓冲区的位置 不能在messageSent中回收<br>
+ * 写出时增加引用计数 同一个缓冲区写入多个会话时在最后一次发送完成后才回收<br>
+ * 只回收{@link PooledIoBufferAllocator}分配的缓冲区 其他缓冲区原样传递
+ *
+ * @Title: IoBufferRecycleFilter.java
+ * @Package com.wmz7year.synyed.net.buffer
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 上午11:02:19
+ * @version V1.0
+ */
+public class IoBufferRecycleFilter extends IoFilterAdapter {
+	/**
+	 * 缓冲区分配器
+	 */
+	private final PooledIoBufferAllocator allocator;
+
+	public IoBufferRecycleFilter(PooledIoBufferAllocator allocator) {
+		if (allocator == null) {
+			throw new NullPointerException();
+		}
+		this.allocator = allocator;
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.filterchain.IoFilterAdapter#filterWrite(org.apache.
+	 * mina.core.filterchain.IoFilter.NextFilter,
+	 * org.apache.mina.core.session.IoSession,
+	 * org.apache.mina.core.write.WriteRequest)
+	 */
+	@Override
+	public void filterWrite(NextFilter nextFilter, IoSession session, WriteRequest writeRequest) throws Exception {
+		Object message = writeRequest.getMessage();
+		if (message instanceof IoBuffer) {
+			allocator.retain((IoBuffer) message);
+		}
+		nextFilter.filterWrite(session, writeRequest);
+	}
+}
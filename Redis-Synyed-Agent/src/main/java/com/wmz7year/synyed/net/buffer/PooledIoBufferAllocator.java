@@ -0,0 +1,476 @@
+package com.wmz7year.synyed.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.buffer.AbstractIoBuffer;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.IoBufferAllocator;
+
+/**
+ * 按容量分级缓存的IoBuffer分配器<br>
+ * 容量按2的幂分级 每一级在每个线程中有一个本地缓存 本地缓存满了之后放入共享缓存<br>
+ * 编码在业务线程中分配 在IoProcessor线程中写出后释放 因此跨线程释放的缓冲区直接进入共享缓存<br>
+ * 超过最大缓存容量的缓冲区不缓存 由GC回收<br>
+ * 缓冲区只有在调用{@link IoBuffer#free()}之后才会回收 MINA在写出完成后调用 按引用计数回收 参见{@link IoBufferRecycleFilter}<br>
+ * 不替换MINA全局的分配器 只由需要的连接在编码器中使用
+ *
+ * @Title: PooledIoBufferAllocator.java
+ * @Package com.wmz7year.synyed.net.buffer
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 上午10:15:42
+ * @version V1.0
+ */
+public class PooledIoBufferAllocator implements IoBufferAllocator {
+	/**
+	 * 默认最小的缓冲区容量
+	 */
+	public static final int DEFAULT_MIN_CAPACITY = 64;
+	/**
+	 * 默认最大缓存的缓冲区容量
+	 */
+	public static final int DEFAULT_MAX_POOLED_CAPACITY = 256 * 1024;
+	/**
+	 * 默认每个线程每一级缓存的缓冲区数量
+	 */
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 8;
+	/**
+	 * 默认共享缓存中每一级缓存的缓冲区数量
+	 */
+	public static final int DEFAULT_SHARED_CACHE_SIZE = 64;
+
+	/**
+	 * 最小容量的位数
+	 */
+	private final int minShift;
+	/**
+	 * 最大缓存容量
+	 */
+	private final int maxPooledCapacity;
+	/**
+	 * 每个线程每一级缓存数量
+	 */
+	private final int threadCacheSize;
+	/**
+	 * 共享缓存每一级缓存数量
+	 */
+	private final int sharedCacheSize;
+
+	/**
+	 * 堆内缓冲区缓存
+	 */
+	private final Pool heapPool;
+	/**
+	 * 直接内存缓冲区缓存
+	 */
+	private final Pool directPool;
+
+	public PooledIoBufferAllocator() {
+		this(DEFAULT_MIN_CAPACITY, DEFAULT_MAX_POOLED_CAPACITY, DEFAULT_THREAD_CACHE_SIZE, DEFAULT_SHARED_CACHE_SIZE);
+	}
+
+	/**
+	 * @param minCapacity
+	 *            最小的缓冲区容量 会向上取2的幂
+	 * @param maxPooledCapacity
+	 *            最大缓存的缓冲区容量 会向上取2的幂
+	 * @param threadCacheSize
+	 *            每个线程每一级缓存的缓冲区数量
+	 * @param sharedCacheSize
+	 *            共享缓存中每一级缓存的缓冲区数量
+	 */
+	public PooledIoBufferAllocator(int minCapacity, int maxPooledCapacity, int threadCacheSize,
+			int sharedCacheSize) {
+		if (minCapacity <= 0 || maxPooledCapacity < minCapacity) {
+			throw new IllegalArgumentException("minCapacity:" + minCapacity + " maxPooledCapacity:" + maxPooledCapacity);
+		}
+		if (threadCacheSize < 0 || sharedCacheSize < 0) {
+			throw new IllegalArgumentException("threadCacheSize:" + threadCacheSize + " sharedCacheSize:"
+					+ sharedCacheSize);
+		}
+		this.minShift = 32 - Integer.numberOfLeadingZeros(minCapacity - 1);
+		int maxShift = 32 - Integer.numberOfLeadingZeros(maxPooledCapacity - 1);
+		this.maxPooledCapacity = 1 << maxShift;
+		this.threadCacheSize = threadCacheSize;
+		this.sharedCacheSize = sharedCacheSize;
+		int classCount = maxShift - minShift + 1;
+		this.heapPool = new Pool(false, classCount);
+		this.directPool = new Pool(true, classCount);
+	}
+
+	/*
+	 * @see org.apache.mina.core.buffer.IoBufferAllocator#allocate(int,
+	 * boolean)
+	 */
+	@Override
+	public IoBuffer allocate(int capacity, boolean direct) {
+		ByteBuffer buf = allocateNioBuffer(capacity, direct);
+		buf.limit(capacity);
+		return new PooledIoBuffer(buf);
+	}
+
+	/*
+	 * @see org.apache.mina.core.buffer.IoBufferAllocator#allocateNioBuffer(int,
+	 * boolean)
+	 */
+	@Override
+	public ByteBuffer allocateNioBuffer(int capacity, boolean direct) {
+		int sizeClass = sizeClass(capacity);
+		if (sizeClass < 0) {
+			return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		}
+		Pool pool = direct ? directPool : heapPool;
+		ByteBuffer buf = pool.poll(sizeClass);
+		if (buf == null) {
+			int classCapacity = 1 << (sizeClass + minShift);
+			buf = direct ? ByteBuffer.allocateDirect(classCapacity) : ByteBuffer.allocate(classCapacity);
+		} else {
+			buf.clear();
+			buf.order(ByteOrder.BIG_ENDIAN);
+		}
+		return buf;
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.buffer.IoBufferAllocator#wrap(java.nio.ByteBuffer)
+	 */
+	@Override
+	public IoBuffer wrap(ByteBuffer nioBuffer) {
+		// 外部的缓冲区不属于缓存 释放时不回收
+		return new PooledIoBuffer(nioBuffer, false);
+	}
+
+	/*
+	 * @see org.apache.mina.core.buffer.IoBufferAllocator#dispose()
+	 */
+	@Override
+	public void dispose() {
+		heapPool.clear();
+		directPool.clear();
+	}
+
+	/**
+	 * 增加缓冲区引用计数的方法<br>
+	 * 同一个缓冲区写入多个会话时每次写入增加一次引用 全部释放之后才回收
+	 *
+	 * @param buffer
+	 *            缓冲区
+	 * @return true为增加成功 false为不是该分配器分配的缓冲区
+	 */
+	public boolean retain(IoBuffer buffer) {
+		PooledIoBuffer pooled = pooled(buffer);
+		if (pooled == null) {
+			return false;
+		}
+		pooled.references.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * 回收缓冲区的方法<br>
+	 * 只有该分配器分配的缓冲区会被回收<br>
+	 * 增加过引用计数的缓冲区在最后一次释放时回收
+	 *
+	 * @param buffer
+	 *            需要回收的缓冲区
+	 * @return true为回收成功 false为不是该分配器分配的缓冲区或者还有其他引用
+	 */
+	public boolean release(IoBuffer buffer) {
+		PooledIoBuffer pooled = pooled(buffer);
+		if (pooled == null) {
+			return false;
+		}
+		while (true) {
+			int references = pooled.references.get();
+			if (references <= 1) {
+				break;
+			}
+			if (pooled.references.compareAndSet(references, references - 1)) {
+				return false;
+			}
+		}
+		pooled.references.set(0);
+		pooled.recycleBuffer();
+		return true;
+	}
+
+	/**
+	 * 获取需要回收的缓冲区的方法
+	 *
+	 * @param buffer
+	 *            缓冲区
+	 * @return 该分配器分配并且需要回收的缓冲区 其他情况返回null
+	 */
+	private PooledIoBuffer pooled(IoBuffer buffer) {
+		if (!(buffer instanceof PooledIoBuffer)) {
+			return null;
+		}
+		PooledIoBuffer pooled = (PooledIoBuffer) buffer;
+		if (pooled.allocator() != this || !pooled.isPooled()) {
+			return null;
+		}
+		return pooled;
+	}
+
+	/**
+	 * 获取容量对应缓存级别的方法
+	 *
+	 * @param capacity
+	 *            容量
+	 * @return 缓存级别 -1为不缓存
+	 */
+	private int sizeClass(int capacity) {
+		if (capacity > maxPooledCapacity) {
+			return -1;
+		}
+		if (capacity <= (1 << minShift)) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(capacity - 1) - minShift;
+	}
+
+	/**
+	 * 将缓冲区放回缓存的方法
+	 *
+	 * @param buf
+	 *            缓冲区
+	 * @param owner
+	 *            分配该缓冲区的线程
+	 */
+	private void recycle(ByteBuffer buf, Thread owner) {
+		int capacity = buf.capacity();
+		// 只回收容量刚好为某一级容量的缓冲区
+		if (Integer.bitCount(capacity) != 1 || capacity > maxPooledCapacity || capacity < (1 << minShift)) {
+			return;
+		}
+		int sizeClass = sizeClass(capacity);
+		Pool pool = buf.isDirect() ? directPool : heapPool;
+		pool.offer(sizeClass, buf, owner == Thread.currentThread());
+	}
+
+	/**
+	 * 某一种类型缓冲区的缓存
+	 */
+	private class Pool {
+		private final boolean direct;
+		private final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCaches;
+		private final Queue<ByteBuffer>[] sharedCaches;
+		private final AtomicInteger[] sharedSizes;
+
+		@SuppressWarnings("unchecked")
+		Pool(boolean direct, final int classCount) {
+			this.direct = direct;
+			this.threadCaches = new ThreadLocal<ArrayDeque<ByteBuffer>[]>() {
+
+				/*
+				 * @see java.lang.ThreadLocal#initialValue()
+				 */
+				@Override
+				protected ArrayDeque<ByteBuffer>[] initialValue() {
+					ArrayDeque<ByteBuffer>[] caches = new ArrayDeque[classCount];
+					for (int i = 0; i < classCount; i++) {
+						caches[i] = new ArrayDeque<ByteBuffer>(threadCacheSize);
+					}
+					return caches;
+				}
+			};
+			this.sharedCaches = new Queue[classCount];
+			this.sharedSizes = new AtomicInteger[classCount];
+			for (int i = 0; i < classCount; i++) {
+				sharedCaches[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+				sharedSizes[i] = new AtomicInteger();
+			}
+		}
+
+		ByteBuffer poll(int sizeClass) {
+			ByteBuffer buf = threadCaches.get()[sizeClass].pollFirst();
+			if (buf != null) {
+				return buf;
+			}
+			buf = sharedCaches[sizeClass].poll();
+			if (buf != null) {
+				sharedSizes[sizeClass].decrementAndGet();
+			}
+			return buf;
+		}
+
+		void offer(int sizeClass, ByteBuffer buf, boolean local) {
+			if (local) {
+				ArrayDeque<ByteBuffer> cache = threadCaches.get()[sizeClass];
+				if (cache.size() < threadCacheSize) {
+					cache.offerFirst(buf);
+					return;
+				}
+			}
+			if (sharedSizes[sizeClass].incrementAndGet() <= sharedCacheSize) {
+				sharedCaches[sizeClass].offer(buf);
+			} else {
+				sharedSizes[sizeClass].decrementAndGet();
+			}
+		}
+
+		void clear() {
+			for (int i = 0; i < sharedCaches.length; i++) {
+				sharedCaches[i].clear();
+				sharedSizes[i].set(0);
+			}
+			// 其他线程的本地缓存随线程结束回收
+			threadCaches.remove();
+		}
+
+		@Override
+		public String toString() {
+			return "Pool [direct=" + direct + "]";
+		}
+	}
+
+	/**
+	 * 释放时放回缓存的IoBuffer
+	 */
+	private class PooledIoBuffer extends AbstractIoBuffer {
+		/**
+		 * 分配该缓冲区的线程
+		 */
+		private final Thread ownerThread;
+		/**
+		 * 是否需要回收
+		 */
+		private final boolean pooled;
+		/**
+		 * 写入会话时增加的引用计数
+		 */
+		private final AtomicInteger references = new AtomicInteger();
+		private ByteBuffer buf;
+
+		PooledIoBuffer(ByteBuffer buf) {
+			this(buf, true);
+		}
+
+		PooledIoBuffer(ByteBuffer buf, boolean pooled) {
+			// AbstractIoBuffer的构造方法会把传入的分配器设置为MINA全局的分配器
+			// 这里传入当前全局的分配器 保持全局设置不变
+			super(IoBuffer.getAllocator(), buf.capacity());
+			this.ownerThread = Thread.currentThread();
+			this.pooled = pooled;
+			this.buf = buf;
+			buf.order(ByteOrder.BIG_ENDIAN);
+		}
+
+		/**
+		 * 派生缓冲区使用的构造方法 派生缓冲区不回收
+		 */
+		PooledIoBuffer(PooledIoBuffer parent, ByteBuffer buf) {
+			super(parent);
+			this.ownerThread = Thread.currentThread();
+			this.pooled = false;
+			this.buf = buf;
+		}
+
+		PooledIoBufferAllocator allocator() {
+			return PooledIoBufferAllocator.this;
+		}
+
+		boolean isPooled() {
+			return pooled && !isDerived();
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.IoBuffer#buf()
+		 */
+		@Override
+		public ByteBuffer buf() {
+			if (buf == null) {
+				throw new IllegalStateException("缓冲区已经被释放");
+			}
+			return buf;
+		}
+
+		/*
+		 * @see
+		 * org.apache.mina.core.buffer.AbstractIoBuffer#buf(java.nio.ByteBuffer)
+		 */
+		@Override
+		protected void buf(ByteBuffer buf) {
+			// 自动扩容时替换了底层缓冲区 旧的缓冲区放回缓存
+			ByteBuffer oldBuf = this.buf;
+			this.buf = buf;
+			if (isPooled() && oldBuf != null) {
+				recycle(oldBuf, ownerThread);
+			}
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.AbstractIoBuffer#duplicate0()
+		 */
+		@Override
+		protected IoBuffer duplicate0() {
+			return new PooledIoBuffer(this, buf().duplicate());
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.AbstractIoBuffer#slice0()
+		 */
+		@Override
+		protected IoBuffer slice0() {
+			return new PooledIoBuffer(this, buf().slice());
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.AbstractIoBuffer#asReadOnlyBuffer0()
+		 */
+		@Override
+		protected IoBuffer asReadOnlyBuffer0() {
+			return new PooledIoBuffer(this, buf().asReadOnlyBuffer());
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.IoBuffer#array()
+		 */
+		@Override
+		public byte[] array() {
+			return buf().array();
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.IoBuffer#arrayOffset()
+		 */
+		@Override
+		public int arrayOffset() {
+			return buf().arrayOffset();
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.IoBuffer#hasArray()
+		 */
+		@Override
+		public boolean hasArray() {
+			return buf().hasArray();
+		}
+
+		/*
+		 * @see org.apache.mina.core.buffer.IoBuffer#free()
+		 */
+		@Override
+		public void free() {
+			// MINA写出完成后调用 按引用计数回收 写入多个会话时最后一次写出完成后才回收
+			release(this);
+		}
+
+		/**
+		 * 将底层缓冲区放回缓存的方法 已经回收过的缓冲区不再处理
+		 */
+		void recycleBuffer() {
+			if (!isPooled() || buf == null) {
+				return;
+			}
+			ByteBuffer oldBuf = buf;
+			buf = null;
+			recycle(oldBuf, ownerThread);
+		}
+	}
+}
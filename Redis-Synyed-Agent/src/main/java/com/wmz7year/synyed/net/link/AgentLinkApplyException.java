@@ -0,0 +1,29 @@
+package com.wmz7year.synyed.net.link;
+
+/**
+ * 批量命令只执行了一部分的异常<br>
+ * 接收端记录已经执行的命令数量 发送端重发该批量时跳过已经执行的命令
+ *
+ * @Title: AgentLinkApplyException.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午3:42:10
+ * @version V1.0
+ */
+public class AgentLinkApplyException extends Exception {
+	private static final long serialVersionUID = 4170253419873627125L;
+
+	/**
+	 * 已经执行的命令数量
+	 */
+	private final int appliedCount;
+
+	public AgentLinkApplyException(String msg, int appliedCount, Throwable nestedThrowable) {
+		super(msg, nestedThrowable);
+		this.appliedCount = appliedCount;
+	}
+
+	public int getAppliedCount() {
+		return appliedCount;
+	}
+}
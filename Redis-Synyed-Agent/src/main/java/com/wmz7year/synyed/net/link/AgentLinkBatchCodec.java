@@ -0,0 +1,114 @@
+package com.wmz7year.synyed.net.link;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.exception.RedisProtocolException;
+
+/**
+ * 批量命令编解码工具类<br>
+ * 每条命令编码为 参数数量(4) 然后依次为每个参数的 长度(4) 数据<br>
+ * 第一个参数为命令名称 参数数据通过RedisCommandData.writeTo直接写入
+ *
+ * @Title: AgentLinkBatchCodec.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 上午10:31:47
+ * @version V1.0
+ */
+public class AgentLinkBatchCodec {
+
+	private AgentLinkBatchCodec() {
+
+	}
+
+	/**
+	 * 计算一条命令编码后长度的方法
+	 *
+	 * @param command
+	 *            命令对象
+	 * @return 编码后的长度
+	 */
+	public static int encodedLength(RedisCommand command) {
+		int size = 4 + 4 + command.getCommand().getBytes().length;
+		for (RedisCommandData value : command.getValues()) {
+			size += 4 + value.getLength();
+		}
+		return size;
+	}
+
+	/**
+	 * 编码一条命令的方法<br>
+	 * 调用方需要保证缓冲区剩余空间不小于encodedLength(command)
+	 *
+	 * @param command
+	 *            命令对象
+	 * @param out
+	 *            输出缓冲区
+	 * @throws RedisProtocolException
+	 *             写入命令数据出现问题时抛出该异常
+	 */
+	public static void encode(RedisCommand command, ByteBuffer out) throws RedisProtocolException {
+		List<RedisCommandData> values = command.getValues();
+		byte[] name = command.getCommand().getBytes();
+		out.putInt(values.size() + 1);
+		out.putInt(name.length);
+		out.put(name);
+		try {
+			for (RedisCommandData value : values) {
+				out.putInt(value.getLength());
+				value.writeTo(out);
+			}
+		} catch (Exception e) {
+			throw new RedisProtocolException("编码命令数据异常：" + command.getCommand(), e);
+		}
+	}
+
+	/**
+	 * 解码批量命令的方法
+	 *
+	 * @param payload
+	 *            编码后的数据
+	 * @param commandCount
+	 *            命令数量
+	 * @return 命令列表
+	 * @throws RedisProtocolException
+	 *             数据格式错误时抛出该异常
+	 */
+	public static List<RedisCommand> decode(byte[] payload, int commandCount) throws RedisProtocolException {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>(commandCount);
+		ByteBuffer in = ByteBuffer.wrap(payload);
+		try {
+			for (int i = 0; i < commandCount; i++) {
+				int argc = in.getInt();
+				if (argc < 1) {
+					throw new RedisProtocolException("错误的参数数量：" + argc);
+				}
+				RedisCommand command = new RedisCommand(new String(readBytes(in)));
+				for (int j = 1; j < argc; j++) {
+					command.addValue(readBytes(in));
+				}
+				commands.add(command);
+			}
+		} catch (RuntimeException e) {
+			throw new RedisProtocolException("批量命令数据格式错误", e);
+		}
+		if (in.hasRemaining()) {
+			throw new RedisProtocolException("批量命令数据长度错误 剩余：" + in.remaining());
+		}
+		return commands;
+	}
+
+	private static byte[] readBytes(ByteBuffer in) throws RedisProtocolException {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining()) {
+			throw new RedisProtocolException("错误的参数长度：" + length);
+		}
+		byte[] data = new byte[length];
+		in.get(data);
+		return data;
+	}
+}
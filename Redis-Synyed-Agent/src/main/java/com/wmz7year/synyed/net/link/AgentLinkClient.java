@@ -0,0 +1,415 @@
+package com.wmz7year.synyed.net.link;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.mina.core.future.ConnectFuture;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.transport.socket.nio.NioSocketConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.exception.RedisProtocolException;
+
+/**
+ * Agent之间传输链路的发送端<br>
+ * 多个通道复用同一个长连接 每个通道的命令攒成批量后压缩发送<br>
+ * 发送的批量命令在收到确认之前保留在内存中 未确认的批量数量达到窗口大小时阻塞发送<br>
+ * 连接断开后下次发送时重新连接 并按顺序重发所有未确认的批量命令<br>
+ * 每次建立连接后先发送带有进程标识的握手帧 接收端返回各通道已经执行完的序号后再重发
+ *
+ * @Title: AgentLinkClient.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 下午2:16:40
+ * @version V1.0
+ */
+public class AgentLinkClient extends IoHandlerAdapter implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(AgentLinkClient.class);
+
+	/**
+	 * 远程Agent地址
+	 */
+	private final String host;
+	/**
+	 * 远程Agent端口
+	 */
+	private final int port;
+	/**
+	 * 连接以及等待确认的超时时间
+	 */
+	private final long timeout;
+
+	/**
+	 * 每个批量最多包含的命令数量
+	 */
+	private int batchMaxCommands = 512;
+	/**
+	 * 每个批量最多包含的数据长度
+	 */
+	private int batchMaxBytes = 256 * 1024;
+	/**
+	 * 未确认批量数量的上限
+	 */
+	private int window = 64;
+	/**
+	 * 压缩阈值
+	 */
+	private int compressThreshold = AgentLinkCodecFactory.DEFAULT_COMPRESS_THRESHOLD;
+
+	/**
+	 * 发送端进程的标识 序号只在同一个标识内有效
+	 */
+	private final long epoch = new SecureRandom().nextLong();
+
+	/**
+	 * 连接器
+	 */
+	private NioSocketConnector connector;
+	/**
+	 * 当前会话
+	 */
+	private volatile IoSession session;
+	/**
+	 * 已经完成握手的会话
+	 */
+	private IoSession handshakeSession;
+	/**
+	 * 编解码器工厂
+	 */
+	private AgentLinkCodecFactory codecFactory;
+
+	/**
+	 * 各通道的发送状态
+	 */
+	private final Map<Integer, ChannelState> channels = new HashMap<Integer, ChannelState>();
+	/**
+	 * 所有通道未确认的批量数量
+	 */
+	private int unackedCount = 0;
+
+	public AgentLinkClient(String host, int port, long timeout) {
+		this.host = host;
+		this.port = port;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * 连接到远程Agent的方法
+	 *
+	 * @throws RedisProtocolException
+	 *             连接失败时抛出该异常
+	 */
+	public synchronized void connect() throws RedisProtocolException {
+		if (connector == null) {
+			codecFactory = new AgentLinkCodecFactory(compressThreshold);
+			connector = new NioSocketConnector();
+			connector.setConnectTimeoutMillis(timeout);
+			connector.getSessionConfig().setTcpNoDelay(true);
+			connector.getFilterChain().addLast("agent-link", new ProtocolCodecFilter(codecFactory));
+			connector.setHandler(this);
+		}
+		logger.info("连接到远程Agent：" + host + " 端口：" + port);
+		ConnectFuture future = connector.connect(new InetSocketAddress(host, port));
+		future.awaitUninterruptibly(timeout);
+		if (!future.isConnected()) {
+			throw new RedisProtocolException("连接远程Agent失败：" + host + ":" + port, future.getException());
+		}
+		IoSession connected = future.getSession();
+		handshake(connected);
+		session = connected;
+		// 按顺序重发所有未确认的批量命令 握手时已经确认的批量不再重发
+		// 连接可能随时断开 会话字段会被清空 使用本次建立的会话写出
+		for (ChannelState state : channels.values()) {
+			for (AgentLinkFrame frame : state.unacked.values()) {
+				connected.write(frame);
+			}
+		}
+	}
+
+	/**
+	 * 与远程Agent握手的方法<br>
+	 * 发送进程标识后等待返回 远程Agent在返回之前先确认该进程各通道已经执行完的批量
+	 *
+	 * @param connected
+	 *            新建立的会话
+	 * @throws RedisProtocolException
+	 *             握手超时或者被中断时抛出该异常
+	 */
+	private void handshake(IoSession connected) throws RedisProtocolException {
+		connected.write(AgentLinkFrame.hello(epoch));
+		long deadline = System.currentTimeMillis() + timeout;
+		while (handshakeSession != connected) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				connected.close(true);
+				throw new RedisProtocolException("等待远程Agent握手超时：" + host + ":" + port);
+			}
+			try {
+				wait(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				connected.close(true);
+				throw new RedisProtocolException("等待远程Agent握手被中断");
+			}
+		}
+	}
+
+	/**
+	 * 添加需要发送的命令的方法<br>
+	 * 当前批量的命令数量或者数据长度达到上限时发送
+	 *
+	 * @param channel
+	 *            通道编号
+	 * @param command
+	 *            命令对象
+	 * @throws RedisProtocolException
+	 *             发送出现问题时抛出该异常
+	 */
+	public synchronized void append(int channel, RedisCommand command) throws RedisProtocolException {
+		ChannelState state = getChannelState(channel);
+		state.pending.add(command);
+		state.pendingBytes += AgentLinkBatchCodec.encodedLength(command);
+		if (state.pending.size() >= batchMaxCommands || state.pendingBytes >= batchMaxBytes) {
+			flush(channel, state);
+		}
+	}
+
+	/**
+	 * 发送所有通道中未发送的命令的方法<br>
+	 * 连接已经断开并且有未确认的批量时重新连接并重发
+	 *
+	 * @throws RedisProtocolException
+	 *             发送出现问题时抛出该异常
+	 */
+	public synchronized void flush() throws RedisProtocolException {
+		IoSession current = session;
+		if (unackedCount > 0 && (current == null || !current.isConnected())) {
+			connect();
+		}
+		for (Map.Entry<Integer, ChannelState> entry : channels.entrySet()) {
+			flush(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void flush(int channel, ChannelState state) throws RedisProtocolException {
+		if (state.pending.isEmpty()) {
+			return;
+		}
+		// 未确认的批量达到窗口大小时等待确认
+		long deadline = System.currentTimeMillis() + timeout;
+		while (unackedCount >= window) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				throw new RedisProtocolException("等待远程Agent确认超时 未确认批量数：" + unackedCount);
+			}
+			try {
+				wait(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RedisProtocolException("等待远程Agent确认被中断");
+			}
+		}
+
+		ByteBuffer payload = ByteBuffer.allocate(state.pendingBytes);
+		for (RedisCommand command : state.pending) {
+			AgentLinkBatchCodec.encode(command, payload);
+		}
+		AgentLinkFrame frame = AgentLinkFrame.batch(channel, ++state.nextSequence, state.pending.size(),
+				payload.array());
+		state.pending.clear();
+		state.pendingBytes = 0;
+		state.unacked.put(frame.getSequence(), frame);
+		unackedCount++;
+
+		IoSession current = session;
+		if (current == null || !current.isConnected()) {
+			// 重新连接后会重发包括该批量在内的所有未确认批量
+			connect();
+		} else {
+			current.write(frame);
+		}
+	}
+
+	/**
+	 * 等待所有批量命令被确认的方法
+	 *
+	 * @param timeout
+	 *            超时时间 毫秒
+	 * @return true为全部确认 false为超时
+	 * @throws InterruptedException
+	 *             等待被中断时抛出该异常
+	 */
+	public synchronized boolean awaitAcked(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (unackedCount > 0) {
+			long wait = deadline - System.currentTimeMillis();
+			if (wait <= 0) {
+				return false;
+			}
+			wait(wait);
+		}
+		return true;
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#messageReceived(org.apache.
+	 * mina.core.session.IoSession, java.lang.Object)
+	 */
+	@Override
+	public void messageReceived(IoSession session, Object message) throws Exception {
+		AgentLinkFrame frame = (AgentLinkFrame) message;
+		if (frame.getType() == AgentLinkFrame.TYPE_HELLO) {
+			synchronized (this) {
+				if (frame.getSequence() == epoch) {
+					handshakeSession = session;
+					notifyAll();
+				} else {
+					logger.error("远程Agent返回了错误的握手标识：" + frame);
+				}
+			}
+			return;
+		}
+		if (frame.getType() != AgentLinkFrame.TYPE_ACK) {
+			logger.warn("收到未知类型的数据帧：" + frame);
+			return;
+		}
+		synchronized (this) {
+			ChannelState state = getChannelState(frame.getChannel());
+			Iterator<Long> iterator = state.unacked.keySet().iterator();
+			while (iterator.hasNext() && iterator.next() <= frame.getSequence()) {
+				iterator.remove();
+				unackedCount--;
+			}
+			notifyAll();
+		}
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#sessionClosed(org.apache.
+	 * mina.core.session.IoSession)
+	 */
+	@Override
+	public void sessionClosed(IoSession session) throws Exception {
+		logger.warn("与远程Agent的连接断开：" + host + ":" + port);
+		if (this.session == session) {
+			this.session = null;
+		}
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#exceptionCaught(org.apache.
+	 * mina.core.session.IoSession, java.lang.Throwable)
+	 */
+	@Override
+	public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
+		logger.error("与远程Agent的连接出现异常：" + host + ":" + port, cause);
+		session.close(true);
+	}
+
+	/**
+	 * 判断是否已经连接到远程Agent的方法
+	 *
+	 * @return true为已经连接并且完成握手
+	 */
+	public boolean isConnected() {
+		IoSession current = session;
+		return current != null && current.isConnected();
+	}
+
+	private ChannelState getChannelState(int channel) {
+		ChannelState state = channels.get(channel);
+		if (state == null) {
+			state = new ChannelState();
+			channels.put(channel, state);
+		}
+		return state;
+	}
+
+	/**
+	 * 获取发送前数据总长度的方法
+	 *
+	 * @return 数据总长度
+	 */
+	public long getRawBytes() {
+		return codecFactory == null ? 0 : codecFactory.getEncoder().getRawBytes();
+	}
+
+	/**
+	 * 获取实际发送数据总长度的方法
+	 *
+	 * @return 数据总长度
+	 */
+	public long getEncodedBytes() {
+		return codecFactory == null ? 0 : codecFactory.getEncoder().getEncodedBytes();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		IoSession current = session;
+		session = null;
+		if (current != null) {
+			current.close(false);
+		}
+		if (connector != null) {
+			connector.dispose();
+			connector = null;
+		}
+	}
+
+	public void setBatchMaxCommands(int batchMaxCommands) {
+		this.batchMaxCommands = batchMaxCommands;
+	}
+
+	public void setBatchMaxBytes(int batchMaxBytes) {
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	public void setWindow(int window) {
+		this.window = window;
+	}
+
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	/**
+	 * 单个通道的发送状态
+	 */
+	private static class ChannelState {
+		/**
+		 * 下一个批量的序号
+		 */
+		private long nextSequence = 0;
+		/**
+		 * 等待发送的命令
+		 */
+		private List<RedisCommand> pending = new ArrayList<RedisCommand>();
+		/**
+		 * 等待发送的命令编码后的长度
+		 */
+		private int pendingBytes = 0;
+		/**
+		 * 已经发送但是未确认的批量 按序号排序
+		 */
+		private TreeMap<Long, AgentLinkFrame> unacked = new TreeMap<Long, AgentLinkFrame>();
+	}
+}
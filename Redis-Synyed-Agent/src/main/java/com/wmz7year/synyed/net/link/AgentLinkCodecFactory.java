@@ -0,0 +1,75 @@
+package com.wmz7year.synyed.net.link;
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+
+/**
+ * Agent之间传输数据帧的编解码器工厂类
+ *
+ * @Title: AgentLinkCodecFactory.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 上午11:02:36
+ * @version V1.0
+ */
+public class AgentLinkCodecFactory implements ProtocolCodecFactory {
+	/**
+	 * 默认的压缩阈值 数据长度小于该值时不压缩
+	 */
+	public static final int DEFAULT_COMPRESS_THRESHOLD = 256;
+
+	/**
+	 * 数据帧编码器
+	 */
+	private AgentLinkEncoder encoder;
+
+	/**
+	 * 数据帧解码器
+	 */
+	private AgentLinkDecoder decoder;
+
+	public AgentLinkCodecFactory() {
+		this(DEFAULT_COMPRESS_THRESHOLD);
+	}
+
+	/**
+	 * @param compressThreshold
+	 *            压缩阈值 小于0时不压缩
+	 */
+	public AgentLinkCodecFactory(int compressThreshold) {
+		this.encoder = new AgentLinkEncoder(compressThreshold);
+		this.decoder = new AgentLinkDecoder();
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.filter.codec.ProtocolCodecFactory#getEncoder(org.apache.
+	 * mina.core.session.IoSession)
+	 */
+	@Override
+	public ProtocolEncoder getEncoder(IoSession session) throws Exception {
+		return encoder;
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.filter.codec.ProtocolCodecFactory#getDecoder(org.apache.
+	 * mina.core.session.IoSession)
+	 */
+	@Override
+	public ProtocolDecoder getDecoder(IoSession session) throws Exception {
+		return decoder;
+	}
+
+	/**
+	 * 获取数据帧编码器的方法 用于统计压缩效果
+	 *
+	 * @return 数据帧编码器
+	 */
+	public AgentLinkEncoder getEncoder() {
+		return encoder;
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.wmz7year.synyed.net.link;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.util.LZFDecoder;
+
+/**
+ * Agent之间传输数据帧的解码器<br>
+ * 收到完整的数据帧后解压数据
+ *
+ * @Title: AgentLinkDecoder.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 上午11:24:51
+ * @version V1.0
+ */
+public class AgentLinkDecoder extends CumulativeProtocolDecoder {
+	/**
+	 * 单个数据帧的最大长度 256M
+	 */
+	public static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024;
+
+	/*
+	 * @see org.apache.mina.filter.codec.CumulativeProtocolDecoder#doDecode(org.
+	 * apache.mina.core.session.IoSession, org.apache.mina.core.buffer.IoBuffer,
+	 * org.apache.mina.filter.codec.ProtocolDecoderOutput)
+	 */
+	@Override
+	protected boolean doDecode(IoSession session, IoBuffer in, ProtocolDecoderOutput out) throws Exception {
+		// 长度超过最大长度时抛出BufferDataException
+		if (!in.prefixedDataAvailable(4, MAX_FRAME_LENGTH)) {
+			return false;
+		}
+		int frameLength = in.getInt();
+		if (frameLength < AgentLinkFrame.HEADER_LENGTH) {
+			throw new RedisProtocolException("错误的数据帧长度：" + frameLength);
+		}
+		byte type = in.get();
+		byte flags = in.get();
+		int channel = in.getInt();
+		long sequence = in.getLong();
+		int commandCount = in.getInt();
+		int rawLength = in.getInt();
+		int dataLength = frameLength - AgentLinkFrame.HEADER_LENGTH;
+		if (rawLength < 0 || rawLength > MAX_FRAME_LENGTH) {
+			throw new RedisProtocolException("错误的数据原始长度：" + rawLength);
+		}
+		byte[] data = new byte[dataLength];
+		in.get(data);
+
+		byte[] payload;
+		if ((flags & AgentLinkFrame.FLAG_COMPRESSED) != 0) {
+			payload = new byte[rawLength];
+			LZFDecoder.decode(data, 0, dataLength, payload, 0, rawLength);
+		} else {
+			payload = data;
+		}
+		out.write(new AgentLinkFrame(type, channel, sequence, commandCount, payload));
+		return true;
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.wmz7year.synyed.net.link;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.util.LZFEncoder;
+
+/**
+ * Agent之间传输数据帧的编码器<br>
+ * 数据长度不小于压缩阈值时使用lzf压缩 压缩后没有变小则发送原始数据
+ *
+ * @Title: AgentLinkEncoder.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 上午11:10:08
+ * @version V1.0
+ */
+public class AgentLinkEncoder extends ProtocolEncoderAdapter {
+	private static final Logger logger = LoggerFactory.getLogger(AgentLinkEncoder.class);
+
+	/**
+	 * 压缩阈值
+	 */
+	private final int compressThreshold;
+
+	/**
+	 * 原始数据总长度
+	 */
+	private final AtomicLong rawBytes = new AtomicLong();
+	/**
+	 * 实际发送数据总长度
+	 */
+	private final AtomicLong encodedBytes = new AtomicLong();
+
+	public AgentLinkEncoder(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.filter.codec.ProtocolEncoder#encode(org.apache.mina.core.
+	 * session.IoSession, java.lang.Object,
+	 * org.apache.mina.filter.codec.ProtocolEncoderOutput)
+	 */
+	@Override
+	public void encode(IoSession session, Object message, ProtocolEncoderOutput out) throws Exception {
+		if (!(message instanceof AgentLinkFrame)) {
+			logger.warn("未知类型的数据帧 无法编码：" + message);
+			return;
+		}
+		AgentLinkFrame frame = (AgentLinkFrame) message;
+		byte[] payload = frame.getPayload();
+		byte flags = 0;
+		byte[] data = payload;
+		int dataLength = payload.length;
+		if (compressThreshold >= 0 && payload.length >= compressThreshold) {
+			byte[] compressed = new byte[payload.length];
+			// 压缩后长度不小于原始长度时返回0 发送原始数据
+			int length = LZFEncoder.encode(payload, 0, payload.length, compressed, 0);
+			if (length > 0 && length < payload.length) {
+				flags |= AgentLinkFrame.FLAG_COMPRESSED;
+				data = compressed;
+				dataLength = length;
+			}
+		}
+		rawBytes.addAndGet(payload.length);
+		encodedBytes.addAndGet(dataLength);
+
+		IoBuffer buffer = IoBuffer.allocate(4 + AgentLinkFrame.HEADER_LENGTH + dataLength);
+		buffer.putInt(AgentLinkFrame.HEADER_LENGTH + dataLength);
+		buffer.put(frame.getType());
+		buffer.put(flags);
+		buffer.putInt(frame.getChannel());
+		buffer.putLong(frame.getSequence());
+		buffer.putInt(frame.getCommandCount());
+		buffer.putInt(payload.length);
+		buffer.put(data, 0, dataLength);
+		buffer.flip();
+		out.write(buffer);
+	}
+
+	/**
+	 * 获取编码前数据总长度的方法
+	 *
+	 * @return 数据总长度
+	 */
+	public long getRawBytes() {
+		return rawBytes.get();
+	}
+
+	/**
+	 * 获取编码后数据总长度的方法
+	 *
+	 * @return 数据总长度
+	 */
+	public long getEncodedBytes() {
+		return encodedBytes.get();
+	}
+}
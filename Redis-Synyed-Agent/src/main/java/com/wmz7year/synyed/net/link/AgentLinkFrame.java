@@ -0,0 +1,139 @@
+package com.wmz7year.synyed.net.link;
+
+/**
+ * Agent之间传输的数据帧<br>
+ * 数据帧格式为 长度(4) 类型(1) 标识(1) 通道(4) 序号(8) 命令数量(4) 原始长度(4) 数据<br>
+ * 长度字段不包含自身 标识字段最低位为1时数据使用lzf压缩<br>
+ * 批量命令帧的序号在每个通道内从1开始递增 确认帧的序号表示该通道中已经执行完的最大序号<br>
+ * 握手帧在每次建立连接后首先发送 序号字段为发送端进程的标识 接收端原样返回表示握手成功<br>
+ * 序号只在同一个发送端进程内有效 接收端收到新的进程标识后重新开始计算各通道的序号
+ *
+ * @Title: AgentLinkFrame.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 上午10:05:12
+ * @version V1.0
+ */
+public class AgentLinkFrame {
+	/**
+	 * 批量命令帧
+	 */
+	public static final byte TYPE_BATCH = 1;
+	/**
+	 * 确认帧
+	 */
+	public static final byte TYPE_ACK = 2;
+	/**
+	 * 握手帧
+	 */
+	public static final byte TYPE_HELLO = 3;
+
+	/**
+	 * 数据使用lzf压缩的标识
+	 */
+	public static final byte FLAG_COMPRESSED = 1;
+
+	/**
+	 * 帧头长度 不包含长度字段
+	 */
+	public static final int HEADER_LENGTH = 1 + 1 + 4 + 8 + 4 + 4;
+
+	/**
+	 * 帧类型
+	 */
+	private final byte type;
+	/**
+	 * 通道编号
+	 */
+	private final int channel;
+	/**
+	 * 序号
+	 */
+	private final long sequence;
+	/**
+	 * 批量命令数量
+	 */
+	private final int commandCount;
+	/**
+	 * 未压缩的数据
+	 */
+	private final byte[] payload;
+
+	public AgentLinkFrame(byte type, int channel, long sequence, int commandCount, byte[] payload) {
+		this.type = type;
+		this.channel = channel;
+		this.sequence = sequence;
+		this.commandCount = commandCount;
+		this.payload = payload == null ? new byte[0] : payload;
+	}
+
+	/**
+	 * 创建批量命令帧的方法
+	 *
+	 * @param channel
+	 *            通道编号
+	 * @param sequence
+	 *            序号
+	 * @param commandCount
+	 *            命令数量
+	 * @param payload
+	 *            编码后的命令数据
+	 * @return 数据帧
+	 */
+	public static AgentLinkFrame batch(int channel, long sequence, int commandCount, byte[] payload) {
+		return new AgentLinkFrame(TYPE_BATCH, channel, sequence, commandCount, payload);
+	}
+
+	/**
+	 * 创建确认帧的方法
+	 *
+	 * @param channel
+	 *            通道编号
+	 * @param sequence
+	 *            已经执行完的最大序号
+	 * @return 数据帧
+	 */
+	public static AgentLinkFrame ack(int channel, long sequence) {
+		return new AgentLinkFrame(TYPE_ACK, channel, sequence, 0, null);
+	}
+
+	/**
+	 * 创建握手帧的方法
+	 *
+	 * @param epoch
+	 *            发送端进程的标识
+	 * @return 数据帧
+	 */
+	public static AgentLinkFrame hello(long epoch) {
+		return new AgentLinkFrame(TYPE_HELLO, 0, epoch, 0, null);
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public int getChannel() {
+		return channel;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AgentLinkFrame [type=" + type + ", channel=" + channel + ", sequence=" + sequence + ", commandCount="
+				+ commandCount + ", payloadLength=" + payload.length + "]";
+	}
+}
@@ -0,0 +1,34 @@
+package com.wmz7year.synyed.net.link;
+
+import java.util.List;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * Agent之间传输的批量命令监听器<br>
+ * 同一个通道的批量命令按序号顺序回调 正常返回后发送确认帧<br>
+ * 抛出异常时不发送确认 发送端重新连接后会重发该批量命令<br>
+ * 只执行了一部分命令时抛出AgentLinkApplyException 重发时只回调剩余的命令
+ *
+ * @Title: AgentLinkListener.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 下午2:03:19
+ * @version V1.0
+ */
+public interface AgentLinkListener {
+
+	/**
+	 * 收到批量命令的方法
+	 *
+	 * @param channel
+	 *            通道编号
+	 * @param commands
+	 *            命令列表
+	 * @throws AgentLinkApplyException
+	 *             执行了一部分命令后出现问题时抛出该异常
+	 * @throws Exception
+	 *             处理命令出现问题时抛出该异常
+	 */
+	public void receive(int channel, List<RedisCommand> commands) throws Exception;
+}
@@ -0,0 +1,368 @@
+package com.wmz7year.synyed.net.link;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.transport.socket.nio.NioSocketAcceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * Agent之间传输链路的接收端<br>
+ * 网络I/O线程只负责解码 收到的批量命令按通道放入队列<br>
+ * 每个通道同一时间只有一个处理线程 按序号顺序交给监听器处理 不同通道之间并行处理<br>
+ * 确认是累计的 一次处理完队列中所有批量后只发送最大序号的确认 队列较长时每ACK_INTERVAL个批量确认一次<br>
+ * 重复的批量命令只确认不再处理 序号不连续或者处理失败时断开连接等待发送端重发<br>
+ * 批量只执行了一部分时记录已经执行的命令数量 重发时跳过这些命令<br>
+ * 连接建立后先收到发送端的握手帧 通道的序号只在同一个发送端进程标识内有效<br>
+ * 发送端重启后使用新的标识 接收端重新开始计算序号 接收端重启后以收到的第一个批量确定起始序号
+ *
+ * @Title: AgentLinkServer.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 下午3:20:55
+ * @version V1.0
+ */
+public class AgentLinkServer extends IoHandlerAdapter implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(AgentLinkServer.class);
+
+	/**
+	 * 监听地址
+	 */
+	private final String host;
+	/**
+	 * 监听端口 0为随机端口
+	 */
+	private final int port;
+	/**
+	 * 批量命令监听器
+	 */
+	private final AgentLinkListener listener;
+
+	/**
+	 * 连续处理多少个批量后即使队列中还有数据也发送一次确认
+	 */
+	public static final int ACK_INTERVAL = 16;
+
+	/**
+	 * 会话中保存发送端进程标识的属性名称
+	 */
+	private static final String EPOCH_KEY = AgentLinkServer.class.getName() + ".epoch";
+
+	/**
+	 * 各通道的处理状态 连接断开后仍然保留
+	 */
+	private final ConcurrentMap<Integer, ChannelApplier> channels = new ConcurrentHashMap<Integer, ChannelApplier>();
+
+	/**
+	 * 连接接收器
+	 */
+	private NioSocketAcceptor acceptor;
+
+	/**
+	 * 处理批量命令的线程池
+	 */
+	private ExecutorService applyExecutor;
+
+	public AgentLinkServer(String host, int port, AgentLinkListener listener) {
+		this.host = host;
+		this.port = port;
+		this.listener = listener;
+	}
+
+	/**
+	 * 开始监听的方法
+	 *
+	 * @throws IOException
+	 *             监听端口失败时抛出该异常
+	 */
+	public void start() throws IOException {
+		acceptor = new NioSocketAcceptor();
+		acceptor.setReuseAddress(true);
+		acceptor.getSessionConfig().setTcpNoDelay(true);
+		acceptor.getFilterChain().addLast("agent-link", new ProtocolCodecFilter(new AgentLinkCodecFactory()));
+		applyExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Agent-Link-Apply-Thread-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		acceptor.setHandler(this);
+		acceptor.bind(new InetSocketAddress(host, port));
+		logger.info("Agent链路开始监听：" + getLocalPort());
+	}
+
+	/**
+	 * 获取实际监听端口的方法
+	 *
+	 * @return 监听端口
+	 */
+	public int getLocalPort() {
+		return acceptor.getLocalAddress().getPort();
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#messageReceived(org.apache.
+	 * mina.core.session.IoSession, java.lang.Object)
+	 */
+	@Override
+	public void messageReceived(IoSession session, Object message) throws Exception {
+		AgentLinkFrame frame = (AgentLinkFrame) message;
+		if (frame.getType() == AgentLinkFrame.TYPE_HELLO) {
+			handshake(session, frame.getSequence());
+			return;
+		}
+		if (frame.getType() != AgentLinkFrame.TYPE_BATCH) {
+			logger.warn("收到未知类型的数据帧：" + frame);
+			return;
+		}
+		Long epoch = (Long) session.getAttribute(EPOCH_KEY);
+		if (epoch == null) {
+			logger.error("连接没有握手就发送了批量命令：" + session.getRemoteAddress());
+			session.close(true);
+			return;
+		}
+		getChannelApplier(frame.getChannel(), epoch).offer(session, frame);
+	}
+
+	/**
+	 * 处理握手帧的方法<br>
+	 * 先确认该发送端进程各通道已经执行完的序号 再原样返回握手帧
+	 *
+	 * @param session
+	 *            发送端连接
+	 * @param epoch
+	 *            发送端进程标识
+	 */
+	private void handshake(IoSession session, long epoch) {
+		session.setAttribute(EPOCH_KEY, epoch);
+		for (ChannelApplier applier : channels.values()) {
+			long applied = applier.appliedSequence;
+			if (applier.epoch == epoch && applied > 0) {
+				session.write(AgentLinkFrame.ack(applier.channel, applied));
+			}
+		}
+		session.write(AgentLinkFrame.hello(epoch));
+	}
+
+	/**
+	 * 获取通道处理状态的方法<br>
+	 * 通道属于其他发送端进程时替换为新的处理状态 重新开始计算序号
+	 *
+	 * @param channel
+	 *            通道编号
+	 * @param epoch
+	 *            发送端进程标识
+	 * @return 通道处理状态
+	 */
+	private ChannelApplier getChannelApplier(int channel, long epoch) {
+		while (true) {
+			ChannelApplier applier = channels.get(channel);
+			if (applier != null && applier.epoch == epoch) {
+				return applier;
+			}
+			ChannelApplier created = new ChannelApplier(channel, epoch);
+			if (applier == null) {
+				if (channels.putIfAbsent(channel, created) == null) {
+					return created;
+				}
+			} else if (channels.replace(channel, applier, created)) {
+				logger.info("通道：" + channel + " 的发送端已经重启 重新开始计算序号");
+				return created;
+			}
+		}
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#exceptionCaught(org.apache.
+	 * mina.core.session.IoSession, java.lang.Throwable)
+	 */
+	@Override
+	public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
+		logger.error("Agent链路出现异常：" + session.getRemoteAddress(), cause);
+		session.close(true);
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (acceptor != null) {
+			acceptor.unbind();
+			acceptor.dispose();
+			acceptor = null;
+		}
+		if (applyExecutor != null) {
+			applyExecutor.shutdownNow();
+			applyExecutor = null;
+		}
+	}
+
+	/**
+	 * 等待处理的批量以及收到它的连接
+	 */
+	private static class PendingFrame {
+		private final IoSession session;
+		private final AgentLinkFrame frame;
+
+		PendingFrame(IoSession session, AgentLinkFrame frame) {
+			this.session = session;
+			this.frame = frame;
+		}
+	}
+
+	/**
+	 * 单个通道的处理状态<br>
+	 * 有数据时提交到线程池处理 处理完队列中的数据后退出 保证同一通道只有一个处理线程
+	 */
+	private class ChannelApplier implements Runnable {
+		private final int channel;
+		/**
+		 * 发送端进程标识
+		 */
+		private final long epoch;
+		/**
+		 * 等待处理的批量 长度由发送端的窗口大小限制
+		 */
+		private final LinkedBlockingQueue<PendingFrame> queue = new LinkedBlockingQueue<PendingFrame>();
+		/**
+		 * 是否已经提交到线程池
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		/**
+		 * 已经处理完的最大序号 只在处理线程中修改 小于0时还没有收到批量
+		 */
+		private volatile long appliedSequence = -1;
+		/**
+		 * 下一个批量中已经执行的命令数量 只在处理线程中访问
+		 */
+		private int appliedCommands = 0;
+
+		ChannelApplier(int channel, long epoch) {
+			this.channel = channel;
+			this.epoch = epoch;
+		}
+
+		void offer(IoSession session, AgentLinkFrame frame) {
+			queue.add(new PendingFrame(session, frame));
+			schedule();
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				applyExecutor.execute(this);
+			}
+		}
+
+		/*
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			List<PendingFrame> frames = new ArrayList<PendingFrame>();
+			try {
+				while (queue.drainTo(frames) > 0) {
+					IoSession ackSession = null;
+					int unacked = 0;
+					for (PendingFrame pending : frames) {
+						if (apply(pending)) {
+							ackSession = pending.session;
+							if (++unacked >= ACK_INTERVAL) {
+								ack(ackSession);
+								unacked = 0;
+							}
+						}
+					}
+					if (unacked > 0) {
+						ack(ackSession);
+					}
+					frames.clear();
+				}
+			} finally {
+				scheduled.set(false);
+				// 退出前有新的数据进入队列
+				if (!queue.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+
+		/**
+		 * 处理单个批量的方法
+		 *
+		 * @return 是否需要发送确认
+		 */
+		private boolean apply(PendingFrame pending) {
+			AgentLinkFrame frame = pending.frame;
+			if (channels.get(channel) != this) {
+				// 发送端已经重启 之前进程的批量不再处理
+				return false;
+			}
+			if (appliedSequence < 0) {
+				// 该发送端进程的第一个批量 接收端重启后发送端从未确认的序号继续发送
+				appliedSequence = frame.getSequence() - 1;
+			}
+			if (frame.getSequence() <= appliedSequence) {
+				// 重发的批量 已经处理过
+				return true;
+			}
+			if (!pending.session.isConnected()) {
+				// 连接已经断开 等待发送端重发
+				return false;
+			}
+			if (frame.getSequence() != appliedSequence + 1) {
+				logger.error("通道：" + channel + " 批量序号不连续 期望：" + (appliedSequence + 1) + " 实际：" + frame.getSequence());
+				pending.session.close(true);
+				return false;
+			}
+			int skip = appliedCommands;
+			try {
+				List<RedisCommand> commands = AgentLinkBatchCodec.decode(frame.getPayload(), frame.getCommandCount());
+				listener.receive(channel, skip == 0 ? commands : commands.subList(skip, commands.size()));
+			} catch (AgentLinkApplyException e) {
+				appliedCommands = skip + e.getAppliedCount();
+				logger.error("批量命令只执行了：" + appliedCommands + " 条 " + frame, e);
+				// 不发送确认 断开连接等待重发 重发时跳过已经执行的命令
+				pending.session.close(true);
+				return false;
+			} catch (Exception e) {
+				logger.error("处理批量命令出现问题：" + frame, e);
+				// 不发送确认 断开连接等待重发
+				pending.session.close(true);
+				return false;
+			}
+			appliedSequence = frame.getSequence();
+			appliedCommands = 0;
+			return true;
+		}
+
+		private void ack(IoSession session) {
+			if (session.isConnected()) {
+				session.write(AgentLinkFrame.ack(channel, appliedSequence));
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.wmz7year.synyed.net.proroc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.mina.core.file.DefaultFileRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 发送临时文件内容使用的FileRegion<br>
+ * 由mina的IoProcessor直接从文件传输到连接 不经过堆内存<br>
+ * 文件内容发送完成后关闭文件通道 会话关闭或者写出失败时由编码器释放
+ * 
+ * @Title: RedisFileRegion.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月28日 下午5:03:41
+ * @version V1.0
+ */
+public class RedisFileRegion extends DefaultFileRegion {
+	private static final Logger logger = LoggerFactory.getLogger(RedisFileRegion.class);
+
+	/**
+	 * 需要发送的文件
+	 */
+	private final File file;
+
+	/**
+	 * @param file
+	 *            需要发送的文件
+	 * @param length
+	 *            发送的长度
+	 * @throws IOException
+	 *             打开文件出现问题时抛出该异常
+	 */
+	public RedisFileRegion(File file, long length) throws IOException {
+		super(new RandomAccessFile(file, "r").getChannel(), 0, length);
+		this.file = file;
+	}
+
+	/*
+	 * @see org.apache.mina.core.file.DefaultFileRegion#getFilename()
+	 */
+	@Override
+	public String getFilename() {
+		return file.getPath();
+	}
+
+	/*
+	 * @see org.apache.mina.core.file.DefaultFileRegion#update(long)
+	 */
+	@Override
+	public void update(long value) {
+		super.update(value);
+		if (getRemainingBytes() == 0) {
+			release();
+		}
+	}
+
+	/**
+	 * 关闭文件通道的方法<br>
+	 * 可以重复调用 已经关闭时不做处理
+	 */
+	public void release() {
+		if (!isReleased()) {
+			try {
+				getFileChannel().close();
+			} catch (IOException e) {
+				logger.warn("关闭文件通道失败：" + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 判断文件通道是否已经关闭的方法
+	 * 
+	 * @return true为已经关闭
+	 */
+	public boolean isReleased() {
+		return !getFileChannel().isOpen();
+	}
+
+}
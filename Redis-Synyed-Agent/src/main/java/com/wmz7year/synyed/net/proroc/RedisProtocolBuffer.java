@@ -0,0 +1,311 @@
+package com.wmz7year.synyed.net.proroc;
+
+import java.nio.ByteBuffer;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+
+/**
+ * Redis协议解析器使用的环形缓冲区<br>
+ * 初始容量较小 容量不足时按2的倍数扩容 最大不超过设置的上限<br>
+ * 可以选择使用堆内数组或者直接内存作为存储<br>
+ * 空闲一段时间或者使用量长期较低时可以由后台线程调用trim方法收缩容量<br>
+ * 读写操作由解析器在持有该对象锁的情况下进行 trim方法同样需要获取该对象锁
+ *
+ * @Title: RedisProtocolBuffer.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 下午4:21:53
+ * @version V1.0
+ */
+public class RedisProtocolBuffer {
+	/**
+	 * 默认初始容量 4K
+	 */
+	public static final int DEFAULT_INITIAL_CAPACITY = 4 * 1024;
+	/**
+	 * 默认最大容量 1M
+	 */
+	public static final int DEFAULT_MAX_CAPACITY = 1024 * 1024;
+
+	/**
+	 * 初始容量 收缩时不会小于该容量
+	 */
+	private final int initialCapacity;
+	/**
+	 * 最大容量
+	 */
+	private final int maxCapacity;
+	/**
+	 * 是否使用直接内存
+	 */
+	private final boolean direct;
+
+	/**
+	 * 堆内存储 使用直接内存时为null
+	 */
+	private byte[] array;
+	/**
+	 * 直接内存存储 使用堆内存储时为null
+	 */
+	private ByteBuffer directBuffer;
+	/**
+	 * 当前容量
+	 */
+	private int capacity;
+	/**
+	 * 读取位置
+	 */
+	private int readIndex;
+	/**
+	 * 写入位置
+	 */
+	private int writeIndex;
+	/**
+	 * 缓冲区中未读取的数据长度
+	 */
+	private int size;
+
+	/**
+	 * 上一次trim之后的最大数据长度
+	 */
+	private int peakSize;
+	/**
+	 * 最后一次写入数据的时间
+	 */
+	private long lastWriteTime = System.currentTimeMillis();
+
+	public RedisProtocolBuffer() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY, false);
+	}
+
+	/**
+	 * @param initialCapacity
+	 *            初始容量
+	 * @param maxCapacity
+	 *            最大容量
+	 * @param direct
+	 *            是否使用直接内存
+	 */
+	public RedisProtocolBuffer(int initialCapacity, int maxCapacity, boolean direct) {
+		if (initialCapacity <= 0 || maxCapacity < initialCapacity) {
+			throw new IllegalArgumentException("initialCapacity:" + initialCapacity + " maxCapacity:" + maxCapacity);
+		}
+		this.initialCapacity = initialCapacity;
+		this.maxCapacity = maxCapacity;
+		this.direct = direct;
+		allocate(initialCapacity);
+	}
+
+	/**
+	 * 从数据源中拷贝数据到缓冲区的方法<br>
+	 * 缓冲区空间不足时按倍数扩容 达到最大容量后只拷贝能放下的部分<br>
+	 * 剩余数据由调用方在读取缓冲区后再次写入
+	 *
+	 * @param src
+	 *            数据源
+	 * @return 拷贝的数据长度
+	 */
+	public int write(ByteBuffer src) {
+		int dataLength = src.remaining();
+		if (dataLength == 0) {
+			return 0;
+		}
+		lastWriteTime = System.currentTimeMillis();
+		if (capacity - size < dataLength && capacity < maxCapacity) {
+			resize(growCapacity(size + dataLength));
+		}
+		int length = Math.min(dataLength, capacity - size);
+		// 先写到存储结尾 再从头开始写
+		int first = Math.min(length, capacity - writeIndex);
+		put(src, writeIndex, first);
+		if (length > first) {
+			put(src, 0, length - first);
+		}
+		writeIndex = (writeIndex + length) % capacity;
+		size += length;
+		if (size > peakSize) {
+			peakSize = size;
+		}
+		return length;
+	}
+
+	private void put(ByteBuffer src, int index, int length) {
+		if (array != null) {
+			src.get(array, index, length);
+		} else {
+			ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + length);
+			ByteBuffer target = directBuffer.duplicate();
+			target.position(index);
+			target.put(slice);
+			src.position(src.position() + length);
+		}
+	}
+
+	/**
+	 * 读取一个字节的方法
+	 *
+	 * @return 读取到的字节
+	 * @throws RedisProtocolException
+	 *             没有数据时抛出该异常
+	 */
+	public byte readByte() throws RedisProtocolException {
+		if (size == 0) {
+			throw new RedisProtocolException("EOF");
+		}
+		byte b = array != null ? array[readIndex] : directBuffer.get(readIndex);
+		if (++readIndex == capacity) {
+			readIndex = 0;
+		}
+		if (--size == 0) {
+			// 数据读完后复位读写位置 下次写入可以连续拷贝
+			readIndex = 0;
+			writeIndex = 0;
+		}
+		return b;
+	}
+
+	/**
+	 * 批量读取数据的方法<br>
+	 * 最多读取缓冲区中已有的数据 数据跨越存储结尾时分两段拷贝
+	 *
+	 * @param dst
+	 *            目标数组
+	 * @param offset
+	 *            写入目标数组的起始位置
+	 * @param length
+	 *            最多读取的长度
+	 * @return 实际读取的长度
+	 */
+	public int read(byte[] dst, int offset, int length) {
+		int readLength = Math.min(length, size);
+		int first = Math.min(readLength, capacity - readIndex);
+		get(readIndex, dst, offset, first);
+		if (readLength > first) {
+			get(0, dst, offset + first, readLength - first);
+		}
+		readIndex = (readIndex + readLength) % capacity;
+		size -= readLength;
+		if (size == 0) {
+			readIndex = 0;
+			writeIndex = 0;
+		}
+		return readLength;
+	}
+
+	private void get(int index, byte[] dst, int offset, int length) {
+		if (array != null) {
+			System.arraycopy(array, index, dst, offset, length);
+		} else {
+			ByteBuffer source = directBuffer.duplicate();
+			source.position(index);
+			source.get(dst, offset, length);
+		}
+	}
+
+	/**
+	 * 判断缓冲区中是否还有数据的方法
+	 *
+	 * @return true为有数据 false为没有数据
+	 */
+	public boolean hasRemaining() {
+		return size > 0;
+	}
+
+	/**
+	 * 获取缓冲区中未读取的数据长度的方法
+	 *
+	 * @return 数据长度
+	 */
+	public int remaining() {
+		return size;
+	}
+
+	/**
+	 * 获取当前容量的方法
+	 *
+	 * @return 当前容量
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * 收缩缓冲区容量的方法<br>
+	 * 超过空闲时间没有写入数据时收缩到初始容量<br>
+	 * 否则如果上一次收缩之后的最大数据长度不足当前容量的四分之一则收缩一半
+	 *
+	 * @param now
+	 *            当前时间
+	 * @param idleMillis
+	 *            空闲时间 毫秒
+	 * @return 收缩释放的容量
+	 */
+	public int trim(long now, long idleMillis) {
+		int oldCapacity = capacity;
+		if (capacity > initialCapacity) {
+			int newCapacity = capacity;
+			if (size == 0 && now - lastWriteTime >= idleMillis) {
+				newCapacity = initialCapacity;
+			} else if (peakSize < capacity / 4) {
+				newCapacity = Math.max(initialCapacity, Math.max(capacity / 2, size));
+			}
+			if (newCapacity < capacity) {
+				resize(newCapacity);
+			}
+		}
+		peakSize = size;
+		return oldCapacity - capacity;
+	}
+
+	/**
+	 * 计算扩容后容量的方法<br>
+	 * 按当前容量的倍数增长 直到能够放下需要的长度或者达到最大容量
+	 */
+	private int growCapacity(int required) {
+		int newCapacity = capacity;
+		while (newCapacity < required && newCapacity < maxCapacity) {
+			newCapacity = newCapacity > maxCapacity / 2 ? maxCapacity : newCapacity * 2;
+		}
+		return newCapacity;
+	}
+
+	/**
+	 * 调整存储容量的方法<br>
+	 * 保留未读取的数据并从新存储的起始位置开始排列
+	 */
+	private void resize(int newCapacity) {
+		byte[] oldArray = array;
+		ByteBuffer oldDirectBuffer = directBuffer;
+		int oldCapacity = capacity;
+		allocate(newCapacity);
+
+		int first = Math.min(size, oldCapacity - readIndex);
+		if (oldArray != null) {
+			System.arraycopy(oldArray, readIndex, array, 0, first);
+			System.arraycopy(oldArray, 0, array, first, size - first);
+		} else {
+			ByteBuffer source = oldDirectBuffer.duplicate();
+			source.position(readIndex).limit(readIndex + first);
+			directBuffer.put(source);
+			source.clear().limit(size - first);
+			directBuffer.put(source);
+			directBuffer.clear();
+		}
+		readIndex = 0;
+		writeIndex = size % newCapacity;
+	}
+
+	private void allocate(int newCapacity) {
+		if (direct) {
+			directBuffer = ByteBuffer.allocateDirect(newCapacity);
+		} else {
+			array = new byte[newCapacity];
+		}
+		capacity = newCapacity;
+	}
+}
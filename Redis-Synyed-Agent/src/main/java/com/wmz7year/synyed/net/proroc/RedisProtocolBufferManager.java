@@ -0,0 +1,178 @@
+package com.wmz7year.synyed.net.proroc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Redis协议解析缓冲区管理类<br>
+ * 保存新建缓冲区使用的容量设置 并记录所有创建的缓冲区<br>
+ * 启动后由后台线程定时收缩空闲或者使用量较低的缓冲区<br>
+ * 缓冲区使用弱引用记录 连接关闭后缓冲区可以被正常回收
+ *
+ * @Title: RedisProtocolBufferManager.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 下午5:02:17
+ * @version V1.0
+ */
+public final class RedisProtocolBufferManager {
+	private static final Logger logger = LoggerFactory.getLogger(RedisProtocolBufferManager.class);
+
+	/**
+	 * 新建缓冲区的初始容量
+	 */
+	private static volatile int initialCapacity = RedisProtocolBuffer.DEFAULT_INITIAL_CAPACITY;
+	/**
+	 * 新建缓冲区的最大容量
+	 */
+	private static volatile int maxCapacity = RedisProtocolBuffer.DEFAULT_MAX_CAPACITY;
+	/**
+	 * 新建缓冲区是否使用直接内存
+	 */
+	private static volatile boolean direct = false;
+
+	/**
+	 * 所有创建的缓冲区
+	 */
+	private static final Set<RedisProtocolBuffer> buffers = Collections
+			.newSetFromMap(new WeakHashMap<RedisProtocolBuffer, Boolean>());
+
+	/**
+	 * 收缩缓冲区的线程
+	 */
+	private static ScheduledExecutorService trimExecutor;
+
+	private RedisProtocolBufferManager() {
+	}
+
+	/**
+	 * 设置新建缓冲区容量的方法<br>
+	 * 只对之后创建的缓冲区生效
+	 *
+	 * @param initialCapacity
+	 *            初始容量
+	 * @param maxCapacity
+	 *            最大容量
+	 * @param direct
+	 *            是否使用直接内存
+	 */
+	public static void configure(int initialCapacity, int maxCapacity, boolean direct) {
+		if (initialCapacity <= 0 || maxCapacity < initialCapacity) {
+			throw new IllegalArgumentException("initialCapacity:" + initialCapacity + " maxCapacity:" + maxCapacity);
+		}
+		RedisProtocolBufferManager.initialCapacity = initialCapacity;
+		RedisProtocolBufferManager.maxCapacity = maxCapacity;
+		RedisProtocolBufferManager.direct = direct;
+	}
+
+	/**
+	 * 创建缓冲区的方法
+	 *
+	 * @return 缓冲区对象
+	 */
+	public static RedisProtocolBuffer createBuffer() {
+		RedisProtocolBuffer buffer = new RedisProtocolBuffer(initialCapacity, maxCapacity, direct);
+		synchronized (buffers) {
+			buffers.add(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * 启动后台收缩线程的方法
+	 *
+	 * @param intervalMillis
+	 *            检查间隔 毫秒
+	 * @param idleMillis
+	 *            缓冲区空闲多久后收缩到初始容量 毫秒
+	 */
+	public static synchronized void startTrim(long intervalMillis, final long idleMillis) {
+		if (trimExecutor != null) {
+			return;
+		}
+		trimExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "RedisProtocolBufferTrimThread");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		trimExecutor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					long released = trim(System.currentTimeMillis(), idleMillis);
+					if (released > 0 && logger.isDebugEnabled()) {
+						logger.debug("收缩协议解析缓冲区 释放：" + released + " byte");
+					}
+				} catch (Throwable e) {
+					logger.warn("收缩协议解析缓冲区异常", e);
+				}
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 停止后台收缩线程的方法
+	 */
+	public static synchronized void stopTrim() {
+		if (trimExecutor != null) {
+			trimExecutor.shutdownNow();
+			trimExecutor = null;
+		}
+	}
+
+	/**
+	 * 收缩所有缓冲区的方法
+	 *
+	 * @param now
+	 *            当前时间
+	 * @param idleMillis
+	 *            空闲时间 毫秒
+	 * @return 释放的容量
+	 */
+	public static long trim(long now, long idleMillis) {
+		List<RedisProtocolBuffer> snapshot;
+		synchronized (buffers) {
+			snapshot = new ArrayList<RedisProtocolBuffer>(buffers);
+		}
+		long released = 0;
+		for (RedisProtocolBuffer buffer : snapshot) {
+			// 与解析器的读取互斥
+			synchronized (buffer) {
+				released += buffer.trim(now, idleMillis);
+			}
+		}
+		return released;
+	}
+
+	/**
+	 * 获取所有缓冲区当前容量之和的方法
+	 *
+	 * @return 容量之和
+	 */
+	public static long getTotalCapacity() {
+		List<RedisProtocolBuffer> snapshot;
+		synchronized (buffers) {
+			snapshot = new ArrayList<RedisProtocolBuffer>(buffers);
+		}
+		long total = 0;
+		for (RedisProtocolBuffer buffer : snapshot) {
+			total += buffer.capacity();
+		}
+		return total;
+	}
+}
@@ -1,5 +1,6 @@
 package com.wmz7year.synyed.net.proroc;
 
+import org.apache.mina.core.buffer.IoBufferAllocator;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFactory;
 import org.apache.mina.filter.codec.ProtocolDecoder;
@@ -27,8 +28,18 @@ public class RedisProtocolCodecFactory implements ProtocolCodecFactory {
 	private RedisProtocolEncoder redisProtocolEncoder;
 
 	public RedisProtocolCodecFactory() {
+		this(null, false);
+	}
+
+	/**
+	 * @param allocator
+	 *            编码缓冲区分配器 为null时使用MINA全局的分配器
+	 * @param direct
+	 *            是否分配直接内存缓冲区
+	 */
+	public RedisProtocolCodecFactory(IoBufferAllocator allocator, boolean direct) {
 		this.redisProtocolDecoder = new RedisProtocolDecoder();
-		this.redisProtocolEncoder = new RedisProtocolEncoder();
+		this.redisProtocolEncoder = new RedisProtocolEncoder(allocator, direct);
 	}
 
 	/*
@@ -1,15 +1,19 @@
 package com.wmz7year.synyed.net.proroc;
 
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_FILE_REGIONS;
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_PROTOCOL_ARRAY;
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_PROTOCOL_BULK_STRINGS;
 import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_PROTOCOL_CR;
 import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_PROTOCOL_LF;
-import static com.wmz7year.synyed.constant.RedisProtocolConstant.*;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.IoBufferAllocator;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
 import org.apache.mina.filter.codec.ProtocolEncoderOutput;
@@ -18,11 +22,18 @@ import org.slf4j.LoggerFactory;
 
 import com.wmz7year.synyed.entity.RedisCommand;
 import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisFileCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
 
 /**
  * Redis协议编码器<br>
  * 编码方式为String类型的Redis命令结尾添加\r\n结束符<br>
- * 然后转换为mina的IoBuffer对象进入到接下来的处理链
+ * 然后转换为mina的IoBuffer对象进入到接下来的处理链<br>
+ * 编码前先计算出命令的准确长度 一次性分配缓冲区后直接写入<br>
+ * 命令参数通过RedisCommandData.writeTo写入 压缩的数据直接解压到缓冲区中<br>
+ * 保存在临时文件中的参数通过FileRegion发送 命令被拆分为多段依次写出<br>
+ * 没有发送完的FileRegion记录在会话中 会话关闭时释放文件通道<br>
+ * 指定分配器时编码缓冲区由该分配器分配 否则使用MINA全局的分配器
  * 
  * @Title: RedisProtocolEncoder.java
  * @Package com.wmz7year.synyed.net.proroc
@@ -33,6 +44,30 @@ import com.wmz7year.synyed.entity.RedisCommandData;
 public class RedisProtocolEncoder extends ProtocolEncoderAdapter {
 	private static final Logger logger = LoggerFactory.getLogger(RedisProtocolEncoder.class);
 
+	/**
+	 * 编码缓冲区分配器 为null时使用MINA全局的分配器
+	 */
+	private final IoBufferAllocator allocator;
+	/**
+	 * 是否分配直接内存缓冲区
+	 */
+	private final boolean direct;
+
+	public RedisProtocolEncoder() {
+		this(null, false);
+	}
+
+	/**
+	 * @param allocator
+	 *            编码缓冲区分配器 为null时使用MINA全局的分配器
+	 * @param direct
+	 *            是否分配直接内存缓冲区
+	 */
+	public RedisProtocolEncoder(IoBufferAllocator allocator, boolean direct) {
+		this.allocator = allocator;
+		this.direct = direct;
+	}
+
 	/*
 	 * @see
 	 * org.apache.mina.filter.codec.ProtocolEncoder#encode(org.apache.mina.core.
@@ -44,30 +79,44 @@ public class RedisProtocolEncoder extends ProtocolEncoderAdapter {
 		if (message instanceof RedisCommand) {
 			RedisCommand command = (RedisCommand) message;
 			List<RedisCommandData> values = command.getValues();
-			String redisCommand = command.getCommand();
-
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			bos.write(REDIS_PROTOCOL_ARRAY);
-			writeIntCrLf(values.size() + 1, bos);
-			bos.write(REDIS_PROTOCOL_BULK_STRINGS);
-			writeIntCrLf(redisCommand.length(), bos);
-			bos.write(redisCommand.getBytes());
-			writeCrLf(bos);
-			for (RedisCommandData value : values) {
-				bos.write(REDIS_PROTOCOL_BULK_STRINGS);
-				writeIntCrLf(value.getData().length, bos);
-				bos.write(value.getData());
-				writeCrLf(bos);
-			}
-			// 生成最终的数据
-			byte[] data = bos.toByteArray();
+			byte[] redisCommand = command.getCommand().getBytes();
 
-			IoBuffer buffer = IoBuffer.allocate(data.length);
-			buffer.put(data);
+			// 计算编码后的长度
+			int size = 1 + intCrLfLength(values.size() + 1);
+			size += bulkLength(redisCommand.length);
+			size += segmentLength(values, 0);
+
+			IoBuffer buffer = allocate(size);
+			ByteBuffer buf = buffer.buf();
+			buf.put(REDIS_PROTOCOL_ARRAY);
+			writeIntCrLf(values.size() + 1, buf);
+			buf.put(REDIS_PROTOCOL_BULK_STRINGS);
+			writeIntCrLf(redisCommand.length, buf);
+			buf.put(redisCommand);
+			writeCrLf(buf);
+			for (int i = 0; i < values.size(); i++) {
+				RedisCommandData value = values.get(i);
+				buf.put(REDIS_PROTOCOL_BULK_STRINGS);
+				writeIntCrLf(value.getLength(), buf);
+				if (isFileBacked(value)) {
+					// 先写出已经编码的部分 再由FileRegion发送文件内容
+					RedisFileCommandData fileData = (RedisFileCommandData) value;
+					buffer.flip();
+					out.write(buffer);
+					RedisFileRegion region = new RedisFileRegion(fileData.getFile(), fileData.getLength());
+					trackFileRegion(session, region);
+					out.write(region);
+					buffer = allocate(2 + segmentLength(values, i + 1));
+					buf = buffer.buf();
+				} else {
+					value.writeTo(buf);
+				}
+				writeCrLf(buf);
+			}
 			buffer.flip();
 
 			if (logger.isDebugEnabled()) {
-				logger.debug("send command:" + redisCommand + " hex:" + Arrays.toString(buffer.array()));
+				logger.debug("send command:" + command.getCommand() + " hex:" + buffer.getHexDump());
 			}
 			out.write(buffer);
 		} else {
@@ -75,33 +124,153 @@ public class RedisProtocolEncoder extends ProtocolEncoderAdapter {
 		}
 	}
 
+	/*
+	 * @see
+	 * org.apache.mina.filter.codec.ProtocolEncoderAdapter#dispose(org.apache.
+	 * mina.core.session.IoSession)
+	 */
+	@Override
+	public void dispose(IoSession session) throws Exception {
+		// 会话关闭后没有发送完的FileRegion不会再被写出 释放文件通道
+		@SuppressWarnings("unchecked")
+		Queue<RedisFileRegion> regions = (Queue<RedisFileRegion>) session.removeAttribute(REDIS_FILE_REGIONS);
+		if (regions == null) {
+			return;
+		}
+		RedisFileRegion region;
+		while ((region = regions.poll()) != null) {
+			if (!region.isReleased()) {
+				logger.warn("会话关闭时临时文件没有发送完 释放文件通道：" + region.getFilename());
+				region.release();
+			}
+		}
+	}
+
+	/**
+	 * 在会话中记录FileRegion的方法<br>
+	 * 同时移除已经发送完的FileRegion 没有会话时不记录
+	 * 
+	 * @param session
+	 *            写出的会话
+	 * @param region
+	 *            需要记录的FileRegion
+	 */
+	private void trackFileRegion(IoSession session, RedisFileRegion region) {
+		if (session == null) {
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		Queue<RedisFileRegion> regions = (Queue<RedisFileRegion>) session.getAttribute(REDIS_FILE_REGIONS);
+		if (regions == null) {
+			regions = new ConcurrentLinkedQueue<RedisFileRegion>();
+			@SuppressWarnings("unchecked")
+			Queue<RedisFileRegion> existing = (Queue<RedisFileRegion>) session.setAttributeIfAbsent(REDIS_FILE_REGIONS,
+					regions);
+			if (existing != null) {
+				regions = existing;
+			}
+		}
+		Iterator<RedisFileRegion> iterator = regions.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isReleased()) {
+				iterator.remove();
+			}
+		}
+		regions.add(region);
+	}
+
+	/**
+	 * 分配编码缓冲区的方法
+	 * 
+	 * @param capacity
+	 *            缓冲区容量
+	 * @return 缓冲区
+	 */
+	private IoBuffer allocate(int capacity) {
+		if (allocator == null) {
+			return IoBuffer.allocate(capacity);
+		}
+		return allocator.allocate(capacity, direct);
+	}
+
 	/**
-	 * 写入int值的方法
+	 * 判断命令参数是否需要从文件发送的方法
 	 * 
 	 * @param value
-	 *            需要写入的int值
-	 * @param bos
-	 *            byte数组缓冲区流对象
-	 * @throws IOException
-	 *             当写入出现问题则抛出该异常
+	 *            命令参数
+	 * @return true为参数内容在文件中
+	 */
+	private boolean isFileBacked(RedisCommandData value) {
+		return value instanceof RedisFileCommandData && ((RedisFileCommandData) value).isFileBacked();
+	}
+
+	/**
+	 * 计算从指定参数开始到下一个文件参数为止编码后长度的方法<br>
+	 * 文件参数只计算$长度头 内容与结束符属于下一段
+	 * 
+	 * @param values
+	 *            命令参数列表
+	 * @param from
+	 *            起始参数位置
+	 * @return 这一段的编码长度
+	 */
+	private int segmentLength(List<RedisCommandData> values, int from) {
+		int size = 0;
+		for (int i = from; i < values.size(); i++) {
+			RedisCommandData value = values.get(i);
+			if (isFileBacked(value)) {
+				return size + 1 + intCrLfLength(value.getLength());
+			}
+			size += bulkLength(value.getLength());
+		}
+		return size;
+	}
+
+	/**
+	 * 计算一个bulk string编码后长度的方法
+	 * 
+	 * @param length
+	 *            数据长度
+	 * @return 包含$长度头以及结束符的总长度
+	 */
+	private int bulkLength(int length) {
+		return 1 + intCrLfLength(length) + length + 2;
+	}
+
+	/**
+	 * 计算int值以及结束符编码后长度的方法
+	 * 
+	 * @param value
+	 *            int值
+	 * @return 编码后的长度
 	 */
-	private void writeIntCrLf(int value, ByteArrayOutputStream bos) throws IOException {
-		bos.write(String.valueOf(value).getBytes());
+	private int intCrLfLength(int value) {
+		return RedisLongCommandData.stringSize(value) + 2;
+	}
 
-		writeCrLf(bos);
+	/**
+	 * 写入int值的方法<br>
+	 * 直接将十进制字符写入缓冲区 不生成中间字符串
+	 * 
+	 * @param value
+	 *            需要写入的int值
+	 * @param buf
+	 *            输出缓冲区
+	 */
+	private void writeIntCrLf(int value, ByteBuffer buf) {
+		RedisLongCommandData.writeDecimal(value, buf);
+		writeCrLf(buf);
 	}
 
 	/**
 	 * 写入crlf结束分隔符的方法
 	 * 
-	 * @param bos
-	 *            需要写入的数据输出流
-	 * @throws IOException
-	 *             当写入出现问题则抛出该异常
+	 * @param buf
+	 *            输出缓冲区
 	 */
-	private void writeCrLf(ByteArrayOutputStream bos) throws IOException {
-		bos.write(REDIS_PROTOCOL_CR);
-		bos.write(REDIS_PROTOCOL_LF);
+	private void writeCrLf(ByteBuffer buf) {
+		buf.put(REDIS_PROTOCOL_CR);
+		buf.put(REDIS_PROTOCOL_LF);
 	}
 
 }
@@ -10,6 +10,7 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -20,11 +21,11 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.wmz7year.synyed.exception.RedisProtocolException;
-import com.wmz7year.synyed.exception.RedisRDBException;
 import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
 import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisDataBaseTransferPacket;
 import com.wmz7year.synyed.packet.redis.RedisErrorPacket;
+import com.wmz7year.synyed.packet.redis.RedisFileBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisIntegerPacket;
 import com.wmz7year.synyed.packet.redis.RedisPacket;
 import com.wmz7year.synyed.packet.redis.RedisSimpleStringPacket;
@@ -51,30 +52,9 @@ public class RedisProtocolParser {
 	private static final Logger logger = LoggerFactory.getLogger(RedisProtocolParser.class);
 
 	/**
-	 * 缓冲区大小 1M
+	 * 环形缓冲区 容量随流量扩容和收缩
 	 */
-	private int BUFFERSIZE = 1024 * 1024;
-	/**
-	 * 缓冲区
-	 */
-	private byte[] buffer = new byte[BUFFERSIZE];
-	/**
-	 * 缓冲区中写入的位置
-	 */
-	private int limit = 0;
-	/**
-	 * 缓冲区读取过的位置
-	 */
-	private int readFlag = 0;
-	/**
-	 * 缓冲区最大长度
-	 */
-	private int maxLength = buffer.length;
-
-	/**
-	 * 判断缓冲区是否写满的标志位
-	 */
-	private boolean isFull = false;
+	private final RedisProtocolBuffer buffer;
 	/**
 	 * 当前解析中的数据包
 	 */
@@ -155,6 +135,68 @@ public class RedisProtocolParser {
 	 */
 	private File tempFile;
 
+	/**
+	 * 默认超大bulk字符串写入临时文件的阈值 16M
+	 */
+	public static final int DEFAULT_SPILL_THRESHOLD = 16 * 1024 * 1024;
+
+	/**
+	 * 写入临时文件时每次读取的数据长度
+	 */
+	private static final int SPILL_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * 数组中的bulk字符串按声明长度预先分配内容数组的上限 64K 更长的数据随读取成倍扩容
+	 */
+	private static final int BULK_PRESIZE_LIMIT = 64 * 1024;
+
+	/**
+	 * 新建解析器超大bulk字符串写入临时文件的阈值 小于等于0时不写入临时文件
+	 */
+	private static volatile int defaultSpillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+	/**
+	 * 新建解析器超大bulk字符串临时文件的目录 为null时使用系统临时目录
+	 */
+	private static volatile File defaultSpillDir;
+
+	/**
+	 * 数组中超过该长度的bulk字符串写入临时文件 小于等于0时不写入临时文件
+	 */
+	private int spillThreshold = defaultSpillThreshold;
+
+	/**
+	 * 超大bulk字符串临时文件的目录
+	 */
+	private File spillDir = defaultSpillDir;
+
+	/**
+	 * 当前bulk字符串是否正在写入临时文件
+	 */
+	private boolean isSpilling = false;
+
+	/**
+	 * 写入临时文件使用的读取缓冲区
+	 */
+	private byte[] spillBuffer;
+
+	/**
+	 * 已经读取的bulk字符串结束符长度
+	 */
+	private int bulkTrailerLength = 0;
+
+	public RedisProtocolParser() {
+		this(RedisProtocolBufferManager.createBuffer());
+	}
+
+	/**
+	 * @param buffer
+	 *            使用的环形缓冲区
+	 */
+	public RedisProtocolParser(RedisProtocolBuffer buffer) {
+		this.buffer = buffer;
+	}
+
 	/**
 	 * 解析Redis数据包的方法<br>
 	 * 
@@ -164,33 +206,41 @@ public class RedisProtocolParser {
 	 *             当解析过程中出现问题则抛出该异常
 	 */
 	public void read(ByteBuffer byteBuffer) throws RedisProtocolException {
-		// 拷贝数据到缓冲区的方法
-		copyDataToBuffer(byteBuffer);
-
-		// 解析数据包的方法
-		while (true) {
-			// 当没有数据时退出读取
-			if (!hasRemaining()) {
-				break;
-			}
-			RedisPacket packet = decodePacket();
-			if (packet != null) {
-				// 清理临时文件内容
-				if (isDatabaseTrancefer) {
-					cleanTempFile();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Recv " + byteBuffer.remaining() + " bytes data");
+		}
+		// 与后台收缩线程互斥
+		synchronized (buffer) {
+			do {
+				// 拷贝数据到缓冲区 超过缓冲区最大容量的部分在解析后继续拷贝
+				copyDataToBuffer(byteBuffer);
+
+				// 解析数据包的方法
+				while (true) {
+					// 当没有数据时退出读取
+					if (!hasRemaining()) {
+						break;
+					}
+					RedisPacket packet = decodePacket();
+					if (packet != null) {
+						// 清理临时文件内容
+						if (isDatabaseTrancefer) {
+							cleanTempFile();
+						}
+						// 清空数据传输包校验
+						this.isDatabaseTranceferChecked = false;
+						this.isDatabaseTrancefer = false;
+
+						this.packets.add(packet);
+					}
 				}
-				// 清空数据传输包校验
-				this.isDatabaseTranceferChecked = false;
-				this.isDatabaseTrancefer = false;
-
-				this.packets.add(packet);
-			}
+			} while (byteBuffer.hasRemaining());
 		}
 	}
 
 	/**
 	 * 拷贝数据到缓冲区的方法<br>
-	 * 循环读写一个固定的缓冲区，当数据量过大的时候会对缓冲区自动扩容<br>
+	 * 缓冲区容量不足时按倍数扩容 达到最大容量后只拷贝能放下的部分<br>
 	 * 
 	 * @param byteBuffer
 	 *            需要拷贝的数据
@@ -199,87 +249,12 @@ public class RedisProtocolParser {
 	 */
 	private void copyDataToBuffer(ByteBuffer byteBuffer) throws RedisProtocolException {
 		try {
-			// 获取数据包内容的长度
-			int dataLength = byteBuffer.limit();
-			if (logger.isDebugEnabled()) {
-				logger.debug("Recv " + dataLength + " bytes data");
-			}
-
-			// 创建对应大小的缓冲区
-			byte[] dataBuffer = new byte[dataLength];
-			// 读取数据
-			byteBuffer.get(dataBuffer);
-
-			// 获取当前缓冲区剩余可用空间
-			int currentCapacity = getCurrentCapacity();
-			if (logger.isDebugEnabled()) {
-				logger.debug("Current buffer available " + currentCapacity + " byte");
-			}
-
-			// 判断缓冲区容量是否可以装得下此次来的数据 如果不能则扩充数组长度
-			if (currentCapacity < dataLength) {
-				byte[] tempBuffer = new byte[maxLength + (dataLength - currentCapacity)];
-				if (limit > readFlag) { // 判断是否是连续拷贝
-					System.arraycopy(buffer, readFlag, tempBuffer, 0, (limit - currentCapacity));
-					limit = limit - readFlag; // 重置写入标识位
-				} else if (limit == readFlag) { // 读取与写入一样 重置缓冲区
-					limit = 0; // 重置写入标识位
-				} else { // 分开拷贝
-					System.arraycopy(buffer, readFlag, tempBuffer, 0, (maxLength - readFlag));
-					System.arraycopy(buffer, 0, tempBuffer, (maxLength - readFlag), limit);
-				}
-				buffer = null;
-				buffer = tempBuffer;
-				tempBuffer = null;
-				readFlag = 0; // 复位读取的地方
-				maxLength = buffer.length;
-			}
-
-			// 判断是否需要中断复制
-			if ((maxLength - limit) < dataLength) {
-				// 分段的长度
-				int flag = (maxLength - limit);
-				if (flag == 0) {
-					readFlag = 0;
-				}
-				// 第一次复制 从可以写入位置一直复制到数组结束
-				System.arraycopy(dataBuffer, 0, buffer, limit, flag);
-				// 第二次复制 从第一个元素开始写直到写完
-				System.arraycopy(dataBuffer, flag, buffer, 0, dataLength - flag);
-				limit = dataLength - flag;
-				isFull = (limit == readFlag); // 判断是否为写满
-			} else {
-				System.arraycopy(dataBuffer, 0, buffer, limit, dataLength);
-				// 更新limit位置
-				limit = dataLength + limit;
-				isFull = (limit == readFlag); // 判断是否为写满
-			}
-
-			dataBuffer = null;
+			buffer.write(byteBuffer);
 		} catch (Exception e) {
 			throw new RedisProtocolException("拷贝数据异常", e);
 		}
 	}
 
-	/**
-	 * 获取当前缓冲区可用空间的方法
-	 * 
-	 * @return 当前缓冲区可用空间
-	 * @throws RedisProtocolException
-	 *             当出现问题时抛出该异常
-	 */
-	private int getCurrentCapacity() throws RedisProtocolException {
-		int currentCapacity = 0;
-		if (limit > readFlag) {
-			currentCapacity = (maxLength - limit) + readFlag;
-		} else if (limit == readFlag) {
-			currentCapacity = maxLength;
-		} else {
-			currentCapacity = maxLength - ((maxLength - readFlag) + limit);
-		}
-		return currentCapacity;
-	}
-
 	/**
 	 * 解析一个数据包的方法<br>
 	 * 当出现分包断包情况时返回null
@@ -364,6 +339,8 @@ public class RedisProtocolParser {
 		this.bulkNeg = 0;
 		// 清空crlf标识位
 		this.bulkCrLfReaded = false;
+		// 清空bulk结束符读取长度
+		this.bulkTrailerLength = 0;
 
 		// 如果数组类型数据包读取完毕 则清空对应的标识位
 		if (arrayPacket != null && arrayPacket.getPackets().size() == arrayLength) {
@@ -426,6 +403,11 @@ public class RedisProtocolParser {
 			return null;
 		}
 
+		// 长度为-1的bulk字符串 没有内容也没有结束符
+		if (bulkNeg < 0) {
+			return new RedisBulkStringPacket(BULKSTRING);
+		}
+
 		// 如果是空长度的数据 说明一定不是数据传输包 直接返回空字符串
 		if (result == 0) {
 			return readBulkStringPacket();
@@ -434,26 +416,15 @@ public class RedisProtocolParser {
 		// 读取bulk字符串内容
 		readBulkStringContent();
 
-		// 校验是否是数据传输包
-
-		if (!isDatabaseTranceferChecked) {
+		// 校验是否是数据传输包 只有顶层的bulk字符串才可能是rdb文件
+		if (!isDatabaseTranceferChecked && arrayPacket == null) {
 			checkIsDatabaseTranceferPacket();
 			// 如果是数据传输则创建临时文件
 			if (this.isDatabaseTrancefer) {
-				createTempFileChannel();
+				createTempFileChannel(new File(FileUtils.getTempDirectory(), System.currentTimeMillis() + ".synyed"));
 
 				// 写入当前已经读取的内容
-				ByteBuffer buffer = createByteBuffer(currentPacketWriteFlag);
-				buffer.put(currentPacket, 0, currentPacketWriteFlag);
-				buffer.flip();
-
-				while (buffer.hasRemaining()) {
-					try {
-						tempFileChannel.write(buffer);
-					} catch (IOException e) {
-						throw new RedisProtocolException(e);
-					}
-				}
+				writeToTempFile(currentPacket, 0, currentPacketWriteFlag);
 			}
 		}
 
@@ -464,14 +435,10 @@ public class RedisProtocolParser {
 
 		// 将数据转换为数据传输请求包
 		if (isDatabaseTrancefer) {
-			// 这就是完整的包了
-			RedisDataBaseTransferPacket packet = null;
-			try {
-				packet = new RedisDataBaseTransferPacket(DATABASETRANSFER, tempFile);
-			} catch (RedisRDBException e) {
-				throw new RedisProtocolException(e);
-			}
-			return packet;
+			// 这就是完整的包了 rdb文件在使用时才解析
+			return new RedisDataBaseTransferPacket(DATABASETRANSFER, tempFile);
+		} else if (isSpilling) {
+			return readSpilledBulkStringPacket();
 		} else {
 			return readBulkStringPacket();
 		}
@@ -484,20 +451,66 @@ public class RedisProtocolParser {
 	 *             bulk字符串数据内容
 	 */
 	private void readBulkStringContent() throws RedisProtocolException {
-		// 只有在有数据的时候读取数据
-		while (readedBulkLength != bulkLength) {
-			// 判断数据是否读取完了
+		// 只有在有数据的时候读取数据 按块从缓冲区拷贝
+		while (readedBulkLength != bulkLength && hasRemaining()) {
+			long length = bulkLength - readedBulkLength;
+			int readLength;
+			if (isDatabaseTrancefer || isSpilling) {
+				if (spillBuffer == null) {
+					spillBuffer = new byte[SPILL_CHUNK_SIZE];
+				}
+				readLength = readBytes(spillBuffer, 0, (int) Math.min(length, spillBuffer.length));
+				writeToTempFile(spillBuffer, 0, readLength);
+			} else {
+				if (currentPacketWriteFlag == currentPacket.length) {
+					growBulkStringContent();
+				}
+				readLength = readBytes(currentPacket, currentPacketWriteFlag,
+						(int) Math.min(length, currentPacket.length - currentPacketWriteFlag));
+				currentPacketWriteFlag += readLength;
+			}
+			readedBulkLength += readLength;
+		}
+	}
+
+	/**
+	 * 读取bulk字符串结尾\r\n的方法<br>
+	 * 结束符不写入当前数据包 分包时记录已经读取的长度
+	 * 
+	 * @return true为读取完成 false为数据不足
+	 * @throws RedisProtocolException
+	 *             结束符不正确时抛出该异常
+	 */
+	private boolean readBulkStringTrailer() throws RedisProtocolException {
+		while (bulkTrailerLength < 2) {
 			if (!hasRemaining()) {
-				break;
+				return false;
 			}
 			byte b = readByte();
-			readedBulkLength++;
-			appendToCurrentPacket(b);
-			if (readedBulkLength == bulkLength) {
-				// 数据读取完了
-				break;
+			byte expected = bulkTrailerLength == 0 ? REDIS_PROTOCOL_CR : REDIS_PROTOCOL_LF;
+			if (b != expected) {
+				throw new RedisProtocolException("bulk字符串结束符错误：" + b);
 			}
+			bulkTrailerLength++;
 		}
+		return true;
+	}
+
+	/**
+	 * 读取写入临时文件的bulk字符串结尾的方法
+	 * 
+	 * @return 内容保存在临时文件中的数据包 数据不足时返回null
+	 * @throws RedisProtocolException
+	 *             当读取出现错误时抛出该异常
+	 */
+	private RedisPacket readSpilledBulkStringPacket() throws RedisProtocolException {
+		if (!readBulkStringTrailer()) {
+			return null;
+		}
+		File file = tempFile;
+		cleanTempFile();
+		isSpilling = false;
+		return new RedisFileBulkStringPacket(BULKSTRING, file, bulkLength);
 	}
 
 	/**
@@ -533,12 +546,12 @@ public class RedisProtocolParser {
 	 */
 	private RedisPacket readBulkStringPacket() throws RedisProtocolException {
 		// 读取bulk字符串额外的\r\n
-		readData();
-		// 获取完整数据包
-		byte[] packetData = completCurrentPacket();
-		if (packetData == null) {
+		if (!readBulkStringTrailer()) {
 			return null;
 		}
+		// 按长度分配的数组直接作为数据包内容 不再拷贝
+		byte[] packetData = currentPacketWriteFlag == currentPacket.length ? currentPacket
+				: Arrays.copyOf(currentPacket, currentPacketWriteFlag);
 		RedisBulkStringPacket packet = new RedisBulkStringPacket(BULKSTRING);
 		packet.setData(packetData);
 		return packet;
@@ -586,9 +599,8 @@ public class RedisProtocolParser {
 		}
 
 		// 元素未读取完 返回空包
+		// 不能清空当前数据包内容 读取到一半的元素需要在下次收到数据时继续解析
 		if (arrayPacket.getPackets().size() != arrayLength) {
-			// 清空当前数据包内容 等待读取元素
-			clean();
 			return null;
 		}
 		return arrayPacket;
@@ -650,12 +662,40 @@ public class RedisProtocolParser {
 			}
 			bulkCrLfReaded = true;
 			// 清空长度数据包读取信息
-			cleanCurrentPacket();
-			currentPacket = new byte[readInc];
+			startBulkStringContent();
 		}
 		return bulkLength;
 	}
 
+	/**
+	 * 准备读取bulk字符串内容的方法<br>
+	 * 数组中超过阈值的bulk字符串写入临时文件 其余数组中的bulk字符串按长度预先分配内容数组<br>
+	 * 预先分配不超过64K 避免声明的长度很大而数据还没有到达时占用内存
+	 * 
+	 * @throws RedisProtocolException
+	 *             创建临时文件出现问题时抛出该异常
+	 */
+	private void startBulkStringContent() throws RedisProtocolException {
+		cleanCurrentPacket();
+		if (bulkNeg < 0) {
+			currentPacket = new byte[0];
+		} else if (arrayPacket != null && spillThreshold > 0 && bulkLength > spillThreshold) {
+			isSpilling = true;
+			try {
+				File dir = spillDir != null ? spillDir : FileUtils.getTempDirectory();
+				createTempFileChannel(File.createTempFile("bulk", ".synyed", dir));
+			} catch (IOException e) {
+				throw new RedisProtocolException(e);
+			}
+			currentPacket = new byte[0];
+		} else if (arrayPacket != null) {
+			// 顶层的bulk字符串可能是rdb文件 不预先分配
+			currentPacket = new byte[(int) Math.min(bulkLength, BULK_PRESIZE_LIMIT)];
+		} else {
+			currentPacket = new byte[readInc];
+		}
+	}
+
 	/**
 	 * 读取redis数组类型长度的方法
 	 * 
@@ -762,25 +802,54 @@ public class RedisProtocolParser {
 	 *             当写入过程中出现问题则抛出该异常
 	 */
 	private void appendToCurrentPacket(final byte b) throws RedisProtocolException {
-		if (this.isDatabaseTrancefer) {
-			ByteBuffer buffer = createByteBuffer(1);
-			buffer.put(b);
-			buffer.flip();
-			while (buffer.hasRemaining()) {
-				try {
-					tempFileChannel.write(buffer);
-				} catch (IOException e) {
-					throw new RedisProtocolException(e);
-				}
-			}
-		} else {
-			if (currentPacketWriteFlag == currentPacket.length) {
-				// 扩容
-				byte[] newBuffer = new byte[currentPacketWriteFlag + readInc];
-				System.arraycopy(currentPacket, 0, newBuffer, 0, currentPacketWriteFlag);
-				currentPacket = newBuffer;
+		if (currentPacketWriteFlag == currentPacket.length) {
+			growCurrentPacket(currentPacketWriteFlag + 1);
+		}
+		currentPacket[currentPacketWriteFlag++] = b;
+	}
+
+	/**
+	 * 扩容bulk字符串内容数组的方法<br>
+	 * 随数据到达按倍数扩容 不超过声明的长度 读取完成时数组正好装满
+	 */
+	private void growBulkStringContent() {
+		long newLength = Math.max(currentPacket.length * 2L, readInc);
+		newLength = Math.min(newLength, Math.min(bulkLength, Integer.MAX_VALUE - 8));
+		currentPacket = Arrays.copyOf(currentPacket, (int) Math.max(newLength, currentPacket.length + 1L));
+	}
+
+	/**
+	 * 扩容当前数据包缓冲区的方法<br>
+	 * 按倍数扩容 避免大数据包反复拷贝
+	 * 
+	 * @param required
+	 *            需要的容量
+	 */
+	private void growCurrentPacket(int required) {
+		int newLength = Math.max(required, Math.max(readInc, currentPacket.length * 2));
+		currentPacket = Arrays.copyOf(currentPacket, newLength);
+	}
+
+	/**
+	 * 将数据写入临时文件的方法
+	 * 
+	 * @param data
+	 *            数据
+	 * @param offset
+	 *            起始位置
+	 * @param length
+	 *            长度
+	 * @throws RedisProtocolException
+	 *             写入出现问题时抛出该异常
+	 */
+	private void writeToTempFile(byte[] data, int offset, int length) throws RedisProtocolException {
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+		while (buffer.hasRemaining()) {
+			try {
+				tempFileChannel.write(buffer);
+			} catch (IOException e) {
+				throw new RedisProtocolException(e);
 			}
-			currentPacket[currentPacketWriteFlag++] = b;
 		}
 	}
 
@@ -790,9 +859,9 @@ public class RedisProtocolParser {
 	 * @throws RedisProtocolException
 	 *             当发生问题时抛出该异常
 	 */
-	private void createTempFileChannel() throws RedisProtocolException {
+	private void createTempFileChannel(File file) throws RedisProtocolException {
 		try {
-			tempFile = new File(FileUtils.getTempDirectory(), System.currentTimeMillis() + ".synyed");
+			tempFile = file;
 			tempRandomAccessFile = new RandomAccessFile(tempFile, "rw");
 			this.tempFileChannel = tempRandomAccessFile.getChannel();
 		} catch (FileNotFoundException e) {
@@ -800,19 +869,6 @@ public class RedisProtocolParser {
 		}
 	}
 
-	/**
-	 * 创建bytebuffer空数据对象的方法
-	 * 
-	 * @param size
-	 *            bytebuffer空间
-	 * @return 创建的bytebuffer对象
-	 */
-	private ByteBuffer createByteBuffer(int size) {
-		ByteBuffer buf = ByteBuffer.allocate(size);
-		buf.clear();
-		return buf;
-	}
-
 	/**
 	 * 从缓冲区读取一个字节的方法<br>
 	 * 
@@ -821,24 +877,48 @@ public class RedisProtocolParser {
 	 *             当没有数据或者读取错误时抛出该异常
 	 */
 	private byte readByte() throws RedisProtocolException {
-		// 判断数据是否读取完了
-		if (!hasRemaining()) {
-			throw new RedisProtocolException("EOF");
-		}
-		// 判断是否能够一次性读取完
-		if ((limit - readFlag) >= 1) {
-			return buffer[readFlag++];
-		} else if (readFlag > limit && (maxLength - readFlag) + limit >= 1) {
-			// 判断读取标志位后的数据是否够读
-			if (maxLength - readFlag >= 1) {
-				return buffer[readFlag++];
-			} else {
-				readFlag = 0;
-				return buffer[readFlag++];
-			}
-		} else {
-			throw new RedisProtocolException("EOF");
-		}
+		return buffer.readByte();
+	}
+
+	/**
+	 * 从缓冲区批量读取数据的方法
+	 * 
+	 * @param dst
+	 *            目标数组
+	 * @param offset
+	 *            写入目标数组的起始位置
+	 * @param length
+	 *            最多读取的长度
+	 * @return 实际读取的长度
+	 */
+	private int readBytes(byte[] dst, int offset, int length) {
+		return buffer.read(dst, offset, length);
+	}
+
+	/**
+	 * 设置新建解析器超大bulk字符串写入临时文件的方法<br>
+	 * 只对之后创建的解析器生效
+	 * 
+	 * @param spillThreshold
+	 *            超过该长度的bulk字符串写入临时文件 小于等于0时不写入
+	 * @param spillDir
+	 *            临时文件的目录 为null时使用系统临时目录
+	 */
+	public static void setDefaultSpill(int spillThreshold, File spillDir) {
+		defaultSpillThreshold = spillThreshold;
+		defaultSpillDir = spillDir;
+	}
+
+	public int getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	public void setSpillThreshold(int spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
+	public void setSpillDir(File spillDir) {
+		this.spillDir = spillDir;
 	}
 
 	/**
@@ -847,13 +927,7 @@ public class RedisProtocolParser {
 	 * @return true为有数 false为没数据
 	 */
 	private boolean hasRemaining() {
-		if ((limit - readFlag) >= 1) {
-			return true;
-		} else if (readFlag > limit && (maxLength - readFlag) + limit >= 1) {
-			return true;
-		} else {
-			return false;
-		}
+		return buffer.hasRemaining();
 	}
 
 	/**
@@ -868,29 +942,18 @@ public class RedisProtocolParser {
 		}
 		RedisPacket[] redisPackets = packets.toArray(new RedisPacket[packets.size()]);
 
-		// 执行内存回收操作
-		gc();
+		// 清空当前数据包集合 缓冲区容量由后台线程收缩
+		packets.clear();
 
 		return redisPackets;
 	}
 
 	/**
-	 * 当缓冲区超过默认大小时进行内存回收<br>
-	 * 同时对缓冲区内的数据进行整理
+	 * 获取解析器使用的缓冲区的方法
+	 * 
+	 * @return 缓冲区对象
 	 */
-	private void gc() {
-		// 清空当前数据包集合
-		packets.clear();
-		// 判断缓冲区大小是否为默认大小
-		if (maxLength == BUFFERSIZE) {
-			return;
-		}
-		if (readFlag == maxLength && !isFull) {
-			buffer = null; // 释放缓冲区内存
-			buffer = new byte[BUFFERSIZE];
-			limit = 0;
-			readFlag = 0;
-			maxLength = BUFFERSIZE;
-		}
+	public RedisProtocolBuffer getBuffer() {
+		return buffer;
 	}
 }
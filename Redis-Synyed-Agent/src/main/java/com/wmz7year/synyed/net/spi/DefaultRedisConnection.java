@@ -8,15 +8,23 @@ import static com.wmz7year.synyed.constant.RedisCommandSymbol.PING;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.service.IoProcessor;
+import org.apache.mina.core.service.SimpleIoProcessorPool;
 import org.apache.mina.core.session.IdleStatus;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFilter;
 import org.apache.mina.transport.socket.SocketConnector;
+import org.apache.mina.transport.socket.nio.NioProcessor;
+import org.apache.mina.transport.socket.nio.NioSession;
 import org.apache.mina.transport.socket.nio.NioSocketConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +33,8 @@ import com.wmz7year.synyed.entity.RedisCommand;
 import com.wmz7year.synyed.exception.RedisProtocolException;
 import com.wmz7year.synyed.net.RedisResponseListener;
 import com.wmz7year.synyed.net.RedisConnection;
+import com.wmz7year.synyed.net.buffer.IoBufferRecycleFilter;
+import com.wmz7year.synyed.net.buffer.PooledIoBufferAllocator;
 import com.wmz7year.synyed.net.proroc.RedisProtocolCodecFactory;
 import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
 import com.wmz7year.synyed.packet.redis.RedisErrorPacket;
@@ -43,6 +53,16 @@ import com.wmz7year.synyed.packet.redis.RedisPacket;
 public class DefaultRedisConnection extends IoHandlerAdapter implements RedisConnection {
 	private static final Logger logger = LoggerFactory.getLogger(DefaultRedisConnection.class);
 
+	/**
+	 * 新建连接默认使用的缓冲区分配器 为null时使用MINA全局的分配器<br>
+	 * 只影响该类创建的连接 不修改MINA全局的分配器
+	 */
+	private static volatile PooledIoBufferAllocator defaultBufferAllocator;
+	/**
+	 * 新建连接默认是否分配直接内存缓冲区
+	 */
+	private static volatile boolean defaultBufferDirect;
+
 	/**
 	 * 与redis服务器之间的socket对象
 	 */
@@ -79,12 +99,21 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 	 */
 	private RedisResponseListener listener;
 	/**
-	 * 响应结果队列
+	 * 响应结果队列 管道发送时会有多个响应
 	 */
-	private ArrayBlockingQueue<RedisPacket> responseQueue = new ArrayBlockingQueue<RedisPacket>(1);
+	private BlockingQueue<RedisPacket> responseQueue = new LinkedBlockingQueue<RedisPacket>();
+	/**
+	 * 该连接使用的缓冲区分配器 为null时使用MINA全局的分配器
+	 */
+	private PooledIoBufferAllocator bufferAllocator;
+	/**
+	 * 是否分配直接内存缓冲区
+	 */
+	private boolean bufferDirect;
 
 	public DefaultRedisConnection() {
-
+		this.bufferAllocator = defaultBufferAllocator;
+		this.bufferDirect = defaultBufferDirect;
 	}
 
 	/*
@@ -110,6 +139,8 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 	@Override
 	public void sessionClosed(IoSession session) throws Exception {
 		isConnected.set(false);
+		// 会话关闭后连接器不再使用 释放连接器的线程以及选择器
+		disposeConnector();
 		super.sessionClosed(session);
 	}
 
@@ -132,6 +163,10 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 	@Override
 	public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
 		logger.error("Redis连接：" + this.address + " 端口：" + this.port + "出现异常", cause);
+		// 读写失败后连接已经不可用 关闭会话 由编码器释放没有发送完的临时文件
+		if (cause instanceof IOException) {
+			session.close(true);
+		}
 	}
 
 	/*
@@ -183,6 +218,7 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 		while (ioSession == null) {
 			long current = System.currentTimeMillis();
 			if ((current - start) > this.connectionTimeOut) {
+				disposeConnector();
 				throw new RedisProtocolException("创建Redis连接超时");
 			} else {
 				// 等待100毫秒
@@ -218,13 +254,41 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 	 *             当连接出现问题时抛出该异常
 	 */
 	private void connect() throws RedisProtocolException {
-		connector = new NioSocketConnector();
+		// 所有连接共用同一组IoProcessor 每个连接只创建自己的连接器
+		connector = new NioSocketConnector(SharedProcessorHolder.PROCESSOR);
 		connector.setConnectTimeoutMillis(connectionTimeOut);
-		connector.getFilterChain().addFirst("redis-protocol", new ProtocolCodecFilter(new RedisProtocolCodecFactory()));
+		// 带有文件参数的命令分多段写出 关闭Nagle算法避免最后一段等待确认
+		connector.getSessionConfig().setTcpNoDelay(true);
+		connector.getFilterChain().addFirst("redis-protocol",
+				new ProtocolCodecFilter(new RedisProtocolCodecFactory(bufferAllocator, bufferDirect)));
+		// 使用缓存的分配器时 在编解码过滤器与IoProcessor之间回收缓冲区
+		if (bufferAllocator != null) {
+			connector.getFilterChain().addFirst("buffer-recycle", new IoBufferRecycleFilter(bufferAllocator));
+		}
 		connector.setHandler(this);
 		connector.connect(new InetSocketAddress(address, port));
 	}
 
+	/**
+	 * 释放连接器的方法<br>
+	 * 连接器使用共用的IoProcessor 释放时不会等待IoProcessor结束 可以在IoProcessor线程中调用
+	 */
+	private void disposeConnector() {
+		SocketConnector connector = this.connector;
+		if (connector != null && !connector.isDisposing()) {
+			connector.dispose(false);
+		}
+	}
+
+	/**
+	 * 获取连接器的方法
+	 * 
+	 * @return 连接器对象 未连接时为null
+	 */
+	SocketConnector getConnector() {
+		return connector;
+	}
+
 	/*
 	 * @see com.wmz7year.synyed.net.RedisConnection#isConnected()
 	 */
@@ -254,12 +318,87 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 				return responsePacket;
 			}
 		} catch (InterruptedException e) {
-			// ignore
+			// 保留中断状态 交给调用方处理
+			Thread.currentThread().interrupt();
+			throw new RedisProtocolException("等待命令响应时线程被中断：" + command.getCommand(), e);
 		}
 
 		throw new RedisProtocolException("发送命令响应超时：" + command.getCommand() + " 超时时间：" + this.connectionTimeOut);
 	}
 
+	/*
+	 * @see
+	 * com.wmz7year.synyed.net.RedisConnection#sendCommands(java.util.List)
+	 */
+	@Override
+	public List<RedisPacket> sendCommands(List<RedisCommand> commands) throws RedisProtocolException {
+		if (!isConnected()) {
+			throw new RedisProtocolException("未连接到服务器");
+		}
+		if (listener != null) {
+			throw new RedisProtocolException("当前已经设置Redis响应数据包收集器 无法执行Redis命令");
+		}
+		// 一次写出所有命令 由mina合并发送
+		for (RedisCommand command : commands) {
+			this.ioSession.write(command);
+		}
+		return readResponses(commands.size());
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.net.RedisConnection#writeEncodedCommands(org.
+	 * apache.mina.core.buffer.IoBuffer)
+	 */
+	@Override
+	public void writeEncodedCommands(IoBuffer data) throws RedisProtocolException {
+		if (!isConnected()) {
+			throw new RedisProtocolException("未连接到服务器");
+		}
+		if (listener != null) {
+			throw new RedisProtocolException("当前已经设置Redis响应数据包收集器 无法执行Redis命令");
+		}
+		// IoBuffer不经过编码器 直接写出
+		this.ioSession.write(data);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.net.RedisConnection#allocateBuffer(int)
+	 */
+	@Override
+	public IoBuffer allocateBuffer(int capacity) {
+		if (bufferAllocator == null) {
+			return IoBuffer.allocate(capacity);
+		}
+		return bufferAllocator.allocate(capacity, bufferDirect);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.net.RedisConnection#readResponses(int)
+	 */
+	@Override
+	public List<RedisPacket> readResponses(int count) throws RedisProtocolException {
+		List<RedisPacket> responses = new ArrayList<RedisPacket>(count);
+		for (int i = 0; i < count; i++) {
+			RedisPacket responsePacket = null;
+			try {
+				responsePacket = responseQueue.poll(connectionTimeOut, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// 保留中断状态 后续响应无法与命令对应 关闭连接
+				Thread.currentThread().interrupt();
+				ioSession.close(true);
+				throw new RedisProtocolException("等待管道命令响应时线程被中断 已收到响应：" + i + "/" + count, e);
+			}
+			if (responsePacket == null) {
+				// 连接状态未知 后续响应无法与命令对应
+				ioSession.close(true);
+				throw new RedisProtocolException("管道发送命令响应超时 已收到响应：" + i + "/" + count + " 超时时间："
+						+ this.connectionTimeOut);
+			}
+			responses.add(responsePacket);
+		}
+		return responses;
+	}
+
 	/*
 	 * @see
 	 * com.wmz7year.synyed.net.RedisConnection#sendCommand(com.wmz7year.synyed.
@@ -289,6 +428,26 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 		}
 	}
 
+	/*
+	 * @see com.wmz7year.synyed.net.RedisConnection#suspendRead()
+	 */
+	@Override
+	public void suspendRead() {
+		if (isConnected()) {
+			ioSession.suspendRead();
+		}
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.net.RedisConnection#resumeRead()
+	 */
+	@Override
+	public void resumeRead() {
+		if (isConnected()) {
+			ioSession.resumeRead();
+		}
+	}
+
 	/*
 	 * @see java.io.Closeable#close()
 	 */
@@ -301,4 +460,30 @@ public class DefaultRedisConnection extends IoHandlerAdapter implements RedisCon
 		ioSession.close(false);
 	}
 
+	/**
+	 * 设置新建连接默认使用的缓冲区分配器的方法<br>
+	 * 已经创建的连接不受影响
+	 * 
+	 * @param allocator
+	 *            缓冲区分配器 为null时使用MINA全局的分配器
+	 * @param direct
+	 *            是否分配直接内存缓冲区
+	 */
+	public static void setDefaultBufferAllocator(PooledIoBufferAllocator allocator, boolean direct) {
+		defaultBufferAllocator = allocator;
+		defaultBufferDirect = direct;
+	}
+
+	public static PooledIoBufferAllocator getDefaultBufferAllocator() {
+		return defaultBufferAllocator;
+	}
+
+	/**
+	 * 所有连接共用的IoProcessor<br>
+	 * 第一次创建连接时初始化 没有会话时IoProcessor线程自行退出
+	 */
+	private static class SharedProcessorHolder {
+		private static final IoProcessor<NioSession> PROCESSOR = new SimpleIoProcessorPool<NioSession>(
+				NioProcessor.class);
+	}
 }
@@ -0,0 +1,147 @@
+package com.wmz7year.synyed.worker;
+
+import static com.wmz7year.synyed.constant.RedisCommandSymbol.ERR;
+import static com.wmz7year.synyed.net.spi.RedisConnectionFactory.createDefaultRedisConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisServer;
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.net.RedisConnection;
+import com.wmz7year.synyed.net.link.AgentLinkApplyException;
+import com.wmz7year.synyed.net.link.AgentLinkListener;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * 将远程Agent发送的批量命令执行到目标Redis的处理类<br>
+ * 使用独立的目标Redis连接池 通道按编号固定使用池中的一个连接 保证通道内命令顺序执行<br>
+ * 批量中的命令使用管道发送 每pipelineSize条命令只需要一次与目标Redis的网络往返<br>
+ * 连接出现问题时抛出异常 批量命令不会被确认 等待远程Agent重发<br>
+ * 已经收到响应的管道中的命令会报告给接收端 重发时不再执行
+ *
+ * @Title: AgentLinkApplier.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 下午4:12:30
+ * @version V1.0
+ */
+public class AgentLinkApplier implements AgentLinkListener, Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(AgentLinkApplier.class);
+
+	/**
+	 * 默认连接池大小
+	 */
+	public static final int DEFAULT_POOL_SIZE = 4;
+	/**
+	 * 默认管道中一次发送的命令数量
+	 */
+	public static final int DEFAULT_PIPELINE_SIZE = 1000;
+
+	/**
+	 * 目标Redis服务器
+	 */
+	private final RedisServer descServer;
+
+	/**
+	 * 目标Redis连接池 为null的位置在使用时创建连接
+	 */
+	private final RedisConnection[] pool;
+
+	/**
+	 * 管道中一次发送的命令数量
+	 */
+	private final int pipelineSize;
+
+	public AgentLinkApplier(RedisServer descServer) {
+		this(descServer, DEFAULT_POOL_SIZE, DEFAULT_PIPELINE_SIZE);
+	}
+
+	/**
+	 * @param descServer
+	 *            目标Redis服务器
+	 * @param poolSize
+	 *            连接池大小
+	 * @param pipelineSize
+	 *            管道中一次发送的命令数量
+	 */
+	public AgentLinkApplier(RedisServer descServer, int poolSize, int pipelineSize) {
+		if (poolSize <= 0 || pipelineSize <= 0) {
+			throw new IllegalArgumentException("poolSize:" + poolSize + " pipelineSize:" + pipelineSize);
+		}
+		this.descServer = descServer;
+		this.pool = new RedisConnection[poolSize];
+		this.pipelineSize = pipelineSize;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.net.link.AgentLinkListener#receive(int,
+	 * java.util.List)
+	 */
+	@Override
+	public void receive(int channel, List<RedisCommand> commands) throws Exception {
+		int slot = (channel & Integer.MAX_VALUE) % pool.length;
+		RedisConnection connection = getConnection(slot);
+		// 多个通道共用一个连接时 批量之间不能交错
+		synchronized (connection) {
+			int applied = 0;
+			try {
+				for (int from = 0; from < commands.size(); from += pipelineSize) {
+					List<RedisCommand> chunk = commands.subList(from, Math.min(commands.size(), from + pipelineSize));
+					List<RedisPacket> responses = connection.sendCommands(chunk);
+					for (int i = 0; i < responses.size(); i++) {
+						RedisPacket response = responses.get(i);
+						if (ERR.equals(response.getCommand())) {
+							logger.error("执行Redis命令失败：" + chunk.get(i) + " - " + new String(response.getData()));
+						}
+					}
+					applied += chunk.size();
+				}
+			} catch (RedisProtocolException e) {
+				// 连接出现问题 下次重新创建连接
+				closeConnection(slot, connection);
+				if (applied == 0) {
+					throw e;
+				}
+				throw new AgentLinkApplyException("批量命令执行到一半时目标Redis连接出现问题", applied, e);
+			}
+		}
+	}
+
+	private synchronized RedisConnection getConnection(int slot) throws RedisProtocolException {
+		RedisConnection connection = pool[slot];
+		if (connection == null || !connection.isConnected()) {
+			connection = createDefaultRedisConnection(descServer, 5000);
+			pool[slot] = connection;
+		}
+		return connection;
+	}
+
+	private synchronized void closeConnection(int slot, RedisConnection connection) {
+		if (pool[slot] == connection) {
+			pool[slot] = null;
+		}
+		if (connection != null && connection.isConnected()) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				logger.warn("关闭目标Redis连接出现问题", e);
+			}
+		}
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		for (int slot = 0; slot < pool.length; slot++) {
+			closeConnection(slot, pool[slot]);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.wmz7year.synyed.worker;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 创建同步命令发送线程池的工具类<br>
+ * 支持普通线程池与虚拟线程两种模式<br>
+ * 虚拟线程模式通过反射调用JDK21以上的Executors.newThreadPerTaskExecutor<br>
+ * 当前JDK不支持时退回普通线程池
+ *
+ * @Title: ProtocolSyncExecutors.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月20日 上午10:12:35
+ * @version V1.0
+ */
+public final class ProtocolSyncExecutors {
+	private static final Logger logger = LoggerFactory.getLogger(ProtocolSyncExecutors.class);
+
+	/**
+	 * 普通线程池模式
+	 */
+	public static final String MODE_PLATFORM = "platform";
+	/**
+	 * 虚拟线程模式
+	 */
+	public static final String MODE_VIRTUAL = "virtual";
+
+	/**
+	 * 创建虚拟线程工厂的方法对象 不支持时为null
+	 */
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builderName = builderClass.getMethod("name", String.class, long.class);
+			builderFactory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (Exception e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private ProtocolSyncExecutors() {
+	}
+
+	/**
+	 * 判断当前JDK是否支持虚拟线程的方法
+	 *
+	 * @return true为支持 false为不支持
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * 创建发送线程池的方法
+	 *
+	 * @param mode
+	 *            线程模式 platform或者virtual
+	 * @param threadCount
+	 *            普通线程池模式下的线程数量
+	 * @param namePrefix
+	 *            线程名称前缀
+	 * @return 线程池对象
+	 */
+	public static ExecutorService newSenderExecutor(String mode, int threadCount, final String namePrefix) {
+		if (MODE_VIRTUAL.equalsIgnoreCase(mode)) {
+			if (isVirtualThreadSupported()) {
+				try {
+					Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+					Object factory = BUILDER_FACTORY.invoke(builder);
+					return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+				} catch (Exception e) {
+					logger.warn("创建虚拟线程池失败 使用普通线程池", e);
+				}
+			} else {
+				logger.warn("当前JDK不支持虚拟线程 使用普通线程池：" + System.getProperty("java.version"));
+			}
+		} else if (!MODE_PLATFORM.equalsIgnoreCase(mode)) {
+			logger.warn("未知的线程模式：" + mode + " 使用普通线程池");
+		}
+		return Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private AtomicInteger counter = new AtomicInteger(0);
+
+			/*
+			 * @see
+			 * java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+			 */
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				thread.setName(namePrefix + counter.getAndIncrement());
+				return thread;
+			}
+		});
+	}
+}
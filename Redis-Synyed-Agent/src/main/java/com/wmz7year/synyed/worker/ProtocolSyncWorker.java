@@ -3,36 +3,73 @@ package com.wmz7year.synyed.worker;
 import static com.wmz7year.synyed.constant.RedisCommandSymbol.*;
 import static com.wmz7year.synyed.net.spi.RedisConnectionFactory.createDefaultRedisConnection;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StringUtils;
 
 import com.wmz7year.synyed.constant.RedisCommandSymbol;
 import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisFileCommandData;
 import com.wmz7year.synyed.entity.RedisServer;
 import com.wmz7year.synyed.exception.RedisCommandRejectedException;
 import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.exception.RedisRDBException;
 import com.wmz7year.synyed.module.RedisCommandFilterManager;
 import com.wmz7year.synyed.net.RedisConnection;
 import com.wmz7year.synyed.net.RedisResponseListener;
+import com.wmz7year.synyed.net.link.AgentLinkClient;
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisDataBaseTransferPacket;
+import com.wmz7year.synyed.packet.redis.RedisFileBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisPacket;
 import com.wmz7year.synyed.packet.redis.RedisSimpleStringPacket;
 import com.wmz7year.synyed.packet.redis.command.RedisPacketCommandParser;
+import com.wmz7year.synyed.parser.entry.RedisChunkPolicy;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisKeyFilter;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisRESPWriter;
+import com.wmz7year.synyed.worker.batch.RedisAdjacentCommandMerger;
+import com.wmz7year.synyed.worker.batch.RedisCommandBatchOptimizer;
+import com.wmz7year.synyed.worker.batch.RedisCommandCoalescer;
+import com.wmz7year.synyed.worker.batch.RedisCommandKeys;
+import com.wmz7year.synyed.worker.batch.RedisIncrementMerger;
+import com.wmz7year.synyed.worker.checkpoint.RedisRDBProgress;
+import com.wmz7year.synyed.worker.checkpoint.RedisSyncCheckpoint;
+import com.wmz7year.synyed.worker.spool.RedisStreamSpool;
 
 /**
  * Redis同步管道对象<br>
  * 该管道为单个源Redis到单个目标Redis的通道<br>
+ * 源连接的I/O线程只负责将数据包放入有界队列<br>
+ * 由独立的执行线程解析命令并发送到目标服务器<br>
+ * 未执行的数据量超过高水位时暂停读取源连接 降到低水位以下后恢复读取<br>
+ * 执行rdb文件期间的复制流写入磁盘缓冲区 源连接持续读取 rdb文件执行完后按顺序执行<br>
  * 
  * @Title: ProtocolSyncWorker.java
  * @Package com.wmz7year.synyed.worker
@@ -59,215 +96,1746 @@ public class ProtocolSyncWorker implements RedisResponseListener {
 	 */
 	private RedisServer descServer;
 
+	/**
+	 * 发送命令到远程Agent的链路 为null时直接发送到目标服务器
+	 */
+	private AgentLinkClient agentLinkClient;
+
+	/**
+	 * 在远程Agent链路中使用的通道编号
+	 */
+	private int agentLinkChannel;
+
 	/**
 	 * 源服务器连接
 	 */
-	private RedisConnection srcConnection;
+	private RedisConnection srcConnection;
+	/**
+	 * 目标服务器连接
+	 */
+	private RedisConnection descConnection;
+
+	/**
+	 * redis数据包命令解析器
+	 */
+	private RedisPacketCommandParser packetCommandParser = new RedisPacketCommandParser();
+
+	/**
+	 * RDB文件是否处理过的标识为
+	 */
+	private volatile boolean isRDBProcessed = false;
+
+	/**
+	 * 等待执行的数据包数量的高水位 超过后暂停读取源连接 低于一半后恢复读取
+	 */
+	@Value("${protocol.apply.queue.size:10000}")
+	private int applyQueueSize = 10000;
+
+	/**
+	 * 等待执行的数据包队列<br>
+	 * I/O线程放入数据包时不阻塞 通过暂停读取源连接限制队列长度
+	 */
+	private BlockingQueue<RedisPacket> applyQueue;
+
+	/**
+	 * 执行同步命令的线程
+	 */
+	private Thread applyThread;
+
+	/**
+	 * 同步管道是否运行中的标识位
+	 */
+	private volatile boolean running = false;
+
+	/**
+	 * 同步管道是否因为同步数据包失败而停止的标识位
+	 */
+	private volatile boolean failed = false;
+
+	/**
+	 * 未执行数据量的高水位 超过后暂停读取源连接
+	 */
+	@Value("${protocol.apply.high.watermark:67108864}")
+	private long applyHighWatermark = 64 * 1024 * 1024;
+
+	/**
+	 * 未执行数据量的低水位 低于后恢复读取源连接
+	 */
+	@Value("${protocol.apply.low.watermark:33554432}")
+	private long applyLowWatermark = 32 * 1024 * 1024;
+
+	/**
+	 * 已接收但是未执行完的数据量
+	 */
+	private AtomicLong pendingBytes = new AtomicLong();
+
+	/**
+	 * 源连接是否暂停读取的标识位
+	 */
+	private volatile boolean readSuspended = false;
+
+	/**
+	 * 修改源连接读取状态使用的锁
+	 */
+	private final Object flowControlLock = new Object();
+
+	/**
+	 * rdb文件传输数据包执行同步的连接数量<br>
+	 * 由于RDB文件解析出的数据量巨大，可能产生太多命令<br>
+	 * 但是又没有数据写入顺序的问题 因此分不同的连接去执行
+	 */
+	@Value("${protocol.rdb.syn.connection.size}")
+	private int rdbCommandSynConnectionCount = 0;
+
+	/**
+	 * rdb文件传输数据包执行同步的线程模式<br>
+	 * platform为普通线程池 virtual为虚拟线程 需要JDK21以上 不支持时使用普通线程池
+	 */
+	@Value("${protocol.rdb.syn.executor:platform}")
+	private String rdbSyncExecutorMode = ProtocolSyncExecutors.MODE_PLATFORM;
+
+	/**
+	 * rdb文件传输数据包的同步模式<br>
+	 * command为展开成SET/SADD等命令 restore为使用RESTORE命令直接发送序列化数据
+	 */
+	@Value("${protocol.rdb.syn.mode:command}")
+	private String rdbSyncMode;
+
+	/**
+	 * rdb中集合类型数据切分命令时每条命令最多包含的元素数量
+	 */
+	@Value("${protocol.rdb.syn.chunk.elements:1000}")
+	private int rdbChunkMaxElements = RedisChunkPolicy.DEFAULT_MAX_ELEMENTS;
+
+	/**
+	 * rdb中集合类型数据切分命令时每条命令最多包含的数据字节数
+	 */
+	@Value("${protocol.rdb.syn.chunk.bytes:1048576}")
+	private int rdbChunkMaxBytes = RedisChunkPolicy.DEFAULT_MAX_BYTES;
+
+	/**
+	 * rdb文件传输数据包是否直接编码为RESP发送<br>
+	 * 开启后遍历rdb数据时直接写入发送缓冲区 不生成命令对象 也不经过命令拦截器
+	 */
+	@Value("${protocol.rdb.syn.fused:false}")
+	private boolean rdbSyncFused = false;
+
+	/**
+	 * 批量执行增量命令时一次最多取出的数据包数量<br>
+	 * 只有开启了批量命令优化时才会批量执行
+	 */
+	@Value("${protocol.apply.batch.size:1000}")
+	private int applyBatchSize = 1000;
+
+	/**
+	 * 批量执行增量命令时等待更多数据包的时间 毫秒<br>
+	 * 为0时不等待 只处理已经在队列中积压的数据包
+	 */
+	@Value("${protocol.apply.batch.window:0}")
+	private long applyBatchWindow = 0;
+
+	/**
+	 * 是否合并同一个key的覆盖写命令
+	 */
+	@Value("${protocol.apply.coalesce.enabled:false}")
+	private boolean applyCoalesceEnabled = false;
+
+	/**
+	 * 是否合并同一个key的自增命令
+	 */
+	@Value("${protocol.apply.merge.increment.enabled:false}")
+	private boolean applyMergeIncrementEnabled = false;
+
+	/**
+	 * 是否将相邻的SET/SADD/ZADD/RPUSH/LPUSH合并为多参数命令
+	 */
+	@Value("${protocol.apply.merge.adjacent.enabled:false}")
+	private boolean applyMergeAdjacentEnabled = false;
+
+	/**
+	 * 相邻命令合并后最多包含的参数数量
+	 */
+	@Value("${protocol.apply.merge.adjacent.max.args:512}")
+	private int applyMergeAdjacentMaxArgs = RedisAdjacentCommandMerger.DEFAULT_MAX_ARGS;
+
+	/**
+	 * 相邻命令合并后最多包含的数据字节数
+	 */
+	@Value("${protocol.apply.merge.adjacent.max.bytes:1048576}")
+	private int applyMergeAdjacentMaxBytes = RedisAdjacentCommandMerger.DEFAULT_MAX_BYTES;
+
+	/**
+	 * 需要同步的数据库编号 逗号分隔 为空时同步所有数据库
+	 */
+	@Value("${protocol.filter.db.include:}")
+	private String filterDBInclude = "";
+
+	/**
+	 * 不需要同步的数据库编号 逗号分隔
+	 */
+	@Value("${protocol.filter.db.exclude:}")
+	private String filterDBExclude = "";
+
+	/**
+	 * 需要同步的key规则 glob格式 逗号分隔 为空时同步所有key
+	 */
+	@Value("${protocol.filter.key.include:}")
+	private String filterKeyInclude = "";
+
+	/**
+	 * 不需要同步的key规则 glob格式 逗号分隔
+	 */
+	@Value("${protocol.filter.key.exclude:}")
+	private String filterKeyExclude = "";
+
+	/**
+	 * 需要同步的数据类型 逗号分隔 只对rdb数据生效
+	 */
+	@Value("${protocol.filter.type.include:}")
+	private String filterTypeInclude = "";
+
+	/**
+	 * rdb中剩余过期时间小于该值的key不同步 毫秒
+	 */
+	@Value("${protocol.filter.ttl.min:0}")
+	private long filterMinTtl = 0;
+
+	/**
+	 * 保存同步断点与全量同步rdb文件的目录 为空时不保存断点
+	 */
+	@Value("${protocol.checkpoint.dir:}")
+	private String checkpointDir = "";
+
+	/**
+	 * 保存同步断点的最小间隔 毫秒
+	 */
+	@Value("${protocol.checkpoint.interval:1000}")
+	private long checkpointInterval = 1000;
+
+	/**
+	 * 同步断点 没有设置断点目录时为null
+	 */
+	private volatile RedisSyncCheckpoint checkpoint;
+
+	/**
+	 * 启动时是否读取到可以继续同步的断点
+	 */
+	private boolean checkpointLoaded = false;
+
+	/**
+	 * 上一次保存同步断点的时间
+	 */
+	private long lastCheckpointTime = 0;
+
+	/**
+	 * 同步出现失败后不再推进断点 重启后从失败之前的位置重新同步
+	 */
+	private volatile boolean checkpointStalled = false;
+
+	/**
+	 * 向源服务器确认复制偏移量的间隔 毫秒 与redis从服务器一致
+	 */
+	private static final long ACK_INTERVAL = 1000;
+
+	/**
+	 * 定时向源服务器确认复制偏移量的线程池 使用PSYNC同步时才创建
+	 */
+	private ScheduledExecutorService ackExecutor;
+
+	/**
+	 * 复制流中是否收到了REPLCONF GETACK 执行完当前数据包后确认复制偏移量
+	 */
+	private volatile boolean ackRequested = false;
+
+	/**
+	 * 是否在等待PSYNC命令的响应
+	 */
+	private volatile boolean psyncPending = false;
+
+	/**
+	 * 执行rdb文件期间是否将复制流写入磁盘缓冲区<br>
+	 * 不写入时积压的复制流超过高水位后暂停读取源连接 源服务器的输出缓冲区满后会断开连接
+	 */
+	@Value("${protocol.stream.spool.enabled:true}")
+	private boolean streamSpoolEnabled = true;
+
+	/**
+	 * 复制流磁盘缓冲文件的目录 为空时使用系统临时目录
+	 */
+	@Value("${protocol.stream.spool.dir:}")
+	private String streamSpoolDir = "";
+
+	/**
+	 * 复制流磁盘缓冲文件的最大数据量 超过后暂停读取源连接 0为不限制 默认1G
+	 */
+	@Value("${protocol.stream.spool.max.bytes:1073741824}")
+	private long streamSpoolMaxBytes = 1024L * 1024 * 1024;
+
+	/**
+	 * 执行rdb文件期间的复制流磁盘缓冲区 不在缓冲期间时为null
+	 */
+	private volatile RedisStreamSpool streamSpool;
+
+	/**
+	 * 切换复制流磁盘缓冲区使用的锁 保证数据包在缓冲区与执行队列之间不乱序
+	 */
+	private final Object streamSpoolLock = new Object();
+
+	/**
+	 * 缓冲期间又开始了新的全量同步时 新的rdb文件以及之后的数据包<br>
+	 * 缓冲区中的复制流全部执行完后按顺序重新放入执行队列 没有时为null
+	 */
+	private List<RedisPacket> spoolHandoff;
+
+	/**
+	 * 编译后的key过滤规则 没有设置规则时为null
+	 */
+	private RedisKeyFilter keyFilter;
+
+	/**
+	 * 增量命令当前所在的数据库编号 用于按数据库过滤增量命令
+	 */
+	private int currentDB = 0;
+
+	/**
+	 * 批量执行增量命令前使用的优化器
+	 */
+	private List<RedisCommandBatchOptimizer> batchOptimizers = new ArrayList<RedisCommandBatchOptimizer>();
+
+	/**
+	 * 设置管道同步源服务器信息的方法<br>
+	 * 
+	 * @param srcServer
+	 *            源服务器信息
+	 */
+	public void setSrcRedis(RedisServer srcServer) {
+		if (srcServer == null) {
+			throw new NullPointerException();
+		}
+		this.srcServer = srcServer;
+	}
+
+	/**
+	 * 设置管道同步目标服务器信息的方法<br>
+	 * 
+	 * @param descServer
+	 *            目标服务器信息
+	 */
+	public void setDescRedis(RedisServer descServer) {
+		if (descServer == null) {
+			throw new NullPointerException();
+		}
+		this.descServer = descServer;
+	}
+
+	/**
+	 * 启动同步管道的方法
+	 */
+	public void start() {
+		logger.info("准备启动同步管道 源Redis：" + srcServer + "  目标Redis：" + descServer);
+		if (rdbSyncMode != null) {
+			packetCommandParser.setRdbSyncMode(rdbSyncMode);
+		}
+		packetCommandParser.setChunkPolicy(new RedisChunkPolicy(rdbChunkMaxElements, rdbChunkMaxBytes));
+		keyFilter = createKeyFilter();
+		checkpoint = createCheckpoint();
+		if (applyCoalesceEnabled) {
+			batchOptimizers.add(new RedisCommandCoalescer());
+		}
+		if (applyMergeIncrementEnabled) {
+			batchOptimizers.add(new RedisIncrementMerger());
+		}
+		if (applyMergeAdjacentEnabled) {
+			batchOptimizers.add(new RedisAdjacentCommandMerger(applyMergeAdjacentMaxArgs, applyMergeAdjacentMaxBytes));
+		}
+
+		// 启动执行同步命令的线程
+		startApplyThread();
+
+		// 创建源redis与目标redis的连接
+		try {
+			createConnections();
+		} catch (RedisProtocolException e) {
+			logger.error("无法创建Redis连接 " + srcServer, e);
+			return;
+		}
+
+		// 开始同步Redis源服务器的方法
+		startSyncSourceRedisServer();
+
+		logger.info("启动同步管道成功 源Redis：" + srcServer + "  目标Redis：" + descServer);
+	}
+
+	/**
+	 * 根据配置创建key过滤规则的方法
+	 * 
+	 * @return key过滤规则 没有设置任何规则时返回null
+	 */
+	private RedisKeyFilter createKeyFilter() {
+		RedisKeyFilter filter = new RedisKeyFilter();
+		for (String db : StringUtils.tokenizeToStringArray(filterDBInclude, ",")) {
+			filter.includeDB(Integer.parseInt(db));
+		}
+		for (String db : StringUtils.tokenizeToStringArray(filterDBExclude, ",")) {
+			filter.excludeDB(Integer.parseInt(db));
+		}
+		for (String pattern : StringUtils.tokenizeToStringArray(filterKeyInclude, ",")) {
+			filter.includeKey(pattern);
+		}
+		for (String pattern : StringUtils.tokenizeToStringArray(filterKeyExclude, ",")) {
+			filter.excludeKey(pattern);
+		}
+		for (String type : StringUtils.tokenizeToStringArray(filterTypeInclude, ",")) {
+			filter.includeType(type);
+		}
+		filter.setMinTtl(filterMinTtl);
+		if (filter.isEmpty()) {
+			return null;
+		}
+		logger.info("启用同步数据过滤 数据库：" + filterDBInclude + "/" + filterDBExclude + " key：" + filterKeyInclude + "/"
+				+ filterKeyExclude + " 类型：" + filterTypeInclude + " 最小过期时间：" + filterMinTtl);
+		return filter;
+	}
+
+	/**
+	 * 根据配置创建同步断点的方法<br>
+	 * 读取到可以继续同步的断点时 启动后使用PSYNC从断点继续同步
+	 * 
+	 * @return 同步断点 没有设置断点目录时返回null
+	 */
+	private RedisSyncCheckpoint createCheckpoint() {
+		if (!StringUtils.hasText(checkpointDir)) {
+			return null;
+		}
+		if (agentLinkClient != null) {
+			logger.warn("通过远程Agent同步时不保存同步断点");
+			return null;
+		}
+		RedisSyncCheckpoint result = new RedisSyncCheckpoint(new File(checkpointDir),
+				srcServer.getHost() + "_" + srcServer.getPort());
+		try {
+			checkpointLoaded = result.load();
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("读取同步断点失败 重新全量同步：" + result.getFile(), e);
+			checkpointLoaded = false;
+		}
+		if (checkpointLoaded) {
+			logger.info("读取到同步断点：" + result);
+		}
+		return result;
+	}
+
+	/**
+	 * 判断增量命令是否被过滤的方法<br>
+	 * SELECT命令更新当前数据库编号 不会被过滤<br>
+	 * 被排除的数据库中除SELECT以外的命令都被过滤<br>
+	 * 涉及多个key的命令只要有一个key需要同步就不过滤 无法识别key的命令不过滤
+	 * 
+	 * @param command
+	 *            增量命令
+	 * @return true为被过滤 不需要同步
+	 */
+	private boolean isFilteredOut(RedisCommand command) {
+		// REPLCONF GETACK等复制控制命令不需要同步到目标服务器
+		if (REPLCONF.equalsIgnoreCase(command.getCommand())) {
+			List<RedisCommandData> values = command.getValues();
+			if (!values.isEmpty() && GETACK.equalsIgnoreCase(values.get(0).getContent())) {
+				ackRequested = true;
+			}
+			return true;
+		}
+		if (keyFilter == null) {
+			return false;
+		}
+		if (SELECT.equals(RedisCommandKeys.getName(command))) {
+			if (!command.getValues().isEmpty()) {
+				try {
+					currentDB = Integer.parseInt(command.getValues().get(0).getContent());
+				} catch (NumberFormatException e) {
+					logger.warn("无法识别的数据库编号：" + command);
+				}
+			}
+			return false;
+		}
+		List<String> keys = RedisCommandKeys.getKeys(command);
+		if (keys != null && keys.isEmpty()) {
+			return false;
+		}
+		if (!keyFilter.acceptDB(currentDB)) {
+			return true;
+		}
+		if (keys == null) {
+			return false;
+		}
+		for (String key : keys) {
+			if (keyFilter.acceptKey(key.getBytes(RedisCommandKeys.KEY_CHARSET))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 启动执行同步命令线程的方法<br>
+	 * 按接收顺序依次处理队列中的数据包
+	 */
+	private void startApplyThread() {
+		applyQueue = new LinkedBlockingQueue<RedisPacket>();
+		running = true;
+		applyThread = new Thread(new Runnable() {
+
+			/*
+			 * @see java.lang.Runnable#run()
+			 */
+			@Override
+			public void run() {
+				while (running) {
+					List<RedisPacket> redisPackets;
+					try {
+						redisPackets = nextPackets();
+					} catch (InterruptedException e) {
+						continue;
+					}
+					if (redisPackets.isEmpty()) {
+						continue;
+					}
+					RedisPacket redisPacket = redisPackets.get(0);
+					try {
+						if (redisPackets.size() == 1) {
+							applyPacket(redisPacket);
+						} else if (isBatchEnabled()) {
+							applyPackets(redisPackets);
+						} else {
+							for (RedisPacket packet : redisPackets) {
+								applyPacket(packet);
+							}
+						}
+						streamApplied(redisPackets);
+						if (ackRequested) {
+							ackRequested = false;
+							sendAck();
+						}
+						// 队列中没有数据时发送攒下的批量命令
+						if (agentLinkClient != null && applyQueue.isEmpty()) {
+							agentLinkClient.flush();
+						}
+					} catch (Exception e) {
+						stopOnFailure(redisPacket, e);
+					} finally {
+						for (RedisPacket packet : redisPackets) {
+							pendingBytes.addAndGet(-packetSize(packet));
+							deleteSpillFiles(packet);
+						}
+						if (readSuspended) {
+							updateReadState();
+						}
+					}
+				}
+			}
+		});
+		applyThread.setName("Protocol-Apply-Thread-" + srcServer);
+		applyThread.setDaemon(true);
+		applyThread.start();
+	}
+
+	/**
+	 * 同步数据包失败后停止同步管道的方法<br>
+	 * 失败的数据包之后的命令不能再执行 否则目标服务器的数据与源服务器不一致<br>
+	 * 同步断点停留在失败之前的位置 重启后从断点重新同步
+	 * 
+	 * @param redisPacket
+	 *            同步失败的数据包
+	 * @param e
+	 *            失败原因
+	 */
+	private void stopOnFailure(RedisPacket redisPacket, Exception e) {
+		stopOnFailure("处理同步数据包出现问题 停止同步管道：" + redisPacket, e);
+	}
+
+	/**
+	 * 同步管道出现无法恢复的问题后停止同步管道的方法
+	 * 
+	 * @param message
+	 *            日志信息
+	 * @param e
+	 *            失败原因
+	 */
+	private void stopOnFailure(String message, Exception e) {
+		logger.error(message, e);
+		checkpointStalled = true;
+		failed = true;
+		shutdown();
+	}
+
+	/**
+	 * 取出下一批需要执行的数据包的方法<br>
+	 * rdb文件之前的数据包都在队列中 复制流磁盘缓冲区存在并且队列为空时rdb文件已经执行完<br>
+	 * 这时按写入顺序执行缓冲区中的复制流 全部执行完后切换回队列
+	 * 
+	 * @return 按接收顺序排列的数据包 停止运行时返回空列表
+	 * @throws InterruptedException
+	 *             等待数据包时被中断抛出该异常
+	 */
+	private List<RedisPacket> nextPackets() throws InterruptedException {
+		while (running) {
+			RedisStreamSpool spool = streamSpool;
+			if (spool != null && applyQueue.isEmpty()) {
+				List<RedisPacket> redisPackets = readStreamSpool(spool);
+				if (!redisPackets.isEmpty()) {
+					return redisPackets;
+				}
+				continue;
+			}
+			// 缓冲区在rdb文件放入队列后才创建 定时检查避免一直阻塞在空队列上
+			RedisPacket redisPacket = applyQueue.poll(100, TimeUnit.MILLISECONDS);
+			if (redisPacket != null) {
+				return collectPackets(redisPacket);
+			}
+		}
+		return new ArrayList<RedisPacket>();
+	}
+
+	/**
+	 * 从复制流磁盘缓冲区读取数据包的方法<br>
+	 * 缓冲区中的数据全部读出后关闭缓冲区 之后的复制流重新放入队列 读取失败时停止同步管道
+	 * 
+	 * @param spool
+	 *            复制流磁盘缓冲区
+	 * @return 读出的数据包 没有读出数据包时返回空列表
+	 */
+	private List<RedisPacket> readStreamSpool(RedisStreamSpool spool) {
+		List<RedisPacket> redisPackets;
+		try {
+			redisPackets = spool.read();
+			if (!redisPackets.isEmpty()) {
+				// 缓冲区中的数据包执行完后与队列中的数据包一样扣除未执行数据量
+				for (RedisPacket redisPacket : redisPackets) {
+					pendingBytes.addAndGet(packetSize(redisPacket));
+				}
+				return redisPackets;
+			}
+			synchronized (streamSpoolLock) {
+				// 读取之后又写入了新的数据包
+				if (!spool.isDrained()) {
+					return redisPackets;
+				}
+				finishStreamSpool();
+			}
+			logger.info("复制流缓冲文件中的数据已经全部同步：" + spool);
+		} catch (IOException | RedisProtocolException e) {
+			// 缓冲区中没有读出的复制流已经无法执行 继续执行之后的数据包会导致目标服务器数据不一致
+			stopOnFailure("读取复制流缓冲文件失败 停止同步管道：" + spool, e);
+			return new ArrayList<RedisPacket>();
+		}
+		spool.close();
+		if (readSuspended) {
+			updateReadState();
+		}
+		return redisPackets;
+	}
+
+	/**
+	 * 结束复制流磁盘缓冲区的方法<br>
+	 * 需要持有streamSpoolLock 缓冲期间等待的数据包按顺序重新分发 其中的rdb文件会创建新的缓冲区
+	 */
+	private void finishStreamSpool() {
+		streamSpool = null;
+		List<RedisPacket> handoff = spoolHandoff;
+		spoolHandoff = null;
+		if (handoff == null) {
+			return;
+		}
+		for (RedisPacket redisPacket : handoff) {
+			pendingBytes.addAndGet(-packetSize(redisPacket));
+			dispatch(redisPacket);
+		}
+	}
+
+	/**
+	 * 判断是否可以批量执行增量命令的方法<br>
+	 * 只有开启了批量命令优化并且直接发送到目标服务器时才批量执行
+	 * 
+	 * @return true为批量执行
+	 */
+	private boolean isBatchEnabled() {
+		return !batchOptimizers.isEmpty() && agentLinkClient == null;
+	}
+
+	/**
+	 * 取出需要一起执行的数据包的方法<br>
+	 * 没有开启批量命令优化时只处理当前数据包<br>
+	 * 否则取出队列中积压的数据包 设置了等待时间时在时间内继续等待新的数据包
+	 * 
+	 * @param first
+	 *            已经取出的数据包
+	 * @return 需要按顺序执行的数据包列表
+	 */
+	private List<RedisPacket> collectPackets(RedisPacket first) {
+		List<RedisPacket> redisPackets = new ArrayList<RedisPacket>();
+		redisPackets.add(first);
+		if (!isBatchEnabled() || first instanceof RedisDataBaseTransferPacket) {
+			return redisPackets;
+		}
+		applyQueue.drainTo(redisPackets, applyBatchSize - 1);
+		if (applyBatchWindow > 0) {
+			long deadline = System.currentTimeMillis() + applyBatchWindow;
+			while (redisPackets.size() < applyBatchSize) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					break;
+				}
+				RedisPacket redisPacket;
+				try {
+					redisPacket = applyQueue.poll(wait, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (redisPacket == null) {
+					break;
+				}
+				redisPackets.add(redisPacket);
+				applyQueue.drainTo(redisPackets, applyBatchSize - redisPackets.size());
+			}
+		}
+		return redisPackets;
+	}
+
+	/**
+	 * 开始同步Redis源服务器的方法<br>
+	 * 没有设置断点目录时发送SYNC命令到源服务器<br>
+	 * 否则发送PSYNC命令 有断点时从断点的复制偏移量继续同步 没有断点时请求全量同步
+	 */
+	private void startSyncSourceRedisServer() {
+		try {
+			if (checkpoint == null) {
+				srcConnection.sendCommand(new RedisCommand(RedisCommandSymbol.SYNC), this);
+				return;
+			}
+			RedisCommand psyncCommand = new RedisCommand(PSYNC);
+			if (checkpointLoaded) {
+				psyncCommand.addValue(checkpoint.getReplId());
+				psyncCommand.addValue(String.valueOf(checkpoint.getPsyncOffset()));
+			} else {
+				psyncCommand.addValue("?");
+				psyncCommand.addValue("-1");
+			}
+			psyncPending = true;
+			srcConnection.sendCommand(psyncCommand, this);
+		} catch (RedisProtocolException e) {
+			logger.error("发送同步命令失败", e);
+		}
+	}
+
+	/**
+	 * 处理PSYNC命令响应的方法<br>
+	 * +FULLRESYNC时重置断点 之后源服务器发送rdb文件<br>
+	 * +CONTINUE时rdb文件没有同步完成则先从断点位置继续同步保存的rdb文件 之后的复制流排在rdb文件之后<br>
+	 * 源服务器不支持PSYNC时使用SYNC全量同步 不再保存断点
+	 * 
+	 * @param redisPacket
+	 *            响应数据包
+	 */
+	private void processPsyncResponse(RedisPacket redisPacket) {
+		psyncPending = false;
+		RedisSyncCheckpoint checkpoint = this.checkpoint;
+		String response = redisPacket instanceof RedisSimpleStringPacket ? redisPacket.getCommand() : "";
+		String[] parts = response.split(" ");
+		try {
+			if (FULLRESYNC.equals(parts[0]) && parts.length >= 3) {
+				logger.info("源Redis开始全量同步 复制id：" + parts[1] + " 复制偏移量：" + parts[2]);
+				checkpoint.reset(parts[1], Long.parseLong(parts[2]));
+				startAckTimer();
+			} else if (CONTINUE.equals(parts[0])) {
+				// 源服务器切换过复制id时返回新的复制id
+				if (parts.length > 1) {
+					checkpoint.setReplId(parts[1]);
+				}
+				logger.info("从同步断点继续同步：" + checkpoint);
+				startAckTimer();
+				isRDBProcessed = checkpoint.isRdbDone();
+				if (!checkpoint.isRdbDone()) {
+					RedisDataBaseTransferPacket packet = new RedisDataBaseTransferPacket(DATABASETRANSFER,
+							checkpoint.getRdbFile());
+					packet.setResumeOffset(checkpoint.getRdbOffset());
+					enqueue(packet);
+				}
+			} else {
+				logger.warn("源Redis不支持PSYNC：" + redisPacket + " 使用SYNC全量同步 不保存同步断点");
+				this.checkpoint = null;
+				srcConnection.sendCommand(new RedisCommand(RedisCommandSymbol.SYNC), this);
+			}
+		} catch (IOException e) {
+			logger.error("保存同步断点失败 不再保存同步断点", e);
+			this.checkpoint = null;
+		} catch (RedisProtocolException e) {
+			logger.error("发送同步命令失败", e);
+		}
+	}
+
+	/**
+	 * 启动定时确认复制偏移量的线程的方法<br>
+	 * 与redis从服务器一样每秒发送一次REPLCONF ACK 源服务器据此判断从服务器的同步进度
+	 */
+	private synchronized void startAckTimer() {
+		if (ackExecutor != null) {
+			return;
+		}
+		final String threadName = "Protocol-Ack-Thread-" + srcServer;
+		ackExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, threadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		ackExecutor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					sendAck();
+				} catch (Throwable e) {
+					logger.warn("确认复制偏移量出现问题", e);
+				}
+			}
+		}, ACK_INTERVAL, ACK_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 向源服务器确认已经同步的复制偏移量的方法<br>
+	 * rdb文件同步完成之前不确认 否则源服务器会认为rdb中的数据已经同步到目标服务器<br>
+	 * 源服务器不会响应REPLCONF ACK
+	 */
+	private void sendAck() {
+		RedisSyncCheckpoint checkpoint = this.checkpoint;
+		RedisConnection connection = srcConnection;
+		if (checkpoint == null || psyncPending || !checkpoint.isRdbDone() || connection == null
+				|| !connection.isConnected()) {
+			return;
+		}
+		RedisCommand ackCommand = new RedisCommand(REPLCONF);
+		ackCommand.addValue(ACK);
+		ackCommand.addValue(String.valueOf(checkpoint.getAckOffset()));
+		try {
+			connection.sendCommand(ackCommand, this);
+		} catch (RedisProtocolException e) {
+			logger.warn("发送REPLCONF ACK失败", e);
+		}
+	}
+
+	/**
+	 * 保存rdb文件同步进度的方法<br>
+	 * 所有分区都同步完成时rdb文件同步完成 否则记录所有分区都已经确认的位置
+	 * 
+	 * @param progress
+	 *            rdb文件同步进度
+	 * @param completed
+	 *            所有同步任务是否都已经结束
+	 */
+	private void saveRDBCheckpoint(RedisRDBProgress progress, boolean completed) {
+		RedisSyncCheckpoint checkpoint = this.checkpoint;
+		if (checkpoint == null || progress == null) {
+			return;
+		}
+		try {
+			if (progress.isFinished()) {
+				checkpoint.rdbCompleted();
+				logger.info("RDB同步完成 保存同步断点：" + checkpoint);
+				return;
+			}
+			checkpoint.setRdbOffset(progress.getOffset());
+			checkpoint.save();
+			if (completed) {
+				// rdb没有全部同步成功时之后的复制流也不能记录为已同步
+				checkpointStalled = true;
+				logger.warn("RDB没有全部同步成功 保留同步断点：" + checkpoint);
+			}
+		} catch (IOException e) {
+			logger.error("保存同步断点失败", e);
+		}
+	}
+
+	/**
+	 * 记录已经同步的复制流长度的方法<br>
+	 * 按设置的间隔保存断点 同步出现过失败后不再推进断点
+	 * 
+	 * @param redisPackets
+	 *            已经同步的数据包
+	 */
+	private void streamApplied(List<RedisPacket> redisPackets) {
+		RedisSyncCheckpoint checkpoint = this.checkpoint;
+		if (checkpoint == null || checkpointStalled) {
+			return;
+		}
+		long length = 0;
+		for (RedisPacket redisPacket : redisPackets) {
+			if (!(redisPacket instanceof RedisDataBaseTransferPacket)) {
+				length += replicationLength(redisPacket);
+			}
+		}
+		if (length == 0) {
+			return;
+		}
+		checkpoint.streamApplied(length);
+		long now = System.currentTimeMillis();
+		if (now - lastCheckpointTime >= checkpointInterval) {
+			lastCheckpointTime = now;
+			try {
+				checkpoint.save();
+			} catch (IOException e) {
+				logger.error("保存同步断点失败", e);
+			}
+		}
+	}
+
+	/**
+	 * 创建源服务器与目标服务器连接的方法
+	 * 
+	 * @throws RedisProtocolException
+	 *             当创建连接出现问题时抛出该异常
+	 */
+	private void createConnections() throws RedisProtocolException {
+		srcConnection = createDefaultRedisConnection(srcServer, 5000);
+		// 通过远程Agent同步时不需要目标服务器连接
+		if (agentLinkClient == null) {
+			descConnection = createDefaultRedisConnection(descServer, 5000);
+		}
+
+	}
+
+	/**
+	 * 停止同步任务的方法
+	 */
+	public void shutdown() {
+		// 停止执行同步命令的线程
+		running = false;
+		if (applyThread != null) {
+			applyThread.interrupt();
+		}
+		synchronized (this) {
+			if (ackExecutor != null) {
+				ackExecutor.shutdownNow();
+				ackExecutor = null;
+			}
+		}
+		// 删除没有执行完的复制流缓冲文件
+		RedisStreamSpool spool;
+		List<RedisPacket> handoff;
+		synchronized (streamSpoolLock) {
+			spool = streamSpool;
+			streamSpool = null;
+			handoff = spoolHandoff;
+			spoolHandoff = null;
+		}
+		if (spool != null) {
+			spool.close();
+		}
+		if (handoff != null) {
+			for (RedisPacket redisPacket : handoff) {
+				deleteSpillFiles(redisPacket);
+			}
+		}
+		// 保存的复制流长度只会小于实际已经同步的长度 重启后最多重复同步部分命令
+		RedisSyncCheckpoint checkpoint = this.checkpoint;
+		if (checkpoint != null && !psyncPending) {
+			try {
+				checkpoint.save();
+			} catch (IOException e) {
+				logger.error("保存同步断点失败", e);
+			}
+		}
+		try {
+			// 同步失败停止后可能再次调用 已经关闭的连接不再关闭
+			if (srcConnection != null && srcConnection.isConnected()) {
+				srcConnection.close();
+			}
+		} catch (IOException e) {
+			logger.error("关闭源Redis连接出现问题", e);
+		}
+		try {
+			if (descConnection != null && descConnection.isConnected()) {
+				descConnection.close();
+			}
+		} catch (IOException e) {
+			logger.error("关闭目标Redis连接出现问题", e);
+		}
+	}
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.net.RedisResponseListener#receive(com.wmz7year.synyed
+	 * .packet.redis.RedisPacket)
+	 */
+	@Override
+	public void receive(RedisPacket redisPacket) {
+		if (psyncPending) {
+			processPsyncResponse(redisPacket);
+			return;
+		}
+		enqueue(redisPacket);
+	}
+
+	/**
+	 * 将数据包放入执行队列的方法<br>
+	 * 在I/O线程中调用 不阻塞 队列积压或者缓冲区超过上限时暂停读取源连接
+	 * 
+	 * @param redisPacket
+	 *            需要执行的数据包
+	 */
+	private void enqueue(RedisPacket redisPacket) {
+		synchronized (streamSpoolLock) {
+			dispatch(redisPacket);
+		}
+		if (!readSuspended && (isApplyBacklogged() || isStreamSpoolFull())) {
+			updateReadState();
+		}
+	}
+
+	/**
+	 * 分发数据包的方法<br>
+	 * 需要持有streamSpoolLock 执行rdb文件期间复制流写入磁盘缓冲区 不计入未执行数据量<br>
+	 * 缓冲期间又开始了新的全量同步时 新的rdb文件以及之后的数据包暂存在内存中 等待缓冲区中的复制流执行完<br>
+	 * 其他数据包放入执行队列 rdb文件放入队列后创建新的缓冲区
+	 * 
+	 * @param redisPacket
+	 *            需要执行的数据包
+	 */
+	private void dispatch(RedisPacket redisPacket) {
+		boolean isRDB = redisPacket instanceof RedisDataBaseTransferPacket;
+		RedisStreamSpool spool = streamSpool;
+		if (spoolHandoff != null || (spool != null && isRDB)) {
+			if (spoolHandoff == null) {
+				logger.info("复制流缓冲文件没有同步完成时开始了新的全量同步 等待缓冲文件同步完成：" + spool);
+				spoolHandoff = new ArrayList<RedisPacket>();
+			}
+			spoolHandoff.add(redisPacket);
+			pendingBytes.addAndGet(packetSize(redisPacket));
+			return;
+		}
+		if (spool != null) {
+			spoolPacket(spool, redisPacket);
+			return;
+		}
+		pendingBytes.addAndGet(packetSize(redisPacket));
+		applyQueue.offer(redisPacket);
+		if (isRDB) {
+			startStreamSpool();
+		}
+	}
+
+	/**
+	 * 创建复制流磁盘缓冲区的方法<br>
+	 * 在rdb文件放入队列之后创建 之后的复制流写入缓冲区 直到rdb文件执行完并且缓冲区中的数据全部执行完<br>
+	 * 需要持有streamSpoolLock
+	 */
+	private void startStreamSpool() {
+		if (!streamSpoolEnabled) {
+			return;
+		}
+		File dir = new File(StringUtils.hasText(streamSpoolDir) ? streamSpoolDir : System.getProperty("java.io.tmpdir"));
+		RedisStreamSpool spool;
+		try {
+			spool = new RedisStreamSpool(dir);
+		} catch (IOException e) {
+			logger.error("创建复制流缓冲文件失败 执行rdb文件期间的复制流在内存中排队", e);
+			return;
+		}
+		streamSpool = spool;
+		logger.info("执行rdb文件期间的复制流写入缓冲文件：" + spool.getFile());
+	}
+
+	/**
+	 * 将复制流数据包写入磁盘缓冲区的方法<br>
+	 * 写入失败时停止同步管道
+	 * 
+	 * @param spool
+	 *            复制流磁盘缓冲区
+	 * @param redisPacket
+	 *            复制流数据包
+	 */
+	private void spoolPacket(RedisStreamSpool spool, RedisPacket redisPacket) {
+		try {
+			spool.write(redisPacket);
+		} catch (IOException e) {
+			// 没有写入的数据包已经丢失 不能跳过该数据包继续同步
+			stopOnFailure("写入复制流缓冲文件失败 停止同步管道：" + redisPacket, e);
+		} finally {
+			// 内容已经写入缓冲区 读出时重新解析
+			deleteSpillFiles(redisPacket);
+		}
+	}
+
 	/**
-	 * 目标服务器连接
+	 * 删除数据包中超大字符串临时文件的方法
+	 * 
+	 * @param redisPacket
+	 *            数据包
 	 */
-	private RedisConnection descConnection;
+	static void deleteSpillFiles(RedisPacket redisPacket) {
+		if (redisPacket instanceof RedisFileBulkStringPacket) {
+			((RedisFileBulkStringPacket) redisPacket).delete();
+		} else if (redisPacket instanceof RedisArraysPacket) {
+			for (RedisPacket element : ((RedisArraysPacket) redisPacket).getPackets()) {
+				deleteSpillFiles(element);
+			}
+		}
+	}
 
 	/**
-	 * redis数据包命令解析器
+	 * 判断复制流磁盘缓冲区是否超过最大数据量的方法
+	 * 
+	 * @return true为超过
 	 */
-	private RedisPacketCommandParser packetCommandParser = new RedisPacketCommandParser();
+	private boolean isStreamSpoolFull() {
+		RedisStreamSpool spool = streamSpool;
+		return spool != null && streamSpoolMaxBytes > 0 && spool.getSize() >= streamSpoolMaxBytes;
+	}
 
 	/**
-	 * RDB文件是否处理过的标识为
+	 * 判断未执行的数据量或者数据包数量是否超过高水位的方法
+	 * 
+	 * @return true为超过
 	 */
-	private boolean isRDBProcessed = false;
+	private boolean isApplyBacklogged() {
+		return pendingBytes.get() >= applyHighWatermark || applyQueue.size() >= applyQueueSize;
+	}
 
 	/**
-	 * rdb文件传输数据包执行同步的连接数量<br>
-	 * 由于RDB文件解析出的数据量巨大，可能产生太多命令<br>
-	 * 但是又没有数据写入顺序的问题 因此分不同的连接去执行
+	 * 根据未执行的数据量暂停或者恢复读取源连接的方法
 	 */
-	@Value("${protocol.rdb.syn.connection.size}")
-	private int rdbCommandSynConnectionCount = 0;
+	private void updateReadState() {
+		synchronized (flowControlLock) {
+			long pending = pendingBytes.get();
+			int queued = applyQueue.size();
+			boolean spoolFull = isStreamSpoolFull();
+			if (!readSuspended && (pending >= applyHighWatermark || queued >= applyQueueSize || spoolFull)) {
+				if (spoolFull) {
+					logger.warn("复制流缓冲文件数据量超过：" + streamSpoolMaxBytes + " 暂停读取源Redis");
+				} else if (queued >= applyQueueSize) {
+					logger.warn("未同步数据包数量：" + queued + " 超过高水位：" + applyQueueSize + " 暂停读取源Redis");
+				} else {
+					logger.warn("未同步数据量：" + pending + " 超过高水位：" + applyHighWatermark + " 暂停读取源Redis");
+				}
+				readSuspended = true;
+				srcConnection.suspendRead();
+			} else if (readSuspended && pending <= applyLowWatermark && queued <= applyQueueSize / 2 && !spoolFull) {
+				logger.info("未同步数据量：" + pending + " 低于低水位：" + applyLowWatermark + " 恢复读取源Redis");
+				readSuspended = false;
+				srcConnection.resumeRead();
+			}
+		}
+	}
 
 	/**
-	 * 设置管道同步源服务器信息的方法<br>
+	 * 计算数据包占用内存的数据量的方法<br>
+	 * rdb文件传输包的数据在磁盘上 不计算 执行期间的复制流由磁盘缓冲区限制<br>
+	 * 数组包按各元素数据长度之和计算
 	 * 
-	 * @param srcServer
-	 *            源服务器信息
+	 * @param redisPacket
+	 *            数据包
+	 * @return 数据量
 	 */
-	public void setSrcRedis(RedisServer srcServer) {
-		if (srcServer == null) {
-			throw new NullPointerException();
+	static long packetSize(RedisPacket redisPacket) {
+		if (redisPacket instanceof RedisDataBaseTransferPacket) {
+			return 0;
+		} else if (redisPacket instanceof RedisArraysPacket) {
+			long size = 0;
+			for (RedisPacket element : ((RedisArraysPacket) redisPacket).getPackets()) {
+				size += packetSize(element);
+			}
+			return size;
+		} else if (redisPacket instanceof RedisFileBulkStringPacket) {
+			return ((RedisFileBulkStringPacket) redisPacket).getLength();
+		} else {
+			byte[] data = redisPacket.getData();
+			return data == null ? 0 : data.length;
 		}
-		this.srcServer = srcServer;
 	}
 
 	/**
-	 * 设置管道同步目标服务器信息的方法<br>
+	 * 计算数据包在复制流中长度的方法<br>
+	 * 按RESP格式计算 与源服务器复制偏移量的增量一致
 	 * 
-	 * @param descServer
-	 *            目标服务器信息
+	 * @param redisPacket
+	 *            数据包
+	 * @return 复制流中的字节数
 	 */
-	public void setDescRedis(RedisServer descServer) {
-		if (descServer == null) {
-			throw new NullPointerException();
+	static long replicationLength(RedisPacket redisPacket) {
+		if (redisPacket instanceof RedisArraysPacket) {
+			List<RedisPacket> packets = ((RedisArraysPacket) redisPacket).getPackets();
+			long length = 3 + String.valueOf(packets.size()).length();
+			for (RedisPacket element : packets) {
+				length += replicationLength(element);
+			}
+			return length;
 		}
-		this.descServer = descServer;
+		if (redisPacket instanceof RedisFileBulkStringPacket) {
+			long dataLength = ((RedisFileBulkStringPacket) redisPacket).getLength();
+			return 5 + String.valueOf(dataLength).length() + dataLength;
+		}
+		byte[] data = redisPacket.getData();
+		if (redisPacket instanceof RedisBulkStringPacket) {
+			// $-1\r\n
+			if (data == null) {
+				return 5;
+			}
+			return 5 + String.valueOf(data.length).length() + data.length;
+		}
+		return 3 + (data == null ? 0 : data.length);
 	}
 
 	/**
-	 * 启动同步管道的方法
+	 * 处理同步数据包的方法<br>
+	 * 在执行同步命令的线程中调用
+	 * 
+	 * @param redisPacket
+	 *            需要处理的数据包
+	 * @throws RedisProtocolException
+	 *             解析rdb文件失败或者命令没有发送到目标服务器时抛出该异常
 	 */
-	public void start() {
-		logger.info("准备启动同步管道 源Redis：" + srcServer + "  目标Redis：" + descServer);
-
-		// 创建源redis与目标redis的连接
-		try {
-			createConnections();
-		} catch (RedisProtocolException e) {
-			logger.error("无法创建Redis连接 " + srcServer, e);
+	private void applyPacket(RedisPacket redisPacket) throws RedisProtocolException {
+		if (agentLinkClient != null) {
+			forwardPacket(redisPacket);
 			return;
 		}
-
-		// 开始同步Redis源服务器的方法
-		startSyncSourceRedisServer();
-
-		logger.info("启动同步管道成功 源Redis：" + srcServer + "  目标Redis：" + descServer);
+		if (redisPacket instanceof RedisDataBaseTransferPacket) {
+			RedisDataBaseTransferPacket packet = (RedisDataBaseTransferPacket) redisPacket;
+			RedisSyncCheckpoint checkpoint = this.checkpoint;
+			// 解析rdb文件
+			try {
+				if (checkpoint != null) {
+					// 保留rdb文件 重启后从断点位置继续同步
+					packet.setRdbFile(checkpoint.keepRDB(packet.getRdbFile()));
+				}
+				packet.setKeyFilter(keyFilter);
+				packet.parse();
+			} catch (RedisRDBException | IOException e) {
+				throw new RedisProtocolException("解析RDB文件失败", e);
+			}
+			// 处理rdb文件传输命令
+			if (rdbSyncFused) {
+				processRedisRDBTransferPacketFused(packet);
+			} else if (checkpoint != null) {
+				processRedisRDBTransferPacketTracked(packet);
+			} else {
+				processRedisRDBTransferPacketCommands(packetCommandParser.parseRedisPacket(redisPacket));
+			}
+			this.isRDBProcessed = true;
+		} else {
+			// 解析出命令列表
+			List<RedisCommand> commands = packetCommandParser.parseRedisPacket(redisPacket);
+			for (RedisCommand command : commands) {
+				if (isFilteredOut(command)) {
+					continue;
+				}
+				// 处理解析出的命令
+				if (!processCommand(this.descConnection, command)) {
+					throw new RedisProtocolException("发送同步命令到目标服务器失败：" + command);
+				}
+			}
+		}
 	}
 
 	/**
-	 * 开始同步Redis源服务器的方法<br>
-	 * 发送SYNC命令到源服务器
+	 * 批量处理同步数据包的方法<br>
+	 * 解析出的命令经过拦截器与批量命令优化器处理后使用管道发送到目标服务器<br>
+	 * rdb文件传输数据包之前的命令先发送完 再按原方式处理rdb文件
+	 * 
+	 * @param redisPackets
+	 *            按接收顺序排列的数据包
+	 * @throws RedisProtocolException
+	 *             处理rdb文件或者发送命令出现问题时抛出该异常
 	 */
-	private void startSyncSourceRedisServer() {
-		// TODO PSYNC
-		try {
-			srcConnection.sendCommand(new RedisCommand(RedisCommandSymbol.SYNC), this);
-		} catch (RedisProtocolException e) {
-			logger.error("发送同步命令失败", e);
+	private void applyPackets(List<RedisPacket> redisPackets) throws RedisProtocolException {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		for (RedisPacket redisPacket : redisPackets) {
+			if (redisPacket instanceof RedisDataBaseTransferPacket) {
+				applyCommands(commands);
+				commands.clear();
+				applyPacket(redisPacket);
+			} else {
+				for (RedisCommand command : packetCommandParser.parseRedisPacket(redisPacket)) {
+					if (!isFilteredOut(command)) {
+						commands.add(command);
+					}
+				}
+			}
 		}
+		applyCommands(commands);
 	}
 
 	/**
-	 * 创建源服务器与目标服务器连接的方法
+	 * 批量执行同步命令的方法<br>
+	 * 被优化器合并掉的命令不会发送 也不会调用拦截器的afterSendCommand
 	 * 
+	 * @param commands
+	 *            按接收顺序排列的命令
 	 * @throws RedisProtocolException
-	 *             当创建连接出现问题时抛出该异常
+	 *             发送命令到目标服务器出现问题时抛出该异常
 	 */
-	private void createConnections() throws RedisProtocolException {
-		srcConnection = createDefaultRedisConnection(srcServer, 5000);
-		descConnection = createDefaultRedisConnection(descServer, 5000);
-
+	private void applyCommands(List<RedisCommand> commands) throws RedisProtocolException {
+		List<RedisCommand> accepted = new ArrayList<RedisCommand>(commands.size());
+		for (RedisCommand command : commands) {
+			try {
+				redisCommandFilterManager.beforeSendCommand(command, srcServer, descServer);
+				accepted.add(command);
+			} catch (RedisCommandRejectedException e) {
+				logger.info("命令：" + command + " 被拦截器拦截");
+			}
+		}
+		int commandCount = accepted.size();
+		for (RedisCommandBatchOptimizer batchOptimizer : batchOptimizers) {
+			accepted = batchOptimizer.optimize(accepted);
+		}
+		if (accepted.isEmpty()) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("批量执行同步命令 原命令数：" + commandCount + " 优化后命令数：" + accepted.size());
+		}
+		List<RedisPacket> responses = descConnection.sendCommands(accepted);
+		for (int i = 0; i < accepted.size(); i++) {
+			boolean result = processResponsePacket(responses.get(i));
+			try {
+				redisCommandFilterManager.afterSendCommand(accepted.get(i), result, srcServer, descServer);
+			} catch (RedisCommandRejectedException e) {
+				logger.info("命令：" + accepted.get(i) + " 被拦截器拦截");
+			}
+		}
 	}
 
 	/**
-	 * 停止同步任务的方法
+	 * 通过远程Agent链路转发数据包的方法<br>
+	 * 命令经过拦截器过滤后按顺序放入链路的当前批量中<br>
+	 * rdb文件中的命令与增量命令使用同一个通道 保证执行顺序
+	 * 
+	 * @param redisPacket
+	 *            需要转发的数据包
+	 * @throws RedisProtocolException
+	 *             解析rdb文件或者发送批量命令出现问题时抛出该异常
 	 */
-	public void shutdown() {
-		try {
-			if (srcConnection != null) {
-				srcConnection.close();
+	private void forwardPacket(RedisPacket redisPacket) throws RedisProtocolException {
+		boolean isRDB = redisPacket instanceof RedisDataBaseTransferPacket;
+		if (isRDB) {
+			try {
+				((RedisDataBaseTransferPacket) redisPacket).setKeyFilter(keyFilter);
+				((RedisDataBaseTransferPacket) redisPacket).parse();
+			} catch (RedisRDBException e) {
+				throw new RedisProtocolException("解析RDB文件失败", e);
 			}
-		} catch (IOException e) {
-			logger.error("关闭源Redis连接出现问题", e);
 		}
-		try {
-			if (descConnection != null) {
-				descConnection.close();
+		for (RedisCommand command : packetCommandParser.parseRedisPacket(redisPacket)) {
+			if (!isRDB && isFilteredOut(command)) {
+				continue;
 			}
-		} catch (IOException e) {
-			logger.error("关闭目标Redis连接出现问题", e);
+			try {
+				redisCommandFilterManager.beforeSendCommand(command, srcServer, descServer);
+			} catch (RedisCommandRejectedException e) {
+				logger.info("命令：" + command + " 被拦截器拦截");
+				continue;
+			}
+			// 命令在链路中等待批量发送 临时文件中的参数先读取到内存
+			for (RedisCommandData value : command.getValues()) {
+				if (value instanceof RedisFileCommandData && ((RedisFileCommandData) value).isFileBacked()) {
+					value.setData(value.getData());
+				}
+			}
+			agentLinkClient.append(agentLinkChannel, command);
+		}
+		if (isRDB) {
+			agentLinkClient.flush();
+			this.isRDBProcessed = true;
 		}
 	}
 
-	/*
-	 * @see
-	 * com.wmz7year.synyed.net.RedisResponseListener#receive(com.wmz7year.synyed
-	 * .packet.redis.RedisPacket)
+	/**
+	 * 设置远程Agent链路的方法<br>
+	 * 设置后命令不再直接发送到目标服务器 而是批量压缩后发送到远程Agent
+	 * 
+	 * @param agentLinkClient
+	 *            远程Agent链路
+	 * @param channel
+	 *            使用的通道编号
 	 */
-	@Override
-	public void receive(RedisPacket redisPacket) {
-		// 解析出命令列表
-		List<RedisCommand> commands = packetCommandParser.parseRedisPacket(redisPacket);
-		if (redisPacket instanceof RedisDataBaseTransferPacket) {
-			// 处理rdb文件传输命令
-			processRedisRDBTransferPacketCommands(commands);
-			this.isRDBProcessed = true;
-		} else {
-			for (RedisCommand command : commands) {
-				// 处理解析出的命令
-				processCommand(this.descConnection, command);
-			}
-		}
+	public void setAgentLink(AgentLinkClient agentLinkClient, int channel) {
+		this.agentLinkClient = agentLinkClient;
+		this.agentLinkChannel = channel;
 	}
 
 	/**
 	 * 处理Redis rdb文件传输命令解析<br>
-	 * 根据rdbPacketSynConnectionSize的数量切分命令列表<br>
-	 * 每一个线程持有一个独立的Redis连接<br>
+	 * 按key的hash值将命令分配到rdbCommandSynConnectionCount个分区<br>
+	 * 同一个key的命令在同一个分区中按顺序执行 SELECT命令发送到所有分区<br>
+	 * 每一个分区由一个线程持有一个独立的Redis连接执行<br>
 	 * 
 	 * @param commands
 	 *            需要同步的命令列表
+	 * @throws RedisProtocolException
+	 *             有命令没有发送到目标服务器时抛出该异常
 	 */
-	private void processRedisRDBTransferPacketCommands(List<RedisCommand> commands) {
-		logger.info("处理RDB文件同步连接数：" + rdbCommandSynConnectionCount);
-		// 计算每个线程处理的命令行数
+	private void processRedisRDBTransferPacketCommands(List<RedisCommand> commands) throws RedisProtocolException {
+		logger.info("处理RDB文件同步连接数：" + rdbCommandSynConnectionCount + " 线程模式：" + rdbSyncExecutorMode);
 		int commandCount = commands.size();
 		if (commandCount == 0) {
 			return;
 		}
-		int pageSize = commandCount % rdbCommandSynConnectionCount == 0 ? commandCount / rdbCommandSynConnectionCount
-				: commandCount / rdbCommandSynConnectionCount + 1;
-		int pageCount = commandCount % pageSize == 0 ? commandCount / pageSize : commandCount / pageSize + 1;
-		// 开辟对应连接数的线程池
-		ExecutorService executorService = Executors.newFixedThreadPool(rdbCommandSynConnectionCount);
-		CompletionService<Integer> execcomp = new ExecutorCompletionService<Integer>(executorService);
-		try {
-			// 对命令列表平均分页处理
-			for (int i = 0; i < pageCount; i++) {
-				final List<RedisCommand> subCommands;
-				if (i + 1 == pageCount) {
-					subCommands = commands.subList(pageSize * i, commandCount);
-				} else {
-					subCommands = commands.subList(pageSize * i, pageSize * (i + 1));
-				}
+		// 按key分区
+		List<List<RedisCommand>> partitions = partitionCommands(commands, rdbCommandSynConnectionCount);
+		int expectedCount = 0;
+		for (List<RedisCommand> partition : partitions) {
+			expectedCount += partition.size();
+		}
+		List<Callable<Integer>> senders = new ArrayList<Callable<Integer>>(partitions.size());
+		for (final List<RedisCommand> subCommands : partitions) {
+			senders.add(new Callable<Integer>() {
 
-				// 交给线程池执行同步
-				execcomp.submit(new Callable<Integer>() {
-
-					/*
-					 * @see java.util.concurrent.Callable#call()
-					 */
-					@Override
-					public Integer call() throws Exception {
-						RedisConnection redisConnection = createDefaultRedisConnection(descServer, 5000);
-						int successCount = 0;
+				/*
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Integer call() throws Exception {
+					RedisConnection redisConnection = createDefaultRedisConnection(descServer, 5000);
+					int successCount = 0;
+					try {
 						for (RedisCommand command : subCommands) {
-							try {
-								processCommand(redisConnection, command);
-								successCount++;
-							} catch (Exception e) {
-								throw e;
+							sendRDBCommand(redisConnection, command);
+							successCount++;
+						}
+					} finally {
+						redisConnection.close();
+					}
+					return successCount;
+				}
+			});
+		}
+		runRDBSenders(senders, expectedCount);
+	}
+
+	/**
+	 * 记录同步进度处理Redis rdb文件传输数据包的方法<br>
+	 * 与processRedisRDBTransferPacketCommands使用相同的分区规则<br>
+	 * 每个分区按key生成命令并发送 key的所有命令都收到响应后记录该key在rdb中的位置
+	 * 
+	 * @param packet
+	 *            已经解析的rdb文件传输数据包
+	 * @throws RedisProtocolException
+	 *             有命令没有发送到目标服务器时抛出该异常
+	 */
+	private void processRedisRDBTransferPacketTracked(RedisDataBaseTransferPacket packet)
+			throws RedisProtocolException {
+		logger.info("处理RDB文件同步连接数：" + rdbCommandSynConnectionCount + " 线程模式：" + rdbSyncExecutorMode);
+		List<List<RedisDB>> partitions = partitionDBs(packet.getRedisDbs(), rdbCommandSynConnectionCount);
+		final RedisRDBProgress progress = new RedisRDBProgress(partitions.size(), packet.getResumeOffset());
+		if (partitions.isEmpty()) {
+			saveRDBCheckpoint(progress, true);
+			return;
+		}
+		final String syncMode = packetCommandParser.getRdbSyncMode();
+		final RedisChunkPolicy chunkPolicy = packetCommandParser.getChunkPolicy();
+		List<Callable<Integer>> senders = new ArrayList<Callable<Integer>>(partitions.size());
+		for (int i = 0; i < partitions.size(); i++) {
+			final int partition = i;
+			final List<RedisDB> redisDBs = partitions.get(i);
+			senders.add(new Callable<Integer>() {
+
+				/*
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Integer call() throws Exception {
+					RedisConnection redisConnection = createDefaultRedisConnection(descServer, 5000);
+					int successCount = 0;
+					// 出现发送失败后停止该分区 进度停留在失败的key之前
+					try {
+						for (RedisDB redisDB : redisDBs) {
+							RedisCommand selectCommand = new RedisCommand(SELECT);
+							selectCommand.addValue(String.valueOf(redisDB.getNum()));
+							sendRDBCommand(redisConnection, selectCommand);
+							for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+								for (RedisCommand command : rdbCommand.getCommands(syncMode, chunkPolicy)) {
+									sendRDBCommand(redisConnection, command);
+									successCount++;
+								}
+								progress.ack(partition, rdbCommand.getOffset());
+							}
+						}
+					} finally {
+						redisConnection.close();
+					}
+					progress.finish(partition);
+					return successCount;
+				}
+			});
+		}
+		runRDBSenders(senders, -1, progress);
+	}
+
+	/**
+	 * 直接编码处理Redis rdb文件传输数据包的方法<br>
+	 * 按key的hash值将rdb数据分配到rdbCommandSynConnectionCount个分区<br>
+	 * 每个分区遍历rdb数据直接写入发送缓冲区 使用管道发送到独立的Redis连接<br>
+	 * 生成的命令与命令模式一致 但是不经过命令拦截器
+	 * 
+	 * @param packet
+	 *            已经解析的rdb文件传输数据包
+	 * @throws RedisProtocolException
+	 *             写出命令或者读取响应出现问题时抛出该异常
+	 */
+	private void processRedisRDBTransferPacketFused(RedisDataBaseTransferPacket packet)
+			throws RedisProtocolException {
+		logger.info("直接编码处理RDB文件同步连接数：" + rdbCommandSynConnectionCount + " 线程模式：" + rdbSyncExecutorMode);
+		List<List<RedisDB>> partitions = partitionDBs(packet.getRedisDbs(), rdbCommandSynConnectionCount);
+		// 有同步断点时记录同步进度
+		final RedisRDBProgress progress = checkpoint == null ? null
+				: new RedisRDBProgress(partitions.size(), packet.getResumeOffset());
+		if (partitions.isEmpty()) {
+			saveRDBCheckpoint(progress, true);
+			return;
+		}
+		final String syncMode = packetCommandParser.getRdbSyncMode();
+		final RedisChunkPolicy chunkPolicy = packetCommandParser.getChunkPolicy();
+		List<Callable<Integer>> senders = new ArrayList<Callable<Integer>>(partitions.size());
+		for (int i = 0; i < partitions.size(); i++) {
+			final int partition = i;
+			final List<RedisDB> redisDBs = partitions.get(i);
+			senders.add(new Callable<Integer>() {
+
+				/*
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Integer call() throws Exception {
+					RedisConnection redisConnection = createDefaultRedisConnection(descServer, 5000);
+					try {
+						RedisRESPConnectionSink sink = new RedisRESPConnectionSink(redisConnection);
+						RedisRESPWriter writer = new RedisRESPWriter(sink);
+						// 已经写入但是没有收到全部响应的key 按写入后的命令总数与key在rdb中的位置记录
+						LinkedList<long[]> unacked = new LinkedList<long[]>();
+						for (RedisDB redisDB : redisDBs) {
+							writer.writeSelect(redisDB.getNum());
+							for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+								rdbCommand.writeCommands(writer, syncMode, chunkPolicy);
+								if (progress != null) {
+									unacked.add(new long[] { writer.getCommandCount(), rdbCommand.getOffset() });
+									ackWrittenKeys(progress, partition, unacked, sink.getResponseCount());
+								}
 							}
 						}
+						writer.flush();
+						sink.finish();
+						if (progress != null) {
+							progress.finish(partition);
+						}
+						return (int) (sink.getResponseCount() - sink.getErrorCount());
+					} finally {
 						redisConnection.close();
-						return successCount;
 					}
-				});
+				}
+			});
+		}
+		runRDBSenders(senders, -1, progress);
+	}
+
+	/**
+	 * 确认已经收到全部响应的key的方法
+	 * 
+	 * @param progress
+	 *            rdb文件同步进度
+	 * @param partition
+	 *            分区编号
+	 * @param unacked
+	 *            按写入顺序排列的未确认key
+	 * @param responseCount
+	 *            已经收到的响应数量
+	 */
+	private static void ackWrittenKeys(RedisRDBProgress progress, int partition, LinkedList<long[]> unacked,
+			long responseCount) {
+		long offset = -1;
+		while (!unacked.isEmpty() && unacked.getFirst()[0] <= responseCount) {
+			offset = unacked.removeFirst()[1];
+		}
+		if (offset != -1) {
+			progress.ack(partition, offset);
+		}
+	}
+
+	/**
+	 * 使用线程池执行rdb同步任务的方法<br>
+	 * 每个分区一个线程 等待所有任务执行完成
+	 * 
+	 * @param senders
+	 *            同步任务 返回成功同步的命令数量
+	 * @param expectedCount
+	 *            应同步的命令数量 小于0时不检查
+	 * @throws RedisProtocolException
+	 *             有同步任务失败时抛出该异常
+	 */
+	private void runRDBSenders(List<Callable<Integer>> senders, int expectedCount) throws RedisProtocolException {
+		runRDBSenders(senders, expectedCount, null);
+	}
+
+	/**
+	 * 使用线程池执行rdb同步任务的方法<br>
+	 * 每个分区一个线程 等待所有任务执行完成<br>
+	 * 有同步进度时按设置的间隔保存断点 结束后保存最终的断点<br>
+	 * 任意一个任务失败时停止其他任务并抛出异常 rdb没有全部同步时不能继续执行之后的复制流
+	 * 
+	 * @param senders
+	 *            同步任务 返回成功同步的命令数量
+	 * @param expectedCount
+	 *            应同步的命令数量 小于0时不检查
+	 * @param progress
+	 *            rdb文件同步进度 为null时不保存断点
+	 * @throws RedisProtocolException
+	 *             有同步任务失败时抛出该异常
+	 */
+	private void runRDBSenders(List<Callable<Integer>> senders, int expectedCount, RedisRDBProgress progress)
+			throws RedisProtocolException {
+		// 没有需要同步的分区时 例如rdb中的key全部过期 不创建线程池
+		if (senders.isEmpty()) {
+			saveRDBCheckpoint(progress, true);
+			return;
+		}
+		// 开辟对应连接数的线程池 每个分区一个线程
+		ExecutorService executorService = ProtocolSyncExecutors.newSenderExecutor(rdbSyncExecutorMode,
+				senders.size(), "RDB-Sync-Sender-Thread");
+		CompletionService<Integer> execcomp = new ExecutorCompletionService<Integer>(executorService);
+		try {
+			for (Callable<Integer> sender : senders) {
+				// 交给线程池执行同步
+				execcomp.submit(sender);
 			}
 
 			// 检查响应结果
-
 			int result = 0;
-			for (int i = 0; i < pageCount; i++) {
-				result += execcomp.take().get();
+			int finished = 0;
+			while (finished < senders.size()) {
+				Future<Integer> future;
+				if (progress == null) {
+					future = execcomp.take();
+				} else {
+					// 等待期间按间隔保存断点
+					future = execcomp.poll(checkpointInterval, TimeUnit.MILLISECONDS);
+					if (future == null) {
+						saveRDBCheckpoint(progress, false);
+					}
+				}
+				if (future != null) {
+					finished++;
+					result += future.get();
+				}
 			}
-			if (result != commandCount) {
-				logger.error("同步RDB失败，应同步命令数：" + commandCount + " 实际同步命令数：" + result);
+			if (expectedCount >= 0 && result != expectedCount) {
+				throw new RedisProtocolException("同步RDB失败，应同步命令数：" + expectedCount + " 实际同步命令数：" + result);
 			}
-		} catch (InterruptedException e1) {
-			logger.error(e1.getMessage(), e1);
-		} catch (ExecutionException e1) {
-			logger.error(e1.getMessage(), e1);
+			logger.info("同步RDB完成 同步命令数：" + result);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RedisProtocolException("等待RDB同步任务完成时线程被中断", e);
+		} catch (ExecutionException e) {
+			throw new RedisProtocolException("同步RDB失败：" + e.getCause().getMessage(), e.getCause());
 		} finally {
-			executorService.shutdown();
+			// 有任务失败时停止其他分区
+			executorService.shutdownNow();
+			saveRDBCheckpoint(progress, true);
+		}
+	}
+
+	/**
+	 * 按key将rdb数据分区的方法<br>
+	 * 每个分区中保留数据库编号 同一个key总是分配到同一个分区
+	 * 
+	 * @param redisDBs
+	 *            rdb中的数据库列表
+	 * @param partitionCount
+	 *            分区数量
+	 * @return 分区后的数据库列表 不包含空的数据库以及空的分区
+	 */
+	static List<List<RedisDB>> partitionDBs(Collection<RedisDB> redisDBs, int partitionCount) {
+		int count = Math.max(1, partitionCount);
+		List<List<RedisDB>> partitions = new ArrayList<List<RedisDB>>(count);
+		for (int i = 0; i < count; i++) {
+			partitions.add(new ArrayList<RedisDB>());
+		}
+		for (RedisDB redisDB : redisDBs) {
+			RedisDB[] current = new RedisDB[count];
+			for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+				byte[] key = rdbCommand.getKey().getBuffer();
+				int index = (Arrays.hashCode(key) & Integer.MAX_VALUE) % count;
+				if (current[index] == null) {
+					current[index] = new RedisDB(redisDB.getNum());
+					partitions.get(index).add(current[index]);
+				}
+				current[index].addCommand(rdbCommand);
+			}
+		}
+		List<List<RedisDB>> result = new ArrayList<List<RedisDB>>(count);
+		for (List<RedisDB> partition : partitions) {
+			if (!partition.isEmpty()) {
+				result.add(partition);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 按key将命令列表分区的方法<br>
+	 * SELECT命令会复制到每个分区 保证分区内数据库选择正确<br>
+	 * 没有参数的命令放在第一个分区
+	 * 
+	 * @param commands
+	 *            命令列表
+	 * @param partitionCount
+	 *            分区数量
+	 * @return 分区后的命令列表 不包含空的分区
+	 */
+	static List<List<RedisCommand>> partitionCommands(List<RedisCommand> commands, int partitionCount) {
+		int count = Math.max(1, partitionCount);
+		List<List<RedisCommand>> partitions = new ArrayList<List<RedisCommand>>(count);
+		for (int i = 0; i < count; i++) {
+			partitions.add(new ArrayList<RedisCommand>());
+		}
+		for (RedisCommand command : commands) {
+			if (SELECT.equals(command.getCommand())) {
+				for (List<RedisCommand> partition : partitions) {
+					partition.add(command);
+				}
+			} else if (command.getValues().isEmpty()) {
+				partitions.get(0).add(command);
+			} else {
+				byte[] key = command.getValues().get(0).getData();
+				int index = (Arrays.hashCode(key) & Integer.MAX_VALUE) % count;
+				partitions.get(index).add(command);
+			}
+		}
+		// 去掉只有SELECT命令的分区
+		List<List<RedisCommand>> result = new ArrayList<List<RedisCommand>>(count);
+		for (List<RedisCommand> partition : partitions) {
+			for (RedisCommand command : partition) {
+				if (!SELECT.equals(command.getCommand())) {
+					result.add(partition);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 发送rdb同步命令的方法 命令没有发送到目标服务器时抛出异常
+	 * 
+	 * @param redisConnection
+	 *            redis连接对象
+	 * @param command
+	 *            需要发送的命令
+	 * @throws RedisProtocolException
+	 *             命令没有发送到目标服务器时抛出该异常
+	 */
+	private void sendRDBCommand(RedisConnection redisConnection, RedisCommand command) throws RedisProtocolException {
+		if (!processCommand(redisConnection, command)) {
+			throw new RedisProtocolException("发送RDB同步命令到目标服务器失败：" + command);
 		}
 	}
 
@@ -281,8 +1849,9 @@ public class ProtocolSyncWorker implements RedisResponseListener {
 	 *            redis连接对象
 	 * @param command
 	 *            需要处理的命令
+	 * @return true为命令已经收到响应或者被拦截器拦截 false为发送命令出现问题
 	 */
-	private void processCommand(RedisConnection redisConnection, RedisCommand command) {
+	private boolean processCommand(RedisConnection redisConnection, RedisCommand command) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("开始处理同步命令：" + command);
 		}
@@ -305,7 +1874,10 @@ public class ProtocolSyncWorker implements RedisResponseListener {
 			logger.info("命令：" + command + " 被拦截器拦截");
 		} catch (RedisProtocolException e) {
 			logger.error("发送命令到目标服务器出现问题", e);
+			checkpointStalled = true;
+			return false;
 		}
+		return true;
 	}
 
 	/**
@@ -360,4 +1932,13 @@ public class ProtocolSyncWorker implements RedisResponseListener {
 	public boolean isRDBFileProcessed() {
 		return isRDBProcessed;
 	}
+
+	/**
+	 * 判断同步管道是否因为同步数据包失败而停止的方法<br>
+	 * 
+	 * @return true为已经停止 需要重启后从同步断点重新同步
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
 }
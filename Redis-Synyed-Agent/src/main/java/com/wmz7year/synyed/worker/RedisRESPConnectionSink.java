@@ -0,0 +1,135 @@
+package com.wmz7year.synyed.worker;
+
+import static com.wmz7year.synyed.constant.RedisCommandSymbol.ERR;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.net.RedisConnection;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+import com.wmz7year.synyed.parser.entry.RedisRESPSink;
+
+/**
+ * 将RESP格式数据直接发送到目标Redis连接的输出目标<br>
+ * 缓冲区通过连接的分配器分配 使用缓存的分配器时发送完成后自动回收<br>
+ * 最多window个缓冲区的响应未读取 超过后先读取最早缓冲区的响应 保证目标Redis的输出不会堆积
+ *
+ * @Title: RedisRESPConnectionSink.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月22日 下午3:26:14
+ * @version V1.0
+ */
+public class RedisRESPConnectionSink implements RedisRESPSink {
+	private static final Logger logger = LoggerFactory.getLogger(RedisRESPConnectionSink.class);
+
+	/**
+	 * 默认未读取响应的缓冲区数量
+	 */
+	public static final int DEFAULT_WINDOW = 4;
+
+	/**
+	 * 目标Redis连接
+	 */
+	private final RedisConnection connection;
+	/**
+	 * 未读取响应的缓冲区数量上限
+	 */
+	private final int window;
+	/**
+	 * 当前分配的缓冲区
+	 */
+	private IoBuffer current;
+	/**
+	 * 已发送但是未读取响应的各缓冲区命令数量
+	 */
+	private final LinkedList<Integer> inflight = new LinkedList<Integer>();
+	/**
+	 * 读取到的响应数量
+	 */
+	private long responseCount;
+	/**
+	 * 读取到的错误响应数量
+	 */
+	private long errorCount;
+
+	public RedisRESPConnectionSink(RedisConnection connection) {
+		this(connection, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * @param connection
+	 *            目标Redis连接
+	 * @param window
+	 *            未读取响应的缓冲区数量上限
+	 */
+	public RedisRESPConnectionSink(RedisConnection connection, int window) {
+		this.connection = connection;
+		this.window = Math.max(1, window);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisRESPSink#allocate(int)
+	 */
+	@Override
+	public ByteBuffer allocate(int minCapacity) {
+		current = connection.allocateBuffer(minCapacity);
+		return current.buf();
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisRESPSink#write(java.nio.
+	 * ByteBuffer, int)
+	 */
+	@Override
+	public void write(ByteBuffer buffer, int commandCount) throws Exception {
+		IoBuffer data = current;
+		if (data == null || data.buf() != buffer) {
+			data = IoBuffer.wrap(buffer);
+		}
+		current = null;
+		connection.writeEncodedCommands(data);
+		inflight.add(commandCount);
+		while (inflight.size() > window) {
+			readResponses(inflight.removeFirst());
+		}
+	}
+
+	/**
+	 * 读取所有未读取的响应的方法
+	 * 
+	 * @throws RedisProtocolException
+	 *             读取出现问题时抛出该异常
+	 */
+	public void finish() throws RedisProtocolException {
+		while (!inflight.isEmpty()) {
+			readResponses(inflight.removeFirst());
+		}
+	}
+
+	private void readResponses(int count) throws RedisProtocolException {
+		if (count == 0) {
+			return;
+		}
+		for (RedisPacket response : connection.readResponses(count)) {
+			responseCount++;
+			if (ERR.equals(response.getCommand())) {
+				errorCount++;
+				logger.error("执行Redis命令失败 - " + new String(response.getData()));
+			}
+		}
+	}
+
+	public long getResponseCount() {
+		return responseCount;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+}
@@ -0,0 +1,211 @@
+package com.wmz7year.synyed.worker.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 相邻命令参数合并器<br>
+ * 批量中连续的不带参数的SET合并为MSET<br>
+ * 同一个key连续的SADD、不带参数的ZADD、RPUSH、LPUSH合并为一条多参数命令<br>
+ * 只合并紧挨着的命令 执行结果与原命令依次执行一致<br>
+ * 合并后命令的参数数量与数据字节数不超过设置的上限
+ *
+ * @Title: RedisAdjacentCommandMerger.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 上午9:47:30
+ * @version V1.0
+ */
+public class RedisAdjacentCommandMerger implements RedisCommandBatchOptimizer {
+	/**
+	 * 默认合并后命令最多包含的参数数量
+	 */
+	public static final int DEFAULT_MAX_ARGS = 512;
+	/**
+	 * 默认合并后命令最多包含的数据字节数
+	 */
+	public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+	/**
+	 * sorted set分数格式 不是分数的参数说明ZADD带有NX/XX/CH等参数
+	 */
+	private static final Pattern SCORE_PATTERN = Pattern
+			.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?|[-+]?(?i:inf)");
+
+	/**
+	 * 合并后命令最多包含的参数数量
+	 */
+	private final int maxArgs;
+	/**
+	 * 合并后命令最多包含的数据字节数
+	 */
+	private final int maxBytes;
+
+	/**
+	 * 合并掉的命令总数
+	 */
+	private long mergedCount;
+
+	public RedisAdjacentCommandMerger() {
+		this(DEFAULT_MAX_ARGS, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param maxArgs
+	 *            合并后命令最多包含的参数数量
+	 * @param maxBytes
+	 *            合并后命令最多包含的数据字节数
+	 */
+	public RedisAdjacentCommandMerger(int maxArgs, int maxBytes) {
+		if (maxArgs < 2 || maxBytes <= 0) {
+			throw new IllegalArgumentException("maxArgs:" + maxArgs + " maxBytes:" + maxBytes);
+		}
+		this.maxArgs = maxArgs;
+		this.maxBytes = maxBytes;
+	}
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.worker.batch.RedisCommandBatchOptimizer#optimize(java
+	 * .util.List)
+	 */
+	@Override
+	public List<RedisCommand> optimize(List<RedisCommand> commands) {
+		int size = commands.size();
+		if (size < 2) {
+			return commands;
+		}
+		List<RedisCommand> result = new ArrayList<RedisCommand>(size);
+		int merged = 0;
+		int i = 0;
+		while (i < size) {
+			RedisCommand first = commands.get(i);
+			String name = getMergeName(first);
+			if (name == null) {
+				result.add(first);
+				i++;
+				continue;
+			}
+			// 找出可以与第一条命令合并的连续命令
+			boolean mset = "MSET".equals(name);
+			int args = first.getValues().size();
+			int bytes = first.getSize() - first.getCommand().length();
+			int end = i + 1;
+			while (end < size) {
+				RedisCommand next = commands.get(end);
+				if (!name.equals(getMergeName(next)) || !sameGroup(name, first, next)) {
+					break;
+				}
+				// 除MSET外合并后只保留一个key
+				int nextArgs = mset ? 2 : next.getValues().size() - 1;
+				int nextBytes = next.getSize() - next.getCommand().length();
+				if (!mset) {
+					nextBytes -= next.getValues().get(0).getLength();
+				}
+				if (args + nextArgs > maxArgs || bytes + nextBytes > maxBytes) {
+					break;
+				}
+				args += nextArgs;
+				bytes += nextBytes;
+				end++;
+			}
+			if (end - i == 1) {
+				result.add(first);
+			} else {
+				result.add(merge(name, commands.subList(i, end)));
+				merged += end - i - 1;
+			}
+			i = end;
+		}
+		if (merged == 0) {
+			return commands;
+		}
+		mergedCount += merged;
+		return result;
+	}
+
+	/**
+	 * 获取命令合并后名称的方法
+	 *
+	 * @return 合并后的命令名称 不能合并的命令返回null
+	 */
+	private String getMergeName(RedisCommand command) {
+		String name = RedisCommandKeys.getName(command);
+		List<RedisCommandData> values = command.getValues();
+		if ("SET".equals(name)) {
+			return values.size() == 2 ? "MSET" : null;
+		}
+		if ("SADD".equals(name) || "RPUSH".equals(name) || "LPUSH".equals(name)) {
+			return values.size() >= 2 ? name : null;
+		}
+		if ("ZADD".equals(name)) {
+			// 带NX/XX/CH/INCR等参数的ZADD不合并
+			if (values.size() < 3 || values.size() % 2 == 0) {
+				return null;
+			}
+			for (int i = 1; i < values.size(); i += 2) {
+				if (!isScore(values.get(i))) {
+					return null;
+				}
+			}
+			return name;
+		}
+		return null;
+	}
+
+	private boolean isScore(RedisCommandData data) {
+		return SCORE_PATTERN.matcher(data.getContent()).matches();
+	}
+
+	/**
+	 * 判断两条命令是否可以合并的方法<br>
+	 * MSET不要求同一个key 其他命令需要是同一个key
+	 */
+	private boolean sameGroup(String name, RedisCommand first, RedisCommand next) {
+		if ("MSET".equals(name)) {
+			return true;
+		}
+		return RedisCommandKeys.toKey(first.getValues().get(0)).equals(
+				RedisCommandKeys.toKey(next.getValues().get(0)));
+	}
+
+	/**
+	 * 合并命令的方法
+	 *
+	 * @param name
+	 *            合并后的命令名称
+	 * @param group
+	 *            需要合并的连续命令
+	 * @return 合并后的命令
+	 */
+	private RedisCommand merge(String name, List<RedisCommand> group) {
+		RedisCommand command = new RedisCommand(name);
+		if ("MSET".equals(name)) {
+			for (RedisCommand redisCommand : group) {
+				command.addValue(redisCommand.getValues().get(0));
+				command.addValue(redisCommand.getValues().get(1));
+			}
+			return command;
+		}
+		command.addValue(group.get(0).getValues().get(0));
+		for (RedisCommand redisCommand : group) {
+			List<RedisCommandData> values = redisCommand.getValues();
+			for (int i = 1; i < values.size(); i++) {
+				command.addValue(values.get(i));
+			}
+		}
+		return command;
+	}
+
+	/**
+	 * 获取合并掉的命令总数的方法
+	 *
+	 * @return 命令总数
+	 */
+	public long getMergedCount() {
+		return mergedCount;
+	}
+}
@@ -0,0 +1,29 @@
+package com.wmz7year.synyed.worker.batch;
+
+import java.util.List;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * 批量命令优化器接口<br>
+ * 目标服务器执行落后、命令在队列中积压时 同步线程一次取出多条命令<br>
+ * 发送前依次交给各个优化器处理 优化后的命令执行结果需要与原命令按顺序执行的结果一致
+ *
+ * @Title: RedisCommandBatchOptimizer.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 上午10:12:36
+ * @version V1.0
+ */
+public interface RedisCommandBatchOptimizer {
+
+	/**
+	 * 优化批量命令的方法<br>
+	 * 命令已经经过拦截器处理 可以直接修改传入的列表或者返回新的列表
+	 *
+	 * @param commands
+	 *            按执行顺序排列的命令列表
+	 * @return 优化后的命令列表
+	 */
+	public List<RedisCommand> optimize(List<RedisCommand> commands);
+}
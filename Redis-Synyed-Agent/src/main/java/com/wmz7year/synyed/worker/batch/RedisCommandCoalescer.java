@@ -0,0 +1,166 @@
+package com.wmz7year.synyed.worker.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 同一个key的覆盖写命令合并器<br>
+ * 批量中同一个key被后面的命令完整覆盖时删除前面的写命令 只保留最后一次写入<br>
+ * 覆盖命令包括不带条件的SET/SETEX/PSETEX(覆盖整个key)、单个field的HSET/HMSET(覆盖该field)以及EXPIREAT/PEXPIREAT(覆盖过期时间)<br>
+ * 两条命令之间有其他涉及该key的命令时不合并 遇到无法识别的命令(SELECT、MULTI等)时清空记录<br>
+ * 只删除命令不调整顺序 剩余命令之间的相对顺序保持不变
+ *
+ * @Title: RedisCommandCoalescer.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 上午11:03:18
+ * @version V1.0
+ */
+public class RedisCommandCoalescer implements RedisCommandBatchOptimizer {
+	/**
+	 * 覆盖整个key
+	 */
+	private static final String SLOT_ALL = "*";
+	/**
+	 * 覆盖key的值
+	 */
+	private static final String SLOT_VALUE = "V";
+	/**
+	 * 覆盖key的过期时间
+	 */
+	private static final String SLOT_TTL = "T";
+	/**
+	 * 覆盖hash中的一个field 后面接field内容
+	 */
+	private static final String SLOT_FIELD = "F";
+
+	/**
+	 * 合并删除的命令总数
+	 */
+	private long coalescedCount;
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.worker.batch.RedisCommandBatchOptimizer#optimize(java
+	 * .util.List)
+	 */
+	@Override
+	public List<RedisCommand> optimize(List<RedisCommand> commands) {
+		int size = commands.size();
+		if (size < 2) {
+			return commands;
+		}
+		// 从后向前遍历 记录每个key在后面被完整覆盖的部分
+		Map<String, Set<String>> overwritten = new HashMap<String, Set<String>>();
+		boolean[] dropped = new boolean[size];
+		int droppedCount = 0;
+		for (int i = size - 1; i >= 0; i--) {
+			RedisCommand command = commands.get(i);
+			List<String> keys = RedisCommandKeys.getKeys(command);
+			if (keys == null) {
+				overwritten.clear();
+				continue;
+			}
+			if (keys.isEmpty()) {
+				continue;
+			}
+			String name = RedisCommandKeys.getName(command);
+			String slot = getWriteSlot(name, command);
+			if (slot == null) {
+				for (String key : keys) {
+					overwritten.remove(key);
+				}
+				continue;
+			}
+			String key = keys.get(0);
+			Set<String> slots = overwritten.get(key);
+			if (slots != null && (slots.contains(SLOT_ALL) || slots.contains(slot))) {
+				dropped[i] = true;
+				droppedCount++;
+				continue;
+			}
+			if (!isOverwrite(name, command)) {
+				overwritten.remove(key);
+			} else if (SLOT_VALUE.equals(slot)) {
+				slots = new HashSet<String>();
+				slots.add(SLOT_ALL);
+				overwritten.put(key, slots);
+			} else {
+				if (slots == null) {
+					slots = new HashSet<String>();
+					overwritten.put(key, slots);
+				}
+				slots.add(slot);
+			}
+		}
+		if (droppedCount == 0) {
+			return commands;
+		}
+		coalescedCount += droppedCount;
+		List<RedisCommand> result = new ArrayList<RedisCommand>(size - droppedCount);
+		for (int i = 0; i < size; i++) {
+			if (!dropped[i]) {
+				result.add(commands.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 获取命令写入的部分的方法<br>
+	 * 只有写入的部分被后面的命令完整覆盖时才可以删除该命令
+	 *
+	 * @return 写入的部分 不是简单的覆盖写命令时返回null
+	 */
+	private String getWriteSlot(String name, RedisCommand command) {
+		int count = command.getValues().size();
+		if ("SET".equals(name) || "SETNX".equals(name) || "GETSET".equals(name)) {
+			return count >= 2 ? SLOT_VALUE : null;
+		}
+		if ("SETEX".equals(name) || "PSETEX".equals(name)) {
+			return count == 3 ? SLOT_VALUE : null;
+		}
+		if ("HSET".equals(name) || "HMSET".equals(name) || "HSETNX".equals(name)) {
+			return count == 3 ? SLOT_FIELD + RedisCommandKeys.toKey(command.getValues().get(1)) : null;
+		}
+		if ("EXPIREAT".equals(name) || "PEXPIREAT".equals(name)) {
+			return count == 2 ? SLOT_TTL : null;
+		}
+		return null;
+	}
+
+	/**
+	 * 判断命令是否无条件覆盖写入的部分的方法<br>
+	 * 带NX/XX/KEEPTTL/GET参数的SET以及SETNX、HSETNX等条件写入只能被覆盖 不能覆盖前面的命令
+	 */
+	private boolean isOverwrite(String name, RedisCommand command) {
+		if ("SET".equals(name)) {
+			List<RedisCommandData> values = command.getValues();
+			for (int i = 2; i < values.size(); i++) {
+				String option = RedisCommandKeys.toKey(values.get(i)).toUpperCase();
+				if ("NX".equals(option) || "XX".equals(option) || "KEEPTTL".equals(option) || "GET".equals(option)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return "SETEX".equals(name) || "PSETEX".equals(name) || "HSET".equals(name) || "HMSET".equals(name)
+				|| "EXPIREAT".equals(name) || "PEXPIREAT".equals(name);
+	}
+
+	/**
+	 * 获取合并删除的命令总数的方法
+	 *
+	 * @return 命令总数
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount;
+	}
+}
@@ -0,0 +1,104 @@
+package com.wmz7year.synyed.worker.batch;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 获取命令涉及的key的工具类<br>
+ * 只识别复制流中常见的写命令 无法识别的命令(SELECT、MULTI、EXEC、FLUSHDB、EVAL等)返回null<br>
+ * 批量优化器遇到无法识别的命令时需要把它当作屏障 不能跨过它调整任何命令
+ *
+ * @Title: RedisCommandKeys.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 上午10:26:51
+ * @version V1.0
+ */
+public final class RedisCommandKeys {
+	/**
+	 * key转换为字符串使用的编码 单字节编码保证不同的二进制key不会得到相同的字符串
+	 */
+	public static final Charset KEY_CHARSET = Charset.forName("ISO-8859-1");
+
+	/**
+	 * 第一个参数为key并且只涉及这一个key的命令
+	 */
+	private static final Set<String> SINGLE_KEY_COMMANDS = new HashSet<String>(Arrays.asList("SET", "SETNX",
+			"SETEX", "PSETEX", "GETSET", "GETDEL", "GETEX", "APPEND", "SETRANGE", "SETBIT", "INCR", "DECR", "INCRBY",
+			"DECRBY", "INCRBYFLOAT", "HSET", "HSETNX", "HMSET", "HDEL", "HINCRBY", "HINCRBYFLOAT", "LPUSH", "RPUSH",
+			"LPUSHX", "RPUSHX", "LPOP", "RPOP", "LSET", "LREM", "LTRIM", "LINSERT", "SADD", "SREM", "SPOP", "ZADD",
+			"ZREM", "ZINCRBY", "ZREMRANGEBYSCORE", "ZREMRANGEBYRANK", "ZREMRANGEBYLEX", "ZPOPMIN", "ZPOPMAX",
+			"PFADD", "EXPIRE", "PEXPIRE", "EXPIREAT", "PEXPIREAT", "PERSIST", "RESTORE", "XADD", "XDEL", "XTRIM"));
+
+	/**
+	 * 所有参数都是key的命令
+	 */
+	private static final Set<String> ALL_KEY_COMMANDS = new HashSet<String>(Arrays.asList("DEL", "UNLINK"));
+
+	/**
+	 * 不涉及任何key的命令
+	 */
+	private static final Set<String> NO_KEY_COMMANDS = new HashSet<String>(Arrays.asList("PING"));
+
+	private RedisCommandKeys() {
+	}
+
+	/**
+	 * 获取大写命令名称的方法
+	 *
+	 * @param command
+	 *            命令对象
+	 * @return 大写的命令名称
+	 */
+	public static String getName(RedisCommand command) {
+		return command.getCommand().toUpperCase();
+	}
+
+	/**
+	 * 获取命令涉及的key的方法
+	 *
+	 * @param command
+	 *            命令对象
+	 * @return key列表 不涉及key时返回空列表 无法识别的命令返回null
+	 */
+	public static List<String> getKeys(RedisCommand command) {
+		String name = getName(command);
+		List<RedisCommandData> values = command.getValues();
+		if (NO_KEY_COMMANDS.contains(name)) {
+			return Collections.emptyList();
+		}
+		if (SINGLE_KEY_COMMANDS.contains(name)) {
+			if (values.isEmpty()) {
+				return null;
+			}
+			return Collections.singletonList(toKey(values.get(0)));
+		}
+		if (ALL_KEY_COMMANDS.contains(name)) {
+			List<String> keys = new ArrayList<String>(values.size());
+			for (RedisCommandData value : values) {
+				keys.add(toKey(value));
+			}
+			return keys;
+		}
+		return null;
+	}
+
+	/**
+	 * 将命令数据转换为用于比较的字符串的方法
+	 *
+	 * @param data
+	 *            命令数据
+	 * @return 字符串
+	 */
+	public static String toKey(RedisCommandData data) {
+		return new String(data.getData(), KEY_CHARSET);
+	}
+}
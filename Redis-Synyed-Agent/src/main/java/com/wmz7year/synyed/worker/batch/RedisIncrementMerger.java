@@ -0,0 +1,209 @@
+package com.wmz7year.synyed.worker.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 自增命令合并器<br>
+ * 批量中对同一个key(或者同一个hash field、sorted set member)的INCR/DECR/INCRBY/DECRBY/HINCRBY/ZINCRBY<br>
+ * 合并为一条增量为总和的INCRBY/HINCRBY/ZINCRBY 放在第一条命令的位置<br>
+ * 两条命令之间有其他涉及该key的命令时不合并 遇到无法识别的命令时结束所有合并<br>
+ * 只合并增量方向相同的命令 增量总和超出long范围或者方向改变时从当前命令开始新的合并 ZINCRBY只合并整数增量<br>
+ * 方向相同时逐条执行的中间值都在起止值之间 合并后的命令执行成功时与逐条执行的结果一致<br>
+ * 方向不同时中间值可能超出目标的范围 逐条执行会有命令失败 合并后却成功 因此不合并<br>
+ * 合并后的命令超出目标的范围时整条命令失败 逐条执行时超出范围之前的命令仍然会成功 这是合并带来的差异<br>
+ * 只有一条命令的分组保持原命令不变
+ *
+ * @Title: RedisIncrementMerger.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 下午4:18:05
+ * @version V1.0
+ */
+public class RedisIncrementMerger implements RedisCommandBatchOptimizer {
+	/**
+	 * 合并掉的命令总数
+	 */
+	private long mergedCount;
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.worker.batch.RedisCommandBatchOptimizer#optimize(java
+	 * .util.List)
+	 */
+	@Override
+	public List<RedisCommand> optimize(List<RedisCommand> commands) {
+		if (commands.size() < 2) {
+			return commands;
+		}
+		List<RedisCommand> result = new ArrayList<RedisCommand>(commands.size());
+		List<Increment> merged = new ArrayList<Increment>();
+		// key -> (自增目标 -> 正在合并的分组)
+		Map<String, Map<String, Increment>> open = new HashMap<String, Map<String, Increment>>();
+		for (RedisCommand command : commands) {
+			List<String> keys = RedisCommandKeys.getKeys(command);
+			if (keys == null) {
+				open.clear();
+				result.add(command);
+				continue;
+			}
+			Increment increment = keys.isEmpty() ? null : parse(command);
+			if (increment == null) {
+				for (String key : keys) {
+					open.remove(key);
+				}
+				result.add(command);
+				continue;
+			}
+			String key = keys.get(0);
+			Map<String, Increment> targets = open.get(key);
+			if (targets == null) {
+				targets = new HashMap<String, Increment>();
+				open.put(key, targets);
+			}
+			Increment current = targets.get(increment.target);
+			if (current != null && current.add(increment.delta)) {
+				if (current.count == 2) {
+					merged.add(current);
+				}
+				continue;
+			}
+			increment.index = result.size();
+			targets.put(increment.target, increment);
+			result.add(command);
+		}
+		if (merged.isEmpty()) {
+			return commands;
+		}
+		for (Increment increment : merged) {
+			result.set(increment.index, increment.toCommand(result.get(increment.index)));
+			mergedCount += increment.count - 1;
+		}
+		return result;
+	}
+
+	/**
+	 * 解析自增命令的方法
+	 *
+	 * @return 自增信息 不是可以合并的自增命令时返回null
+	 */
+	private Increment parse(RedisCommand command) {
+		String name = RedisCommandKeys.getName(command);
+		List<RedisCommandData> values = command.getValues();
+		try {
+			if ("INCR".equals(name) && values.size() == 1) {
+				return new Increment(name, "", 1);
+			} else if ("DECR".equals(name) && values.size() == 1) {
+				return new Increment(name, "", -1);
+			} else if ("INCRBY".equals(name) && values.size() == 2) {
+				return new Increment(name, "", parseLong(values.get(1)));
+			} else if ("DECRBY".equals(name) && values.size() == 2) {
+				long delta = parseLong(values.get(1));
+				return delta == Long.MIN_VALUE ? null : new Increment(name, "", -delta);
+			} else if ("HINCRBY".equals(name) && values.size() == 3) {
+				return new Increment(name, "H" + RedisCommandKeys.toKey(values.get(1)), parseLong(values.get(2)));
+			} else if ("ZINCRBY".equals(name) && values.size() == 3) {
+				return new Increment(name, "Z" + RedisCommandKeys.toKey(values.get(2)), parseLong(values.get(1)));
+			}
+		} catch (NumberFormatException e) {
+			// 增量不是整数时不合并
+		}
+		return null;
+	}
+
+	private long parseLong(RedisCommandData data) {
+		return Long.parseLong(data.getContent());
+	}
+
+	/**
+	 * 获取合并掉的命令总数的方法
+	 *
+	 * @return 命令总数
+	 */
+	public long getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * 正在合并的自增分组
+	 */
+	private static class Increment {
+		/**
+		 * 第一条命令的名称
+		 */
+		private final String name;
+		/**
+		 * 自增目标 key本身为空字符串 hash field与sorted set member带前缀
+		 */
+		private final String target;
+		/**
+		 * 增量总和
+		 */
+		private long delta;
+		/**
+		 * 合并的命令数量
+		 */
+		private int count = 1;
+		/**
+		 * 第一条命令在结果中的位置
+		 */
+		private int index;
+
+		private Increment(String name, String target, long delta) {
+			this.name = name;
+			this.target = target;
+			this.delta = delta;
+		}
+
+		/**
+		 * 累加增量的方法
+		 *
+		 * @return 增量方向不同或者累加后超出long范围时返回false 增量总和不变
+		 */
+		private boolean add(long value) {
+			if ((delta < 0 && value > 0) || (delta > 0 && value < 0)) {
+				return false;
+			}
+			long sum = delta + value;
+			if (((delta ^ sum) & (value ^ sum)) < 0) {
+				return false;
+			}
+			delta = sum;
+			count++;
+			return true;
+		}
+
+		/**
+		 * 生成合并后命令的方法
+		 *
+		 * @param first
+		 *            分组中的第一条命令
+		 * @return 合并后的命令
+		 */
+		private RedisCommand toCommand(RedisCommand first) {
+			List<RedisCommandData> values = first.getValues();
+			RedisCommand command;
+			if ("HINCRBY".equals(name)) {
+				command = new RedisCommand("HINCRBY");
+				command.addValue(values.get(0));
+				command.addValue(values.get(1));
+				command.addValue(String.valueOf(delta));
+			} else if ("ZINCRBY".equals(name)) {
+				command = new RedisCommand("ZINCRBY");
+				command.addValue(values.get(0));
+				command.addValue(String.valueOf(delta));
+				command.addValue(values.get(2));
+			} else {
+				command = new RedisCommand("INCRBY");
+				command.addValue(values.get(0));
+				command.addValue(String.valueOf(delta));
+			}
+			return command;
+		}
+	}
+}
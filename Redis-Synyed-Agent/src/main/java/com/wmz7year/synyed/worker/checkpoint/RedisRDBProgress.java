@@ -0,0 +1,84 @@
+package com.wmz7year.synyed.worker.checkpoint;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * rdb文件并行同步的进度<br>
+ * 每个分区按rdb中的顺序同步key 记录分区中已经确认的最后一个key结束的位置<br>
+ * 所有分区中最小的位置之前的key都已经确认同步 可以作为断点位置<br>
+ * 断点之后也可能有其他分区已经同步的key 继续同步时需要覆盖写入
+ *
+ * @Title: RedisRDBProgress.java
+ * @Package com.wmz7year.synyed.worker.checkpoint
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月27日 上午11:03:48
+ * @version V1.0
+ */
+public class RedisRDBProgress {
+	/**
+	 * 分区同步完成的标识
+	 */
+	private static final long FINISHED = Long.MAX_VALUE;
+
+	/**
+	 * 各分区已经确认的最后一个key结束的位置
+	 */
+	private final AtomicLongArray offsets;
+
+	/**
+	 * @param partitionCount
+	 *            分区数量
+	 * @param startOffset
+	 *            开始同步的位置 之前的key都已经同步过
+	 */
+	public RedisRDBProgress(int partitionCount, long startOffset) {
+		offsets = new AtomicLongArray(partitionCount);
+		for (int i = 0; i < partitionCount; i++) {
+			offsets.set(i, startOffset);
+		}
+	}
+
+	/**
+	 * 确认分区中一个key已经同步的方法
+	 *
+	 * @param partition
+	 *            分区编号
+	 * @param offset
+	 *            key在rdb文件中结束的位置
+	 */
+	public void ack(int partition, long offset) {
+		offsets.set(partition, offset);
+	}
+
+	/**
+	 * 分区全部同步完成的方法
+	 *
+	 * @param partition
+	 *            分区编号
+	 */
+	public void finish(int partition) {
+		offsets.set(partition, FINISHED);
+	}
+
+	/**
+	 * 获取断点位置的方法
+	 *
+	 * @return 所有分区中最小的已确认位置
+	 */
+	public long getOffset() {
+		long offset = FINISHED;
+		for (int i = 0; i < offsets.length(); i++) {
+			offset = Math.min(offset, offsets.get(i));
+		}
+		return offset;
+	}
+
+	/**
+	 * 判断是否所有分区都已经同步完成的方法
+	 *
+	 * @return true为全部完成
+	 */
+	public boolean isFinished() {
+		return getOffset() == FINISHED;
+	}
+}
@@ -0,0 +1,288 @@
+package com.wmz7year.synyed.worker.checkpoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 同步断点信息<br>
+ * 保存源服务器的复制id与全量同步时的复制偏移量、rdb文件中已经同步的位置以及之后已经同步的复制流长度<br>
+ * 全量同步的rdb文件与断点文件保存在同一个目录中 重启后从断点位置继续同步rdb文件<br>
+ * 然后使用PSYNC从已经同步的复制偏移量继续同步 不需要源服务器重新生成rdb文件<br>
+ * 断点文件先写入临时文件并刷到磁盘 再替换原文件 保证任何时候断点文件都是完整的
+ *
+ * @Title: RedisSyncCheckpoint.java
+ * @Package com.wmz7year.synyed.worker.checkpoint
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月27日 上午10:12:36
+ * @version V1.0
+ */
+public class RedisSyncCheckpoint {
+	private static final Logger logger = LoggerFactory.getLogger(RedisSyncCheckpoint.class);
+
+	/**
+	 * 断点文件中的属性名称
+	 */
+	private static final String REPL_ID = "repl.id";
+	private static final String REPL_OFFSET = "repl.offset";
+	private static final String RDB_OFFSET = "rdb.offset";
+	private static final String RDB_DONE = "rdb.done";
+	private static final String STREAM_OFFSET = "stream.offset";
+
+	/**
+	 * 断点文件
+	 */
+	private final File file;
+	/**
+	 * 保存的全量同步rdb文件
+	 */
+	private final File rdbFile;
+
+	/**
+	 * 源服务器的复制id 为null时没有可用的断点
+	 */
+	private String replId;
+	/**
+	 * 全量同步时源服务器的复制偏移量
+	 */
+	private long replOffset = -1;
+	/**
+	 * rdb文件中已经同步的最后一个key结束的位置
+	 */
+	private long rdbOffset;
+	/**
+	 * rdb文件是否已经全部同步
+	 */
+	private boolean rdbDone;
+	/**
+	 * rdb文件之后已经同步的复制流长度
+	 */
+	private long streamOffset;
+
+	/**
+	 * @param dir
+	 *            保存断点文件与rdb文件的目录
+	 * @param name
+	 *            断点名称 每个源服务器使用不同的名称
+	 */
+	public RedisSyncCheckpoint(File dir, String name) {
+		this.file = new File(dir, name + ".checkpoint");
+		this.rdbFile = new File(dir, name + ".rdb");
+	}
+
+	/**
+	 * 读取断点文件的方法
+	 *
+	 * @return true为读取到可以继续同步的断点 false为没有断点或者断点对应的rdb文件已经不存在
+	 * @throws IOException
+	 *             读取文件出现问题时抛出该异常
+	 */
+	public synchronized boolean load() throws IOException {
+		if (!file.exists()) {
+			return false;
+		}
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		replId = properties.getProperty(REPL_ID);
+		replOffset = Long.parseLong(properties.getProperty(REPL_OFFSET, "-1"));
+		rdbOffset = Long.parseLong(properties.getProperty(RDB_OFFSET, "0"));
+		rdbDone = Boolean.parseBoolean(properties.getProperty(RDB_DONE, "false"));
+		streamOffset = Long.parseLong(properties.getProperty(STREAM_OFFSET, "0"));
+		if (replId == null || replOffset < 0) {
+			return false;
+		}
+		if (!rdbDone && !rdbFile.exists()) {
+			logger.warn("断点对应的rdb文件不存在：" + rdbFile);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 保存断点文件的方法
+	 *
+	 * @throws IOException
+	 *             写入文件出现问题时抛出该异常
+	 */
+	public synchronized void save() throws IOException {
+		Properties properties = new Properties();
+		if (replId != null) {
+			properties.setProperty(REPL_ID, replId);
+		}
+		properties.setProperty(REPL_OFFSET, String.valueOf(replOffset));
+		properties.setProperty(RDB_OFFSET, String.valueOf(rdbOffset));
+		properties.setProperty(RDB_DONE, String.valueOf(rdbDone));
+		properties.setProperty(STREAM_OFFSET, String.valueOf(streamOffset));
+
+		FileUtils.forceMkdir(file.getParentFile());
+		File tmpFile = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmpFile);
+		try {
+			properties.store(out, null);
+			out.getFD().sync();
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 开始新的全量同步的方法<br>
+	 * 之前保存的rdb文件与同步位置全部作废
+	 *
+	 * @param replId
+	 *            源服务器的复制id
+	 * @param replOffset
+	 *            全量同步时源服务器的复制偏移量
+	 * @throws IOException
+	 *             保存断点出现问题时抛出该异常
+	 */
+	public synchronized void reset(String replId, long replOffset) throws IOException {
+		this.replId = replId;
+		this.replOffset = replOffset;
+		this.rdbOffset = 0;
+		this.rdbDone = false;
+		this.streamOffset = 0;
+		FileUtils.deleteQuietly(rdbFile);
+		save();
+	}
+
+	/**
+	 * 保存全量同步接收到的rdb文件的方法<br>
+	 * rdb文件移动到断点目录中并且刷到磁盘
+	 *
+	 * @param spoolFile
+	 *            接收到的rdb文件
+	 * @return 保存后的rdb文件
+	 * @throws IOException
+	 *             移动文件出现问题时抛出该异常
+	 */
+	public synchronized File keepRDB(File spoolFile) throws IOException {
+		if (!spoolFile.equals(rdbFile)) {
+			FileUtils.deleteQuietly(rdbFile);
+			FileUtils.moveFile(spoolFile, rdbFile);
+			RandomAccessFile randomAccessFile = new RandomAccessFile(rdbFile, "rw");
+			try {
+				randomAccessFile.getChannel().force(true);
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+		save();
+		return rdbFile;
+	}
+
+	/**
+	 * rdb文件全部同步完成的方法<br>
+	 * 之后不再需要rdb文件 删除后保存断点
+	 *
+	 * @throws IOException
+	 *             保存断点出现问题时抛出该异常
+	 */
+	public synchronized void rdbCompleted() throws IOException {
+		rdbDone = true;
+		FileUtils.deleteQuietly(rdbFile);
+		save();
+	}
+
+	/**
+	 * 记录已经同步的复制流长度的方法
+	 *
+	 * @param length
+	 *            新同步的复制流长度
+	 */
+	public synchronized void streamApplied(long length) {
+		streamOffset += length;
+	}
+
+	/**
+	 * 获取PSYNC请求的复制偏移量的方法<br>
+	 * 为已经同步的最后一个字节的下一个位置
+	 *
+	 * @return 复制偏移量
+	 */
+	public synchronized long getPsyncOffset() {
+		return replOffset + streamOffset + 1;
+	}
+
+	/**
+	 * 获取已经同步的复制偏移量的方法<br>
+	 * 为已经同步的最后一个字节的位置 用于REPLCONF ACK
+	 *
+	 * @return 复制偏移量
+	 */
+	public synchronized long getAckOffset() {
+		return replOffset + streamOffset;
+	}
+
+	/**
+	 * 删除断点文件与rdb文件的方法
+	 */
+	public synchronized void delete() {
+		replId = null;
+		FileUtils.deleteQuietly(file);
+		FileUtils.deleteQuietly(rdbFile);
+	}
+
+	public synchronized String getReplId() {
+		return replId;
+	}
+
+	public synchronized void setReplId(String replId) {
+		this.replId = replId;
+	}
+
+	public synchronized long getReplOffset() {
+		return replOffset;
+	}
+
+	public synchronized long getRdbOffset() {
+		return rdbOffset;
+	}
+
+	public synchronized void setRdbOffset(long rdbOffset) {
+		this.rdbOffset = rdbOffset;
+	}
+
+	public synchronized boolean isRdbDone() {
+		return rdbDone;
+	}
+
+	public synchronized long getStreamOffset() {
+		return streamOffset;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public File getRdbFile() {
+		return rdbFile;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "RedisSyncCheckpoint [replId=" + replId + ", replOffset=" + replOffset + ", rdbOffset=" + rdbOffset
+				+ ", rdbDone=" + rdbDone + ", streamOffset=" + streamOffset + "]";
+	}
+}
@@ -0,0 +1,261 @@
+package com.wmz7year.synyed.worker.spool;
+
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.*;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisErrorPacket;
+import com.wmz7year.synyed.packet.redis.RedisFileBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisIntegerPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * 复制流磁盘缓冲区<br>
+ * 全量同步执行rdb文件期间源服务器的复制流按RESP格式追加写入临时文件 源连接不需要暂停读取<br>
+ * rdb文件执行完成后按写入顺序读出重新解析为数据包 写入与读取可以在不同的线程中同时进行
+ *
+ * @Title: RedisStreamSpool.java
+ * @Package com.wmz7year.synyed.worker.spool
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月28日 上午10:26:41
+ * @version V1.0
+ */
+public class RedisStreamSpool implements Closeable {
+	/**
+	 * 写入与读取文件使用的缓冲区大小
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * 缓冲文件
+	 */
+	private final File file;
+	/**
+	 * 写入缓冲文件的输出流
+	 */
+	private final OutputStream out;
+	/**
+	 * 读取缓冲文件的管道
+	 */
+	private final FileChannel readChannel;
+	/**
+	 * 读取缓冲区
+	 */
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	/**
+	 * 重新解析数据包的解析器
+	 */
+	private final RedisProtocolParser parser = new RedisProtocolParser();
+
+	/**
+	 * 已经写入的数据量 包括输出流中还没有刷到文件的部分
+	 */
+	private long writePosition = 0;
+	/**
+	 * 已经刷到文件的数据量
+	 */
+	private long flushPosition = 0;
+	/**
+	 * 已经读取的数据量
+	 */
+	private long readPosition = 0;
+	/**
+	 * 写入的数据包数量
+	 */
+	private long writeCount = 0;
+	/**
+	 * 读出的数据包数量
+	 */
+	private long readCount = 0;
+
+	/**
+	 * @param dir
+	 *            创建缓冲文件的目录
+	 * @throws IOException
+	 *             创建文件出现问题时抛出该异常
+	 */
+	public RedisStreamSpool(File dir) throws IOException {
+		FileUtils.forceMkdir(dir);
+		this.file = File.createTempFile("stream", ".spool", dir);
+		this.out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		this.readChannel = new RandomAccessFile(file, "r").getChannel();
+	}
+
+	/**
+	 * 写入数据包的方法
+	 *
+	 * @param redisPacket
+	 *            复制流中的数据包
+	 * @throws IOException
+	 *             写入文件出现问题时抛出该异常
+	 */
+	public synchronized void write(RedisPacket redisPacket) throws IOException {
+		writePosition += writePacket(redisPacket, out);
+		writeCount++;
+	}
+
+	/**
+	 * 按写入顺序读取数据包的方法<br>
+	 * 每次最多读取一个缓冲区大小的数据 数据包跨越缓冲区时继续读取直到解析出完整的数据包
+	 *
+	 * @return 读出的数据包 没有未读取的数据时返回空列表
+	 * @throws IOException
+	 *             读取文件出现问题时抛出该异常
+	 * @throws RedisProtocolException
+	 *             解析数据包出现问题时抛出该异常
+	 */
+	public synchronized List<RedisPacket> read() throws IOException, RedisProtocolException {
+		while (readPosition < writePosition) {
+			if (readPosition == flushPosition) {
+				out.flush();
+				flushPosition = writePosition;
+			}
+			readBuffer.clear();
+			readBuffer.limit((int) Math.min(BUFFER_SIZE, flushPosition - readPosition));
+			while (readBuffer.hasRemaining()) {
+				if (readChannel.read(readBuffer, readPosition + readBuffer.position()) < 0) {
+					throw new IOException("复制流缓冲文件长度不足：" + file);
+				}
+			}
+			readBuffer.flip();
+			readPosition += readBuffer.remaining();
+			parser.read(readBuffer);
+			RedisPacket[] packets = parser.getPackets();
+			if (packets != null) {
+				readCount += packets.length;
+				List<RedisPacket> redisPackets = new ArrayList<RedisPacket>(packets.length);
+				Collections.addAll(redisPackets, packets);
+				return redisPackets;
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * 判断写入的数据是否已经全部读出的方法
+	 *
+	 * @return true为全部读出
+	 */
+	public synchronized boolean isDrained() {
+		return readPosition == writePosition;
+	}
+
+	/**
+	 * 获取写入的数据量的方法
+	 *
+	 * @return 数据量
+	 */
+	public synchronized long getSize() {
+		return writePosition;
+	}
+
+	public synchronized long getWriteCount() {
+		return writeCount;
+	}
+
+	public synchronized long getReadCount() {
+		return readCount;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * 关闭并且删除缓冲文件的方法
+	 */
+	@Override
+	public synchronized void close() {
+		IOUtils.closeQuietly(out);
+		IOUtils.closeQuietly(readChannel);
+		FileUtils.deleteQuietly(file);
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "RedisStreamSpool [file=" + file + ", size=" + writePosition + ", writeCount=" + writeCount
+				+ ", readCount=" + readCount + "]";
+	}
+
+	/**
+	 * 将数据包按RESP格式写入输出流的方法<br>
+	 * 内容在临时文件中的字符串从文件拷贝
+	 *
+	 * @param redisPacket
+	 *            数据包
+	 * @param out
+	 *            输出流
+	 * @return 写入的数据量
+	 * @throws IOException
+	 *             写入出现问题时抛出该异常
+	 */
+	static long writePacket(RedisPacket redisPacket, OutputStream out) throws IOException {
+		if (redisPacket instanceof RedisArraysPacket) {
+			RedisArraysPacket arraysPacket = (RedisArraysPacket) redisPacket;
+			List<RedisPacket> packets = arraysPacket.getPackets();
+			long length = writeLine(out, REDIS_PROTOCOL_ARRAY, String.valueOf(packets.size()).getBytes());
+			for (RedisPacket packet : packets) {
+				length += writePacket(packet, out);
+			}
+			return length;
+		}
+		if (redisPacket instanceof RedisFileBulkStringPacket) {
+			// 保存在临时文件中的内容直接从文件拷贝
+			RedisFileBulkStringPacket filePacket = (RedisFileBulkStringPacket) redisPacket;
+			long length = writeLine(out, REDIS_PROTOCOL_BULK_STRINGS, String.valueOf(filePacket.getLength()).getBytes());
+			FileUtils.copyFile(filePacket.getFile(), out);
+			out.write(REDIS_PROTOCOL_CR);
+			out.write(REDIS_PROTOCOL_LF);
+			return length + filePacket.getLength() + 2;
+		}
+		byte[] data = redisPacket.getData();
+		if (redisPacket instanceof RedisBulkStringPacket) {
+			if (data == null) {
+				return writeLine(out, REDIS_PROTOCOL_BULK_STRINGS, "-1".getBytes());
+			}
+			long length = writeLine(out, REDIS_PROTOCOL_BULK_STRINGS, String.valueOf(data.length).getBytes());
+			out.write(data);
+			out.write(REDIS_PROTOCOL_CR);
+			out.write(REDIS_PROTOCOL_LF);
+			return length + data.length + 2;
+		}
+		byte type;
+		if (redisPacket instanceof RedisErrorPacket) {
+			type = REDIS_PROTOCOL_ERRORS;
+		} else if (redisPacket instanceof RedisIntegerPacket) {
+			type = REDIS_PROTOCOL_INTEGERS;
+		} else {
+			type = REDIS_PROTOCOL_SIMPLE_STRING;
+		}
+		return writeLine(out, type, data == null ? new byte[0] : data);
+	}
+
+	private static long writeLine(OutputStream out, byte type, byte[] data) throws IOException {
+		out.write(type);
+		out.write(data);
+		out.write(REDIS_PROTOCOL_CR);
+		out.write(REDIS_PROTOCOL_LF);
+		return data.length + 3;
+	}
+}
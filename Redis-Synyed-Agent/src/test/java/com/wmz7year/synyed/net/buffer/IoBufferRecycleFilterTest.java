@@ -0,0 +1,145 @@
+package com.wmz7year.synyed.net.buffer;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.net.spi.DefaultRedisConnection;
+import com.wmz7year.synyed.support.FakeRedisTarget;
+
+/**
+ * 回收IoBuffer的过滤器测试<br>
+ * 通过真实的连接发送命令 检查编码使用的缓冲区被回收后再次分配
+ *
+ * @Title: IoBufferRecycleFilterTest.java
+ * @Package com.wmz7year.synyed.net.buffer
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午4:20:35
+ * @version V1.0
+ */
+public class IoBufferRecycleFilterTest {
+	private FakeRedisTarget server;
+
+	private PooledIoBufferAllocator previousAllocator;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new FakeRedisTarget();
+		server.start();
+		previousAllocator = DefaultRedisConnection.getDefaultBufferAllocator();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		DefaultRedisConnection.setDefaultBufferAllocator(previousAllocator, false);
+		server.close();
+	}
+
+	/**
+	 * 测试依次发送的命令重复使用同一批缓冲区
+	 */
+	@Test
+	public void testBufferReusedThroughSession() throws Exception {
+		CountingAllocator allocator = new CountingAllocator();
+		DefaultRedisConnection.setDefaultBufferAllocator(allocator, true);
+		RecordingConnection connection = new RecordingConnection();
+		connection.connect("127.0.0.1", server.getPort(), 5000);
+		try {
+			for (int i = 0; i < 200; i++) {
+				RedisCommand command = new RedisCommand("SET");
+				command.addValue(("key:" + i).getBytes());
+				command.addValue("value".getBytes());
+				connection.sendCommand(command);
+			}
+		} finally {
+			connection.close();
+		}
+		assertTrue(connection.errors.toString(), connection.errors.isEmpty());
+		assertEquals(200, server.getCommandCount());
+		assertTrue(allocator.allocations.get() >= 200);
+		// 每个会话最多延后回收一个缓冲区 其余的缓冲区都被再次分配
+		assertTrue("分配的缓冲区数量：" + allocator.buffers.size(), allocator.buffers.size() <= 3);
+	}
+
+	/**
+	 * 测试直接写出的已编码缓冲区在写出完成后回收 并且回收后IoProcessor不再访问该缓冲区
+	 */
+	@Test
+	public void testEncodedBufferReusedThroughSession() throws Exception {
+		CountingAllocator allocator = new CountingAllocator();
+		DefaultRedisConnection.setDefaultBufferAllocator(allocator, false);
+		RecordingConnection connection = new RecordingConnection();
+		connection.connect("127.0.0.1", server.getPort(), 5000);
+		try {
+			for (int i = 0; i < 200; i++) {
+				byte[] data = ("*3\r\n$3\r\nSET\r\n$7\r\nkey:" + String.format("%03d", i) + "\r\n$1\r\nv\r\n")
+						.getBytes();
+				IoBuffer buffer = connection.allocateBuffer(data.length);
+				buffer.put(data);
+				buffer.flip();
+				connection.writeEncodedCommands(buffer);
+				assertEquals(1, connection.readResponses(1).size());
+			}
+			assertTrue(connection.isConnected());
+		} finally {
+			connection.close();
+		}
+		assertTrue(connection.errors.toString(), connection.errors.isEmpty());
+		assertEquals(200, server.getCommandCount());
+		assertEquals(200, allocator.allocations.get());
+		assertTrue("分配的缓冲区数量：" + allocator.buffers.size(), allocator.buffers.size() <= 3);
+	}
+
+	/**
+	 * 记录连接异常的Redis连接
+	 */
+	private static class RecordingConnection extends DefaultRedisConnection {
+		private final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+
+		/*
+		 * @see
+		 * com.wmz7year.synyed.net.spi.DefaultRedisConnection#exceptionCaught(
+		 * org.apache.mina.core.session.IoSession, java.lang.Throwable)
+		 */
+		@Override
+		public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
+			errors.add(cause);
+			super.exceptionCaught(session, cause);
+		}
+	}
+
+	/**
+	 * 记录分配过的底层缓冲区的分配器
+	 */
+	private static class CountingAllocator extends PooledIoBufferAllocator {
+		private final AtomicInteger allocations = new AtomicInteger();
+		private final Set<ByteBuffer> buffers = Collections
+				.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>()));
+
+		/*
+		 * @see
+		 * com.wmz7year.synyed.net.buffer.PooledIoBufferAllocator#allocateNioBuffer
+		 * (int, boolean)
+		 */
+		@Override
+		public ByteBuffer allocateNioBuffer(int capacity, boolean direct) {
+			ByteBuffer buf = super.allocateNioBuffer(capacity, direct);
+			allocations.incrementAndGet();
+			buffers.add(buf);
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.wmz7year.synyed.net.buffer;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.junit.Test;
+
+/**
+ * 缓存的IoBuffer分配器测试
+ *
+ * @Title: PooledIoBufferAllocatorTest.java
+ * @Package com.wmz7year.synyed.net.buffer
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 下午2:10:36
+ * @version V1.0
+ */
+public class PooledIoBufferAllocatorTest {
+
+	/**
+	 * 测试同一线程释放后再次分配得到同一个缓冲区
+	 */
+	@Test
+	public void testReuseInSameThread() {
+		PooledIoBufferAllocator allocator = new PooledIoBufferAllocator();
+		IoBuffer buffer = allocator.allocate(100, true);
+		assertEquals(100, buffer.limit());
+		assertEquals(128, buffer.capacity());
+		assertTrue(buffer.isDirect());
+		ByteBuffer nioBuffer = buffer.buf();
+		assertTrue(allocator.release(buffer));
+
+		IoBuffer reused = allocator.allocate(120, true);
+		assertSame(nioBuffer, reused.buf());
+		assertEquals(0, reused.position());
+		assertEquals(120, reused.limit());
+		// 堆内缓冲区与直接内存缓冲区分开缓存
+		assertNotSame(nioBuffer, allocator.allocate(120, false).buf());
+	}
+
+	/**
+	 * 测试其他线程释放的缓冲区可以被再次分配
+	 */
+	@Test
+	public void testReuseAcrossThreads() throws Exception {
+		final PooledIoBufferAllocator allocator = new PooledIoBufferAllocator();
+		final AtomicReference<ByteBuffer> allocated = new AtomicReference<ByteBuffer>();
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				IoBuffer buffer = allocator.allocate(1000, false);
+				allocated.set(buffer.buf());
+				allocator.release(buffer);
+			}
+		});
+		thread.start();
+		thread.join();
+		assertNotNull(allocated.get());
+
+		// 分配线程释放的缓冲区在该线程的本地缓存中
+		assertNotSame(allocated.get(), allocator.allocate(1000, false).buf());
+
+		final IoBuffer buffer = allocator.allocate(1000, false);
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				allocator.release(buffer);
+			}
+		});
+		ByteBuffer nioBuffer = buffer.buf();
+		thread.start();
+		thread.join();
+		// 跨线程释放的缓冲区进入共享缓存
+		assertSame(nioBuffer, allocator.allocate(1000, false).buf());
+	}
+
+	/**
+	 * 测试不缓存的缓冲区
+	 */
+	@Test
+	public void testNotPooled() {
+		PooledIoBufferAllocator allocator = new PooledIoBufferAllocator(64, 1024, 4, 4);
+		IoBuffer large = allocator.allocate(2000, false);
+		assertEquals(2000, large.capacity());
+		ByteBuffer nioBuffer = large.buf();
+		allocator.release(large);
+		assertNotSame(nioBuffer, allocator.allocate(2000, false).buf());
+
+		// 包装的外部缓冲区与派生缓冲区不回收
+		assertFalse(allocator.release(allocator.wrap(ByteBuffer.allocate(64))));
+		IoBuffer buffer = allocator.allocate(64, false);
+		assertFalse(allocator.release(buffer.duplicate()));
+		assertFalse(allocator.release(IoBuffer.wrap(new byte[64])));
+
+		// 重复释放只回收一次
+		assertTrue(allocator.release(buffer));
+		allocator.release(buffer);
+		IoBuffer first = allocator.allocate(64, false);
+		IoBuffer second = allocator.allocate(64, false);
+		assertNotSame(first.buf(), second.buf());
+	}
+
+	/**
+	 * 测试写入多个会话的缓冲区在最后一次释放时才回收
+	 */
+	@Test
+	public void testRetainedBuffer() {
+		PooledIoBufferAllocator allocator = new PooledIoBufferAllocator();
+		IoBuffer buffer = allocator.allocate(64, false);
+		ByteBuffer nioBuffer = buffer.buf();
+		assertTrue(allocator.retain(buffer));
+		assertTrue(allocator.retain(buffer));
+		assertFalse(allocator.retain(IoBuffer.wrap(new byte[64])));
+
+		// 第一个会话发送完成 缓冲区仍然可用
+		assertFalse(allocator.release(buffer));
+		assertSame(nioBuffer, buffer.buf());
+		assertNotSame(nioBuffer, allocator.allocate(64, false).buf());
+
+		assertTrue(allocator.release(buffer));
+		assertSame(nioBuffer, allocator.allocate(64, false).buf());
+	}
+
+	/**
+	 * 测试MINA写出完成后调用free时按引用计数回收
+	 */
+	@Test
+	public void testFreeHonorsReferences() {
+		PooledIoBufferAllocator allocator = new PooledIoBufferAllocator();
+		IoBuffer buffer = allocator.allocate(64, false);
+		ByteBuffer nioBuffer = buffer.buf();
+		allocator.retain(buffer);
+		allocator.retain(buffer);
+
+		buffer.free();
+		assertSame(nioBuffer, buffer.buf());
+		buffer.free();
+		try {
+			buffer.buf();
+			fail();
+		} catch (IllegalStateException e) {
+			// 已经回收
+		}
+		assertSame(nioBuffer, allocator.allocate(64, false).buf());
+		// 重复释放不会重复回收
+		buffer.free();
+		assertNotSame(nioBuffer, allocator.allocate(64, false).buf());
+	}
+
+	/**
+	 * 测试自动扩容后旧的缓冲区被回收 数据保留
+	 */
+	@Test
+	public void testAutoExpand() {
+		PooledIoBufferAllocator allocator = new PooledIoBufferAllocator();
+		IoBuffer buffer = allocator.allocate(64, false);
+		buffer.setAutoExpand(true);
+		ByteBuffer old = buffer.buf();
+		for (int i = 0; i < 100; i++) {
+			buffer.put((byte) i);
+		}
+		assertNotSame(old, buffer.buf());
+		buffer.flip();
+		for (int i = 0; i < 100; i++) {
+			assertEquals((byte) i, buffer.get());
+		}
+		assertSame(old, allocator.allocate(64, false).buf());
+	}
+}
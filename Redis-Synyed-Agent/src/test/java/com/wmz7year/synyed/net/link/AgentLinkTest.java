@@ -0,0 +1,248 @@
+package com.wmz7year.synyed.net.link;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * Agent之间传输链路测试
+ *
+ * @Title: AgentLinkTest.java
+ * @Package com.wmz7year.synyed.net.link
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月21日 下午5:08:44
+ * @version V1.0
+ */
+public class AgentLinkTest {
+	private AgentLinkServer server;
+	private AgentLinkClient client;
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	/**
+	 * 测试多个通道复用一个连接 命令按顺序到达并且数据被压缩
+	 */
+	@Test
+	public void testMultiplexedBatches() throws Exception {
+		RecordingListener listener = new RecordingListener(0);
+		start(listener);
+
+		for (int i = 0; i < 2000; i++) {
+			client.append(i % 2, command(i));
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		for (int channel = 0; channel < 2; channel++) {
+			List<RedisCommand> commands = listener.getCommands(channel);
+			assertEquals(1000, commands.size());
+			for (int i = 0; i < commands.size(); i++) {
+				int index = i * 2 + channel;
+				assertEquals("SET", commands.get(i).getCommand());
+				assertEquals("key:" + index, commands.get(i).getValues().get(0).getContent());
+				assertEquals(value(index), commands.get(i).getValues().get(1).getContent());
+			}
+		}
+		assertTrue(client.getRawBytes() > client.getEncodedBytes() * 3);
+	}
+
+	/**
+	 * 测试处理失败后重新连接并重发未确认的批量
+	 */
+	@Test
+	public void testResendAfterFailure() throws Exception {
+		RecordingListener listener = new RecordingListener(1);
+		start(listener);
+
+		for (int i = 0; i < 300; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		// 第一个批量处理失败 连接被断开
+		assertFalse(client.awaitAcked(500));
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		List<RedisCommand> commands = listener.getCommands(0);
+		assertEquals(300, commands.size());
+		for (int i = 0; i < commands.size(); i++) {
+			assertEquals("key:" + i, commands.get(i).getValues().get(0).getContent());
+		}
+	}
+
+	/**
+	 * 测试批量只执行了一部分时 重发后跳过已经执行的命令
+	 */
+	@Test
+	public void testResendSkipsAppliedCommands() throws Exception {
+		RecordingListener listener = new RecordingListener(2, 40);
+		start(listener);
+
+		for (int i = 0; i < 300; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		// 第一个批量执行了40条后失败 重发后剩余的60条又执行了40条后失败
+		assertFalse(client.awaitAcked(500));
+		client.flush();
+		assertFalse(client.awaitAcked(500));
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		List<RedisCommand> commands = listener.getCommands(0);
+		assertEquals(300, commands.size());
+		for (int i = 0; i < commands.size(); i++) {
+			assertEquals("key:" + i, commands.get(i).getValues().get(0).getContent());
+		}
+	}
+
+	/**
+	 * 测试发送端重启后序号重新从1开始 接收端不会当作重复的批量丢弃
+	 */
+	@Test
+	public void testClientRestart() throws Exception {
+		RecordingListener listener = new RecordingListener(0);
+		start(listener);
+
+		for (int i = 0; i < 300; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+		client.close();
+
+		client = createClient(server.getLocalPort());
+		client.connect();
+		for (int i = 300; i < 500; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		List<RedisCommand> commands = listener.getCommands(0);
+		assertEquals(500, commands.size());
+		for (int i = 0; i < commands.size(); i++) {
+			assertEquals("key:" + i, commands.get(i).getValues().get(0).getContent());
+		}
+	}
+
+	/**
+	 * 测试接收端重启后发送端继续使用之前的序号 接收端不会认为序号不连续
+	 */
+	@Test
+	public void testServerRestart() throws Exception {
+		RecordingListener listener = new RecordingListener(0);
+		start(listener);
+
+		for (int i = 0; i < 300; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		int port = server.getLocalPort();
+		server.close();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (client.isConnected() && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertFalse(client.isConnected());
+		server = new AgentLinkServer("127.0.0.1", port, listener);
+		server.start();
+
+		for (int i = 300; i < 500; i++) {
+			client.append(0, command(i));
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(10000));
+
+		List<RedisCommand> commands = listener.getCommands(0);
+		assertEquals(500, commands.size());
+		for (int i = 0; i < commands.size(); i++) {
+			assertEquals("key:" + i, commands.get(i).getValues().get(0).getContent());
+		}
+	}
+
+	private void start(AgentLinkListener listener) throws Exception {
+		server = new AgentLinkServer("127.0.0.1", 0, listener);
+		server.start();
+		client = createClient(server.getLocalPort());
+		client.connect();
+	}
+
+	private AgentLinkClient createClient(int port) {
+		AgentLinkClient result = new AgentLinkClient("127.0.0.1", port, 5000);
+		result.setBatchMaxCommands(100);
+		return result;
+	}
+
+	private RedisCommand command(int index) {
+		RedisCommand command = new RedisCommand("SET");
+		command.addValue("key:" + index);
+		command.addValue(value(index));
+		return command;
+	}
+
+	private String value(int index) {
+		return "{\"id\":" + index + ",\"name\":\"user-" + index + "\",\"status\":\"active\",\"tags\":[\"a\",\"b\"]}";
+	}
+
+	/**
+	 * 记录收到命令的监听器 前failures次调用执行partial条命令后抛出异常
+	 */
+	private static class RecordingListener implements AgentLinkListener {
+		private final Map<Integer, List<RedisCommand>> commands = new HashMap<Integer, List<RedisCommand>>();
+		private final AtomicInteger failures;
+		private final int partial;
+
+		RecordingListener(int failures) {
+			this(failures, 0);
+		}
+
+		RecordingListener(int failures, int partial) {
+			this.failures = new AtomicInteger(failures);
+			this.partial = partial;
+		}
+
+		@Override
+		public synchronized void receive(int channel, List<RedisCommand> batch) throws Exception {
+			List<RedisCommand> list = commands.get(channel);
+			if (list == null) {
+				list = new ArrayList<RedisCommand>();
+				commands.put(channel, list);
+			}
+			if (failures.getAndDecrement() > 0) {
+				if (partial == 0) {
+					throw new IllegalStateException("模拟处理失败");
+				}
+				list.addAll(batch.subList(0, partial));
+				throw new AgentLinkApplyException("模拟处理失败", partial, null);
+			}
+			list.addAll(batch);
+		}
+
+		synchronized List<RedisCommand> getCommands(int channel) {
+			List<RedisCommand> list = commands.get(channel);
+			return list == null ? Collections.<RedisCommand> emptyList() : new ArrayList<RedisCommand>(list);
+		}
+	}
+}
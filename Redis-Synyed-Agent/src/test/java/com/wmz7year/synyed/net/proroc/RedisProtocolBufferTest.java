@@ -0,0 +1,118 @@
+package com.wmz7year.synyed.net.proroc;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Redis协议解析缓冲区测试
+ *
+ * @Title: RedisProtocolBufferTest.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月18日 下午5:34:10
+ * @version V1.0
+ */
+public class RedisProtocolBufferTest {
+
+	/**
+	 * 测试按倍数扩容并保留环形缓冲区中的数据
+	 */
+	@Test
+	public void testGrowAndWrap() throws Exception {
+		testGrowAndWrap(false);
+		testGrowAndWrap(true);
+	}
+
+	private void testGrowAndWrap(boolean direct) throws Exception {
+		RedisProtocolBuffer buffer = new RedisProtocolBuffer(8, 64, direct);
+		assertEquals(direct, buffer.isDirect());
+		assertEquals(6, buffer.write(ByteBuffer.wrap(bytes(0, 6))));
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, buffer.readByte());
+		}
+		// 写入位置回到缓冲区开头
+		assertEquals(5, buffer.write(ByteBuffer.wrap(bytes(6, 5))));
+		assertEquals(8, buffer.capacity());
+		// 容量不足 扩容到可以放下的最小倍数
+		assertEquals(10, buffer.write(ByteBuffer.wrap(bytes(11, 10))));
+		assertEquals(32, buffer.capacity());
+		assertEquals(17, buffer.remaining());
+		for (int i = 4; i < 21; i++) {
+			assertEquals(i, buffer.readByte());
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+
+	/**
+	 * 测试达到最大容量后只写入能放下的部分
+	 */
+	@Test
+	public void testMaxCapacity() throws Exception {
+		RedisProtocolBuffer buffer = new RedisProtocolBuffer(8, 48, false);
+		ByteBuffer src = ByteBuffer.wrap(bytes(0, 100));
+		assertEquals(48, buffer.write(src));
+		assertEquals(48, buffer.capacity());
+		assertEquals(52, src.remaining());
+		assertEquals(0, buffer.write(src));
+		for (int i = 0; i < 48; i++) {
+			assertEquals(i, buffer.readByte());
+		}
+		assertEquals(48, buffer.write(src));
+		assertEquals(48, buffer.readByte());
+	}
+
+	/**
+	 * 测试收缩容量
+	 */
+	@Test
+	public void testTrim() throws Exception {
+		RedisProtocolBuffer buffer = new RedisProtocolBuffer(8, 1024, false);
+		buffer.write(ByteBuffer.wrap(bytes(0, 1000)));
+		assertEquals(1024, buffer.capacity());
+		for (int i = 0; i < 1000; i++) {
+			buffer.readByte();
+		}
+		long now = System.currentTimeMillis();
+		// 最近使用量达到过容量上限 不收缩
+		assertEquals(0, buffer.trim(now, 60000));
+		// 使用量较低 每次收缩一半
+		assertEquals(512, buffer.trim(now, 60000));
+		assertEquals(512, buffer.capacity());
+		buffer.write(ByteBuffer.wrap(bytes(0, 3)));
+		assertEquals(256, buffer.trim(now, 60000));
+		assertEquals(0, buffer.readByte());
+		// 空闲超时后收缩到初始容量
+		buffer.readByte();
+		buffer.readByte();
+		assertEquals(248, buffer.trim(now + 60000, 60000));
+		assertEquals(8, buffer.capacity());
+		assertEquals(0, buffer.trim(now + 120000, 60000));
+	}
+
+	/**
+	 * 测试解析器在缓冲区容量小于数据包时分段解析
+	 */
+	@Test
+	public void testParserWithSmallBuffer() throws Exception {
+		RedisProtocolParser parser = new RedisProtocolParser(new RedisProtocolBuffer(4, 16, false));
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+		String command = "*2\r\n$3\r\nGET\r\n$200\r\n" + value + "\r\n+OK\r\n";
+		parser.read(ByteBuffer.wrap(command.getBytes()));
+		assertEquals(16, parser.getBuffer().capacity());
+		assertEquals(2, parser.getPackets().length);
+	}
+
+	private byte[] bytes(int start, int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (start + i);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,176 @@
+package com.wmz7year.synyed.net.proroc;
+
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_FILE_REGIONS;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.file.FileRegion;
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisFileCommandData;
+import com.wmz7year.synyed.parser.entry.RedisLzfStringObject;
+
+/**
+ * Redis协议编码器测试
+ *
+ * @Title: RedisProtocolEncoderTest.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月12日 下午3:10:22
+ * @version V1.0
+ */
+public class RedisProtocolEncoderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 测试编码普通命令
+	 */
+	@Test
+	public void testEncodeCommand() throws Exception {
+		RedisCommand command = new RedisCommand("SET");
+		command.addValue("key".getBytes());
+		command.addValue("0123456789".getBytes());
+		assertEquals("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$10\r\n0123456789\r\n", encode(command));
+	}
+
+	/**
+	 * 测试编码LZF压缩的参数 数据直接解压到输出缓冲区
+	 */
+	@Test
+	public void testEncodeLzfValue() throws Exception {
+		// 字面量abc + 距离为3长度为9的重叠回溯引用
+		byte[] compressed = new byte[] { 2, 'a', 'b', 'c', (byte) 0xE0, 0, 2 };
+		RedisLzfStringObject value = new RedisLzfStringObject(compressed, 12);
+
+		RedisCommand command = new RedisCommand("SET");
+		command.addValue("k".getBytes());
+		command.addValue(value.toCommandData());
+		assertEquals("*3\r\n$3\r\nSET\r\n$1\r\nk\r\n$12\r\nabcabcabcabc\r\n", encode(command));
+		assertFalse(value.isDecompressed());
+	}
+
+	/**
+	 * 测试编码内容在文件中的参数 文件内容通过FileRegion发送
+	 */
+	@Test
+	public void testEncodeFileValue() throws Exception {
+		File file = folder.newFile();
+		FileUtils.writeStringToFile(file, "0123456789");
+
+		RedisCommand command = new RedisCommand("SET");
+		command.addValue("key".getBytes());
+		command.addValue(new RedisFileCommandData(file, 10));
+		command.addValue("EX".getBytes());
+		assertEquals("*4\r\n$3\r\nSET\r\n$3\r\nkey\r\n$10\r\n0123456789\r\n$2\r\nEX\r\n", encode(command));
+
+		// 修改后的参数不再从文件发送
+		command.getValues().get(1).setData("v".getBytes());
+		assertEquals("*4\r\n$3\r\nSET\r\n$3\r\nkey\r\n$1\r\nv\r\n$2\r\nEX\r\n", encode(command));
+	}
+
+	/**
+	 * 测试会话关闭时释放没有发送完的FileRegion 已经发送完的不再记录
+	 */
+	@Test
+	public void testReleaseFileRegionOnSessionClose() throws Exception {
+		File file = folder.newFile();
+		FileUtils.writeStringToFile(file, "0123456789");
+		RedisCommand command = new RedisCommand("SET");
+		command.addValue("key".getBytes());
+		command.addValue(new RedisFileCommandData(file, 10));
+
+		IoSession session = new DummySession();
+		RedisProtocolEncoder encoder = new RedisProtocolEncoder();
+		FileRegion sent = fileRegion(encode(encoder, session, command));
+		sent.update(sent.getRemainingBytes());
+		assertFalse(sent.getFileChannel().isOpen());
+
+		// 发送了一部分的FileRegion
+		FileRegion pending = fileRegion(encode(encoder, session, command));
+		pending.update(4);
+		assertEquals(1, ((Queue<?>) session.getAttribute(REDIS_FILE_REGIONS)).size());
+		assertTrue(pending.getFileChannel().isOpen());
+
+		encoder.dispose(session);
+		assertFalse(pending.getFileChannel().isOpen());
+		assertNull(session.getAttribute(REDIS_FILE_REGIONS));
+	}
+
+	/**
+	 * 获取编码结果中的FileRegion
+	 */
+	private FileRegion fileRegion(List<Object> messages) {
+		for (Object message : messages) {
+			if (message instanceof FileRegion) {
+				return (FileRegion) message;
+			}
+		}
+		fail("编码结果中没有FileRegion");
+		return null;
+	}
+
+	/**
+	 * 编码命令并转换为字符串
+	 */
+	private String encode(RedisCommand command) throws Exception {
+		List<Object> result = encode(new RedisProtocolEncoder(), null, command);
+		StringBuilder builder = new StringBuilder();
+		for (Object message : result) {
+			if (message instanceof IoBuffer) {
+				IoBuffer buffer = (IoBuffer) message;
+				assertEquals(buffer.limit(), buffer.capacity());
+				byte[] data = new byte[buffer.remaining()];
+				buffer.get(data);
+				builder.append(new String(data));
+			} else {
+				FileRegion region = (FileRegion) message;
+				ByteBuffer data = ByteBuffer.allocate((int) region.getRemainingBytes());
+				region.getFileChannel().read(data, region.getPosition());
+				region.update(data.position());
+				assertFalse(region.getFileChannel().isOpen());
+				builder.append(new String(data.array()));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 使用指定的编码器以及会话编码命令 返回编码结果
+	 */
+	private List<Object> encode(RedisProtocolEncoder encoder, IoSession session, RedisCommand command)
+			throws Exception {
+		final List<Object> result = new ArrayList<Object>();
+		encoder.encode(session, command, new ProtocolEncoderOutput() {
+
+			@Override
+			public void write(Object encodedMessage) {
+				result.add(encodedMessage);
+			}
+
+			@Override
+			public void mergeAll() {
+			}
+
+			@Override
+			public WriteFuture flush() {
+				return null;
+			}
+		});
+		return result;
+	}
+}
@@ -0,0 +1,150 @@
+package com.wmz7year.synyed.net.proroc;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisFileBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * Redis协议解析器分包测试<br>
+ * 数据包被拆分成任意长度到达时都能解析出完整的命令
+ *
+ * @Title: RedisProtocolParserSplitTest.java
+ * @Package com.wmz7year.synyed.net.proroc
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午3:12:08
+ * @version V1.0
+ */
+public class RedisProtocolParserSplitTest {
+	private static final String COMMANDS = "*3\r\n$3\r\nSET\r\n$5\r\nkey:0\r\n$4\r\nabcd\r\n"
+			+ "*3\r\n$3\r\nSET\r\n$5\r\nkey:1\r\n$0\r\n\r\n";
+
+	/**
+	 * 测试所有拆分长度
+	 */
+	@Test
+	public void testSplitPackets() throws Exception {
+		byte[] data = COMMANDS.getBytes();
+		for (int split = 1; split <= data.length; split++) {
+			List<RedisPacket> packets = read(data, split);
+			assertEquals("split:" + split, 2, packets.size());
+			assertCommand((RedisArraysPacket) packets.get(0), "SET", "key:0", "abcd");
+			assertCommand((RedisArraysPacket) packets.get(1), "SET", "key:1", "");
+		}
+	}
+
+	/**
+	 * 测试数组元素只收到一部分时保留已读取的元素状态<br>
+	 * 之前元素未读取完时会清空解析状态 剩余数据被当作新的数据包解析
+	 */
+	@Test
+	public void testPartialArrayElement() throws Exception {
+		RedisProtocolParser parser = new RedisProtocolParser();
+		// 数组头与第一个元素的一部分同时到达
+		parser.read(ByteBuffer.wrap("*3\r\n$3\r\nS".getBytes()));
+		assertNull(parser.getPackets());
+		// 第二个元素的内容只收到一半
+		parser.read(ByteBuffer.wrap("ET\r\n$5\r\nke".getBytes()));
+		assertNull(parser.getPackets());
+		// 第三个元素的结束符只收到一半 之后紧跟下一条命令
+		parser.read(ByteBuffer.wrap("y:0\r\n$4\r\nabcd\r".getBytes()));
+		assertNull(parser.getPackets());
+		parser.read(ByteBuffer.wrap("\n*1\r\n$4\r\nPING\r\n".getBytes()));
+		RedisPacket[] packets = parser.getPackets();
+		assertEquals(2, packets.length);
+		assertCommand((RedisArraysPacket) packets[0], "SET", "key:0", "abcd");
+		assertCommand((RedisArraysPacket) packets[1], "PING");
+	}
+
+	/**
+	 * 测试超过阈值的bulk字符串写入临时文件 以及长度为-1的bulk字符串
+	 */
+	@Test
+	public void testSpillBulkString() throws Exception {
+		String commands = "*3\r\n$3\r\nSET\r\n$5\r\nkey:0\r\n$10\r\n0123456789\r\n"
+				+ "*2\r\n$3\r\nGET\r\n$-1\r\n";
+		byte[] data = commands.getBytes();
+		for (int split = 1; split <= data.length; split++) {
+			List<RedisPacket> packets = read(data, split, 5);
+			assertEquals("split:" + split, 2, packets.size());
+			RedisArraysPacket set = (RedisArraysPacket) packets.get(0);
+			assertCommand(set, "SET", "key:0", "0123456789");
+			assertFalse(set.getPackets().get(1) instanceof RedisFileBulkStringPacket);
+			RedisFileBulkStringPacket value = (RedisFileBulkStringPacket) set.getPackets().get(2);
+			assertEquals(10, value.getLength());
+			assertEquals(10, value.getFile().length());
+			value.delete();
+			assertFalse(value.getFile().exists());
+
+			RedisArraysPacket get = (RedisArraysPacket) packets.get(1);
+			assertEquals(2, get.getPackets().size());
+			assertNull(get.getPackets().get(1).getData());
+		}
+	}
+
+	/**
+	 * 测试声明长度很大的bulk字符串不按声明长度预先分配 随数据到达扩容
+	 */
+	@Test
+	public void testLargeBulkStringGrowsWithData() throws Exception {
+		int length = 1024 * 1024;
+		byte[] value = new byte[length];
+		for (int i = 0; i < length; i++) {
+			value[i] = (byte) ('a' + i % 26);
+		}
+		RedisProtocolParser parser = new RedisProtocolParser();
+		parser.setSpillThreshold(0);
+		parser.read(ByteBuffer.wrap(("*3\r\n$3\r\nSET\r\n$1\r\nk\r\n$" + length + "\r\n").getBytes()));
+		parser.read(ByteBuffer.wrap(value, 0, 10).slice());
+		assertNull(parser.getPackets());
+		// 只收到声明长度的一小部分时不会分配整个长度
+		byte[] content = (byte[]) ReflectionTestUtils.getField(parser, "currentPacket");
+		assertTrue(content.length <= 64 * 1024);
+
+		for (int offset = 10; offset < length; offset += 100000) {
+			parser.read(ByteBuffer.wrap(value, offset, Math.min(100000, length - offset)).slice());
+		}
+		parser.read(ByteBuffer.wrap("\r\n".getBytes()));
+		RedisPacket[] packets = parser.getPackets();
+		assertEquals(1, packets.length);
+		byte[] data = ((RedisArraysPacket) packets[0]).getPackets().get(2).getData();
+		assertArrayEquals(value, data);
+	}
+
+	private List<RedisPacket> read(byte[] data, int split) throws Exception {
+		return read(data, split, RedisProtocolParser.DEFAULT_SPILL_THRESHOLD);
+	}
+
+	private List<RedisPacket> read(byte[] data, int split, int spillThreshold) throws Exception {
+		RedisProtocolParser parser = new RedisProtocolParser();
+		parser.setSpillThreshold(spillThreshold);
+		List<RedisPacket> result = new ArrayList<RedisPacket>();
+		for (int offset = 0; offset < data.length; offset += split) {
+			int length = Math.min(split, data.length - offset);
+			parser.read(ByteBuffer.wrap(data, offset, length).slice());
+			RedisPacket[] packets = parser.getPackets();
+			if (packets != null) {
+				for (RedisPacket packet : packets) {
+					result.add(packet);
+				}
+			}
+		}
+		return result;
+	}
+
+	private void assertCommand(RedisArraysPacket packet, String... values) {
+		List<RedisPacket> elements = packet.getPackets();
+		assertEquals(values.length, elements.size());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], new String(elements.get(i).getData()));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.wmz7year.synyed.net.spi;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.mina.core.session.IoSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.support.FakeRedisServer;
+
+/**
+ * Redis连接等待响应的测试
+ *
+ * @Title: DefaultRedisConnectionTest.java
+ * @Package com.wmz7year.synyed.net.spi
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午2:15:42
+ * @version V1.0
+ */
+public class DefaultRedisConnectionTest {
+	/**
+	 * 收到命令后不响应的服务器
+	 */
+	private FakeRedisServer server;
+
+	private DefaultRedisConnection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new FakeRedisServer() {
+
+			@Override
+			protected void commandReceived(IoSession session, String command, List<byte[]> args) throws Exception {
+				// 不响应
+			}
+		};
+		server.start();
+		connection = new DefaultRedisConnection();
+		connection.connect("127.0.0.1", server.getPort(), 60000);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// 清除测试中设置的中断状态
+		Thread.interrupted();
+		// 等待响应时被中断的连接已经关闭
+		if (connection.isConnected()) {
+			connection.close();
+		}
+		server.close();
+	}
+
+	/**
+	 * 测试等待管道响应时线程被中断 保留中断状态并且不当作超时处理
+	 */
+	@Test
+	public void testReadResponsesInterrupted() throws Exception {
+		Thread.currentThread().interrupt();
+		long start = System.currentTimeMillis();
+		try {
+			connection.readResponses(1);
+			fail();
+		} catch (RedisProtocolException e) {
+			assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		assertTrue(Thread.currentThread().isInterrupted());
+		assertTrue(System.currentTimeMillis() - start < 60000);
+	}
+
+	/**
+	 * 测试多个连接共用IoProcessor 并且关闭连接后释放连接器
+	 */
+	@Test
+	public void testConnectorDisposedAfterClose() throws Exception {
+		// 共用的IoProcessor数量为处理器数量+1 测试服务器也使用同样数量的IoProcessor
+		int processors = Runtime.getRuntime().availableProcessors() + 1;
+		List<DefaultRedisConnection> connections = new ArrayList<DefaultRedisConnection>();
+		for (int i = 0; i < processors * 3; i++) {
+			DefaultRedisConnection other = new DefaultRedisConnection();
+			other.connect("127.0.0.1", server.getPort(), 5000);
+			connections.add(other);
+		}
+		Set<String> processorThreads = new HashSet<String>();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("NioProcessor")) {
+				processorThreads.add(thread.getName());
+			}
+		}
+		assertTrue("IoProcessor线程：" + processorThreads, processorThreads.size() <= processors * 2);
+
+		for (DefaultRedisConnection other : connections) {
+			other.close();
+		}
+		long start = System.currentTimeMillis();
+		for (DefaultRedisConnection other : connections) {
+			// 会话关闭的回调中释放连接器
+			while ((other.isConnected() || !other.getConnector().isDisposing())
+					&& System.currentTimeMillis() - start < 5000) {
+				Thread.sleep(10);
+			}
+			assertFalse(other.isConnected());
+			assertTrue(other.getConnector().isDisposing());
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.wmz7year.synyed.packet.redis.command;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * 数据包解析命令测试
+ *
+ * @Title: RedisPacketCommandParserTest.java
+ * @Package com.wmz7year.synyed.packet.redis.command
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午4:20:36
+ * @version V1.0
+ */
+public class RedisPacketCommandParserTest {
+
+	/**
+	 * 测试多个元素的数组包使用第一个元素的内容作为命令名称
+	 */
+	@Test
+	public void testCommandName() throws Exception {
+		List<RedisCommand> commands = new RedisPacketCommandParser()
+				.parseRedisPacket(array("SET", "key:1", "value:1"));
+		assertEquals(1, commands.size());
+		RedisCommand command = commands.get(0);
+		assertEquals("SET", command.getCommand());
+		assertEquals(2, command.getValues().size());
+		assertEquals("key:1", command.getValues().get(0).getContent());
+		assertEquals("value:1", command.getValues().get(1).getContent());
+	}
+
+	/**
+	 * 测试只有一个元素的数组包 ping包不解析为命令
+	 */
+	@Test
+	public void testSingleElement() throws Exception {
+		RedisPacketCommandParser parser = new RedisPacketCommandParser();
+		assertTrue(parser.parseRedisPacket(array("PING")).isEmpty());
+		List<RedisCommand> commands = parser.parseRedisPacket(array("MULTI"));
+		assertEquals(1, commands.size());
+		assertEquals("MULTI", commands.get(0).getCommand());
+	}
+
+	private RedisPacket array(String... contents) {
+		RedisArraysPacket packet = new RedisArraysPacket("ARRAY");
+		packet.setArrayLength(contents.length);
+		for (String content : contents) {
+			RedisBulkStringPacket bulk = new RedisBulkStringPacket("BULKSTRING");
+			bulk.setData(content.getBytes());
+			packet.addPacket(bulk);
+		}
+		return packet;
+	}
+}
@@ -15,6 +15,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.wmz7year.synyed.Booter;
 import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.exception.RedisRDBException;
 import com.wmz7year.synyed.parser.entry.RedisDB;
 import com.wmz7year.synyed.parser.entry.RedisHashZipMap;
 import com.wmz7year.synyed.parser.entry.RedisSetIntSet;
@@ -92,6 +93,20 @@ public class RDBParserImpl0006Test {
 		}
 	}
 
+	/**
+	 * 测试损坏的lzf压缩字符串在解析时报错
+	 */
+	@Test(expected = RedisRDBException.class)
+	public void testCorruptLzfString() throws Exception {
+		// 数据库0中key为a的lzf字符串 压缩数据在回溯引用的偏移量字节处被截断
+		byte[] rdbData = new byte[] { 82, 69, 68, 73, 83, 48, 48, 48, 54, -2, 0, 0, 1, 97, -61, 3, 5, 0, 97, 32, -1,
+				0, 0, 0, 0, 0, 0, 0, 0 };
+		byte[] rdbHeader = new byte[9];
+		System.arraycopy(rdbData, 0, rdbHeader, 0, 9);
+		RDBParser rdbParser = RDBParserFactory.createRDBParser(rdbHeader);
+		rdbParser.parse(rdbData);
+	}
+
 	/**
 	 * 测试解析各种类型元素的ziplist
 	 */
@@ -113,10 +128,12 @@ public class RDBParserImpl0006Test {
 	 */
 	@Test
 	public void testHashZipMapObject() throws Exception {
-		byte[] zipMapDataBuffer = new byte[] { 0x18, 0x02, 0x06, 0x4d, 0x4b, 0x44, 0x31, 0x47, 0x36, 0x01, 0x00, 0x32,
-				0x05, 0x59, 0x4e, 0x4e, 0x58, 0x4b, 0x04, 0x00, 0x46, 0x37, 0x54, 0x49, (byte) 0xff };
+		// rdb中字符串的长度前缀0x18已经在读取字符串时去掉 这里只有zipmap本身的数据
+		byte[] zipMapDataBuffer = new byte[] { 0x02, 0x06, 0x4d, 0x4b, 0x44, 0x31, 0x47, 0x36, 0x01, 0x00, 0x32, 0x05,
+				0x59, 0x4e, 0x4e, 0x58, 0x4b, 0x04, 0x00, 0x46, 0x37, 0x54, 0x49, (byte) 0xff };
 		RedisHashZipMap zipmap = new RedisHashZipMap(zipMapDataBuffer);
 		assertEquals(zipmap.getElementCount(), 2);
+		assertEquals("MKD1G6 2 YNNXK F7TI", zipmap.toCommand());
 	}
 
 	/**
@@ -0,0 +1,105 @@
+package com.wmz7year.synyed.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.parser.entry.RedisChunkPolicy;
+import com.wmz7year.synyed.parser.entry.RedisHashObject;
+import com.wmz7year.synyed.parser.entry.RedisListObject;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisSetObject;
+import com.wmz7year.synyed.parser.entry.RedisStringObject;
+import com.wmz7year.synyed.parser.entry.RedisZSetObject;
+
+/**
+ * 集合类型数据分块生成命令的测试
+ *
+ * @Title: RedisChunkPolicyTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月13日 下午4:25:51
+ * @version V1.0
+ */
+public class RedisChunkPolicyTest {
+	private static final RedisStringObject KEY = new RedisStringObject("key".getBytes());
+
+	/**
+	 * 测试按照元素数量切分set
+	 */
+	@Test
+	public void testChunkByElementCount() {
+		RedisSetObject set = new RedisSetObject();
+		for (int i = 0; i < 25; i++) {
+			set.addElement(new RedisStringObject(("member" + i).getBytes()));
+		}
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, set, -1)
+				.getCommands(new RedisChunkPolicy(10, Integer.MAX_VALUE));
+		assertEquals(3, commands.size());
+		int count = 0;
+		for (RedisCommand command : commands) {
+			assertEquals("SADD", command.getCommand());
+			assertEquals("key", command.getValues().get(0).getContent());
+			count += command.getValues().size() - 1;
+		}
+		assertEquals(25, count);
+		assertEquals(11, commands.get(0).getValues().size());
+		assertEquals(6, commands.get(2).getValues().size());
+	}
+
+	/**
+	 * 测试按照字节数切分hash 并且field value不会被拆开
+	 */
+	@Test
+	public void testChunkHashByBytes() {
+		RedisHashObject hash = new RedisHashObject();
+		for (int i = 0; i < 6; i++) {
+			// 每个field value共10字节
+			hash.addElement(new RedisStringObject(("f" + i).getBytes()), new RedisStringObject("vvvvvvvv".getBytes()));
+		}
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, hash, -1).getCommands(new RedisChunkPolicy(100, 25));
+		assertEquals(3, commands.size());
+		for (RedisCommand command : commands) {
+			assertEquals("HMSET", command.getCommand());
+			assertEquals(5, command.getValues().size());
+		}
+	}
+
+	/**
+	 * 测试单个元素超过字节数限制时单独生成命令
+	 */
+	@Test
+	public void testOversizedElement() {
+		RedisListObject list = new RedisListObject();
+		list.addElement(new RedisStringObject("a".getBytes()));
+		list.addElement(new RedisStringObject("0123456789".getBytes()));
+		list.addElement(new RedisStringObject("b".getBytes()));
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, list, -1).getCommands(new RedisChunkPolicy(100, 5));
+		assertEquals(3, commands.size());
+		assertEquals("RPUSH", commands.get(0).getCommand());
+		assertEquals("a", commands.get(0).getValues().get(1).getContent());
+		assertEquals("0123456789", commands.get(1).getValues().get(1).getContent());
+		assertEquals("b", commands.get(2).getValues().get(1).getContent());
+	}
+
+	/**
+	 * 测试zset生成score member顺序的命令
+	 */
+	@Test
+	public void testZSetCommand() {
+		RedisZSetObject zset = new RedisZSetObject(2);
+		zset.addElement(new RedisStringObject("a".getBytes()), 1);
+		zset.addElement(new RedisStringObject("b".getBytes()), 1.5);
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, zset, -1).getCommands();
+		assertEquals(1, commands.size());
+		RedisCommand command = commands.get(0);
+		assertEquals("ZADD", command.getCommand());
+		assertEquals("1", command.getValues().get(1).getContent());
+		assertEquals("a", command.getValues().get(2).getContent());
+		assertEquals("1.5", command.getValues().get(3).getContent());
+		assertEquals("b", command.getValues().get(4).getContent());
+	}
+}
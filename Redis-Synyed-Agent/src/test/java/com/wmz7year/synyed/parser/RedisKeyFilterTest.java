@@ -0,0 +1,163 @@
+package com.wmz7year.synyed.parser;
+
+import static com.wmz7year.synyed.support.RedisRDBGenerator.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisKeyFilter;
+import com.wmz7year.synyed.parser.entry.RedisKeyPatternMatcher;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisStringObject;
+import com.wmz7year.synyed.parser.impl.RDBParserImpl0006;
+import com.wmz7year.synyed.support.RedisRDBGenerator;
+
+/**
+ * 同步数据过滤规则测试<br>
+ * 被过滤的key在rdb解析时直接跳过value 跳过之后的数据与校验和需要仍然正确
+ *
+ * @Title: RedisKeyFilterTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 下午6:02:41
+ * @version V1.0
+ */
+public class RedisKeyFilterTest {
+	private static final int KEY_COUNT = 240;
+	private static final int DB_COUNT = 2;
+
+	/**
+	 * 测试glob规则匹配
+	 */
+	@Test
+	public void testPatternMatcher() {
+		RedisKeyPatternMatcher matcher = new RedisKeyPatternMatcher();
+		matcher.add("user:*".getBytes());
+		matcher.add("order:?:item".getBytes());
+		matcher.add("exact".getBytes());
+		matcher.add("cache:[a-c]*:[^0-9]".getBytes());
+		matcher.add("lit\\*".getBytes());
+		assertEquals(5, matcher.size());
+
+		assertTrue(matcher.matches("user:".getBytes()));
+		assertTrue(matcher.matches("user:1:name".getBytes()));
+		assertFalse(matcher.matches("use".getBytes()));
+		assertTrue(matcher.matches("order:1:item".getBytes()));
+		assertFalse(matcher.matches("order:12:item".getBytes()));
+		assertTrue(matcher.matches("exact".getBytes()));
+		assertFalse(matcher.matches("exact1".getBytes()));
+		assertFalse(matcher.matches("exac".getBytes()));
+		assertTrue(matcher.matches("cache:b123:x".getBytes()));
+		assertFalse(matcher.matches("cache:d123:x".getBytes()));
+		assertFalse(matcher.matches("cache:a:1".getBytes()));
+		assertTrue(matcher.matches("lit*".getBytes()));
+		assertFalse(matcher.matches("lit1".getBytes()));
+
+		RedisKeyPatternMatcher all = new RedisKeyPatternMatcher();
+		all.add("*".getBytes());
+		assertTrue(all.matches(new byte[0]));
+		assertTrue(all.matches(new byte[] { (byte) 0xFF, 0 }));
+		assertTrue(new RedisKeyPatternMatcher().isEmpty());
+	}
+
+	/**
+	 * 测试按数据库、key规则与数据类型过滤rdb数据
+	 */
+	@Test
+	public void testFilterRDB() throws Exception {
+		RedisRDBGenerator generator = createGenerator();
+		byte[] rdb = generator.generate();
+
+		RedisKeyFilter filter = new RedisKeyFilter();
+		filter.excludeDB(1);
+		filter.includeKey("key:1*");
+		filter.includeKey("key:2?");
+		filter.excludeKey("key:10");
+		filter.includeType("hash");
+		filter.includeType("STRING");
+
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.setKeyFilter(filter);
+		parser.parse(rdb);
+
+		Map<String, String> types = getEncodingTypes();
+		int keysPerDb = KEY_COUNT / DB_COUNT;
+		Set<String> expected = new LinkedHashSet<String>();
+		for (int i = 0; i < KEY_COUNT; i++) {
+			String key = "key:" + i;
+			String type = types.get(ALL_ENCODINGS[i % ALL_ENCODINGS.length]);
+			boolean keyMatch = (key.startsWith("key:1") || (key.length() == 6 && key.startsWith("key:2")))
+					&& !key.equals("key:10");
+			if (i / keysPerDb == 0 && keyMatch && ("hash".equals(type) || "string".equals(type))
+					&& generator.getLiveKeys().contains(key)) {
+				expected.add(key);
+			}
+		}
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, getParsedKeys(parser));
+		assertEquals(KEY_COUNT - expected.size(), parser.getSkippedCount());
+	}
+
+	/**
+	 * 测试剩余过期时间过滤
+	 */
+	@Test
+	public void testFilterMinTtl() throws Exception {
+		RedisRDBGenerator generator = createGenerator();
+		generator.setExpireRatio(0.3);
+		byte[] rdb = generator.generate();
+
+		RedisKeyFilter filter = new RedisKeyFilter();
+		filter.setMinTtl(7200000);
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.setKeyFilter(filter);
+		parser.parse(rdb);
+
+		// 生成器中未过期的key剩余一小时 全部被过滤
+		assertEquals(generator.getLiveKeys().size() - generator.getExpireKeyCount(), getParsedKeys(parser).size());
+		assertEquals(KEY_COUNT - generator.getLiveKeys().size() + generator.getExpireKeyCount(),
+				parser.getSkippedCount());
+	}
+
+	private RedisRDBGenerator createGenerator() {
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(KEY_COUNT);
+		generator.setDbCount(DB_COUNT);
+		generator.setElementCount(30);
+		generator.setExpiredRatio(0.1);
+		return generator;
+	}
+
+	private Set<String> getParsedKeys(RDBParserImpl0006 parser) {
+		Set<String> keys = new LinkedHashSet<String>();
+		for (RedisDB redisDB : parser.getRedisDBs()) {
+			for (RedisRDBCommand command : redisDB.getRDBCommands()) {
+				keys.add(new String(((RedisStringObject) command.getKey()).getBuffer()));
+			}
+		}
+		return keys;
+	}
+
+	private Map<String, String> getEncodingTypes() {
+		Map<String, String> types = new HashMap<String, String>();
+		types.put(ENCODING_STRING, RedisKeyFilter.TYPE_STRING);
+		types.put(ENCODING_INT, RedisKeyFilter.TYPE_STRING);
+		types.put(ENCODING_LZF, RedisKeyFilter.TYPE_STRING);
+		types.put(ENCODING_LIST, RedisKeyFilter.TYPE_LIST);
+		types.put(ENCODING_LIST_ZIPLIST, RedisKeyFilter.TYPE_LIST);
+		types.put(ENCODING_SET, RedisKeyFilter.TYPE_SET);
+		types.put(ENCODING_INTSET, RedisKeyFilter.TYPE_SET);
+		types.put(ENCODING_ZSET, RedisKeyFilter.TYPE_ZSET);
+		types.put(ENCODING_ZSET_ZIPLIST, RedisKeyFilter.TYPE_ZSET);
+		types.put(ENCODING_HASH, RedisKeyFilter.TYPE_HASH);
+		types.put(ENCODING_ZIPMAP, RedisKeyFilter.TYPE_HASH);
+		types.put(ENCODING_HASH_ZIPLIST, RedisKeyFilter.TYPE_HASH);
+		return types;
+	}
+}
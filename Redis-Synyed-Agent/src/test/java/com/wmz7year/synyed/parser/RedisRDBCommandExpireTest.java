@@ -0,0 +1,70 @@
+package com.wmz7year.synyed.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisSetObject;
+import com.wmz7year.synyed.parser.entry.RedisStringObject;
+
+/**
+ * rdb数据带过期时间时生成命令的测试<br>
+ * 过期时间为毫秒时间戳
+ *
+ * @Title: RedisRDBCommandExpireTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 下午3:12:09
+ * @version V1.0
+ */
+public class RedisRDBCommandExpireTest {
+	private static final RedisStringObject KEY = new RedisStringObject("key".getBytes());
+	private static final long EXPIRE_TIME = 1453795200123L;
+
+	/**
+	 * 测试字符串类型使用SET PXAT一条命令设置
+	 */
+	@Test
+	public void testStringWithPXAT() {
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, new RedisStringObject("value".getBytes()),
+				EXPIRE_TIME).getCommands();
+		assertEquals(1, commands.size());
+		RedisCommand command = commands.get(0);
+		assertEquals("SET", command.getCommand());
+		assertEquals(4, command.getValues().size());
+		assertEquals("value", command.getValues().get(1).getContent());
+		assertEquals("PXAT", command.getValues().get(2).getContent());
+		assertEquals(String.valueOf(EXPIRE_TIME), command.getValues().get(3).getContent());
+	}
+
+	/**
+	 * 测试集合类型在最后使用PEXPIREAT设置
+	 */
+	@Test
+	public void testCollectionWithPEXPIREAT() {
+		RedisSetObject set = new RedisSetObject();
+		set.addElement(new RedisStringObject("member".getBytes()));
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, set, EXPIRE_TIME).getCommands();
+		assertEquals(2, commands.size());
+		assertEquals("SADD", commands.get(0).getCommand());
+		RedisCommand command = commands.get(1);
+		assertEquals("PEXPIREAT", command.getCommand());
+		assertEquals("key", command.getValues().get(0).getContent());
+		assertEquals(String.valueOf(EXPIRE_TIME), command.getValues().get(1).getContent());
+	}
+
+	/**
+	 * 测试没有过期时间时不带过期参数
+	 */
+	@Test
+	public void testNoExpire() {
+		List<RedisCommand> commands = new RedisRDBCommand(KEY, new RedisStringObject("value".getBytes()), -1)
+				.getCommands();
+		assertEquals(1, commands.size());
+		assertEquals(2, commands.get(0).getValues().size());
+	}
+}
@@ -0,0 +1,111 @@
+package com.wmz7year.synyed.parser;
+
+import static com.wmz7year.synyed.constant.RedisCommandSymbol.SELECT;
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_COMMAND;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.net.proroc.RedisProtocolEncoder;
+import com.wmz7year.synyed.parser.entry.RedisChunkPolicy;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisRESPSink;
+import com.wmz7year.synyed.parser.entry.RedisRESPWriter;
+import com.wmz7year.synyed.parser.impl.RDBParserImpl0006;
+import com.wmz7year.synyed.support.RedisRDBGenerator;
+
+/**
+ * rdb数据直接编码为RESP的测试<br>
+ * 直接编码的结果需要与生成命令后再编码的结果完全一致
+ *
+ * @Title: RedisRESPWriterTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月22日 下午4:05:37
+ * @version V1.0
+ */
+public class RedisRESPWriterTest {
+
+	/**
+	 * 测试所有编码类型的数据 使用较小的缓冲区以及分块大小
+	 */
+	@Test
+	public void testSameAsEncodedCommands() throws Exception {
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(300);
+		generator.setDbCount(2);
+		generator.setElementCount(40);
+		generator.setExpireRatio(0.2);
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.parse(generator.generate());
+
+		RedisChunkPolicy chunkPolicy = new RedisChunkPolicy(7, 256);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final int[] commandCounts = new int[1];
+		RedisRESPWriter writer = new RedisRESPWriter(new RedisRESPSink() {
+
+			@Override
+			public ByteBuffer allocate(int minCapacity) {
+				return ByteBuffer.allocate(minCapacity);
+			}
+
+			@Override
+			public void write(ByteBuffer buffer, int commandCount) {
+				actual.write(buffer.array(), 0, buffer.limit());
+				commandCounts[0] += commandCount;
+			}
+		}, 64);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		int expectedCount = 0;
+		for (RedisDB redisDB : parser.getRedisDBs()) {
+			writer.writeSelect(redisDB.getNum());
+			RedisCommand select = new RedisCommand(SELECT);
+			select.addValue(String.valueOf(redisDB.getNum()));
+			encode(select, expected);
+			expectedCount++;
+			for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+				rdbCommand.writeCommands(writer, REDIS_RDB_SYNC_MODE_COMMAND, chunkPolicy);
+				for (RedisCommand command : rdbCommand.getCommands(REDIS_RDB_SYNC_MODE_COMMAND, chunkPolicy)) {
+					encode(command, expected);
+					expectedCount++;
+				}
+			}
+		}
+		writer.flush();
+
+		assertEquals(expectedCount, writer.getCommandCount());
+		assertEquals(expectedCount, commandCounts[0]);
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	private void encode(RedisCommand command, final ByteArrayOutputStream out) throws Exception {
+		new RedisProtocolEncoder().encode(null, command, new ProtocolEncoderOutput() {
+
+			@Override
+			public void write(Object encodedMessage) {
+				IoBuffer buffer = (IoBuffer) encodedMessage;
+				byte[] data = new byte[buffer.remaining()];
+				buffer.get(data);
+				out.write(data, 0, data.length);
+			}
+
+			@Override
+			public void mergeAll() {
+			}
+
+			@Override
+			public WriteFuture flush() {
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,73 @@
+package com.wmz7year.synyed.parser;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_RESTORE;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.util.CRC64;
+import com.wmz7year.synyed.util.NumberUtil;
+
+/**
+ * rdb数据生成RESTORE命令的测试
+ *
+ * @Title: RedisRestoreCommandTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月13日 上午11:02:45
+ * @version V1.0
+ */
+public class RedisRestoreCommandTest {
+	/**
+	 * 数据库0中包含 a=b c=d b=c 三个字符串
+	 */
+	private static final byte[] rdbData = new byte[] { 82, 69, 68, 73, 83, 48, 48, 48, 54, -2, 0, 0, 1, 97, 1, 98, 0, 1,
+			99, 1, 100, 0, 1, 98, 1, 99, -1, 16, 79, 24, -53, 114, -99, 102, 122 };
+
+	/**
+	 * 测试crc64校验值
+	 */
+	@Test
+	public void testCRC64() {
+		byte[] data = "x123456789x".getBytes();
+		assertEquals(0xe9c6d914c4b8d9caL, CRC64.checksum(data, 1, 9));
+		long crc = CRC64.update(0, data, 1, 4);
+		assertEquals(0xe9c6d914c4b8d9caL, CRC64.update(crc, data, 5, 5));
+	}
+
+	/**
+	 * 测试生成RESTORE命令
+	 */
+	@Test
+	public void testRestoreCommands() throws Exception {
+		byte[] rdbHeader = new byte[9];
+		System.arraycopy(rdbData, 0, rdbHeader, 0, 9);
+		RDBParser rdbParser = RDBParserFactory.createRDBParser(rdbHeader);
+		rdbParser.parse(rdbData);
+
+		RedisDB redisDB = rdbParser.getRedisDBs().iterator().next();
+		List<RedisCommand> commands = redisDB.getCommands(REDIS_RDB_SYNC_MODE_RESTORE);
+		assertEquals(3, commands.size());
+
+		RedisCommand command = commands.get(0);
+		assertEquals("RESTORE", command.getCommand());
+		List<RedisCommandData> values = command.getValues();
+		assertEquals("a", values.get(0).getContent());
+		assertEquals("0", values.get(1).getContent());
+		assertEquals("REPLACE", values.get(3).getContent());
+
+		byte[] payload = values.get(2).getData();
+		assertEquals(values.get(2).getLength(), payload.length);
+		assertEquals(13, payload.length);
+		// 类型 + 长度为1的字符串b + 版本号6
+		assertArrayEquals(new byte[] { 0, 1, 'b', 6, 0 }, Arrays.copyOf(payload, 5));
+		byte[] crc = Arrays.copyOfRange(payload, 5, 13);
+		assertEquals(CRC64.checksum(payload, 5), NumberUtil.byte2Long(crc));
+	}
+}
@@ -0,0 +1,119 @@
+package com.wmz7year.synyed.parser;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_COMMAND;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
+import com.wmz7year.synyed.parser.entry.RedisChunkPolicy;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisRESPSink;
+import com.wmz7year.synyed.parser.entry.RedisRESPWriter;
+import com.wmz7year.synyed.parser.entry.RedisSetIntSet;
+import com.wmz7year.synyed.parser.entry.RedisStringObject;
+
+/**
+ * intset类型数据解析测试
+ *
+ * @Title: RedisSetIntSetTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月14日 上午10:35:19
+ * @version V1.0
+ */
+public class RedisSetIntSetTest {
+
+	/**
+	 * 测试解析16位编码的intset
+	 */
+	@Test
+	public void testParse16BitIntSet() throws Exception {
+		RedisSetIntSet intSet = new RedisSetIntSet(createIntSet(2, -1, 5, 300));
+		assertEquals(3, intSet.getElementCount());
+		assertEquals(-1, intSet.getElement(0));
+		assertEquals(5, intSet.getElement(1));
+		assertEquals(300, intSet.getElement(2));
+	}
+
+	/**
+	 * 测试解析64位编码的intset并生成命令参数
+	 */
+	@Test
+	public void testParse64BitIntSet() throws Exception {
+		RedisSetIntSet intSet = new RedisSetIntSet(createIntSet(8, Long.MIN_VALUE, 0, Long.MAX_VALUE));
+		List<RedisCommandData> elements = intSet.getElements();
+		assertEquals(String.valueOf(Long.MIN_VALUE), elements.get(0).getContent());
+		assertEquals("0", elements.get(1).getContent());
+		assertEquals(String.valueOf(Long.MAX_VALUE), elements.get(2).getContent());
+	}
+
+	/**
+	 * 测试整数直接格式化到缓冲区
+	 */
+	@Test
+	public void testWriteDecimal() throws Exception {
+		long[] values = new long[] { 0, 9, 10, -10, 123456789, -987654321012L, Long.MIN_VALUE };
+		for (long value : values) {
+			RedisLongCommandData data = new RedisLongCommandData(value);
+			ByteBuffer buffer = ByteBuffer.allocate(data.getLength() + 1);
+			buffer.put((byte) '$');
+			data.writeTo(buffer);
+			assertFalse(buffer.hasRemaining());
+			assertEquals("$" + value, new String(buffer.array()));
+		}
+	}
+
+	/**
+	 * 测试intset直接写入sadd命令 按分块策略切分
+	 */
+	@Test
+	public void testWriteCommands() throws Exception {
+		RedisSetIntSet intSet = new RedisSetIntSet(createIntSet(8, -12, 7, Long.MAX_VALUE));
+		RedisRDBCommand command = new RedisRDBCommand(new RedisStringObject("k".getBytes()), intSet, -1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RedisRESPWriter writer = new RedisRESPWriter(new RedisRESPSink() {
+
+			@Override
+			public ByteBuffer allocate(int minCapacity) {
+				return ByteBuffer.allocate(minCapacity);
+			}
+
+			@Override
+			public void write(ByteBuffer buffer, int commandCount) {
+				out.write(buffer.array(), 0, buffer.limit());
+			}
+		}, 64);
+		command.writeCommands(writer, REDIS_RDB_SYNC_MODE_COMMAND, new RedisChunkPolicy(2, 1024));
+		writer.flush();
+
+		assertEquals(2, writer.getCommandCount());
+		assertEquals("*4\r\n$4\r\nSADD\r\n$1\r\nk\r\n$3\r\n-12\r\n$1\r\n7\r\n"
+				+ "*3\r\n$4\r\nSADD\r\n$1\r\nk\r\n$19\r\n" + Long.MAX_VALUE + "\r\n", new String(out.toByteArray()));
+	}
+
+	/**
+	 * 生成intset编码数据
+	 */
+	private byte[] createIntSet(int encoding, long... values) {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + encoding * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(encoding);
+		buffer.putInt(values.length);
+		for (long value : values) {
+			if (encoding == 2) {
+				buffer.putShort((short) value);
+			} else if (encoding == 4) {
+				buffer.putInt((int) value);
+			} else {
+				buffer.putLong(value);
+			}
+		}
+		return buffer.array();
+	}
+}
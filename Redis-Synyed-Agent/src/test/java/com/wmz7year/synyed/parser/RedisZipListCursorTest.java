@@ -0,0 +1,157 @@
+package com.wmz7year.synyed.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.parser.entry.RedisZipListCursor;
+import com.wmz7year.synyed.parser.entry.RedisZipListObject;
+
+/**
+ * ziplist游标测试
+ *
+ * @Title: RedisZipListCursorTest.java
+ * @Package com.wmz7year.synyed.parser
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月14日 下午4:12:05
+ * @version V1.0
+ */
+public class RedisZipListCursorTest {
+	/**
+	 * 包含各种整数编码以及字符串的ziplist
+	 */
+	private static final byte[] ZIPLIST = new byte[] { 119, 0, 0, 0, 58, 0, 0, 0, 9, 0, 0, -14, 2, -3, 2, -2, 123, 3,
+			-64, 57, 48, 4, -16, -121, -42, 18, 5, -48, 21, -51, 91, 7, 6, -48, -46, 2, -106, 73, 6, 18, 97, 97, 115,
+			100, 97, 115, 100, 113, 119, 100, 99, 122, 120, 103, 100, 115, 103, 115, 20, 58, 97, 97, 115, 100, 97, 115,
+			100, 113, 119, 100, 99, 122, 120, 103, 100, 115, 103, 115, 114, 105, 103, 106, 97, 101, 121, 110, 54, 104,
+			102, 55, 98, 121, 97, 98, 99, 101, 100, 102, 103, 104, 105, 106, 107, 108, 109, 110, 111, 112, 113, 114,
+			115, 116, 117, 118, 119, 120, 121, 122, -1 };
+
+	/**
+	 * 测试正向遍历各种编码的元素
+	 */
+	@Test
+	public void testForward() throws Exception {
+		RedisZipListObject ziplist = new RedisZipListObject(ZIPLIST);
+		assertEquals(9, ziplist.getElementCount());
+		List<RedisCommandData> elements = ziplist.getElements();
+		assertEquals("1", elements.get(0).getContent());
+		assertEquals("12", elements.get(1).getContent());
+		assertEquals("123", elements.get(2).getContent());
+		assertEquals("12345", elements.get(3).getContent());
+		assertEquals("1234567", elements.get(4).getContent());
+		assertEquals("123456789", elements.get(5).getContent());
+		assertEquals("1234567890", elements.get(6).getContent());
+		assertEquals("aasdasdqwdczxgdsgs", elements.get(7).getContent());
+		assertEquals("aasdasdqwdczxgdsgsrigjaeyn6hf7byabcedfghijklmnopqrstuvwxyz", elements.get(8).getContent());
+	}
+
+	/**
+	 * 测试反向遍历与正向遍历结果一致
+	 */
+	@Test
+	public void testReverse() throws Exception {
+		RedisZipListCursor cursor = new RedisZipListCursor(ZIPLIST);
+		List<String> forward = new ArrayList<String>();
+		while (cursor.next()) {
+			forward.add(cursor.getContent());
+		}
+		cursor.resetToTail();
+		List<String> reverse = new ArrayList<String>();
+		while (cursor.previous()) {
+			reverse.add(0, cursor.getContent());
+		}
+		assertEquals(forward, reverse);
+	}
+
+	/**
+	 * 测试每次获取的游标互不影响
+	 */
+	@Test
+	public void testIndependentCursors() throws Exception {
+		RedisZipListObject ziplist = new RedisZipListObject(ZIPLIST);
+		RedisZipListCursor first = ziplist.getCursor();
+		assertTrue(first.next());
+		assertTrue(first.next());
+		RedisZipListCursor second = ziplist.getCursor();
+		assertNotSame(first, second);
+		assertTrue(second.next());
+		assertEquals("1", second.getContent());
+		assertTrue(first.next());
+		assertEquals("123", first.getContent());
+		assertEquals(9, second.getEntryCount());
+	}
+
+	/**
+	 * 测试14位长度字符串以及5字节prevlen
+	 */
+	@Test
+	public void testLongEntries() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		String longValue = builder.toString();
+		byte[] ziplist = createZipList(longValue, "x", longValue);
+
+		RedisZipListCursor cursor = new RedisZipListCursor(ziplist);
+		assertEquals(3, cursor.getEntryCount());
+		cursor.resetToTail();
+		assertTrue(cursor.previous());
+		assertEquals(longValue, cursor.getContent());
+		assertTrue(cursor.previous());
+		assertEquals("x", cursor.getContent());
+		assertTrue(cursor.previous());
+		assertEquals(longValue, cursor.getContent());
+		assertFalse(cursor.previous());
+	}
+
+	/**
+	 * 生成只包含字符串元素的ziplist
+	 */
+	private byte[] createZipList(String... values) {
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		int prevLength = 0;
+		int tail = 10;
+		for (String value : values) {
+			tail = 10 + entries.size();
+			int start = entries.size();
+			if (prevLength < 254) {
+				entries.write(prevLength);
+			} else {
+				entries.write(0xFE);
+				writeInt(entries, prevLength);
+			}
+			byte[] data = value.getBytes();
+			if (data.length <= 63) {
+				entries.write(data.length);
+			} else {
+				entries.write(0x40 | (data.length >> 8));
+				entries.write(data.length & 0xFF);
+			}
+			entries.write(data, 0, data.length);
+			prevLength = entries.size() - start;
+		}
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		writeInt(result, 10 + entries.size() + 1);
+		writeInt(result, tail);
+		result.write(values.length);
+		result.write(0);
+		byte[] data = entries.toByteArray();
+		result.write(data, 0, data.length);
+		result.write(0xFF);
+		return result.toByteArray();
+	}
+
+	private void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >> 8);
+		out.write(value >> 16);
+		out.write(value >> 24);
+	}
+}
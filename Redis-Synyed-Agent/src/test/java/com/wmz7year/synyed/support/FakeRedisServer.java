@@ -0,0 +1,197 @@
+package com.wmz7year.synyed.support;
+
+import static com.wmz7year.synyed.constant.RedisProtocolConstant.REDIS_PROTOCOL_PARSER;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.apache.mina.transport.socket.nio.NioSocketAcceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wmz7year.synyed.entity.RedisServer;
+import com.wmz7year.synyed.net.proroc.RedisProtocolCodecFactory;
+import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * 进程内模拟Redis服务器的基类<br>
+ * 在本地回环地址的随机端口上监听 使用RESP协议与客户端通信<br>
+ * 收到的每条命令交给子类处理
+ *
+ * @Title: FakeRedisServer.java
+ * @Package com.wmz7year.synyed.support
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午5:20:14
+ * @version V1.0
+ */
+public abstract class FakeRedisServer extends IoHandlerAdapter implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(FakeRedisServer.class);
+
+	/**
+	 * 关闭服务器时等待每个连接关闭的超时时间 单位毫秒
+	 */
+	private static final long CLOSE_TIMEOUT = 3000;
+
+	/**
+	 * 监听连接的对象
+	 */
+	private NioSocketAcceptor acceptor;
+
+	/**
+	 * 启动服务器的方法
+	 *
+	 * @throws IOException
+	 *             当监听端口失败时抛出该异常
+	 */
+	public void start() throws IOException {
+		acceptor = new NioSocketAcceptor();
+		acceptor.getFilterChain().addFirst("redis-protocol", new ProtocolCodecFilter(new RedisProtocolCodecFactory()));
+		acceptor.setHandler(this);
+		acceptor.setReuseAddress(true);
+		acceptor.bind(new InetSocketAddress("127.0.0.1", 0));
+		logger.info(getClass().getSimpleName() + "监听端口：" + getPort());
+	}
+
+	/**
+	 * 获取监听端口的方法
+	 *
+	 * @return 端口
+	 */
+	public int getPort() {
+		return acceptor.getLocalAddress().getPort();
+	}
+
+	/**
+	 * 获取连接到该服务器的Redis服务器信息的方法
+	 *
+	 * @return Redis服务器信息
+	 */
+	public RedisServer getRedisServer() {
+		return new RedisServer("127.0.0.1", getPort(), null);
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#sessionCreated(org.apache.
+	 * mina.core.session.IoSession)
+	 */
+	@Override
+	public void sessionCreated(IoSession session) throws Exception {
+		RedisProtocolParser parser = new RedisProtocolParser();
+		// 模拟服务器不使用临时文件 不受同步管道设置的影响
+		parser.setSpillThreshold(0);
+		session.setAttribute(REDIS_PROTOCOL_PARSER, parser);
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#messageReceived(org.apache.
+	 * mina.core.session.IoSession, java.lang.Object)
+	 */
+	@Override
+	public void messageReceived(IoSession session, Object message) throws Exception {
+		if (!(message instanceof RedisArraysPacket)) {
+			writeError(session, "ERR unknown request");
+			return;
+		}
+		List<RedisPacket> packets = ((RedisArraysPacket) message).getPackets();
+		List<byte[]> args = new ArrayList<byte[]>(packets.size());
+		for (RedisPacket packet : packets) {
+			args.add(packet.getData());
+		}
+		if (args.isEmpty()) {
+			writeError(session, "ERR empty command");
+			return;
+		}
+		String command = new String(args.get(0)).toUpperCase();
+		commandReceived(session, command, args);
+	}
+
+	/*
+	 * @see
+	 * org.apache.mina.core.service.IoHandlerAdapter#exceptionCaught(org.apache.
+	 * mina.core.session.IoSession, java.lang.Throwable)
+	 */
+	@Override
+	public void exceptionCaught(IoSession session, Throwable cause) throws Exception {
+		logger.warn(getClass().getSimpleName() + "连接出现异常", cause);
+		session.close(true);
+	}
+
+	/**
+	 * 处理收到的命令的方法
+	 *
+	 * @param session
+	 *            客户端会话
+	 * @param command
+	 *            大写的命令名称
+	 * @param args
+	 *            命令名称以及参数
+	 * @throws Exception
+	 *             处理出现问题时抛出该异常
+	 */
+	protected abstract void commandReceived(IoSession session, String command, List<byte[]> args)
+			throws Exception;
+
+	/**
+	 * 写入原始数据的方法
+	 *
+	 * @param session
+	 *            客户端会话
+	 * @param data
+	 *            数据
+	 */
+	protected void writeRaw(IoSession session, byte[] data) {
+		session.write(IoBuffer.wrap(data));
+	}
+
+	/**
+	 * 写入简单字符串响应的方法
+	 */
+	protected void writeStatus(IoSession session, String status) {
+		writeRaw(session, ("+" + status + "\r\n").getBytes());
+	}
+
+	/**
+	 * 写入错误响应的方法
+	 */
+	protected void writeError(IoSession session, String message) {
+		writeRaw(session, ("-" + message + "\r\n").getBytes());
+	}
+
+	/**
+	 * 写入整数响应的方法
+	 */
+	protected void writeInteger(IoSession session, long value) {
+		writeRaw(session, (":" + value + "\r\n").getBytes());
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (acceptor != null) {
+			// 先立即关闭已经建立的连接并等待关闭完成 否则unbind会一直等待连接断开
+			for (IoSession session : acceptor.getManagedSessions().values()) {
+				if (!session.close(true).awaitUninterruptibly(CLOSE_TIMEOUT)) {
+					logger.warn(getClass().getSimpleName() + "等待连接关闭超时：" + session);
+				}
+			}
+			// 连接已经处理过关闭 unbind时不再等待关闭一直未完成的连接
+			acceptor.setCloseOnDeactivation(false);
+			acceptor.unbind();
+			acceptor.dispose(false);
+			acceptor = null;
+		}
+	}
+}
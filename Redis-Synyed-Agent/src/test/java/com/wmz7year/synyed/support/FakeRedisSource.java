@@ -0,0 +1,189 @@
+package com.wmz7year.synyed.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.session.IoSession;
+
+/**
+ * 进程内模拟的源Redis服务器<br>
+ * 收到SYNC或者PSYNC命令后发送RDB文件 之后发送复制流<br>
+ * PSYNC的复制id一致并且偏移量在复制流范围内时响应+CONTINUE 从该偏移量继续发送复制流<br>
+ * 数据按照指定的长度分段写出 用于模拟网络分包<br>
+ * 与redis一样不响应REPLCONF ACK 只记录确认的复制偏移量
+ *
+ * @Title: FakeRedisSource.java
+ * @Package com.wmz7year.synyed.support
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午5:41:36
+ * @version V1.0
+ */
+public class FakeRedisSource extends FakeRedisServer {
+	/**
+	 * 复制id 全量同步时的复制偏移量为0
+	 */
+	public static final String REPL_ID = "0000000000000000000000000000000000000000";
+
+	/**
+	 * 全量同步时发送的RDB文件
+	 */
+	private final byte[] rdb;
+	/**
+	 * RDB之后发送的复制流
+	 */
+	private final byte[] stream;
+	/**
+	 * 每次写出数据的最大长度
+	 */
+	private int chunkSize = 16 * 1024;
+	/**
+	 * 复制连接
+	 */
+	private final Set<IoSession> replicas = Collections.newSetFromMap(new ConcurrentHashMap<IoSession, Boolean>());
+	/**
+	 * 执行过的全量同步次数
+	 */
+	private final AtomicInteger fullSyncCount = new AtomicInteger();
+	/**
+	 * 响应+CONTINUE的次数
+	 */
+	private final AtomicInteger continueCount = new AtomicInteger();
+	/**
+	 * 最后一次REPLCONF ACK确认的复制偏移量
+	 */
+	private final AtomicLong ackOffset = new AtomicLong(-1);
+
+	/**
+	 * @param rdb
+	 *            全量同步时发送的RDB文件
+	 * @param stream
+	 *            RDB之后发送的复制流 可以为空
+	 */
+	public FakeRedisSource(byte[] rdb, byte[] stream) {
+		this.rdb = rdb;
+		this.stream = stream == null ? new byte[0] : stream;
+	}
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.support.FakeRedisServer#commandReceived(org.apache.
+	 * mina.core.session.IoSession, java.lang.String, java.util.List)
+	 */
+	@Override
+	protected void commandReceived(IoSession session, String command, List<byte[]> args) throws Exception {
+		if ("PING".equals(command)) {
+			writeStatus(session, "PONG");
+		} else if ("REPLCONF".equals(command) && args.size() == 3 && "ACK".equalsIgnoreCase(new String(args.get(1)))) {
+			ackOffset.set(Long.parseLong(new String(args.get(2))));
+		} else if ("AUTH".equals(command) || "SELECT".equals(command) || "REPLCONF".equals(command)) {
+			writeStatus(session, "OK");
+		} else if ("SYNC".equals(command)) {
+			fullSync(session);
+		} else if ("PSYNC".equals(command)) {
+			String replId = new String(args.get(1));
+			long offset = Long.parseLong(new String(args.get(2)));
+			if (REPL_ID.equals(replId) && offset >= 1 && offset <= stream.length + 1) {
+				writeStatus(session, "CONTINUE");
+				replicas.add(session);
+				continueCount.incrementAndGet();
+				writeChunks(session, Arrays.copyOfRange(stream, (int) offset - 1, stream.length));
+			} else {
+				writeStatus(session, "FULLRESYNC " + REPL_ID + " 0");
+				fullSync(session);
+			}
+		} else {
+			writeError(session, "ERR unknown command '" + command + "'");
+		}
+	}
+
+	/**
+	 * 执行全量同步的方法<br>
+	 * RDB使用bulk格式发送 但是结尾没有\r\n 与redis的行为一致
+	 */
+	private void fullSync(IoSession session) {
+		fullSyncCount.incrementAndGet();
+		replicas.add(session);
+		writeRaw(session, ("$" + rdb.length + "\r\n").getBytes());
+		writeChunks(session, rdb);
+		writeChunks(session, stream);
+	}
+
+	/**
+	 * 向所有复制连接追加发送复制流的方法
+	 *
+	 * @param data
+	 *            RESP格式命令数据
+	 */
+	public void propagate(byte[] data) {
+		for (IoSession session : replicas) {
+			writeChunks(session, data);
+		}
+	}
+
+	private void writeChunks(IoSession session, byte[] data) {
+		for (int offset = 0; offset < data.length; offset += chunkSize) {
+			writeRaw(session, Arrays.copyOfRange(data, offset, Math.min(data.length, offset + chunkSize)));
+		}
+	}
+
+	/**
+	 * 等待响应+CONTINUE达到指定次数的方法
+	 *
+	 * @param count
+	 *            次数
+	 * @param timeout
+	 *            超时时间 毫秒
+	 * @return true为达到指定次数 false为超时
+	 */
+	public boolean awaitContinue(int count, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (continueCount.get() < count) {
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	/**
+	 * 等待REPLCONF ACK确认指定复制偏移量的方法
+	 *
+	 * @param offset
+	 *            复制偏移量
+	 * @param timeout
+	 *            超时时间 毫秒
+	 * @return true为已经确认 false为超时
+	 */
+	public boolean awaitAck(long offset, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (ackOffset.get() != offset) {
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	public long getAckOffset() {
+		return ackOffset.get();
+	}
+
+	public int getFullSyncCount() {
+		return fullSyncCount.get();
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+}
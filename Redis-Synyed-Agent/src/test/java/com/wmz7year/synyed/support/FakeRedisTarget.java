@@ -0,0 +1,143 @@
+package com.wmz7year.synyed.support;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.session.IoSession;
+
+/**
+ * 进程内模拟的目标Redis服务器<br>
+ * 对所有写命令返回成功 并统计收到的命令数量以及写入过的key
+ *
+ * @Title: FakeRedisTarget.java
+ * @Package com.wmz7year.synyed.support
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午5:58:03
+ * @version V1.0
+ */
+public class FakeRedisTarget extends FakeRedisServer {
+	/**
+	 * 收到的命令总数
+	 */
+	private final AtomicLong commandCount = new AtomicLong();
+	/**
+	 * 各命令收到的数量
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> commandCounts = new ConcurrentHashMap<String, AtomicLong>();
+	/**
+	 * 写入过的key
+	 */
+	private final Set<String> keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	/**
+	 * 设置过过期时间的key
+	 */
+	private final Set<String> expireKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/*
+	 * @see
+	 * com.wmz7year.synyed.support.FakeRedisServer#commandReceived(org.apache.
+	 * mina.core.session.IoSession, java.lang.String, java.util.List)
+	 */
+	@Override
+	protected void commandReceived(IoSession session, String command, List<byte[]> args) throws Exception {
+		if ("PING".equals(command)) {
+			writeStatus(session, "PONG");
+			return;
+		}
+		AtomicLong counter = commandCounts.get(command);
+		if (counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = commandCounts.putIfAbsent(command, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		counter.incrementAndGet();
+		if ("MSET".equals(command)) {
+			for (int i = 1; i < args.size(); i += 2) {
+				keys.add(new String(args.get(i)));
+			}
+		} else if (!"SELECT".equals(command) && !"AUTH".equals(command) && args.size() > 1) {
+			keys.add(new String(args.get(1)));
+		}
+		if (isExpireCommand(command, args)) {
+			expireKeys.add(new String(args.get(1)));
+		}
+		commandCount.incrementAndGet();
+		writeStatus(session, "OK");
+	}
+
+	/**
+	 * 判断命令是否设置了过期时间的方法
+	 */
+	private boolean isExpireCommand(String command, List<byte[]> args) {
+		if ("EXPIREAT".equals(command) || "PEXPIREAT".equals(command) || "EXPIRE".equals(command)
+				|| "PEXPIRE".equals(command)) {
+			return true;
+		}
+		if ("SET".equals(command)) {
+			for (int i = 3; i < args.size(); i++) {
+				String option = new String(args.get(i)).toUpperCase();
+				if ("EX".equals(option) || "PX".equals(option) || "EXAT".equals(option) || "PXAT".equals(option)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 等待写入过的key达到指定数量的方法
+	 *
+	 * @param count
+	 *            key数量
+	 * @param timeout
+	 *            超时时间 毫秒
+	 * @return true为达到指定数量 false为超时
+	 * @throws InterruptedException
+	 *             等待被中断时抛出该异常
+	 */
+	public boolean awaitKeys(int count, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (keys.size() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		return true;
+	}
+
+	public long getCommandCount() {
+		return commandCount.get();
+	}
+
+	/**
+	 * 获取指定命令收到数量的方法
+	 *
+	 * @param command
+	 *            命令名称
+	 * @return 收到的数量
+	 */
+	public long getCommandCount(String command) {
+		AtomicLong counter = commandCounts.get(command);
+		return counter == null ? 0 : counter.get();
+	}
+
+	public Map<String, AtomicLong> getCommandCounts() {
+		return commandCounts;
+	}
+
+	public Set<String> getKeys() {
+		return keys;
+	}
+
+	public Set<String> getExpireKeys() {
+		return expireKeys;
+	}
+}
@@ -0,0 +1,561 @@
+package com.wmz7year.synyed.support;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import com.wmz7year.synyed.util.CRC64;
+
+/**
+ * 生成RDB version 6文件的工具类<br>
+ * 可以控制key数量、value长度、集合元素数量、数据编码以及过期时间<br>
+ * 使用相同的随机数种子时生成的数据完全一致
+ *
+ * @Title: RedisRDBGenerator.java
+ * @Package com.wmz7year.synyed.support
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午4:05:27
+ * @version V1.0
+ */
+public class RedisRDBGenerator {
+	/**
+	 * 普通字符串编码
+	 */
+	public static final String ENCODING_STRING = "string";
+	/**
+	 * 整数编码的字符串
+	 */
+	public static final String ENCODING_INT = "int";
+	/**
+	 * lzf压缩的字符串
+	 */
+	public static final String ENCODING_LZF = "lzf";
+	/**
+	 * 普通编码的list
+	 */
+	public static final String ENCODING_LIST = "list";
+	/**
+	 * 普通编码的set
+	 */
+	public static final String ENCODING_SET = "set";
+	/**
+	 * 普通编码的zset
+	 */
+	public static final String ENCODING_ZSET = "zset";
+	/**
+	 * 普通编码的hash
+	 */
+	public static final String ENCODING_HASH = "hash";
+	/**
+	 * zipmap编码的hash
+	 */
+	public static final String ENCODING_ZIPMAP = "zipmap";
+	/**
+	 * ziplist编码的list
+	 */
+	public static final String ENCODING_LIST_ZIPLIST = "list-ziplist";
+	/**
+	 * intset编码的set
+	 */
+	public static final String ENCODING_INTSET = "intset";
+	/**
+	 * ziplist编码的zset
+	 */
+	public static final String ENCODING_ZSET_ZIPLIST = "zset-ziplist";
+	/**
+	 * ziplist编码的hash
+	 */
+	public static final String ENCODING_HASH_ZIPLIST = "hash-ziplist";
+
+	/**
+	 * 所有支持的编码
+	 */
+	public static final String[] ALL_ENCODINGS = { ENCODING_STRING, ENCODING_INT, ENCODING_LZF, ENCODING_LIST,
+			ENCODING_SET, ENCODING_ZSET, ENCODING_HASH, ENCODING_ZIPMAP, ENCODING_LIST_ZIPLIST, ENCODING_INTSET,
+			ENCODING_ZSET_ZIPLIST, ENCODING_HASH_ZIPLIST };
+
+	/**
+	 * lzf单个字面量块的最大长度
+	 */
+	private static final int LZF_MAX_LITERAL = 32;
+	/**
+	 * lzf单个回溯引用的最大长度
+	 */
+	private static final int LZF_MAX_REF = 264;
+
+	/**
+	 * key的数量
+	 */
+	private int keyCount = 1000;
+	/**
+	 * 字符串value以及集合元素的长度
+	 */
+	private int valueSize = 16;
+	/**
+	 * 集合类型的元素数量
+	 */
+	private int elementCount = 8;
+	/**
+	 * 数据库数量 key平均分布到每个数据库中
+	 */
+	private int dbCount = 1;
+	/**
+	 * 带有未来过期时间的key的比例
+	 */
+	private double expireRatio = 0;
+	/**
+	 * 已经过期的key的比例 这些key在解析时会被丢弃
+	 */
+	private double expiredRatio = 0;
+	/**
+	 * 生成的数据编码 按顺序轮流使用
+	 */
+	private List<String> encodings = new ArrayList<String>(Arrays.asList(ALL_ENCODINGS));
+	/**
+	 * 随机数种子
+	 */
+	private long seed = 0x5EEDL;
+
+	/**
+	 * 没有过期的key
+	 */
+	private Set<String> liveKeys = new LinkedHashSet<String>();
+	/**
+	 * 带有过期时间的key的数量
+	 */
+	private int expireKeyCount;
+
+	/**
+	 * 生成RDB文件内容的方法
+	 *
+	 * @return RDB文件内容
+	 */
+	public byte[] generate() {
+		Random random = new Random(seed);
+		liveKeys.clear();
+		expireKeyCount = 0;
+		long now = System.currentTimeMillis();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeAscii(out, "REDIS0006");
+		int keysPerDb = (keyCount + dbCount - 1) / dbCount;
+		for (int i = 0; i < keyCount; i++) {
+			if (i % keysPerDb == 0) {
+				out.write(REDIS_RDB_OPCODE_SELECTDB & 0xFF);
+				writeLength(out, i / keysPerDb);
+			}
+			String key = "key:" + i;
+			double expire = random.nextDouble();
+			if (expire < expiredRatio) {
+				out.write(REDIS_RDB_OPCODE_EXPIRETIME_MS & 0xFF);
+				writeLittleEndian(out, now - 60000, 8);
+			} else {
+				if (expire < expiredRatio + expireRatio) {
+					out.write(REDIS_RDB_OPCODE_EXPIRETIME_MS & 0xFF);
+					writeLittleEndian(out, now + 3600000, 8);
+					expireKeyCount++;
+				}
+				liveKeys.add(key);
+			}
+			writeValue(out, random, key.getBytes(), encodings.get(i % encodings.size()));
+		}
+		out.write(REDIS_RDB_OPCODE_EOF & 0xFF);
+		byte[] content = out.toByteArray();
+		writeLittleEndian(out, CRC64.checksum(content, content.length), 8);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 生成RDB文件的方法
+	 *
+	 * @param file
+	 *            写入的文件
+	 * @throws IOException
+	 *             写入文件出现问题时抛出该异常
+	 */
+	public void generate(File file) throws IOException {
+		FileUtils.writeByteArrayToFile(file, generate());
+	}
+
+	/**
+	 * 写入一个key value的方法
+	 */
+	private void writeValue(ByteArrayOutputStream out, Random random, byte[] key, String encoding) {
+		if (ENCODING_STRING.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_STRING);
+			writeString(out, key);
+			writeString(out, randomBytes(random, valueSize));
+		} else if (ENCODING_INT.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_STRING);
+			writeString(out, key);
+			writeIntString(out, random.nextInt());
+		} else if (ENCODING_LZF.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_STRING);
+			writeString(out, key);
+			writeLzfString(out, random, Math.max(valueSize, 4));
+		} else if (ENCODING_LIST.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_LIST);
+			writeString(out, key);
+			writeLength(out, elementCount);
+			for (int i = 0; i < elementCount; i++) {
+				writeString(out, randomBytes(random, valueSize));
+			}
+		} else if (ENCODING_SET.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_SET);
+			writeString(out, key);
+			writeLength(out, elementCount);
+			for (int i = 0; i < elementCount; i++) {
+				writeString(out, ("member:" + i).getBytes());
+			}
+		} else if (ENCODING_ZSET.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_ZSET);
+			writeString(out, key);
+			writeLength(out, elementCount);
+			for (int i = 0; i < elementCount; i++) {
+				writeString(out, ("member:" + i).getBytes());
+				byte[] score = String.valueOf(i * 1.5).getBytes();
+				out.write(score.length);
+				out.write(score, 0, score.length);
+			}
+		} else if (ENCODING_HASH.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_HASH);
+			writeString(out, key);
+			writeLength(out, elementCount);
+			for (int i = 0; i < elementCount; i++) {
+				writeString(out, ("field:" + i).getBytes());
+				writeString(out, randomBytes(random, valueSize));
+			}
+		} else if (ENCODING_ZIPMAP.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_HASH_ZIPMAP);
+			writeString(out, key);
+			writeString(out, zipMap(random));
+		} else if (ENCODING_LIST_ZIPLIST.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_LIST_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(random, elementCount));
+		} else if (ENCODING_INTSET.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_SET_INTSET);
+			writeString(out, key);
+			writeString(out, intSet(elementCount));
+		} else if (ENCODING_ZSET_ZIPLIST.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_ZSET_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(random, elementCount * 2));
+		} else if (ENCODING_HASH_ZIPLIST.equals(encoding)) {
+			out.write(REDIS_RDB_TYPE_HASH_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(random, elementCount * 2));
+		} else {
+			throw new IllegalArgumentException("不支持的编码：" + encoding);
+		}
+	}
+
+	/**
+	 * 生成zipmap数据的方法
+	 */
+	private byte[] zipMap(Random random) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(Math.min(elementCount, 254));
+		for (int i = 0; i < elementCount; i++) {
+			byte[] field = ("field:" + i).getBytes();
+			byte[] value = randomBytes(random, valueSize);
+			writeZipMapLength(out, field.length);
+			out.write(field, 0, field.length);
+			writeZipMapLength(out, value.length);
+			// 每个value后面留一个空闲字节
+			out.write(1);
+			out.write(value, 0, value.length);
+			out.write(0);
+		}
+		out.write(0xFF);
+		return out.toByteArray();
+	}
+
+	private void writeZipMapLength(ByteArrayOutputStream out, int length) {
+		if (length < 254) {
+			out.write(length);
+		} else {
+			out.write(254);
+			writeLittleEndian(out, length, 4);
+		}
+	}
+
+	/**
+	 * 生成ziplist数据的方法<br>
+	 * 偶数位为字符串元素 奇数位为整数元素
+	 */
+	private byte[] zipList(Random random, int entries) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		int prevlen = 0;
+		int tail = 10;
+		for (int i = 0; i < entries; i++) {
+			tail = 10 + body.size();
+			ByteArrayOutputStream entry = new ByteArrayOutputStream();
+			if (prevlen < 254) {
+				entry.write(prevlen);
+			} else {
+				entry.write(0xFE);
+				writeLittleEndian(entry, prevlen, 4);
+			}
+			if (i % 2 == 0) {
+				byte[] value = ("member:" + i + ":").getBytes();
+				byte[] data = Arrays.copyOf(value, Math.max(value.length, valueSize));
+				System.arraycopy(randomBytes(random, data.length - value.length), 0, data, value.length,
+						data.length - value.length);
+				writeZipListStringHeader(entry, data.length);
+				entry.write(data, 0, data.length);
+			} else {
+				writeZipListInteger(entry, random.nextInt(100000) - 50000);
+			}
+			prevlen = entry.size();
+			byte[] data = entry.toByteArray();
+			body.write(data, 0, data.length);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeLittleEndian(out, 10 + body.size() + 1, 4);
+		writeLittleEndian(out, tail, 4);
+		writeLittleEndian(out, Math.min(entries, 0xFFFF), 2);
+		byte[] data = body.toByteArray();
+		out.write(data, 0, data.length);
+		out.write(0xFF);
+		return out.toByteArray();
+	}
+
+	private void writeZipListStringHeader(ByteArrayOutputStream out, int length) {
+		if (length < (1 << 6)) {
+			out.write(length);
+		} else if (length < (1 << 14)) {
+			out.write(0x40 | (length >> 8));
+			out.write(length & 0xFF);
+		} else {
+			out.write(0x80);
+			out.write((length >>> 24) & 0xFF);
+			out.write((length >>> 16) & 0xFF);
+			out.write((length >>> 8) & 0xFF);
+			out.write(length & 0xFF);
+		}
+	}
+
+	private void writeZipListInteger(ByteArrayOutputStream out, long value) {
+		if (value >= 0 && value <= 12) {
+			out.write(0xF1 + (int) value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			out.write(0xFE);
+			writeLittleEndian(out, value, 1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			out.write(0xC0);
+			writeLittleEndian(out, value, 2);
+		} else if (value >= -(1 << 23) && value < (1 << 23)) {
+			out.write(0xF0);
+			writeLittleEndian(out, value, 3);
+		} else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			out.write(0xD0);
+			writeLittleEndian(out, value, 4);
+		} else {
+			out.write(0xE0);
+			writeLittleEndian(out, value, 8);
+		}
+	}
+
+	/**
+	 * 生成intset数据的方法 元素有序并且使用4字节编码
+	 */
+	private byte[] intSet(int entries) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeLittleEndian(out, 4, 4);
+		writeLittleEndian(out, entries, 4);
+		for (int i = 0; i < entries; i++) {
+			writeLittleEndian(out, Integer.MIN_VALUE + i * 3L, 4);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 写入整数编码字符串的方法
+	 */
+	private void writeIntString(ByteArrayOutputStream out, int value) {
+		if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			out.write(0xC0 | REDIS_RDB_ENC_INT8);
+			writeLittleEndian(out, value, 1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			out.write(0xC0 | REDIS_RDB_ENC_INT16);
+			writeLittleEndian(out, value, 2);
+		} else {
+			out.write(0xC0 | REDIS_RDB_ENC_INT32);
+			writeLittleEndian(out, value, 4);
+		}
+	}
+
+	/**
+	 * 写入lzf压缩字符串的方法<br>
+	 * 数据为4字节随机字面量之后重复 使用回溯引用编码
+	 */
+	private void writeLzfString(ByteArrayOutputStream out, Random random, int length) {
+		int distance = Math.min(LZF_MAX_LITERAL, length);
+		byte[] literal = randomBytes(random, distance);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		compressed.write(distance - 1);
+		compressed.write(literal, 0, distance);
+		int written = distance;
+		while (written < length) {
+			int remaining = length - written;
+			if (remaining < 3) {
+				compressed.write(remaining - 1);
+				for (int i = 0; i < remaining; i++) {
+					compressed.write(literal[(written + i) % distance]);
+				}
+				break;
+			}
+			int ref = Math.min(LZF_MAX_REF, remaining);
+			int len = ref - 2;
+			int offset = distance - 1;
+			if (len < 7) {
+				compressed.write((len << 5) | (offset >> 8));
+			} else {
+				compressed.write((7 << 5) | (offset >> 8));
+				compressed.write(len - 7);
+			}
+			compressed.write(offset & 0xFF);
+			written += ref;
+		}
+		byte[] data = compressed.toByteArray();
+		out.write(0xC0 | REDIS_RDB_ENC_LZF);
+		writeLength(out, data.length);
+		writeLength(out, length);
+		out.write(data, 0, data.length);
+	}
+
+	private void writeString(ByteArrayOutputStream out, byte[] value) {
+		writeLength(out, value.length);
+		out.write(value, 0, value.length);
+	}
+
+	private void writeLength(ByteArrayOutputStream out, int length) {
+		if (length < (1 << 6)) {
+			out.write(length);
+		} else if (length < (1 << 14)) {
+			out.write(0x40 | (length >> 8));
+			out.write(length & 0xFF);
+		} else {
+			out.write(0x80);
+			out.write((length >>> 24) & 0xFF);
+			out.write((length >>> 16) & 0xFF);
+			out.write((length >>> 8) & 0xFF);
+			out.write(length & 0xFF);
+		}
+	}
+
+	private void writeLittleEndian(ByteArrayOutputStream out, long value, int length) {
+		for (int i = 0; i < length; i++) {
+			out.write((int) (value >>> (i * 8)) & 0xFF);
+		}
+	}
+
+	private void writeAscii(ByteArrayOutputStream out, String value) {
+		byte[] data = value.getBytes();
+		out.write(data, 0, data.length);
+	}
+
+	/**
+	 * 生成随机可见字符的方法
+	 */
+	static byte[] randomBytes(Random random, int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(26));
+		}
+		return data;
+	}
+
+	/**
+	 * 获取上一次生成的RDB中没有过期的key的方法
+	 *
+	 * @return key集合
+	 */
+	public Set<String> getLiveKeys() {
+		return liveKeys;
+	}
+
+	/**
+	 * 获取上一次生成的RDB中带有未来过期时间的key数量的方法
+	 *
+	 * @return key数量
+	 */
+	public int getExpireKeyCount() {
+		return expireKeyCount;
+	}
+
+	public int getKeyCount() {
+		return keyCount;
+	}
+
+	public void setKeyCount(int keyCount) {
+		this.keyCount = keyCount;
+	}
+
+	public int getValueSize() {
+		return valueSize;
+	}
+
+	public void setValueSize(int valueSize) {
+		this.valueSize = valueSize;
+	}
+
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	public void setElementCount(int elementCount) {
+		this.elementCount = elementCount;
+	}
+
+	public int getDbCount() {
+		return dbCount;
+	}
+
+	public void setDbCount(int dbCount) {
+		this.dbCount = dbCount;
+	}
+
+	public double getExpireRatio() {
+		return expireRatio;
+	}
+
+	public void setExpireRatio(double expireRatio) {
+		this.expireRatio = expireRatio;
+	}
+
+	public double getExpiredRatio() {
+		return expiredRatio;
+	}
+
+	public void setExpiredRatio(double expiredRatio) {
+		this.expiredRatio = expiredRatio;
+	}
+
+	public List<String> getEncodings() {
+		return encodings;
+	}
+
+	public void setEncodings(String... encodings) {
+		this.encodings = new ArrayList<String>(Arrays.asList(encodings));
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
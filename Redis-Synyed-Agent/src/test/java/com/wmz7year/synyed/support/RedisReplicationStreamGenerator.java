@@ -0,0 +1,215 @@
+package com.wmz7year.synyed.support;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 生成RESP格式复制流的工具类<br>
+ * 模拟源Redis在全量同步之后发送给slave的写命令<br>
+ * 可以控制命令数量、key空间大小、value长度以及各命令的比例
+ *
+ * @Title: RedisReplicationStreamGenerator.java
+ * @Package com.wmz7year.synyed.support
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午4:48:51
+ * @version V1.0
+ */
+public class RedisReplicationStreamGenerator {
+
+	/**
+	 * 命令数量
+	 */
+	private int commandCount = 1000;
+	/**
+	 * key空间大小
+	 */
+	private int keySpace = 100;
+	/**
+	 * value长度
+	 */
+	private int valueSize = 16;
+	/**
+	 * 每隔多少条命令插入一个PING 0为不插入
+	 */
+	private int pingInterval = 0;
+	/**
+	 * 命令与权重 按权重随机选择命令
+	 */
+	private Map<String, Integer> mix = new LinkedHashMap<String, Integer>();
+	/**
+	 * 随机数种子
+	 */
+	private long seed = 0x5EEDL;
+
+	/**
+	 * 上一次生成的流中写入过的key
+	 */
+	private Set<String> writtenKeys = new LinkedHashSet<String>();
+	/**
+	 * 上一次生成的流中除PING以外的命令数量
+	 */
+	private int writeCommandCount;
+
+	public RedisReplicationStreamGenerator() {
+		mix.put("SET", 5);
+		mix.put("INCR", 2);
+		mix.put("HSET", 1);
+		mix.put("SADD", 1);
+		mix.put("RPUSH", 1);
+		mix.put("ZADD", 1);
+	}
+
+	/**
+	 * 生成复制流内容的方法
+	 *
+	 * @return RESP格式数据
+	 */
+	public byte[] generate() {
+		Random random = new Random(seed);
+		writtenKeys.clear();
+		writeCommandCount = 0;
+		int totalWeight = 0;
+		for (Integer weight : mix.values()) {
+			totalWeight += weight;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < commandCount; i++) {
+			if (pingInterval > 0 && i % pingInterval == 0) {
+				writeCommand(out, "PING");
+			}
+			String command = pick(random, totalWeight);
+			String key = command.toLowerCase() + ":" + random.nextInt(keySpace);
+			String value = new String(RedisRDBGenerator.randomBytes(random, valueSize));
+			if ("SET".equals(command)) {
+				writeCommand(out, command, key, value);
+			} else if ("INCR".equals(command)) {
+				writeCommand(out, command, key);
+			} else if ("HSET".equals(command)) {
+				writeCommand(out, command, key, "field:" + random.nextInt(16), value);
+			} else if ("ZADD".equals(command)) {
+				writeCommand(out, command, key, String.valueOf(random.nextInt(1000)), value);
+			} else if ("DEL".equals(command)) {
+				writeCommand(out, command, key);
+			} else {
+				// SADD RPUSH LPUSH等key加单个value的命令
+				writeCommand(out, command, key, value);
+			}
+			writtenKeys.add(key);
+			writeCommandCount++;
+		}
+		return out.toByteArray();
+	}
+
+	private String pick(Random random, int totalWeight) {
+		int value = random.nextInt(totalWeight);
+		for (Entry<String, Integer> entry : mix.entrySet()) {
+			value -= entry.getValue();
+			if (value < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * 写入一条RESP数组命令的方法
+	 *
+	 * @param out
+	 *            输出流
+	 * @param args
+	 *            命令以及参数
+	 */
+	public static void writeCommand(ByteArrayOutputStream out, String... args) {
+		writeAscii(out, "*" + args.length + "\r\n");
+		for (String arg : args) {
+			byte[] data = arg.getBytes();
+			writeAscii(out, "$" + data.length + "\r\n");
+			out.write(data, 0, data.length);
+			writeAscii(out, "\r\n");
+		}
+	}
+
+	private static void writeAscii(ByteArrayOutputStream out, String value) {
+		byte[] data = value.getBytes();
+		out.write(data, 0, data.length);
+	}
+
+	/**
+	 * 设置命令权重的方法<br>
+	 * 调用后替换默认的命令比例
+	 *
+	 * @param mix
+	 *            命令与权重
+	 */
+	public void setMix(Map<String, Integer> mix) {
+		this.mix = new LinkedHashMap<String, Integer>(mix);
+	}
+
+	public Map<String, Integer> getMix() {
+		return mix;
+	}
+
+	/**
+	 * 获取上一次生成的流中写入过的key的方法
+	 *
+	 * @return key集合
+	 */
+	public Set<String> getWrittenKeys() {
+		return writtenKeys;
+	}
+
+	/**
+	 * 获取上一次生成的流中除PING以外的命令数量的方法
+	 *
+	 * @return 命令数量
+	 */
+	public int getWriteCommandCount() {
+		return writeCommandCount;
+	}
+
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	public void setCommandCount(int commandCount) {
+		this.commandCount = commandCount;
+	}
+
+	public int getKeySpace() {
+		return keySpace;
+	}
+
+	public void setKeySpace(int keySpace) {
+		this.keySpace = keySpace;
+	}
+
+	public int getValueSize() {
+		return valueSize;
+	}
+
+	public void setValueSize(int valueSize) {
+		this.valueSize = valueSize;
+	}
+
+	public int getPingInterval() {
+		return pingInterval;
+	}
+
+	public void setPingInterval(int pingInterval) {
+		this.pingInterval = pingInterval;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
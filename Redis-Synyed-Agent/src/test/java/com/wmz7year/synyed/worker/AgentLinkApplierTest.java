@@ -0,0 +1,73 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.net.link.AgentLinkClient;
+import com.wmz7year.synyed.net.link.AgentLinkServer;
+import com.wmz7year.synyed.support.FakeRedisTarget;
+
+/**
+ * 远程Agent批量命令执行测试<br>
+ * 多个通道的批量命令经过链路后使用管道执行到目标Redis
+ *
+ * @Title: AgentLinkApplierTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月22日 上午10:36:17
+ * @version V1.0
+ */
+public class AgentLinkApplierTest {
+	private FakeRedisTarget target;
+	private AgentLinkApplier applier;
+	private AgentLinkServer server;
+	private AgentLinkClient client;
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+		if (applier != null) {
+			applier.close();
+		}
+		if (target != null) {
+			target.close();
+		}
+	}
+
+	@Test
+	public void testPipelinedApply() throws Exception {
+		target = new FakeRedisTarget();
+		target.start();
+		// 4个通道共用2个连接 每个批量分多次管道发送
+		applier = new AgentLinkApplier(target.getRedisServer(), 2, 64);
+		server = new AgentLinkServer("127.0.0.1", 0, applier);
+		server.start();
+		client = new AgentLinkClient("127.0.0.1", server.getLocalPort(), 5000);
+		client.setBatchMaxCommands(200);
+		client.connect();
+
+		int channels = 4;
+		int perChannel = 1000;
+		for (int i = 0; i < perChannel; i++) {
+			for (int channel = 0; channel < channels; channel++) {
+				RedisCommand command = new RedisCommand("SET");
+				command.addValue("key:" + channel + ":" + i);
+				command.addValue("value:" + i);
+				client.append(channel, command);
+			}
+		}
+		client.flush();
+		assertTrue(client.awaitAcked(20000));
+
+		assertEquals(channels * perChannel, target.getCommandCount("SET"));
+		assertEquals(channels * perChannel, target.getKeys().size());
+	}
+}
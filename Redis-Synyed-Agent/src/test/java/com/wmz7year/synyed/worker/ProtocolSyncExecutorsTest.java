@@ -0,0 +1,59 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+/**
+ * 同步命令发送线程池测试
+ *
+ * @Title: ProtocolSyncExecutorsTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月20日 上午10:48:02
+ * @version V1.0
+ */
+public class ProtocolSyncExecutorsTest {
+
+	/**
+	 * 测试虚拟线程模式 不支持时退回普通线程池
+	 */
+	@Test
+	public void testVirtualMode() throws Exception {
+		Thread thread = runInExecutor(ProtocolSyncExecutors.MODE_VIRTUAL);
+		boolean isVirtual = false;
+		if (ProtocolSyncExecutors.isVirtualThreadSupported()) {
+			isVirtual = (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		}
+		assertEquals(ProtocolSyncExecutors.isVirtualThreadSupported(), isVirtual);
+		assertTrue(thread.getName().startsWith("test-sender-"));
+	}
+
+	/**
+	 * 测试普通线程池模式
+	 */
+	@Test
+	public void testPlatformMode() throws Exception {
+		Thread thread = runInExecutor(ProtocolSyncExecutors.MODE_PLATFORM);
+		assertEquals("test-sender-0", thread.getName());
+		assertNotNull(runInExecutor("unknown"));
+	}
+
+	private Thread runInExecutor(String mode) throws Exception {
+		ExecutorService executorService = ProtocolSyncExecutors.newSenderExecutor(mode, 2, "test-sender-");
+		try {
+			return executorService.submit(new Callable<Thread>() {
+
+				@Override
+				public Thread call() throws Exception {
+					return Thread.currentThread();
+				}
+			}).get();
+		} finally {
+			executorService.shutdown();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.wmz7year.synyed.entity.RedisServer;
+import com.wmz7year.synyed.module.RedisCommandFilterManager;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.impl.RDBParserImpl0006;
+import com.wmz7year.synyed.support.FakeRedisSource;
+import com.wmz7year.synyed.support.FakeRedisTarget;
+import com.wmz7year.synyed.support.RedisRDBGenerator;
+import com.wmz7year.synyed.support.RedisReplicationStreamGenerator;
+import com.wmz7year.synyed.worker.checkpoint.RedisSyncCheckpoint;
+
+/**
+ * 同步断点测试<br>
+ * 重启后从保存的rdb文件的断点位置继续同步 之后使用PSYNC继续同步复制流 源服务器不需要再次全量同步
+ *
+ * @Title: ProtocolSyncWorkerCheckpointTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月27日 下午3:25:17
+ * @version V1.0
+ */
+public class ProtocolSyncWorkerCheckpointTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeRedisSource source;
+	private FakeRedisTarget target;
+	private ProtocolSyncWorker worker;
+
+	@After
+	public void tearDown() throws Exception {
+		if (worker != null) {
+			worker.shutdown();
+		}
+		if (source != null) {
+			source.close();
+		}
+		if (target != null) {
+			target.close();
+		}
+	}
+
+	/**
+	 * 测试重启后使用PSYNC从已经同步的位置继续同步复制流
+	 */
+	@Test
+	public void testContinueStreamAfterRestart() throws Exception {
+		RedisRDBGenerator rdbGenerator = new RedisRDBGenerator();
+		rdbGenerator.setKeyCount(500);
+		RedisReplicationStreamGenerator streamGenerator = new RedisReplicationStreamGenerator();
+		streamGenerator.setCommandCount(500);
+		streamGenerator.setKeySpace(200);
+		streamGenerator.setPingInterval(50);
+		byte[] stream = streamGenerator.generate();
+		startServers(rdbGenerator.generate(), stream);
+
+		worker = startWorker(false);
+		Set<String> expectedKeys = new HashSet<String>(rdbGenerator.getLiveKeys());
+		expectedKeys.addAll(streamGenerator.getWrittenKeys());
+		assertTrue(target.awaitKeys(expectedKeys.size(), 60000));
+		RedisSyncCheckpoint checkpoint = awaitCheckpoint(stream.length);
+		worker.shutdown();
+		assertEquals(FakeRedisSource.REPL_ID, checkpoint.getReplId());
+		assertFalse(checkpoint.getRdbFile().exists());
+
+		worker = startWorker(false);
+		assertTrue(source.awaitContinue(1, 10000));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RedisReplicationStreamGenerator.writeCommand(out, "SET", "after:restart", "value");
+		source.propagate(out.toByteArray());
+		expectedKeys.add("after:restart");
+		assertTrue(target.awaitKeys(expectedKeys.size(), 10000));
+		assertEquals(expectedKeys, target.getKeys());
+		assertEquals(1, source.getFullSyncCount());
+		awaitCheckpoint(stream.length + out.size());
+	}
+
+	/**
+	 * 测试定时以及收到REPLCONF GETACK后向源服务器确认已经同步的复制偏移量
+	 */
+	@Test
+	public void testReplconfAck() throws Exception {
+		RedisRDBGenerator rdbGenerator = new RedisRDBGenerator();
+		rdbGenerator.setKeyCount(100);
+		RedisReplicationStreamGenerator streamGenerator = new RedisReplicationStreamGenerator();
+		streamGenerator.setCommandCount(200);
+		streamGenerator.setPingInterval(50);
+		byte[] stream = streamGenerator.generate();
+		startServers(rdbGenerator.generate(), stream);
+
+		worker = startWorker(false);
+		// rdb以及之后的复制流同步完成后定时确认
+		assertTrue("确认的复制偏移量：" + source.getAckOffset(), source.awaitAck(stream.length, 10000));
+
+		// 复制流中的REPLCONF GETACK执行完后确认 偏移量包含GETACK命令本身
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RedisReplicationStreamGenerator.writeCommand(out, "REPLCONF", "GETACK", "*");
+		RedisReplicationStreamGenerator.writeCommand(out, "SET", "after:getack", "value");
+		source.propagate(out.toByteArray());
+		assertTrue("确认的复制偏移量：" + source.getAckOffset(), source.awaitAck(stream.length + out.size(), 10000));
+	}
+
+	/**
+	 * 测试从保存的rdb文件的断点位置继续同步
+	 */
+	@Test
+	public void testResumeRDB() throws Exception {
+		runResumeRDB(false);
+	}
+
+	/**
+	 * 测试直接编码同步rdb时从断点位置继续同步
+	 */
+	@Test
+	public void testResumeRDBFused() throws Exception {
+		runResumeRDB(true);
+	}
+
+	private void runResumeRDB(boolean fused) throws Exception {
+		RedisRDBGenerator rdbGenerator = new RedisRDBGenerator();
+		rdbGenerator.setKeyCount(600);
+		rdbGenerator.setDbCount(2);
+		rdbGenerator.setElementCount(20);
+		rdbGenerator.setExpireRatio(0.1);
+		byte[] rdb = rdbGenerator.generate();
+		RedisReplicationStreamGenerator streamGenerator = new RedisReplicationStreamGenerator();
+		streamGenerator.setCommandCount(200);
+		byte[] stream = streamGenerator.generate();
+
+		// 取rdb中间的一个key作为断点 之后的key需要同步
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.parse(rdb);
+		List<Long> offsets = new ArrayList<Long>();
+		for (RedisDB redisDB : parser.getRedisDBs()) {
+			for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+				offsets.add(rdbCommand.getOffset());
+			}
+		}
+		long resumeOffset = offsets.get(offsets.size() / 2);
+		Set<String> expectedKeys = new HashSet<String>(streamGenerator.getWrittenKeys());
+		for (RedisDB redisDB : parser.getRedisDBs()) {
+			for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+				if (rdbCommand.getOffset() > resumeOffset) {
+					expectedKeys.add(new String(rdbCommand.getKey().getBuffer()));
+				}
+			}
+		}
+
+		startServers(rdb, stream);
+		RedisSyncCheckpoint checkpoint = createCheckpoint();
+		checkpoint.reset(FakeRedisSource.REPL_ID, 0);
+		FileUtils.writeByteArrayToFile(checkpoint.getRdbFile(), rdb);
+		checkpoint.setRdbOffset(resumeOffset);
+		checkpoint.save();
+
+		worker = startWorker(fused);
+		assertTrue(target.awaitKeys(expectedKeys.size(), 60000));
+		assertEquals(expectedKeys, target.getKeys());
+		assertEquals(0, source.getFullSyncCount());
+		// 断点之后的集合类型数据先删除再写入
+		assertTrue(target.getCommandCount("DEL") > 0);
+
+		checkpoint = awaitCheckpoint(stream.length);
+		assertTrue(checkpoint.isRdbDone());
+		assertFalse(checkpoint.getRdbFile().exists());
+	}
+
+	private void startServers(byte[] rdb, byte[] stream) throws Exception {
+		target = new FakeRedisTarget();
+		target.start();
+		source = new FakeRedisSource(rdb, stream);
+		source.setChunkSize(1000);
+		source.start();
+	}
+
+	private ProtocolSyncWorker startWorker(boolean rdbSyncFused) {
+		ProtocolSyncWorker worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "rdbCommandSynConnectionCount", 4);
+		ReflectionTestUtils.setField(worker, "rdbSyncFused", rdbSyncFused);
+		ReflectionTestUtils.setField(worker, "checkpointDir", folder.getRoot().getPath());
+		ReflectionTestUtils.setField(worker, "checkpointInterval", 0L);
+		worker.setSrcRedis(source.getRedisServer());
+		worker.setDescRedis(target.getRedisServer());
+		worker.start();
+		return worker;
+	}
+
+	private RedisSyncCheckpoint createCheckpoint() {
+		RedisServer server = source.getRedisServer();
+		return new RedisSyncCheckpoint(folder.getRoot(), server.getHost() + "_" + server.getPort());
+	}
+
+	/**
+	 * 等待断点中rdb同步完成并且复制流同步到指定长度的方法
+	 */
+	private RedisSyncCheckpoint awaitCheckpoint(long streamOffset) throws Exception {
+		RedisSyncCheckpoint checkpoint = createCheckpoint();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			if (checkpoint.load() && checkpoint.isRdbDone() && checkpoint.getStreamOffset() == streamOffset) {
+				return checkpoint;
+			}
+			Thread.sleep(20);
+		}
+		fail("同步断点没有达到预期：" + checkpoint + " 复制流长度：" + streamOffset);
+		return null;
+	}
+}
@@ -0,0 +1,324 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.SimpleBufferAllocator;
+import org.apache.mina.core.session.IoSession;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.wmz7year.synyed.module.RedisCommandFilterManager;
+import com.wmz7year.synyed.net.buffer.PooledIoBufferAllocator;
+import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
+import com.wmz7year.synyed.net.spi.DefaultRedisConnection;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.impl.RDBParserImpl0006;
+import com.wmz7year.synyed.support.FakeRedisSource;
+import com.wmz7year.synyed.support.FakeRedisTarget;
+import com.wmz7year.synyed.support.RedisRDBGenerator;
+import com.wmz7year.synyed.support.RedisReplicationStreamGenerator;
+
+/**
+ * 同步管道端到端测试<br>
+ * 使用进程内模拟的源Redis与目标Redis 不需要真实的Redis服务器
+ *
+ * @Title: ProtocolSyncWorkerEndToEndTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午6:20:45
+ * @version V1.0
+ */
+public class ProtocolSyncWorkerEndToEndTest {
+	private static final Logger logger = LoggerFactory.getLogger(ProtocolSyncWorkerEndToEndTest.class);
+
+	private FakeRedisSource source;
+	private FakeRedisTarget target;
+	private ProtocolSyncWorker worker;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	/**
+	 * 启动前额外设置到同步管道的属性
+	 */
+	private Map<String, Object> workerSettings = new HashMap<String, Object>();
+	/**
+	 * 被过滤规则排除的key前缀
+	 */
+	private String[] excludedKeyPrefixes = new String[0];
+
+	@After
+	public void tearDown() throws Exception {
+		if (worker != null) {
+			worker.shutdown();
+		}
+		if (source != null) {
+			source.close();
+		}
+		if (target != null) {
+			target.close();
+		}
+	}
+
+	/**
+	 * 测试生成的RDB文件包含所有编码并且可以被解析
+	 */
+	@Test
+	public void testGeneratedRDB() throws Exception {
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(120);
+		generator.setDbCount(2);
+		generator.setExpireRatio(0.2);
+		generator.setExpiredRatio(0.1);
+		byte[] rdb = generator.generate();
+
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.parse(rdb);
+		int keys = 0;
+		for (RedisDB redisDB : parser.getRedisDBs()) {
+			keys += redisDB.getRDBCommands().size();
+		}
+		assertEquals(2, parser.getRedisDBs().size());
+		assertEquals(generator.getLiveKeys().size(), keys);
+		assertTrue(generator.getExpireKeyCount() > 0);
+		assertTrue(generator.getLiveKeys().size() < generator.getKeyCount());
+	}
+
+	/**
+	 * 测试全量同步加增量同步的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSync() throws Exception {
+		runFullAndIncrementalSync();
+	}
+
+	/**
+	 * 测试使用缓存的IoBuffer分配器时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncWithPooledBuffers() throws Exception {
+		DefaultRedisConnection.setDefaultBufferAllocator(new PooledIoBufferAllocator(), true);
+		try {
+			runFullAndIncrementalSync();
+			// 只有同步使用的连接使用缓存的分配器 MINA全局的分配器不变
+			assertTrue(IoBuffer.getAllocator().toString(), IoBuffer.getAllocator() instanceof SimpleBufferAllocator);
+		} finally {
+			DefaultRedisConnection.setDefaultBufferAllocator(null, false);
+		}
+	}
+
+	/**
+	 * 测试增量命令中的value写入临时文件并通过FileRegion发送时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncSpilled() throws Exception {
+		File spillDir = folder.newFolder();
+		RedisProtocolParser.setDefaultSpill(12, spillDir);
+		try {
+			runFullAndIncrementalSync();
+		} finally {
+			RedisProtocolParser.setDefaultSpill(RedisProtocolParser.DEFAULT_SPILL_THRESHOLD, null);
+		}
+		// 执行完成后临时文件被删除
+		long deadline = System.currentTimeMillis() + 5000;
+		while (spillDir.list().length > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, spillDir.list().length);
+	}
+
+	/**
+	 * 测试rdb数据直接编码为RESP发送时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncFused() throws Exception {
+		runFullAndIncrementalSync(true);
+	}
+
+	/**
+	 * 测试开启同一个key覆盖写命令合并时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncCoalesced() throws Exception {
+		workerSettings.put("applyCoalesceEnabled", true);
+		runFullAndIncrementalSync();
+	}
+
+	/**
+	 * 测试开启自增命令合并时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncIncrementMerged() throws Exception {
+		workerSettings.put("applyCoalesceEnabled", true);
+		workerSettings.put("applyMergeIncrementEnabled", true);
+		runFullAndIncrementalSync();
+	}
+
+	/**
+	 * 测试开启所有批量命令优化时的完整流程
+	 */
+	@Test
+	public void testFullAndIncrementalSyncAdjacentMerged() throws Exception {
+		workerSettings.put("applyCoalesceEnabled", true);
+		workerSettings.put("applyMergeIncrementEnabled", true);
+		workerSettings.put("applyMergeAdjacentEnabled", true);
+		workerSettings.put("applyMergeAdjacentMaxArgs", 64);
+		runFullAndIncrementalSync();
+	}
+
+	/**
+	 * 测试按key规则过滤全量与增量数据
+	 */
+	@Test
+	public void testFullAndIncrementalSyncFiltered() throws Exception {
+		workerSettings.put("applyCoalesceEnabled", true);
+		workerSettings.put("filterKeyExclude", "key:1*, sadd:*");
+		excludedKeyPrefixes = new String[] { "key:1", "sadd:" };
+		runFullAndIncrementalSync();
+	}
+
+	/**
+	 * 测试全量同步中有命令没有发送到目标服务器时停止同步管道 不再执行之后的复制流
+	 */
+	@Test
+	public void testStopOnRDBSendFailure() throws Exception {
+		testStopOnRDBSendFailure(false);
+	}
+
+	/**
+	 * 测试直接编码全量同步时目标连接断开后停止同步管道
+	 */
+	@Test
+	public void testStopOnRDBSendFailureFused() throws Exception {
+		testStopOnRDBSendFailure(true);
+	}
+
+	private void testStopOnRDBSendFailure(boolean rdbSyncFused) throws Exception {
+		RedisRDBGenerator rdbGenerator = new RedisRDBGenerator();
+		rdbGenerator.setKeyCount(200);
+		byte[] rdb = rdbGenerator.generate();
+		RedisReplicationStreamGenerator streamGenerator = new RedisReplicationStreamGenerator();
+		streamGenerator.setCommandCount(100);
+		byte[] stream = streamGenerator.generate();
+
+		// 收到第50条命令时断开连接 不返回响应
+		final AtomicInteger received = new AtomicInteger();
+		target = new FakeRedisTarget() {
+
+			@Override
+			protected void commandReceived(IoSession session, String command, List<byte[]> args) throws Exception {
+				if (received.incrementAndGet() == 50) {
+					session.close(true);
+					return;
+				}
+				super.commandReceived(session, command, args);
+			}
+		};
+		target.start();
+		source = new FakeRedisSource(rdb, stream);
+		source.start();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "rdbCommandSynConnectionCount", 1);
+		ReflectionTestUtils.setField(worker, "rdbSyncFused", rdbSyncFused);
+		worker.setSrcRedis(source.getRedisServer());
+		worker.setDescRedis(target.getRedisServer());
+		worker.start();
+
+		long deadline = System.currentTimeMillis() + 30000;
+		while (!worker.isFailed() && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		assertTrue(worker.isFailed());
+		assertFalse(worker.isRDBFileProcessed());
+		// 复制流没有在部分加载的数据上执行
+		for (String key : streamGenerator.getWrittenKeys()) {
+			if (!rdbGenerator.getLiveKeys().contains(key)) {
+				assertFalse(key, target.getKeys().contains(key));
+			}
+		}
+	}
+
+	private void runFullAndIncrementalSync() throws Exception {
+		runFullAndIncrementalSync(false);
+	}
+
+	private void runFullAndIncrementalSync(boolean rdbSyncFused) throws Exception {
+		RedisRDBGenerator rdbGenerator = new RedisRDBGenerator();
+		rdbGenerator.setKeyCount(2000);
+		rdbGenerator.setExpireRatio(0.1);
+		byte[] rdb = rdbGenerator.generate();
+
+		RedisReplicationStreamGenerator streamGenerator = new RedisReplicationStreamGenerator();
+		streamGenerator.setCommandCount(2000);
+		streamGenerator.setKeySpace(500);
+		streamGenerator.setPingInterval(100);
+		byte[] stream = streamGenerator.generate();
+
+		target = new FakeRedisTarget();
+		target.start();
+		source = new FakeRedisSource(rdb, stream);
+		// 使用较小的分段模拟网络分包
+		source.setChunkSize(1000);
+		source.start();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "rdbCommandSynConnectionCount", 4);
+		ReflectionTestUtils.setField(worker, "rdbSyncFused", rdbSyncFused);
+		for (Entry<String, Object> setting : workerSettings.entrySet()) {
+			ReflectionTestUtils.setField(worker, setting.getKey(), setting.getValue());
+		}
+		worker.setSrcRedis(source.getRedisServer());
+		worker.setDescRedis(target.getRedisServer());
+
+		Runtime runtime = Runtime.getRuntime();
+		long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+		long start = System.currentTimeMillis();
+		worker.start();
+
+		Set<String> expectedKeys = new HashSet<String>(rdbGenerator.getLiveKeys());
+		expectedKeys.addAll(streamGenerator.getWrittenKeys());
+		for (Iterator<String> iterator = expectedKeys.iterator(); iterator.hasNext();) {
+			String key = iterator.next();
+			for (String prefix : excludedKeyPrefixes) {
+				if (key.startsWith(prefix)) {
+					iterator.remove();
+					break;
+				}
+			}
+		}
+		assertTrue("同步超时 已同步key数量：" + target.getKeys().size(),
+				target.awaitKeys(expectedKeys.size(), 60000));
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+
+		assertTrue(worker.isRDBFileProcessed());
+		assertEquals(expectedKeys, target.getKeys());
+		// 字符串使用SET PXAT 其他类型使用PEXPIREAT 过期时间为毫秒
+		assertEquals(0, target.getCommandCount("EXPIREAT"));
+		if (excludedKeyPrefixes.length == 0) {
+			assertEquals(rdbGenerator.getExpireKeyCount(), target.getExpireKeys().size());
+			assertTrue(target.getCommandCount("PEXPIREAT") < rdbGenerator.getExpireKeyCount());
+		}
+		logger.info("同步命令数：" + target.getCommandCount() + " 耗时：" + elapsed + "ms 吞吐量："
+				+ (target.getCommandCount() * 1000 / elapsed) + "条/秒 堆内存变化：" + (usedAfter - usedBefore) / 1024
+				+ "KB");
+	}
+}
@@ -0,0 +1,518 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.module.RedisCommandFilterManager;
+import com.wmz7year.synyed.net.RedisConnection;
+import com.wmz7year.synyed.net.RedisResponseListener;
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisDataBaseTransferPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+import com.wmz7year.synyed.packet.redis.RedisSimpleStringPacket;
+import com.wmz7year.synyed.support.RedisRDBGenerator;
+import com.wmz7year.synyed.worker.spool.RedisStreamSpool;
+
+/**
+ * 同步管道流量控制测试<br>
+ * 目标服务器阻塞时未执行数据量超过高水位暂停读取源连接 恢复后降到低水位以下恢复读取<br>
+ * 执行rdb文件期间的复制流写入磁盘缓冲区 不暂停读取源连接
+ *
+ * @Title: ProtocolSyncWorkerFlowControlTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月19日 下午3:08:17
+ * @version V1.0
+ */
+public class ProtocolSyncWorkerFlowControlTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ProtocolSyncWorker worker;
+
+	@After
+	public void tearDown() {
+		if (worker != null) {
+			worker.shutdown();
+		}
+	}
+
+	/**
+	 * 测试高低水位切换读取状态
+	 */
+	@Test
+	public void testWatermarks() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "applyHighWatermark", 1000L);
+		ReflectionTestUtils.setField(worker, "applyLowWatermark", 300L);
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		// 每个数据包110字节 目标服务器阻塞时第10个数据包超过高水位
+		for (int i = 0; i < 9; i++) {
+			worker.receive(packet(i));
+		}
+		assertEquals(0, srcConnection.suspendCount.get());
+		worker.receive(packet(9));
+		assertEquals(1, srcConnection.suspendCount.get());
+		worker.receive(packet(10));
+		assertEquals(1, srcConnection.suspendCount.get());
+		assertEquals(0, srcConnection.resumeCount.get());
+
+		// 目标服务器恢复后执行完积压的命令 恢复读取
+		descConnection.latch.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (srcConnection.resumeCount.get() == 0 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(1, srcConnection.resumeCount.get());
+		assertEquals(1, srcConnection.suspendCount.get());
+	}
+
+	/**
+	 * 测试数据包数量超过高水位时暂停读取 放入数据包不阻塞I/O线程
+	 */
+	@Test
+	public void testQueueLengthWatermark() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "applyQueueSize", 5);
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		// 目标服务器阻塞时第一个数据包在执行中 之后的数据包在队列中积压
+		worker.receive(packet(0));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!descConnection.sending && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		for (int i = 1; i <= 4; i++) {
+			worker.receive(packet(i));
+		}
+		assertEquals(0, srcConnection.suspendCount.get());
+		worker.receive(packet(5));
+		assertEquals(1, srcConnection.suspendCount.get());
+		// 暂停读取后已经解码的数据包仍然可以放入队列
+		for (int i = 6; i < 20; i++) {
+			worker.receive(packet(i));
+		}
+		assertEquals(1, srcConnection.suspendCount.get());
+
+		descConnection.latch.countDown();
+		deadline = System.currentTimeMillis() + 5000;
+		while (descConnection.sentKeys.size() < 20 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(20, descConnection.sentKeys.size());
+		assertEquals(1, srcConnection.resumeCount.get());
+	}
+
+	/**
+	 * 测试同步数据包失败后停止同步管道 之后的数据包不再执行
+	 */
+	@Test
+	public void testStopOnApplyFailure() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+		descConnection.failKey = "key:001";
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		for (int i = 0; i < 3; i++) {
+			worker.receive(packet(i));
+		}
+		descConnection.latch.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!worker.isFailed() && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertTrue(worker.isFailed());
+		assertFalse(srcConnection.isConnected());
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertEquals(Collections.singletonList("key:000"), descConnection.sentKeys);
+	}
+
+	/**
+	 * 测试执行rdb文件期间复制流写入磁盘缓冲区 之后按顺序执行
+	 */
+	@Test
+	public void testSpoolStreamDuringRDB() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "applyHighWatermark", 1000L);
+		ReflectionTestUtils.setField(worker, "applyLowWatermark", 300L);
+		ReflectionTestUtils.setField(worker, "streamSpoolDir", folder.getRoot().getPath());
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		// 目标服务器阻塞时rdb文件一直等待执行 之后的复制流远超过高水位
+		worker.receive(packet(0));
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(0);
+		File rdbFile = folder.newFile("dump.rdb");
+		generator.generate(rdbFile);
+		worker.receive(new RedisDataBaseTransferPacket("DATABASETRANSFER", rdbFile));
+		for (int i = 1; i <= 200; i++) {
+			worker.receive(packet(i));
+		}
+		assertEquals(0, srcConnection.suspendCount.get());
+		File[] spoolFiles = folder.getRoot().listFiles();
+		assertEquals(2, spoolFiles.length);
+
+		descConnection.latch.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (descConnection.sentKeys.size() < 201 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i <= 200; i++) {
+			expected.add(String.format("key:%03d", i));
+		}
+		assertEquals(expected, descConnection.sentKeys);
+
+		// 缓冲区中的数据执行完后切换回队列 缓冲文件被删除
+		deadline = System.currentTimeMillis() + 5000;
+		while (ReflectionTestUtils.getField(worker, "streamSpool") != null && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertNull(ReflectionTestUtils.getField(worker, "streamSpool"));
+		// 缓冲文件在切换回队列之后才删除
+		while (folder.getRoot().listFiles().length > 1 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(1, folder.getRoot().listFiles().length);
+		worker.receive(packet(201));
+		deadline = System.currentTimeMillis() + 5000;
+		while (descConnection.sentKeys.size() < 202 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals("key:201", descConnection.sentKeys.get(201));
+		assertEquals(0, srcConnection.suspendCount.get());
+	}
+
+	/**
+	 * 测试rdb文件超过高水位时不暂停读取 执行期间的复制流写入磁盘缓冲区
+	 */
+	@Test
+	public void testRDBLargerThanHighWatermark() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "applyHighWatermark", 1000L);
+		ReflectionTestUtils.setField(worker, "applyLowWatermark", 300L);
+		ReflectionTestUtils.setField(worker, "streamSpoolDir", folder.getRoot().getPath());
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		worker.receive(packet(0));
+		File rdbFile = largeRDB("dump.rdb");
+		worker.receive(new RedisDataBaseTransferPacket("DATABASETRANSFER", rdbFile));
+		for (int i = 1; i <= 100; i++) {
+			worker.receive(packet(i));
+		}
+		assertEquals(0, srcConnection.suspendCount.get());
+
+		descConnection.latch.countDown();
+		assertEquals(expectedKeys(100), awaitSentKeys(descConnection, 101));
+		assertEquals(0, srcConnection.suspendCount.get());
+	}
+
+	/**
+	 * 测试缓冲期间又开始了新的全量同步时 不阻塞I/O线程 缓冲区中的复制流执行完后按顺序执行新的rdb文件
+	 */
+	@Test(timeout = 20000)
+	public void testNewRDBWhileSpooling() throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "streamSpoolDir", folder.getRoot().getPath());
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		// 目标服务器阻塞时第一次全量同步的复制流一直在缓冲区中
+		worker.receive(packet(0));
+		worker.receive(new RedisDataBaseTransferPacket("DATABASETRANSFER", largeRDB("first.rdb")));
+		for (int i = 1; i <= 50; i++) {
+			worker.receive(packet(i));
+		}
+		worker.receive(new RedisDataBaseTransferPacket("DATABASETRANSFER", largeRDB("second.rdb")));
+		for (int i = 51; i <= 100; i++) {
+			worker.receive(packet(i));
+		}
+
+		descConnection.latch.countDown();
+		assertEquals(expectedKeys(100), awaitSentKeys(descConnection, 101));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (ReflectionTestUtils.getField(worker, "streamSpool") != null && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertNull(ReflectionTestUtils.getField(worker, "streamSpool"));
+		assertNull(ReflectionTestUtils.getField(worker, "spoolHandoff"));
+	}
+
+	/**
+	 * 测试复制流写入磁盘缓冲区失败后停止同步管道 不跳过丢失的数据包继续执行
+	 */
+	@Test
+	public void testStopOnSpoolWriteFailure() throws Exception {
+		testStopOnSpoolFailure(true);
+	}
+
+	/**
+	 * 测试从磁盘缓冲区读取复制流失败后停止同步管道 缓冲期间暂存的数据包不再执行
+	 */
+	@Test
+	public void testStopOnSpoolReadFailure() throws Exception {
+		testStopOnSpoolFailure(false);
+	}
+
+	private void testStopOnSpoolFailure(boolean failWrite) throws Exception {
+		StubConnection srcConnection = new StubConnection();
+		StubConnection descConnection = new StubConnection();
+
+		worker = new ProtocolSyncWorker();
+		ReflectionTestUtils.setField(worker, "redisCommandFilterManager", new RedisCommandFilterManager());
+		ReflectionTestUtils.setField(worker, "srcConnection", srcConnection);
+		ReflectionTestUtils.setField(worker, "descConnection", descConnection);
+		ReflectionTestUtils.setField(worker, "streamSpoolDir", folder.getRoot().getPath());
+		ReflectionTestUtils.invokeMethod(worker, "startApplyThread");
+
+		worker.receive(packet(0));
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(0);
+		File rdbFile = folder.newFile("dump.rdb");
+		generator.generate(rdbFile);
+		worker.receive(new RedisDataBaseTransferPacket("DATABASETRANSFER", rdbFile));
+		RedisStreamSpool spool = (RedisStreamSpool) ReflectionTestUtils.getField(worker, "streamSpool");
+		assertNotNull(spool);
+		spool.close();
+		ReflectionTestUtils.setField(worker, "streamSpool", new FailingSpool(folder.newFolder(), failWrite));
+		for (int i = 1; i <= 3; i++) {
+			worker.receive(packet(i));
+		}
+
+		descConnection.latch.countDown();
+		// 先标记失败再关闭源连接 需要等待两者都完成
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((!worker.isFailed() || srcConnection.isConnected()) && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertTrue(worker.isFailed());
+		assertFalse(srcConnection.isConnected());
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertFalse(descConnection.sentKeys.contains("key:001"));
+		assertFalse(descConnection.sentKeys.contains("key:003"));
+	}
+
+	/**
+	 * 生成只包含已经过期的key的rdb文件 文件大于高水位但是不会产生同步命令
+	 */
+	private File largeRDB(String name) throws Exception {
+		RedisRDBGenerator generator = new RedisRDBGenerator();
+		generator.setKeyCount(200);
+		generator.setExpiredRatio(1.0);
+		File rdbFile = folder.newFile(name);
+		generator.generate(rdbFile);
+		assertTrue(rdbFile.length() > 1000);
+		return rdbFile;
+	}
+
+	private List<String> expectedKeys(int last) {
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i <= last; i++) {
+			expected.add(String.format("key:%03d", i));
+		}
+		return expected;
+	}
+
+	private List<String> awaitSentKeys(StubConnection connection, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (connection.sentKeys.size() < count && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		return new ArrayList<String>(connection.sentKeys);
+	}
+
+	private RedisPacket packet(int index) {
+		RedisArraysPacket packet = new RedisArraysPacket("ARRAY");
+		packet.setArrayLength(3);
+		packet.addPacket(bulk("SET"));
+		packet.addPacket(bulk(String.format("key:%03d", index)));
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			value.append('v');
+		}
+		packet.addPacket(bulk(value.toString()));
+		return packet;
+	}
+
+	private RedisPacket bulk(String content) {
+		RedisBulkStringPacket packet = new RedisBulkStringPacket("BULKSTRING");
+		packet.setData(content.getBytes());
+		return packet;
+	}
+
+	/**
+	 * 写入或者读取时抛出异常的复制流磁盘缓冲区
+	 */
+	private static class FailingSpool extends RedisStreamSpool {
+		private final boolean failWrite;
+
+		public FailingSpool(File dir, boolean failWrite) throws IOException {
+			super(dir);
+			this.failWrite = failWrite;
+		}
+
+		/*
+		 * @see
+		 * com.wmz7year.synyed.worker.spool.RedisStreamSpool#write(com.wmz7year.
+		 * synyed.packet.redis.RedisPacket)
+		 */
+		@Override
+		public synchronized void write(RedisPacket redisPacket) throws IOException {
+			if (failWrite) {
+				throw new IOException("No space left on device");
+			}
+			super.write(redisPacket);
+		}
+
+		/*
+		 * @see com.wmz7year.synyed.worker.spool.RedisStreamSpool#read()
+		 */
+		@Override
+		public synchronized List<RedisPacket> read() throws IOException, RedisProtocolException {
+			throw new IOException("Input/output error");
+		}
+	}
+
+	/**
+	 * 记录读取状态的连接 发送命令时等待latch
+	 */
+	private static class StubConnection implements RedisConnection {
+		private AtomicInteger suspendCount = new AtomicInteger();
+		private AtomicInteger resumeCount = new AtomicInteger();
+		private CountDownLatch latch = new CountDownLatch(1);
+		private List<String> sentKeys = Collections.synchronizedList(new ArrayList<String>());
+		private volatile boolean sending = false;
+		private volatile boolean connected = true;
+		private volatile String failKey;
+
+		@Override
+		public boolean connect(String address, int port, long timeout) {
+			return true;
+		}
+
+		@Override
+		public boolean connect(String address, int port, String password, long timeout) {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return connected;
+		}
+
+		@Override
+		public RedisPacket sendCommand(RedisCommand command) throws RedisProtocolException {
+			sending = true;
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new RedisProtocolException(e);
+			}
+			String key = command.getValues().get(0).getContent();
+			if (key.equals(failKey)) {
+				throw new RedisProtocolException("连接已断开");
+			}
+			sentKeys.add(key);
+			return new RedisSimpleStringPacket("OK", "OK".getBytes());
+		}
+
+		@Override
+		public List<RedisPacket> sendCommands(List<RedisCommand> commands) throws RedisProtocolException {
+			List<RedisPacket> responses = new ArrayList<RedisPacket>();
+			for (RedisCommand command : commands) {
+				responses.add(sendCommand(command));
+			}
+			return responses;
+		}
+
+		@Override
+		public void writeEncodedCommands(IoBuffer data) {
+		}
+
+		@Override
+		public IoBuffer allocateBuffer(int capacity) {
+			return IoBuffer.allocate(capacity);
+		}
+
+		@Override
+		public List<RedisPacket> readResponses(int count) {
+			return new ArrayList<RedisPacket>();
+		}
+
+		@Override
+		public void sendCommand(RedisCommand command, RedisResponseListener listener) {
+		}
+
+		@Override
+		public void cancalResponseListener(RedisResponseListener listener) {
+		}
+
+		@Override
+		public void suspendRead() {
+			suspendCount.incrementAndGet();
+		}
+
+		@Override
+		public void resumeRead() {
+			resumeCount.incrementAndGet();
+		}
+
+		@Override
+		public void close() throws IOException {
+			connected = false;
+		}
+	}
+}
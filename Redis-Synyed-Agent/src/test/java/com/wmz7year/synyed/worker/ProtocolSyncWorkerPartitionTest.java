@@ -0,0 +1,116 @@
+package com.wmz7year.synyed.worker;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
+import com.wmz7year.synyed.parser.entry.RedisStringObject;
+
+/**
+ * RDB命令以及rdb数据按key分区测试
+ *
+ * @Title: ProtocolSyncWorkerPartitionTest.java
+ * @Package com.wmz7year.synyed.worker
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月19日 上午10:26:44
+ * @version V1.0
+ */
+public class ProtocolSyncWorkerPartitionTest {
+
+	/**
+	 * 测试同一个key的命令在同一个分区中保持顺序 SELECT命令发送到每个分区
+	 */
+	@Test
+	public void testPartitionCommands() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("SELECT", "0"));
+		for (int i = 0; i < 100; i++) {
+			commands.add(command("RPUSH", "list:" + (i % 10), String.valueOf(i)));
+		}
+		commands.add(command("SELECT", "1"));
+		commands.add(command("SET", "list:0", "db1"));
+
+		List<List<RedisCommand>> partitions = ProtocolSyncWorker.partitionCommands(commands, 4);
+		assertTrue(partitions.size() > 1 && partitions.size() <= 4);
+
+		int total = 0;
+		Map<String, Integer> keyPartition = new HashMap<String, Integer>();
+		for (int p = 0; p < partitions.size(); p++) {
+			List<RedisCommand> partition = partitions.get(p);
+			assertEquals("SELECT", partition.get(0).getCommand());
+			String db = "0";
+			Map<String, Integer> lastValue = new HashMap<String, Integer>();
+			for (RedisCommand command : partition) {
+				if ("SELECT".equals(command.getCommand())) {
+					db = command.getValues().get(0).getContent();
+					continue;
+				}
+				total++;
+				String key = command.getValues().get(0).getContent();
+				Integer previous = keyPartition.put(key, p);
+				assertTrue(previous == null || previous == p);
+				if ("SET".equals(command.getCommand())) {
+					assertEquals("1", db);
+					continue;
+				}
+				assertEquals("0", db);
+				int value = Integer.parseInt(command.getValues().get(1).getContent());
+				Integer last = lastValue.put(key, value);
+				assertTrue(last == null || last < value);
+			}
+		}
+		assertEquals(101, total);
+	}
+
+	/**
+	 * 测试rdb数据分区保留数据库编号 同一个key只在一个分区中
+	 */
+	@Test
+	public void testPartitionDBs() {
+		List<RedisDB> redisDBs = new ArrayList<RedisDB>();
+		for (int db = 0; db < 2; db++) {
+			RedisDB redisDB = new RedisDB(db * 3);
+			for (int i = 0; i < 50; i++) {
+				RedisStringObject key = new RedisStringObject(("key:" + i).getBytes());
+				redisDB.addCommand(new RedisRDBCommand(key, new RedisStringObject("v".getBytes()), -1));
+			}
+			redisDBs.add(redisDB);
+		}
+
+		List<List<RedisDB>> partitions = ProtocolSyncWorker.partitionDBs(redisDBs, 4);
+		assertTrue(partitions.size() > 1 && partitions.size() <= 4);
+		Map<String, Integer> keyPartition = new HashMap<String, Integer>();
+		int total = 0;
+		for (int p = 0; p < partitions.size(); p++) {
+			int lastDB = -1;
+			for (RedisDB redisDB : partitions.get(p)) {
+				assertTrue(redisDB.getNum() == 0 || redisDB.getNum() == 3);
+				assertTrue(redisDB.getNum() > lastDB);
+				assertFalse(redisDB.getRDBCommands().isEmpty());
+				lastDB = redisDB.getNum();
+				for (RedisRDBCommand rdbCommand : redisDB.getRDBCommands()) {
+					Integer previous = keyPartition.put(new String(rdbCommand.getKey().getBuffer()), p);
+					assertTrue(previous == null || previous == p);
+					total++;
+				}
+			}
+		}
+		assertEquals(100, total);
+	}
+
+	private RedisCommand command(String name, String... values) {
+		RedisCommand command = new RedisCommand(name);
+		for (String value : values) {
+			command.addValue(value);
+		}
+		return command;
+	}
+}
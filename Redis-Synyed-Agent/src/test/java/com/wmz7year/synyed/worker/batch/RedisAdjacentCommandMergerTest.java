@@ -0,0 +1,83 @@
+package com.wmz7year.synyed.worker.batch;
+
+import static com.wmz7year.synyed.worker.batch.RedisCommandCoalescerTest.command;
+import static com.wmz7year.synyed.worker.batch.RedisCommandCoalescerTest.toStrings;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * 相邻命令参数合并测试
+ *
+ * @Title: RedisAdjacentCommandMergerTest.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 上午11:05:52
+ * @version V1.0
+ */
+public class RedisAdjacentCommandMergerTest {
+
+	/**
+	 * 测试相邻命令合并为多参数命令
+	 */
+	@Test
+	public void testMergeAdjacent() {
+		RedisAdjacentCommandMerger merger = new RedisAdjacentCommandMerger();
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("set", "a", "1"));
+		commands.add(command("SET", "b", "2"));
+		commands.add(command("SET", "c", "3"));
+		commands.add(command("SET", "d", "4", "EX", "10"));
+		commands.add(command("SADD", "k", "m1"));
+		commands.add(command("sadd", "k", "m2", "m3"));
+		commands.add(command("SADD", "j", "m1"));
+		commands.add(command("RPUSH", "l", "x"));
+		commands.add(command("RPUSH", "l", "y"));
+		commands.add(command("ZADD", "z", "1", "a"));
+		commands.add(command("ZADD", "z", "-inf", "b", "2.5e3", "c"));
+		commands.add(command("ZADD", "z", "NX", "1", "d"));
+
+		List<String> result = toStrings(merger.optimize(commands));
+		assertEquals(7, result.size());
+		assertEquals("MSET a 1 b 2 c 3", result.get(0));
+		assertEquals("SET d 4 EX 10", result.get(1));
+		assertEquals("SADD k m1 m2 m3", result.get(2));
+		assertEquals("SADD j m1", result.get(3));
+		assertEquals("RPUSH l x y", result.get(4));
+		assertEquals("ZADD z 1 a -inf b 2.5e3 c", result.get(5));
+		assertEquals("ZADD z NX 1 d", result.get(6));
+		assertEquals(5, merger.getMergedCount());
+	}
+
+	/**
+	 * 测试合并后的命令不超过参数数量与字节数上限
+	 */
+	@Test
+	public void testLimits() {
+		RedisAdjacentCommandMerger merger = new RedisAdjacentCommandMerger(4, 1024);
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		for (int i = 0; i < 5; i++) {
+			commands.add(command("SET", "k" + i, "v"));
+		}
+		List<String> result = toStrings(merger.optimize(commands));
+		assertEquals(3, result.size());
+		assertEquals("MSET k0 v k1 v", result.get(0));
+		assertEquals("MSET k2 v k3 v", result.get(1));
+		assertEquals("SET k4 v", result.get(2));
+
+		merger = new RedisAdjacentCommandMerger(512, 10);
+		commands.clear();
+		commands.add(command("RPUSH", "l", "12345"));
+		commands.add(command("RPUSH", "l", "12345"));
+		commands.add(command("RPUSH", "l", "1"));
+		result = toStrings(merger.optimize(commands));
+		assertEquals(2, result.size());
+		assertEquals("RPUSH l 12345", result.get(0));
+		assertEquals("RPUSH l 12345 1", result.get(1));
+	}
+}
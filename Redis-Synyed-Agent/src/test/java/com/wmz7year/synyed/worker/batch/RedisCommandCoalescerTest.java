@@ -0,0 +1,113 @@
+package com.wmz7year.synyed.worker.batch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 同一个key的覆盖写命令合并测试
+ *
+ * @Title: RedisCommandCoalescerTest.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 下午2:40:12
+ * @version V1.0
+ */
+public class RedisCommandCoalescerTest {
+	private RedisCommandCoalescer coalescer = new RedisCommandCoalescer();
+
+	/**
+	 * 测试只保留最后一次覆盖写入 其他命令顺序不变
+	 */
+	@Test
+	public void testLastWriterWins() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("set", "counter:x", "1"));
+		commands.add(command("SADD", "s", "a"));
+		commands.add(command("SET", "counter:x", "2", "EX", "10"));
+		commands.add(command("HSET", "h", "f", "1"));
+		commands.add(command("HSET", "h", "g", "1"));
+		commands.add(command("PEXPIREAT", "h", "1000"));
+		commands.add(command("HSET", "h", "f", "2"));
+		commands.add(command("PEXPIREAT", "h", "2000"));
+		commands.add(command("PING"));
+		commands.add(command("SET", "counter:x", "3"));
+
+		List<String> result = toStrings(coalescer.optimize(commands));
+		assertEquals(6, result.size());
+		assertEquals("SADD s a", result.get(0));
+		assertEquals("HSET h g 1", result.get(1));
+		assertEquals("HSET h f 2", result.get(2));
+		assertEquals("PEXPIREAT h 2000", result.get(3));
+		assertEquals("PING", result.get(4));
+		assertEquals("SET counter:x 3", result.get(5));
+		assertEquals(4, coalescer.getCoalescedCount());
+	}
+
+	/**
+	 * 测试中间有其他涉及该key的命令、条件写入以及屏障命令时不合并
+	 */
+	@Test
+	public void testNoCoalesceAcrossDependencies() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("SET", "a", "1"));
+		commands.add(command("APPEND", "a", "x"));
+		commands.add(command("SET", "a", "2"));
+		commands.add(command("SET", "b", "1"));
+		commands.add(command("SELECT", "1"));
+		commands.add(command("SET", "b", "2"));
+		commands.add(command("SET", "c", "1", "EX", "10"));
+		commands.add(command("SET", "c", "2", "KEEPTTL"));
+		commands.add(command("SET", "d", "1"));
+		commands.add(command("DEL", "x", "d"));
+		commands.add(command("SET", "d", "2"));
+
+		List<RedisCommand> result = coalescer.optimize(commands);
+		assertSame(commands, result);
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	/**
+	 * 测试条件写入可以被后面的覆盖写入合并
+	 */
+	@Test
+	public void testConditionalWriteOverwritten() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("SETNX", "a", "1"));
+		commands.add(command("SET", "a", "2", "NX"));
+		commands.add(command("HSETNX", "h", "f", "1"));
+		commands.add(command("HMSET", "h", "f", "2"));
+		commands.add(command("SETEX", "a", "10", "3"));
+
+		List<String> result = toStrings(coalescer.optimize(commands));
+		assertEquals(2, result.size());
+		assertEquals("HMSET h f 2", result.get(0));
+		assertEquals("SETEX a 10 3", result.get(1));
+	}
+
+	static RedisCommand command(String... args) {
+		RedisCommand command = new RedisCommand(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			command.addValue(args[i]);
+		}
+		return command;
+	}
+
+	static List<String> toStrings(List<RedisCommand> commands) {
+		List<String> result = new ArrayList<String>(commands.size());
+		for (RedisCommand command : commands) {
+			StringBuilder builder = new StringBuilder(command.getCommand());
+			for (RedisCommandData value : command.getValues()) {
+				builder.append(' ').append(value.getContent());
+			}
+			result.add(builder.toString());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,131 @@
+package com.wmz7year.synyed.worker.batch;
+
+import static com.wmz7year.synyed.worker.batch.RedisCommandCoalescerTest.command;
+import static com.wmz7year.synyed.worker.batch.RedisCommandCoalescerTest.toStrings;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+
+/**
+ * 自增命令合并测试
+ *
+ * @Title: RedisIncrementMergerTest.java
+ * @Package com.wmz7year.synyed.worker.batch
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月25日 下午5:21:44
+ * @version V1.0
+ */
+public class RedisIncrementMergerTest {
+	private RedisIncrementMerger merger = new RedisIncrementMerger();
+
+	/**
+	 * 测试同一个key、field、member的自增命令合并为一条
+	 */
+	@Test
+	public void testMergeIncrements() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("incr", "c"));
+		commands.add(command("HINCRBY", "h", "f", "5"));
+		commands.add(command("SET", "x", "1"));
+		commands.add(command("INCRBY", "c", "10"));
+		commands.add(command("HINCRBY", "h", "g", "1"));
+		commands.add(command("DECR", "c"));
+		commands.add(command("HINCRBY", "h", "f", "-2"));
+		commands.add(command("ZINCRBY", "z", "3", "m"));
+		commands.add(command("DECRBY", "c", "4"));
+		commands.add(command("ZINCRBY", "z", "4", "m"));
+		commands.add(command("ZINCRBY", "z", "1.5", "m"));
+
+		List<String> result = toStrings(merger.optimize(commands));
+		assertEquals(8, result.size());
+		assertEquals("INCRBY c 11", result.get(0));
+		assertEquals("HINCRBY h f 5", result.get(1));
+		assertEquals("SET x 1", result.get(2));
+		assertEquals("HINCRBY h g 1", result.get(3));
+		assertEquals("INCRBY c -5", result.get(4));
+		assertEquals("HINCRBY h f -2", result.get(5));
+		assertEquals("ZINCRBY z 7 m", result.get(6));
+		assertEquals("ZINCRBY z 1.5 m", result.get(7));
+		assertEquals(3, merger.getMergedCount());
+	}
+
+	/**
+	 * 测试增量方向不同时不合并<br>
+	 * 目标值为Long.MAX_VALUE - 5时 逐条执行INCRBY 10会溢出失败 之后的INCRBY -10成功<br>
+	 * 合并为INCRBY 0后不会失败 结果与逐条执行不一致
+	 */
+	@Test
+	public void testNoMergeAcrossDirections() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("INCRBY", "a", "10"));
+		commands.add(command("INCRBY", "a", "-10"));
+		commands.add(command("HINCRBY", "h", "f", "-3"));
+		commands.add(command("HINCRBY", "h", "f", "0"));
+		commands.add(command("HINCRBY", "h", "f", "3"));
+
+		List<String> result = toStrings(merger.optimize(commands));
+		assertEquals(4, result.size());
+		assertEquals("INCRBY a 10", result.get(0));
+		assertEquals("INCRBY a -10", result.get(1));
+		assertEquals("HINCRBY h f -3", result.get(2));
+		assertEquals("HINCRBY h f 3", result.get(3));
+	}
+
+	/**
+	 * 测试中间有其他涉及该key的命令或者屏障命令时不合并
+	 */
+	@Test
+	public void testNoMergeAcrossDependencies() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("INCR", "a"));
+		commands.add(command("SET", "a", "1"));
+		commands.add(command("INCR", "a"));
+		commands.add(command("INCR", "b"));
+		commands.add(command("SELECT", "1"));
+		commands.add(command("INCR", "b"));
+		commands.add(command("INCRBY", "c", "x"));
+		commands.add(command("INCRBY", "c", "1"));
+
+		List<RedisCommand> result = merger.optimize(commands);
+		assertSame(commands, result);
+	}
+
+	/**
+	 * 测试增量总和溢出时开始新的合并
+	 */
+	@Test
+	public void testOverflowFallback() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		commands.add(command("INCRBY", "a", String.valueOf(Long.MAX_VALUE - 1)));
+		commands.add(command("INCR", "a"));
+		commands.add(command("INCR", "a"));
+		commands.add(command("INCR", "a"));
+
+		List<String> result = toStrings(merger.optimize(commands));
+		assertEquals(2, result.size());
+		assertEquals("INCRBY a " + Long.MAX_VALUE, result.get(0));
+		assertEquals("INCRBY a 2", result.get(1));
+	}
+
+	/**
+	 * 测试没有合并的命令保持原对象
+	 */
+	@Test
+	public void testSingleCommandUnchanged() {
+		List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		RedisCommand incr = command("INCR", "a");
+		commands.add(incr);
+		commands.add(command("INCR", "b"));
+		commands.add(command("INCR", "b"));
+
+		List<RedisCommand> result = merger.optimize(commands);
+		assertEquals(2, result.size());
+		assertSame(incr, result.get(0));
+		assertEquals("INCRBY b 2", toStrings(result).get(1));
+	}
+}
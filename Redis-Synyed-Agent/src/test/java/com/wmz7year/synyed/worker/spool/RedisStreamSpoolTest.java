@@ -0,0 +1,113 @@
+package com.wmz7year.synyed.worker.spool;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
+import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+import com.wmz7year.synyed.packet.redis.RedisSimpleStringPacket;
+
+/**
+ * 复制流磁盘缓冲区测试<br>
+ * 写入的数据包按顺序读出后内容不变 写入与读取交替进行时也不会丢失或者乱序
+ *
+ * @Title: RedisStreamSpoolTest.java
+ * @Package com.wmz7year.synyed.worker.spool
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月28日 下午2:14:05
+ * @version V1.0
+ */
+public class RedisStreamSpoolTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 测试数据包编码为RESP格式
+	 */
+	@Test
+	public void testWritePacket() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RedisArraysPacket packet = command("SET", "key", "value");
+		packet.addPacket(new RedisBulkStringPacket("BULKSTRING"));
+		long length = RedisStreamSpool.writePacket(packet, out);
+		assertEquals("*4\r\n$3\r\nSET\r\n$3\r\nkey\r\n$5\r\nvalue\r\n$-1\r\n", out.toString());
+		assertEquals(out.size(), length);
+
+		out.reset();
+		RedisSimpleStringPacket ping = new RedisSimpleStringPacket("PING", "PING".getBytes());
+		assertEquals(7, RedisStreamSpool.writePacket(ping, out));
+		assertEquals("+PING\r\n", out.toString());
+	}
+
+	/**
+	 * 测试写入与读取交替进行 包括跨越读取缓冲区的大数据包
+	 */
+	@Test
+	public void testWriteAndRead() throws Exception {
+		RedisStreamSpool spool = new RedisStreamSpool(folder.getRoot());
+		File file = spool.getFile();
+		assertTrue(file.exists());
+		assertTrue(spool.isDrained());
+		assertTrue(spool.read().isEmpty());
+
+		char[] big = new char[200 * 1024];
+		Arrays.fill(big, 'b');
+		List<String> expected = new ArrayList<String>();
+		List<String> actual = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			String value = i % 500 == 0 ? new String(big) : "value:" + i;
+			spool.write(command("SET", "key:" + i, value));
+			expected.add("SET key:" + i + " " + value);
+			if (i % 7 == 0) {
+				readAll(spool.read(), actual);
+			}
+		}
+		assertFalse(spool.isDrained());
+		List<RedisPacket> packets;
+		while (!(packets = spool.read()).isEmpty()) {
+			readAll(packets, actual);
+		}
+		assertTrue(spool.isDrained());
+		assertEquals(expected, actual);
+		assertEquals(2000, spool.getWriteCount());
+		assertEquals(2000, spool.getReadCount());
+		assertEquals(file.length(), spool.getSize());
+
+		spool.close();
+		assertFalse(file.exists());
+	}
+
+	private void readAll(List<RedisPacket> packets, List<String> actual) {
+		for (RedisPacket packet : packets) {
+			StringBuilder builder = new StringBuilder();
+			for (RedisPacket element : ((RedisArraysPacket) packet).getPackets()) {
+				if (builder.length() > 0) {
+					builder.append(' ');
+				}
+				builder.append(new String(element.getData()));
+			}
+			actual.add(builder.toString());
+		}
+	}
+
+	private RedisArraysPacket command(String... args) {
+		RedisArraysPacket packet = new RedisArraysPacket("ARRAY");
+		packet.setArrayLength(args.length);
+		for (String arg : args) {
+			RedisBulkStringPacket bulk = new RedisBulkStringPacket("BULKSTRING");
+			bulk.setData(arg.getBytes());
+			packet.addPacket(bulk);
+		}
+		return packet;
+	}
+}
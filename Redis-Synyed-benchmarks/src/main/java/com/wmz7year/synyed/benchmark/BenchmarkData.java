@@ -0,0 +1,425 @@
+package com.wmz7year.synyed.benchmark;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import com.wmz7year.synyed.util.CRC64;
+
+/**
+ * 基准测试使用的数据生成工具类<br>
+ * 按照redis的编码格式生成RDB、ziplist、intset、lzf等数据<br>
+ * 所有数据使用固定的随机种子生成 保证每次运行的结果可以比较
+ *
+ * @Title: BenchmarkData.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午10:12:40
+ * @version V1.0
+ */
+public final class BenchmarkData {
+	/**
+	 * 随机数种子
+	 */
+	private static final long SEED = 0x5EEDL;
+
+	/**
+	 * lzf单个字面量块的最大长度
+	 */
+	private static final int LZF_MAX_LITERAL = 32;
+	/**
+	 * lzf单个回溯引用的最大长度
+	 */
+	private static final int LZF_MAX_REF = 264;
+	/**
+	 * lzf回溯引用的最大距离
+	 */
+	private static final int LZF_MAX_OFFSET = 8192;
+
+	/**
+	 * RDB数据类型组合 只包含字符串
+	 */
+	public static final String MIX_STRING = "string";
+	/**
+	 * RDB数据类型组合 只包含lzf压缩的字符串
+	 */
+	public static final String MIX_LZF = "lzf";
+	/**
+	 * RDB数据类型组合 包含list、set、zset、hash普通编码
+	 */
+	public static final String MIX_COLLECTION = "collection";
+	/**
+	 * RDB数据类型组合 包含ziplist、intset紧凑编码
+	 */
+	public static final String MIX_COMPACT = "compact";
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * 生成指定长度随机可见字符的方法
+	 *
+	 * @param random
+	 *            随机数生成器
+	 * @param length
+	 *            长度
+	 * @return 随机数据
+	 */
+	public static byte[] randomBytes(Random random, int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(26));
+		}
+		return data;
+	}
+
+	/**
+	 * 生成指定长度随机数据的方法
+	 *
+	 * @param length
+	 *            长度
+	 * @return 随机数据
+	 */
+	public static byte[] randomBytes(int length) {
+		return randomBytes(new Random(SEED), length);
+	}
+
+	/**
+	 * 生成resp协议多条命令数据的方法
+	 *
+	 * @param count
+	 *            命令数量
+	 * @param valueSize
+	 *            每条命令value的长度
+	 * @return 编码后的协议数据
+	 */
+	public static byte[] respCommands(int count, int valueSize) {
+		Random random = new Random(SEED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < count; i++) {
+			writeRespArray(out, "SET".getBytes(), ("key:" + i).getBytes(), randomBytes(random, valueSize));
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 写入resp数组的方法
+	 *
+	 * @param out
+	 *            输出流
+	 * @param elements
+	 *            数组元素
+	 */
+	private static void writeRespArray(ByteArrayOutputStream out, byte[]... elements) {
+		writeAscii(out, "*" + elements.length + "\r\n");
+		for (byte[] element : elements) {
+			writeAscii(out, "$" + element.length + "\r\n");
+			out.write(element, 0, element.length);
+			writeAscii(out, "\r\n");
+		}
+	}
+
+	private static void writeAscii(ByteArrayOutputStream out, String value) {
+		byte[] data = value.getBytes();
+		out.write(data, 0, data.length);
+	}
+
+	/**
+	 * 生成lzf压缩数据的方法<br>
+	 * 先写入distance长度的字面量 之后全部使用距离为distance的回溯引用填充
+	 *
+	 * @param length
+	 *            解压后的长度
+	 * @param distance
+	 *            回溯引用的距离 1到8192
+	 * @return lzf压缩数据
+	 */
+	public static byte[] lzfCompressed(int length, int distance) {
+		if (distance < 1 || distance > LZF_MAX_OFFSET || distance > length) {
+			throw new IllegalArgumentException("distance:" + distance);
+		}
+		byte[] literal = randomBytes(distance);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int written = 0;
+		while (written < distance) {
+			int run = Math.min(LZF_MAX_LITERAL, distance - written);
+			out.write(run - 1);
+			out.write(literal, written, run);
+			written += run;
+		}
+		int offset = distance - 1;
+		while (written < length) {
+			int remaining = length - written;
+			int ref;
+			if (remaining < 3) {
+				// 剩余数据不够一个最短的回溯引用 使用字面量补齐
+				out.write(remaining - 1);
+				for (int i = 0; i < remaining; i++) {
+					out.write(literal[(written + i) % distance]);
+				}
+				break;
+			}
+			ref = Math.min(LZF_MAX_REF, remaining);
+			int len = ref - 2;
+			if (len < 7) {
+				out.write((len << 5) | (offset >> 8));
+			} else {
+				out.write((7 << 5) | (offset >> 8));
+				out.write(len - 7);
+			}
+			out.write(offset & 0xFF);
+			written += ref;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 生成ziplist数据的方法<br>
+	 * 偶数位为字符串元素 奇数位为整数元素 适用于list、hash与zset
+	 *
+	 * @param entries
+	 *            元素数量
+	 * @param stringLength
+	 *            字符串元素长度 不超过63
+	 * @return ziplist编码数据
+	 */
+	public static byte[] zipList(int entries, int stringLength) {
+		Random random = new Random(SEED);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		int prevlen = 0;
+		int tail = 10;
+		for (int i = 0; i < entries; i++) {
+			tail = 10 + body.size();
+			ByteArrayOutputStream entry = new ByteArrayOutputStream();
+			if (prevlen < 254) {
+				entry.write(prevlen);
+			} else {
+				entry.write(0xFE);
+				writeLittleEndian(entry, prevlen, 4);
+			}
+			if (i % 2 == 0) {
+				entry.write(stringLength & 0x3F);
+				byte[] value = randomBytes(random, stringLength);
+				entry.write(value, 0, value.length);
+			} else {
+				writeZipListInteger(entry, random.nextInt(100000) - 50000);
+			}
+			prevlen = entry.size();
+			byte[] data = entry.toByteArray();
+			body.write(data, 0, data.length);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int zlbytes = 10 + body.size() + 1;
+		writeLittleEndian(out, zlbytes, 4);
+		writeLittleEndian(out, entries == 0 ? 10 : tail, 4);
+		writeLittleEndian(out, Math.min(entries, 0xFFFF), 2);
+		byte[] data = body.toByteArray();
+		out.write(data, 0, data.length);
+		out.write(0xFF);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 使用最短的编码写入ziplist整数元素的方法
+	 */
+	private static void writeZipListInteger(ByteArrayOutputStream out, long value) {
+		if (value >= 0 && value <= 12) {
+			out.write(0xF1 + (int) value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			out.write(0xFE);
+			writeLittleEndian(out, value, 1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			out.write(0xC0);
+			writeLittleEndian(out, value, 2);
+		} else if (value >= -(1 << 23) && value < (1 << 23)) {
+			out.write(0xF0);
+			writeLittleEndian(out, value, 3);
+		} else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			out.write(0xD0);
+			writeLittleEndian(out, value, 4);
+		} else {
+			out.write(0xE0);
+			writeLittleEndian(out, value, 8);
+		}
+	}
+
+	/**
+	 * 生成intset数据的方法
+	 *
+	 * @param entries
+	 *            元素数量
+	 * @param encoding
+	 *            每个元素的字节数 2、4或8
+	 * @return intset编码数据
+	 */
+	public static byte[] intSet(int entries, int encoding) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeLittleEndian(out, encoding, 4);
+		writeLittleEndian(out, entries, 4);
+		long base = encoding == 2 ? Short.MIN_VALUE : encoding == 4 ? Integer.MIN_VALUE : Long.MIN_VALUE / 2;
+		for (int i = 0; i < entries; i++) {
+			writeLittleEndian(out, base + i * 3L, encoding);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 生成RDB文件的方法
+	 *
+	 * @param mix
+	 *            数据类型组合
+	 * @param keys
+	 *            key的数量
+	 * @return RDB文件数据
+	 */
+	public static byte[] rdb(String mix, int keys) {
+		Random random = new Random(SEED);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeAscii(out, "REDIS0006");
+		out.write(REDIS_RDB_OPCODE_SELECTDB & 0xFF);
+		writeLength(out, 0);
+		for (int i = 0; i < keys; i++) {
+			byte[] key = ("key:" + i).getBytes();
+			if (MIX_STRING.equals(mix)) {
+				out.write(REDIS_RDB_TYPE_STRING);
+				writeString(out, key);
+				writeString(out, randomBytes(random, 64));
+			} else if (MIX_LZF.equals(mix)) {
+				out.write(REDIS_RDB_TYPE_STRING);
+				writeString(out, key);
+				writeLzfString(out, 1024, 1 + (i % 64));
+			} else if (MIX_COLLECTION.equals(mix)) {
+				writeCollection(out, random, key, i % 4);
+			} else if (MIX_COMPACT.equals(mix)) {
+				writeCompact(out, key, i % 4);
+			} else {
+				throw new IllegalArgumentException("mix:" + mix);
+			}
+		}
+		out.write(REDIS_RDB_OPCODE_EOF & 0xFF);
+		byte[] content = out.toByteArray();
+		long crc = CRC64.checksum(content, content.length);
+		writeLittleEndian(out, crc, 8);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 写入普通编码集合类型的方法
+	 */
+	private static void writeCollection(ByteArrayOutputStream out, Random random, byte[] key, int kind) {
+		int size = 16;
+		switch (kind) {
+		case 0:
+			out.write(REDIS_RDB_TYPE_LIST);
+			writeString(out, key);
+			writeLength(out, size);
+			for (int i = 0; i < size; i++) {
+				writeString(out, randomBytes(random, 16));
+			}
+			break;
+		case 1:
+			out.write(REDIS_RDB_TYPE_SET);
+			writeString(out, key);
+			writeLength(out, size);
+			for (int i = 0; i < size; i++) {
+				writeString(out, ("member:" + i).getBytes());
+			}
+			break;
+		case 2:
+			out.write(REDIS_RDB_TYPE_ZSET);
+			writeString(out, key);
+			writeLength(out, size);
+			for (int i = 0; i < size; i++) {
+				writeString(out, ("member:" + i).getBytes());
+				byte[] score = String.valueOf(i * 1.5).getBytes();
+				out.write(score.length);
+				out.write(score, 0, score.length);
+			}
+			break;
+		default:
+			out.write(REDIS_RDB_TYPE_HASH);
+			writeString(out, key);
+			writeLength(out, size);
+			for (int i = 0; i < size; i++) {
+				writeString(out, ("field:" + i).getBytes());
+				writeString(out, randomBytes(random, 16));
+			}
+			break;
+		}
+	}
+
+	/**
+	 * 写入紧凑编码集合类型的方法
+	 */
+	private static void writeCompact(ByteArrayOutputStream out, byte[] key, int kind) {
+		switch (kind) {
+		case 0:
+			out.write(REDIS_RDB_TYPE_LIST_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(32, 16));
+			break;
+		case 1:
+			out.write(REDIS_RDB_TYPE_SET_INTSET);
+			writeString(out, key);
+			writeString(out, intSet(32, 4));
+			break;
+		case 2:
+			out.write(REDIS_RDB_TYPE_ZSET_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(32, 16));
+			break;
+		default:
+			out.write(REDIS_RDB_TYPE_HASH_ZIPLIST);
+			writeString(out, key);
+			writeString(out, zipList(32, 16));
+			break;
+		}
+	}
+
+	/**
+	 * 写入lzf压缩字符串的方法
+	 */
+	private static void writeLzfString(ByteArrayOutputStream out, int length, int distance) {
+		byte[] compressed = lzfCompressed(length, distance);
+		out.write(0xC0 | REDIS_RDB_ENC_LZF);
+		writeLength(out, compressed.length);
+		writeLength(out, length);
+		out.write(compressed, 0, compressed.length);
+	}
+
+	/**
+	 * 写入RDB字符串的方法
+	 */
+	private static void writeString(ByteArrayOutputStream out, byte[] value) {
+		writeLength(out, value.length);
+		out.write(value, 0, value.length);
+	}
+
+	/**
+	 * 写入RDB长度编码的方法
+	 */
+	private static void writeLength(ByteArrayOutputStream out, int length) {
+		if (length < (1 << 6)) {
+			out.write(length);
+		} else if (length < (1 << 14)) {
+			out.write(0x40 | (length >> 8));
+			out.write(length & 0xFF);
+		} else {
+			out.write(0x80);
+			out.write((length >>> 24) & 0xFF);
+			out.write((length >>> 16) & 0xFF);
+			out.write((length >>> 8) & 0xFF);
+			out.write(length & 0xFF);
+		}
+	}
+
+	/**
+	 * 写入小端整数的方法
+	 */
+	private static void writeLittleEndian(ByteArrayOutputStream out, long value, int length) {
+		for (int i = 0; i < length; i++) {
+			out.write((int) (value >>> (i * 8)) & 0xFF);
+		}
+	}
+}
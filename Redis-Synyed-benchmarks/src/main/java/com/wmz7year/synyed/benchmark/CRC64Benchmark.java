@@ -0,0 +1,53 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wmz7year.synyed.util.CRC64;
+
+/**
+ * CRC64校验的基准测试
+ *
+ * @Title: CRC64Benchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午11:31:52
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CRC64Benchmark {
+
+	/**
+	 * 校验数据的长度
+	 */
+	@Param({ "64", "4096", "1048576" })
+	public int size;
+
+	private byte[] data;
+
+	@Setup
+	public void setup() {
+		data = BenchmarkData.randomBytes(size);
+	}
+
+	@Benchmark
+	public long checksum() {
+		return CRC64.checksum(data, data.length);
+	}
+}
@@ -0,0 +1,72 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wmz7year.synyed.util.LZFDecoder;
+
+/**
+ * lzf解压的基准测试<br>
+ * 使用不同回溯引用距离的压缩数据 距离为1时为重叠拷贝的最坏情况
+ *
+ * @Title: LZFDecoderBenchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午11:45:16
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LZFDecoderBenchmark {
+
+	/**
+	 * 解压后数据的长度
+	 */
+	@Param({ "1024", "65536" })
+	public int size;
+
+	/**
+	 * 回溯引用的距离
+	 */
+	@Param({ "1", "8", "64", "1024" })
+	public int distance;
+
+	private byte[] compressed;
+	private byte[] out;
+	private ByteBuffer outBuffer;
+
+	@Setup
+	public void setup() {
+		compressed = BenchmarkData.lzfCompressed(size, distance);
+		out = new byte[size];
+		outBuffer = ByteBuffer.allocateDirect(size);
+	}
+
+	@Benchmark
+	public byte[] decodeArray() throws Exception {
+		LZFDecoder.decode(compressed, 0, compressed.length, out, 0, out.length);
+		return out;
+	}
+
+	@Benchmark
+	public int decodeByteBuffer() throws Exception {
+		outBuffer.clear();
+		return LZFDecoder.decode(ByteBuffer.wrap(compressed), outBuffer);
+	}
+}
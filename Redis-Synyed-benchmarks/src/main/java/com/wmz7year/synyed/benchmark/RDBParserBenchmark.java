@@ -0,0 +1,66 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wmz7year.synyed.exception.RedisRDBException;
+import com.wmz7year.synyed.parser.impl.RDBParserImpl0006;
+import com.wmz7year.synyed.parser.entry.RedisDB;
+
+/**
+ * RDB文件解析器的基准测试<br>
+ * 使用不同数据类型组合的合成RDB文件
+ *
+ * @Title: RDBParserBenchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午11:20:08
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RDBParserBenchmark {
+
+	/**
+	 * RDB中的数据类型组合
+	 */
+	@Param({ BenchmarkData.MIX_STRING, BenchmarkData.MIX_LZF, BenchmarkData.MIX_COLLECTION,
+			BenchmarkData.MIX_COMPACT })
+	public String mix;
+
+	/**
+	 * RDB中key的数量
+	 */
+	@Param({ "1000" })
+	public int keys;
+
+	private byte[] rdb;
+
+	@Setup
+	public void setup() {
+		rdb = BenchmarkData.rdb(mix, keys);
+	}
+
+	@Benchmark
+	public Collection<RedisDB> parse() throws RedisRDBException {
+		RDBParserImpl0006 parser = new RDBParserImpl0006();
+		parser.parse(rdb);
+		return parser.getRedisDBs();
+	}
+}
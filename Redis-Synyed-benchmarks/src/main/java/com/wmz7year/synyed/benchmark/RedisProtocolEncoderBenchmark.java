@@ -0,0 +1,85 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.future.WriteFuture;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.net.proroc.RedisProtocolEncoder;
+
+/**
+ * Redis协议编码器的基准测试
+ *
+ * @Title: RedisProtocolEncoderBenchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午11:02:37
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisProtocolEncoderBenchmark {
+
+	/**
+	 * 命令value的长度
+	 */
+	@Param({ "16", "1024", "65536" })
+	public int valueSize;
+
+	/**
+	 * 命令参数的数量
+	 */
+	@Param({ "2", "64" })
+	public int arguments;
+
+	private RedisProtocolEncoder encoder;
+	private RedisCommand command;
+
+	@Setup
+	public void setup() {
+		encoder = new RedisProtocolEncoder();
+		command = new RedisCommand("RPUSH");
+		command.addValue("key");
+		byte[] value = BenchmarkData.randomBytes(valueSize);
+		for (int i = 1; i < arguments; i++) {
+			command.addValue(value);
+		}
+	}
+
+	@Benchmark
+	public void encode(final Blackhole blackhole) throws Exception {
+		encoder.encode(null, command, new ProtocolEncoderOutput() {
+
+			@Override
+			public void write(Object encodedMessage) {
+				blackhole.consume(encodedMessage);
+			}
+
+			@Override
+			public void mergeAll() {
+			}
+
+			@Override
+			public WriteFuture flush() {
+				return null;
+			}
+		});
+	}
+}
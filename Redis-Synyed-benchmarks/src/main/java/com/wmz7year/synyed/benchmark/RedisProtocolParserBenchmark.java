@@ -0,0 +1,105 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wmz7year.synyed.exception.RedisProtocolException;
+import com.wmz7year.synyed.net.proroc.RedisProtocolParser;
+import com.wmz7year.synyed.packet.redis.RedisPacket;
+
+/**
+ * Redis协议解析器的基准测试<br>
+ * 覆盖小命令批量解析、大bulk字符串解析以及数据包被拆分成多段到达的情况
+ *
+ * @Title: RedisProtocolParserBenchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 上午10:40:21
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisProtocolParserBenchmark {
+
+	/**
+	 * 每次解析的命令数量
+	 */
+	@Param({ "100" })
+	public int commands;
+
+	/**
+	 * 小命令value的长度
+	 */
+	@Param({ "16" })
+	public int smallValueSize;
+
+	/**
+	 * 大bulk字符串的长度
+	 */
+	@Param({ "65536", "1048576" })
+	public int largeValueSize;
+
+	/**
+	 * 拆分数据包时每段的长度
+	 */
+	@Param({ "7", "1460" })
+	public int splitSize;
+
+	private byte[] smallCommands;
+	private byte[] largeBulk;
+
+	/**
+	 * 复用的解析器 每次调用都读入完整的命令 调用结束后解析器回到初始状态<br>
+	 * 避免把创建解析器以及分配缓冲区的开销计入解析耗时
+	 */
+	private RedisProtocolParser parser;
+
+	@Setup
+	public void setup() {
+		smallCommands = BenchmarkData.respCommands(commands, smallValueSize);
+		largeBulk = BenchmarkData.respCommands(1, largeValueSize);
+		parser = new RedisProtocolParser();
+	}
+
+	@Benchmark
+	public RedisPacket[] smallCommands() throws RedisProtocolException {
+		parser.read(ByteBuffer.wrap(smallCommands));
+		return parser.getPackets();
+	}
+
+	@Benchmark
+	public RedisPacket[] largeBulk() throws RedisProtocolException {
+		parser.read(ByteBuffer.wrap(largeBulk));
+		return parser.getPackets();
+	}
+
+	@Benchmark
+	public int splitPackets() throws RedisProtocolException {
+		int count = 0;
+		for (int offset = 0; offset < smallCommands.length; offset += splitSize) {
+			int length = Math.min(splitSize, smallCommands.length - offset);
+			parser.read(ByteBuffer.wrap(smallCommands, offset, length).slice());
+			RedisPacket[] packets = parser.getPackets();
+			if (packets != null) {
+				count += packets.length;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,83 @@
+package com.wmz7year.synyed.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.exception.RedisRDBException;
+import com.wmz7year.synyed.parser.entry.RedisHashZipList;
+import com.wmz7year.synyed.parser.entry.RedisSetIntSet;
+import com.wmz7year.synyed.parser.entry.RedisZSetZipList;
+import com.wmz7year.synyed.parser.entry.RedisZipListObject;
+
+/**
+ * ziplist与intset解码的基准测试<br>
+ * 包含解码以及生成命令数据两个阶段
+ *
+ * @Title: ZipListBenchmark.java
+ * @Package com.wmz7year.synyed.benchmark
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月15日 下午1:58:44
+ * @version V1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipListBenchmark {
+
+	/**
+	 * 元素数量
+	 */
+	@Param({ "16", "512" })
+	public int entries;
+
+	/**
+	 * intset每个元素的字节数
+	 */
+	@Param({ "2", "8" })
+	public int intSetEncoding;
+
+	private byte[] zipList;
+	private byte[] intSet;
+
+	@Setup
+	public void setup() {
+		zipList = BenchmarkData.zipList(entries, 16);
+		intSet = BenchmarkData.intSet(entries, intSetEncoding);
+	}
+
+	@Benchmark
+	public List<RedisCommandData> zipList() throws RedisRDBException {
+		return new RedisZipListObject(zipList).getElements();
+	}
+
+	@Benchmark
+	public List<RedisCommandData> hashZipList() throws RedisRDBException {
+		return new RedisHashZipList(zipList).getElements();
+	}
+
+	@Benchmark
+	public List<RedisCommandData> zsetZipList() throws RedisRDBException {
+		return new RedisZSetZipList(zipList).getElements();
+	}
+
+	@Benchmark
+	public List<RedisCommandData> intSet() throws RedisRDBException {
+		return new RedisSetIntSet(intSet).getElements();
+	}
+}
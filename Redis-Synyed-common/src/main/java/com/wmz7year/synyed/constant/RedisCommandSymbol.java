@@ -80,6 +80,16 @@ public class RedisCommandSymbol {
 	 */
 	public static final String GETSET = "GETSET";
 
+	/**
+	 * 向指定的key设置多个 k v值的方法<br>
+	 * 
+	 * http://redis.io/commands/hmset<br>
+	 * 
+	 * <pre>
+	 * 		HMSET key field1 value1 field2 value2...
+	 * </pre>
+	 */
+	public static final String HMSET = "HMSET";
 	/**
 	 * 向指定的key设置 k v值的方法<br>
 	 * 
@@ -113,6 +123,30 @@ public class RedisCommandSymbol {
 	 * </pre>
 	 */
 	public static final String PING = "PING";
+	/**
+	 * RESTORE命令的参数 目标key存在时进行覆盖
+	 */
+	public static final String REPLACE = "REPLACE";
+	/**
+	 * 使用DUMP格式的序列化数据创建key<br>
+	 * ttl单位为毫秒 0为不过期<br>
+	 * http://redis.io/commands/restore<br>
+	 * 
+	 * <pre>
+	 * 		RESTORE key ttl serialized-value REPLACE
+	 * </pre>
+	 */
+	public static final String RESTORE = "RESTORE";
+	/**
+	 * 向一个list的尾部添加值<br>
+	 * 
+	 * http://redis.io/commands/rpush<br>
+	 * 
+	 * <pre>
+	 * 		RPUSH key value1 value2 value3...
+	 * </pre>
+	 */
+	public static final String RPUSH = "RPUSH";
 	/**
 	 * 向一个set添加一个值<br>
 	 * http://redis.io/commands/sadd<br>
@@ -141,6 +175,81 @@ public class RedisCommandSymbol {
 	 * </pre>
 	 */
 	public static final String SET = "SET";
+	/**
+	 * 设置一个key在指定的毫秒时间戳过期<br>
+	 * http://redis.io/commands/pexpireat<br>
+	 * 
+	 * <pre>
+	 * 		 PEXPIREAT mykey 1555555555005
+	 * </pre>
+	 */
+	public static final String PEXPIREAT = "PEXPIREAT";
+	/**
+	 * SET命令指定毫秒时间戳过期时间的参数<br>
+	 * http://redis.io/commands/set<br>
+	 * 
+	 * <pre>
+	 * 		SET key value PXAT 1555555555005
+	 * </pre>
+	 */
+	public static final String PXAT = "PXAT";
+	/**
+	 * 删除key的命令<br>
+	 * http://redis.io/commands/del<br>
+	 * 
+	 * <pre>
+	 * 		DEL key
+	 * </pre>
+	 */
+	public static final String DEL = "DEL";
+	/**
+	 * 从指定复制偏移量开始部分同步的命令<br>
+	 * 源服务器可以继续发送时响应+CONTINUE 否则响应+FULLRESYNC后执行全量同步<br>
+	 * http://redis.io/commands/psync<br>
+	 * 
+	 * <pre>
+	 * 		PSYNC replicationid offset
+	 * </pre>
+	 */
+	public static final String PSYNC = "PSYNC";
+	/**
+	 * PSYNC需要全量同步时的响应<br>
+	 * 
+	 * <pre>
+	 * 		+FULLRESYNC replicationid offset
+	 * </pre>
+	 */
+	public static final String FULLRESYNC = "FULLRESYNC";
+	/**
+	 * PSYNC可以从指定偏移量继续同步时的响应<br>
+	 * 
+	 * <pre>
+	 * 		+CONTINUE [replicationid]
+	 * </pre>
+	 */
+	public static final String CONTINUE = "CONTINUE";
+	/**
+	 * 复制连接的控制命令<br>
+	 * 源服务器会在复制流中发送REPLCONF GETACK要求从服务器确认复制偏移量<br>
+	 * http://redis.io/commands/replconf<br>
+	 * 
+	 * <pre>
+	 * 		REPLCONF GETACK *
+	 * </pre>
+	 */
+	public static final String REPLCONF = "REPLCONF";
+	/**
+	 * 源服务器要求从服务器确认复制偏移量的REPLCONF参数
+	 */
+	public static final String GETACK = "GETACK";
+	/**
+	 * 从服务器确认复制偏移量的REPLCONF参数<br>
+	 * 
+	 * <pre>
+	 * 		REPLCONF ACK offset
+	 * </pre>
+	 */
+	public static final String ACK = "ACK";
 	/**
 	 * 执行同步的命令
 	 * 
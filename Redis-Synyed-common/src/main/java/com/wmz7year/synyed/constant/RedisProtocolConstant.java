@@ -15,6 +15,10 @@ public class RedisProtocolConstant {
 	 * redis数据包解析器
 	 */
 	public static final String REDIS_PROTOCOL_PARSER = "redis_protpcol_parser";
+	/**
+	 * 会话中还没有发送完的临时文件FileRegion
+	 */
+	public static final String REDIS_FILE_REGIONS = "redis_file_regions";
 	/**
 	 * redis命令结束分隔符
 	 */
@@ -12,6 +12,21 @@ package com.wmz7year.synyed.constant;
 public class RedisRDBConstant {
 	public static final double R_Zero = 0.0, R_PosInf = 1.0 / R_Zero, R_NegInf = -1.0 / R_Zero, R_Nan = R_Zero / R_Zero;
 
+	/**
+	 * rdb文件版本号<br>
+	 * 生成DUMP格式数据时写入到结尾的版本信息中
+	 */
+	public static final int REDIS_RDB_VERSION = 6;
+
+	/**
+	 * rdb全量同步模式 将数据展开为SET/SADD等命令发送
+	 */
+	public static final String REDIS_RDB_SYNC_MODE_COMMAND = "command";
+	/**
+	 * rdb全量同步模式 将数据重新封装为DUMP格式使用RESTORE命令发送
+	 */
+	public static final String REDIS_RDB_SYNC_MODE_RESTORE = "restore";
+
 	/**
 	 * redis key 过期时间 秒
 	 */
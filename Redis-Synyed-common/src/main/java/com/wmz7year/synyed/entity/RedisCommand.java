@@ -41,6 +41,17 @@ public class RedisCommand {
 		addValue(value.getBytes());
 	}
 
+	/**
+	 * 添加命令数据对象的方法<br>
+	 * 用于添加延迟生成原始数据的命令数据
+	 * 
+	 * @param value
+	 *            需要添加的命令数据
+	 */
+	public void addValue(RedisCommandData value) {
+		this.values.add(value);
+	}
+
 	/**
 	 * 获取命令所占的空间大小的方法<br>
 	 * 空间大小为命令+key+values的长度
@@ -51,7 +62,7 @@ public class RedisCommand {
 		int result = 0;
 		result += command.length();
 		for (RedisCommandData value : values) {
-			result += value.getData().length;
+			result += value.getLength();
 		}
 		return result;
 	}
@@ -1,9 +1,12 @@
 package com.wmz7year.synyed.entity;
 
+import java.nio.ByteBuffer;
+
 /**
  * 封装Redis命令数据的实体类<br>
- * 如key数据、value数据等
- * 
+ * 如key数据、value数据等<br>
+ * 子类可以延迟生成原始数据 编码时通过writeTo直接写入输出缓冲区
+ *
  * @Title: RedisCommandData.java
  * @Package com.wmz7year.synyed.entity
  * @author jiangwei (ydswcy513@gmail.com)
@@ -16,14 +19,14 @@ public class RedisCommandData {
 	 */
 	private byte[] data;
 	/**
-	 * 转换为字符串后的数据
+	 * 转换为字符串后的数据<br>
+	 * 第一次访问时才会生成
 	 */
 	private String content;
 
 	public RedisCommandData(byte[] data) {
 		super();
 		this.data = data;
-		this.content = new String(data);
 	}
 
 	public byte[] getData() {
@@ -32,9 +35,13 @@ public class RedisCommandData {
 
 	public void setData(byte[] data) {
 		this.data = data;
+		this.content = null;
 	}
 
 	public String getContent() {
+		if (content == null) {
+			content = new String(getData());
+		}
 		return content;
 	}
 
@@ -42,12 +49,35 @@ public class RedisCommandData {
 		this.content = content;
 	}
 
+	/**
+	 * 获取数据长度的方法<br>
+	 * 编码Redis协议时用于生成$长度头
+	 *
+	 * @return 数据长度
+	 */
+	public int getLength() {
+		return data.length;
+	}
+
+	/**
+	 * 将数据写入到输出缓冲区的方法<br>
+	 * 调用方需要保证缓冲区剩余空间不小于getLength()
+	 *
+	 * @param out
+	 *            输出缓冲区
+	 * @throws Exception
+	 *             当写入过程中出现问题时抛出该异常
+	 */
+	public void writeTo(ByteBuffer out) throws Exception {
+		out.put(data);
+	}
+
 	/*
 	 * @see java.lang.Object#toString()
 	 */
 	@Override
 	public String toString() {
-		return "RedisCommandData [dataLength=" + data.length + ", content=" + content + "]";
+		return "RedisCommandData [dataLength=" + getLength() + ", content=" + getContent() + "]";
 	}
 
 }
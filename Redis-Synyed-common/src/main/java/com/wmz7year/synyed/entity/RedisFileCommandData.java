@@ -0,0 +1,112 @@
+package com.wmz7year.synyed.entity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * 引用磁盘文件中数据的命令数据对象<br>
+ * 超大的value在解析时写入临时文件 不在堆内存中保存<br>
+ * 发送时由编码器直接从文件传输到连接 只有在调用getData时才会读取到byte数组 并且不会缓存
+ *
+ * @Title: RedisFileCommandData.java
+ * @Package com.wmz7year.synyed.entity
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月28日 下午4:37:15
+ * @version V1.0
+ */
+public class RedisFileCommandData extends RedisCommandData {
+	/**
+	 * 保存数据的文件
+	 */
+	private final File file;
+	/**
+	 * 数据长度
+	 */
+	private final int length;
+
+	public RedisFileCommandData(File file, int length) {
+		super(null);
+		this.file = file;
+		this.length = length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		byte[] data = super.getData();
+		if (data != null) {
+			return data;
+		}
+		try {
+			return FileUtils.readFileToByteArray(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("读取命令数据文件失败：" + file, e);
+		}
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getLength()
+	 */
+	@Override
+	public int getLength() {
+		byte[] data = super.getData();
+		return data != null ? data.length : length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#writeTo(java.nio.
+	 * ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) throws Exception {
+		byte[] data = super.getData();
+		if (data != null) {
+			out.put(data);
+			return;
+		}
+		// 从文件直接读取到输出缓冲区 不生成中间数组
+		ByteBuffer target = out.duplicate();
+		target.limit(target.position() + length);
+		FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+		try {
+			while (target.hasRemaining()) {
+				if (channel.read(target, target.position() - out.position()) < 0) {
+					throw new IOException("命令数据文件长度不足：" + file);
+				}
+			}
+		} finally {
+			channel.close();
+		}
+		out.position(target.position());
+	}
+
+	/**
+	 * 判断数据是否仍然在文件中的方法<br>
+	 * 数据被修改过之后使用修改后的数据
+	 *
+	 * @return true为数据在文件中
+	 */
+	public boolean isFileBacked() {
+		return super.getData() == null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RedisFileCommandData [file=" + file + ", dataLength=" + getLength() + "]";
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.wmz7year.synyed.entity;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 整数类型的命令数据对象<br>
+ * 保存原始的long值 编码时直接将十进制字符写入输出缓冲区<br>
+ * 只有在调用getData时才会生成byte数组
+ *
+ * @Title: RedisLongCommandData.java
+ * @Package com.wmz7year.synyed.entity
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月14日 上午9:48:12
+ * @version V1.0
+ */
+public class RedisLongCommandData extends RedisCommandData {
+	/**
+	 * 整数值
+	 */
+	private long value;
+
+	public RedisLongCommandData(long value) {
+		super(null);
+		this.value = value;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		byte[] data = super.getData();
+		if (data == null) {
+			data = new byte[getLength()];
+			writeTo(ByteBuffer.wrap(data));
+			super.setData(data);
+		}
+		return data;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getLength()
+	 */
+	@Override
+	public int getLength() {
+		byte[] data = super.getData();
+		return data != null ? data.length : stringSize(value);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#writeTo(java.nio.
+	 * ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) {
+		byte[] data = super.getData();
+		if (data != null) {
+			// 已经生成过数据或者数据被修改过
+			out.put(data);
+		} else {
+			writeDecimal(value, out);
+		}
+	}
+
+	/**
+	 * 计算long值十进制字符串长度的方法
+	 * 
+	 * @param value
+	 *            long值
+	 * @return 包括负号在内的字符数量
+	 */
+	public static int stringSize(long value) {
+		int size = 1;
+		// 使用负数计算 避免Long.MIN_VALUE取反溢出
+		long v = value < 0 ? value : -value;
+		if (value < 0) {
+			size++;
+		}
+		while (v <= -10) {
+			v /= 10;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * 将long值以十进制字符写入缓冲区的方法<br>
+	 * 不生成中间字符串
+	 * 
+	 * @param value
+	 *            long值
+	 * @param out
+	 *            输出缓冲区
+	 */
+	public static void writeDecimal(long value, ByteBuffer out) {
+		int size = stringSize(value);
+		int position = out.position();
+		long v = value < 0 ? value : -value;
+		int index = position + size - 1;
+		do {
+			out.put(index--, (byte) ('0' - (v % 10)));
+			v /= 10;
+		} while (v != 0);
+		if (value < 0) {
+			out.put(index, (byte) '-');
+		}
+		out.position(position + size);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.wmz7year.synyed.entity;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 引用缓冲区中一段数据的命令数据对象<br>
+ * 不拷贝数据 编码时直接从原始缓冲区写入到输出缓冲区<br>
+ * 只有在调用getData时才会生成独立的byte数组
+ *
+ * @Title: RedisSliceCommandData.java
+ * @Package com.wmz7year.synyed.entity
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月14日 下午2:08:37
+ * @version V1.0
+ */
+public class RedisSliceCommandData extends RedisCommandData {
+	/**
+	 * 原始缓冲区
+	 */
+	private byte[] source;
+	/**
+	 * 数据在缓冲区中的起始位
+	 */
+	private int offset;
+	/**
+	 * 数据长度
+	 */
+	private int length;
+
+	public RedisSliceCommandData(byte[] source, int offset, int length) {
+		super(null);
+		if (offset < 0 || length < 0 || offset + length > source.length) {
+			throw new IndexOutOfBoundsException("offset:" + offset + " length:" + length);
+		}
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		byte[] data = super.getData();
+		if (data == null) {
+			data = Arrays.copyOfRange(source, offset, offset + length);
+			super.setData(data);
+		}
+		return data;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getLength()
+	 */
+	@Override
+	public int getLength() {
+		byte[] data = super.getData();
+		return data != null ? data.length : length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#writeTo(java.nio.
+	 * ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) {
+		byte[] data = super.getData();
+		if (data != null) {
+			// 已经生成过数据或者数据被修改过
+			out.put(data);
+		} else {
+			out.put(source, offset, length);
+		}
+	}
+
+}
@@ -10,9 +10,12 @@ import com.wmz7year.synyed.exception.RedisRDBException;
 import com.wmz7year.synyed.parser.RDBParser;
 import com.wmz7year.synyed.parser.RDBParserFactory;
 import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisKeyFilter;
 
 /**
  * 处理Redis数据文件传输的数据包对象<br>
+ * 创建时只记录rdb文件 第一次访问数据时才读取并解析文件<br>
+ * 避免在网络I/O线程中执行耗时的解析操作<br>
  * 
  * @Title: RedisDataBaseTransferPacket.java
  * @Package com.wmz7year.synyed.packet.redis
@@ -33,23 +36,56 @@ public class RedisDataBaseTransferPacket extends RedisPacket {
 	 * rdb文件内容
 	 */
 	byte[] rdbContent = null;
+	/**
+	 * 解析时使用的key过滤规则
+	 */
+	private RedisKeyFilter keyFilter;
+	/**
+	 * 断点位置 在该位置之前开始的key已经同步过
+	 */
+	private long resumeOffset = 0;
 
-	public RedisDataBaseTransferPacket(String command, File rdbFile) throws RedisRDBException {
+	public RedisDataBaseTransferPacket(String command, File rdbFile) {
 		super(command);
 		this.rdbFile = rdbFile;
+	}
 
-		try {
-			rdbContent = FileUtils.readFileToByteArray(rdbFile);
-		} catch (IOException e) {
-			throw new RedisRDBException(e);
+	/**
+	 * 读取并解析rdb文件的方法<br>
+	 * 多次调用只会解析一次
+	 * 
+	 * @throws RedisRDBException
+	 *             当读取或者解析出现问题时抛出该异常
+	 */
+	public synchronized void parse() throws RedisRDBException {
+		if (rdbParser != null) {
+			return;
 		}
-
+		// 读取文件内容
+		readContent();
 		// 创建解析器
 		createParser();
 		// 读取正文内容
 		parserContent();
 	}
 
+	/**
+	 * 读取rdb文件内容的方法
+	 * 
+	 * @throws RedisRDBException
+	 *             当读取文件出现问题时抛出该异常
+	 */
+	private void readContent() throws RedisRDBException {
+		if (rdbContent != null) {
+			return;
+		}
+		try {
+			rdbContent = FileUtils.readFileToByteArray(rdbFile);
+		} catch (IOException e) {
+			throw new RedisRDBException(e);
+		}
+	}
+
 	/**
 	 * 创建rdb文件解析器的方法
 	 * 
@@ -60,6 +96,8 @@ public class RedisDataBaseTransferPacket extends RedisPacket {
 		byte[] rdbHeader = new byte[9];
 		System.arraycopy(rdbContent, 0, rdbHeader, 0, 9);
 		rdbParser = RDBParserFactory.createRDBParser(rdbHeader);
+		rdbParser.setKeyFilter(keyFilter);
+		rdbParser.setResumeOffset(resumeOffset);
 	}
 
 	/**
@@ -78,9 +116,40 @@ public class RedisDataBaseTransferPacket extends RedisPacket {
 	 * @return redis数据库对象列表集合
 	 */
 	public Collection<RedisDB> getRedisDbs() {
+		try {
+			parse();
+		} catch (RedisRDBException e) {
+			throw new IllegalStateException("解析rdb文件失败：" + rdbFile, e);
+		}
 		return this.rdbParser.getRedisDBs();
 	}
 
+	/**
+	 * 设置解析时使用的key过滤规则的方法<br>
+	 * 需要在第一次解析之前调用
+	 * 
+	 * @param keyFilter
+	 *            key过滤规则 为null时不过滤
+	 */
+	public void setKeyFilter(RedisKeyFilter keyFilter) {
+		this.keyFilter = keyFilter;
+	}
+
+	/**
+	 * 设置断点位置的方法<br>
+	 * 需要在第一次解析之前调用
+	 * 
+	 * @param resumeOffset
+	 *            已经同步的最后一个key在rdb文件中结束的位置 0为从头开始
+	 */
+	public void setResumeOffset(long resumeOffset) {
+		this.resumeOffset = resumeOffset;
+	}
+
+	public long getResumeOffset() {
+		return resumeOffset;
+	}
+
 	public File getRdbFile() {
 		return rdbFile;
 	}
@@ -103,7 +172,12 @@ public class RedisDataBaseTransferPacket extends RedisPacket {
 	 * @see com.wmz7year.synyed.packet.redis.RedisPacket#getData()
 	 */
 	@Override
-	public byte[] getData() {
+	public synchronized byte[] getData() {
+		try {
+			readContent();
+		} catch (RedisRDBException e) {
+			throw new IllegalStateException("读取rdb文件失败：" + rdbFile, e);
+		}
 		return rdbContent;
 	}
 
@@ -0,0 +1,80 @@
+package com.wmz7year.synyed.packet.redis;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * 内容保存在临时文件中的redis复合类型字符串数据包<br>
+ * 超过阈值的bulk字符串在解析时直接写入文件 不在堆内存中拼接<br>
+ * 数据包执行完成后需要调用delete删除临时文件
+ *
+ * @Title: RedisFileBulkStringPacket.java
+ * @Package com.wmz7year.synyed.packet.redis
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月28日 下午4:12:50
+ * @version V1.0
+ */
+public class RedisFileBulkStringPacket extends RedisBulkStringPacket {
+	/**
+	 * 保存字符串内容的临时文件
+	 */
+	private final File file;
+	/**
+	 * 字符串长度
+	 */
+	private final long length;
+
+	public RedisFileBulkStringPacket(String command, File file, long length) {
+		super(command);
+		this.file = file;
+		this.length = length;
+	}
+
+	/*
+	 * 每次调用都从文件中读取 不缓存在数据包中
+	 *
+	 * @see com.wmz7year.synyed.packet.redis.RedisBulkStringPacket#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		try {
+			return FileUtils.readFileToByteArray(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("读取数据包文件失败：" + file, e);
+		}
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.packet.redis.RedisBulkStringPacket#getContent()
+	 */
+	@Override
+	public String getContent() {
+		return new String(getData());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * 删除临时文件的方法
+	 */
+	public void delete() {
+		FileUtils.deleteQuietly(file);
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RedisFileBulkStringPacket [file=" + file + ", length=" + length + "]";
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.wmz7year.synyed.packet.redis.command;
 
 import static com.wmz7year.synyed.constant.RedisCommandSymbol.*;
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_COMMAND;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -11,11 +12,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.wmz7year.synyed.entity.RedisCommand;
+import com.wmz7year.synyed.entity.RedisFileCommandData;
 import com.wmz7year.synyed.packet.redis.RedisArraysPacket;
 import com.wmz7year.synyed.packet.redis.RedisBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisDataBaseTransferPacket;
 import com.wmz7year.synyed.packet.redis.RedisErrorPacket;
+import com.wmz7year.synyed.packet.redis.RedisFileBulkStringPacket;
 import com.wmz7year.synyed.packet.redis.RedisPacket;
+import com.wmz7year.synyed.parser.entry.RedisChunkPolicy;
 import com.wmz7year.synyed.parser.entry.RedisDB;
 
 /**
@@ -28,6 +32,17 @@ import com.wmz7year.synyed.parser.entry.RedisDB;
 public class RedisPacketCommandParser {
 	private static Logger logger = LoggerFactory.getLogger(RedisPacketCommandParser.class);
 
+	/**
+	 * rdb全量同步模式<br>
+	 * command为展开成普通命令 restore为使用RESTORE命令
+	 */
+	private String rdbSyncMode = REDIS_RDB_SYNC_MODE_COMMAND;
+
+	/**
+	 * rdb中集合类型数据生成命令时的分块策略
+	 */
+	private RedisChunkPolicy chunkPolicy = RedisChunkPolicy.DEFAULT;
+
 	/**
 	 * Redis数据包解析为Redis命令操作的方法
 	 * 
@@ -85,9 +100,17 @@ public class RedisPacketCommandParser {
 			}
 		} else {
 			List<RedisPacket> packets = packet.getPackets();
-			RedisCommand redisCommand = new RedisCommand(packets.get(0).getCommand());
+			// 命令名称为第一个元素的内容
+			RedisCommand redisCommand = new RedisCommand(new String(packets.get(0).getData()));
 			for (int i = 1; i < packets.size(); i++) {
-				redisCommand.addValue(packets.get(i).getData());
+				RedisPacket valuePacket = packets.get(i);
+				if (valuePacket instanceof RedisFileBulkStringPacket) {
+					// 保存在临时文件中的超大数据 发送时直接从文件传输
+					RedisFileBulkStringPacket filePacket = (RedisFileBulkStringPacket) valuePacket;
+					redisCommand.addValue(new RedisFileCommandData(filePacket.getFile(), (int) filePacket.getLength()));
+				} else {
+					redisCommand.addValue(valuePacket.getData());
+				}
 			}
 			result.add(redisCommand);
 		}
@@ -112,10 +135,26 @@ public class RedisPacketCommandParser {
 			result.add(selectDBCommand);
 
 			// 添加rdb中解析出的命令列表
-			List<RedisCommand> commands = redisDB.getCommands();
+			List<RedisCommand> commands = redisDB.getCommands(rdbSyncMode, chunkPolicy);
 			result.addAll(commands);
 		}
 		return result;
 	}
 
+	public String getRdbSyncMode() {
+		return rdbSyncMode;
+	}
+
+	public void setRdbSyncMode(String rdbSyncMode) {
+		this.rdbSyncMode = rdbSyncMode;
+	}
+
+	public RedisChunkPolicy getChunkPolicy() {
+		return chunkPolicy;
+	}
+
+	public void setChunkPolicy(RedisChunkPolicy chunkPolicy) {
+		this.chunkPolicy = chunkPolicy;
+	}
+
 }
@@ -4,6 +4,7 @@ import java.util.Collection;
 
 import com.wmz7year.synyed.exception.RedisRDBException;
 import com.wmz7year.synyed.parser.entry.RedisDB;
+import com.wmz7year.synyed.parser.entry.RedisKeyFilter;
 
 /**
  * Redis rdb文件解析器<br>
@@ -42,4 +43,23 @@ public interface RDBParser {
 	 * @return redis数据库列表
 	 */
 	public Collection<RedisDB> getRedisDBs();
+
+	/**
+	 * 设置key过滤规则的方法<br>
+	 * 需要在parse之前调用 被过滤的key不会出现在解析结果中
+	 * 
+	 * @param keyFilter
+	 *            key过滤规则 为null时不过滤
+	 */
+	public void setKeyFilter(RedisKeyFilter keyFilter);
+
+	/**
+	 * 设置断点位置的方法<br>
+	 * 需要在parse之前调用 在该位置之前开始的key已经同步过 不会出现在解析结果中<br>
+	 * 之后的key在生成命令时覆盖目标服务器中已有的数据
+	 * 
+	 * @param resumeOffset
+	 *            已经同步的最后一个key在rdb文件中结束的位置 0为从头开始
+	 */
+	public void setResumeOffset(long resumeOffset);
 }
@@ -0,0 +1,66 @@
+package com.wmz7year.synyed.parser.entry;
+
+/**
+ * 集合类型数据生成命令时的分块策略<br>
+ * 元素数量巨大的hash、set、zset、list会被切分成多条命令<br>
+ * 每条命令的元素数量以及数据字节数都不会超过限制 避免目标服务器阻塞以及内存峰值
+ *
+ * @Title: RedisChunkPolicy.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月13日 下午3:12:40
+ * @version V1.0
+ */
+public class RedisChunkPolicy {
+	/**
+	 * 默认每条命令最多包含的元素数量
+	 */
+	public static final int DEFAULT_MAX_ELEMENTS = 1000;
+	/**
+	 * 默认每条命令最多包含的数据字节数
+	 */
+	public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+	/**
+	 * 默认的分块策略
+	 */
+	public static final RedisChunkPolicy DEFAULT = new RedisChunkPolicy(DEFAULT_MAX_ELEMENTS, DEFAULT_MAX_BYTES);
+
+	/**
+	 * 每条命令最多包含的元素数量<br>
+	 * hash的field value以及zset的score member算作一个元素
+	 */
+	private int maxElements;
+	/**
+	 * 每条命令最多包含的数据字节数<br>
+	 * 单个元素超过该值时单独生成一条命令
+	 */
+	private int maxBytes;
+
+	public RedisChunkPolicy(int maxElements, int maxBytes) {
+		if (maxElements <= 0) {
+			throw new IllegalArgumentException("元素数量必须大于0：" + maxElements);
+		}
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("字节数必须大于0：" + maxBytes);
+		}
+		this.maxElements = maxElements;
+		this.maxBytes = maxBytes;
+	}
+
+	public int getMaxElements() {
+		return maxElements;
+	}
+
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RedisChunkPolicy [maxElements=" + maxElements + ", maxBytes=" + maxBytes + "]";
+	}
+
+}
@@ -0,0 +1,459 @@
+package com.wmz7year.synyed.parser.entry;
+
+import static com.wmz7year.synyed.constant.RedisCommandSymbol.*;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.wmz7year.synyed.entity.RedisLongCommandData;
+import com.wmz7year.synyed.exception.RedisRDBException;
+
+/**
+ * 按照分块策略遍历集合类型数据生成命令的工具类<br>
+ * 直接在rdb对象的内部结构或者ziplist游标上遍历元素 不生成元素列表 也不为每个元素创建命令数据对象<br>
+ * 生成RedisCommand对象与直接写入RESP格式都通过该类遍历 类型判断以及分块规则只有这一份<br>
+ * 当前命令达到元素数量或者字节数限制时开始新的命令 一个元素包含的多个参数(如field value)总是在同一条命令中
+ *
+ * @Title: RedisChunkedCommandWalker.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午5:20:18
+ * @version V1.0
+ */
+abstract class RedisChunkedCommandWalker {
+	/**
+	 * 命令名称
+	 */
+	private final String command;
+	/**
+	 * 每个元素包含的参数数量
+	 */
+	protected final int group;
+
+	protected RedisChunkedCommandWalker(String command, int group) {
+		this.command = command;
+		this.group = group;
+	}
+
+	/**
+	 * 根据value类型创建遍历对象的方法
+	 *
+	 * @param value
+	 *            rdb中的value
+	 * @return 遍历对象 不是集合类型时返回null
+	 */
+	public static RedisChunkedCommandWalker create(RedisObject value) {
+		if (value instanceof RedisHashObject) {
+			// hash类型数据 生成hmset命令
+			return new HashWalker(((RedisHashObject) value).getElementMap());
+		} else if (value instanceof RedisHashZipList) {
+			return new ZipListWalker(HMSET, (RedisHashZipList) value, 2, false);
+		} else if (value instanceof RedisHashZipMap) {
+			return new ZipMapWalker(((RedisHashZipMap) value).getElementBuffers());
+		} else if (value instanceof RedisListObject) {
+			// list类型的value 按照顺序生成rpush命令
+			return new StringWalker(RPUSH, ((RedisListObject) value).getStringElements());
+		} else if (value instanceof RedisSetIntSet) {
+			// 整数set类型的value 生成sadd命令
+			return new IntSetWalker((RedisSetIntSet) value);
+		} else if (value instanceof RedisSetObject) {
+			return new StringWalker(SADD, ((RedisSetObject) value).getStringElements());
+		} else if (value instanceof RedisZipListObject) {
+			return new ZipListWalker(RPUSH, (RedisZipListObject) value, 1, false);
+		} else if (value instanceof RedisZSetObject) {
+			// sorted set类型数据 生成zadd命令
+			return new ZSetWalker((RedisZSetObject) value);
+		} else if (value instanceof RedisZSetZipList) {
+			// member与score交替排列 zadd需要score在前
+			return new ZipListWalker(ZADD, (RedisZSetZipList) value, 2, true);
+		}
+		return null;
+	}
+
+	/**
+	 * 按分块策略输出命令的方法<br>
+	 * 预读游标计算每条命令包含的元素 另一个游标跟在后面输出元素
+	 *
+	 * @param emitter
+	 *            命令输出
+	 * @param key
+	 *            命令的key
+	 * @param chunkPolicy
+	 *            分块策略
+	 * @throws Exception
+	 *             遍历或者输出出现问题时抛出该异常
+	 */
+	public void walk(RedisCommandEmitter emitter, byte[] key, RedisChunkPolicy chunkPolicy) throws Exception {
+		Cursor ahead = newCursor();
+		Cursor cursor = newCursor();
+		boolean more = ahead.next();
+		while (more) {
+			// 计算当前命令包含的元素数量
+			int count = 0;
+			long bytes = 0;
+			do {
+				int length = ahead.getLength();
+				if (count > 0 && (count >= chunkPolicy.getMaxElements() || bytes + length > chunkPolicy.getMaxBytes())) {
+					break;
+				}
+				count++;
+				bytes += length;
+				more = ahead.next();
+			} while (more);
+
+			emitter.beginCommand(command, 1 + count * group);
+			emitter.writeBulk(key);
+			for (int i = 0; i < count; i++) {
+				cursor.next();
+				cursor.write(emitter);
+			}
+			emitter.endCommand();
+		}
+	}
+
+	/**
+	 * 创建位于第一个元素之前的游标的方法<br>
+	 * 每次调用返回新的游标 多个游标之间互不影响
+	 *
+	 * @return 元素游标
+	 */
+	protected abstract Cursor newCursor();
+
+	/**
+	 * 获取字符串对象数据长度的方法 压缩的字符串不解压
+	 */
+	static int lengthOf(RedisStringObject value) {
+		if (value instanceof RedisLzfStringObject) {
+			return ((RedisLzfStringObject) value).getLength();
+		}
+		return value.getBuffer().length;
+	}
+
+	/**
+	 * 集合元素游标
+	 */
+	protected abstract static class Cursor {
+
+		/**
+		 * 移动到下一个元素的方法
+		 *
+		 * @return true为移动成功 false为已经没有元素
+		 * @throws RedisRDBException
+		 *             当元素编码错误时抛出该异常
+		 */
+		abstract boolean next() throws RedisRDBException;
+
+		/**
+		 * 获取当前元素所有参数数据字节数的方法
+		 *
+		 * @return 数据字节数
+		 */
+		abstract int getLength();
+
+		/**
+		 * 按命令参数顺序输出当前元素的方法
+		 *
+		 * @param emitter
+		 *            命令输出
+		 * @throws Exception
+		 *             输出出现问题时抛出该异常
+		 */
+		abstract void write(RedisCommandEmitter emitter) throws Exception;
+	}
+
+	/**
+	 * 元素为字符串对象的list以及set
+	 */
+	private static class StringWalker extends RedisChunkedCommandWalker {
+		private final Collection<RedisStringObject> elements;
+
+		StringWalker(String command, Collection<RedisStringObject> elements) {
+			super(command, 1);
+			this.elements = elements;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			final Iterator<RedisStringObject> iterator = elements.iterator();
+			return new Cursor() {
+				private RedisStringObject current;
+
+				@Override
+				boolean next() {
+					if (!iterator.hasNext()) {
+						return false;
+					}
+					current = iterator.next();
+					return true;
+				}
+
+				@Override
+				int getLength() {
+					return lengthOf(current);
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					emitter.writeBulk(current);
+				}
+			};
+		}
+	}
+
+	/**
+	 * hashtable编码的hash
+	 */
+	private static class HashWalker extends RedisChunkedCommandWalker {
+		private final Map<RedisObject, RedisObject> elements;
+
+		HashWalker(Map<RedisObject, RedisObject> elements) {
+			super(HMSET, 2);
+			this.elements = elements;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			final Iterator<Entry<RedisObject, RedisObject>> iterator = elements.entrySet().iterator();
+			return new Cursor() {
+				private RedisStringObject field;
+				private RedisStringObject value;
+
+				@Override
+				boolean next() {
+					if (!iterator.hasNext()) {
+						return false;
+					}
+					Entry<RedisObject, RedisObject> entry = iterator.next();
+					field = (RedisStringObject) entry.getKey();
+					value = (RedisStringObject) entry.getValue();
+					return true;
+				}
+
+				@Override
+				int getLength() {
+					return lengthOf(field) + lengthOf(value);
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					emitter.writeBulk(field);
+					emitter.writeBulk(value);
+				}
+			};
+		}
+	}
+
+	/**
+	 * zipmap编码的hash
+	 */
+	private static class ZipMapWalker extends RedisChunkedCommandWalker {
+		private final List<byte[]> elements;
+
+		ZipMapWalker(List<byte[]> elements) {
+			super(HMSET, 2);
+			this.elements = elements;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			return new Cursor() {
+				private int index = -2;
+
+				@Override
+				boolean next() {
+					if (index + 3 >= elements.size()) {
+						return false;
+					}
+					index += 2;
+					return true;
+				}
+
+				@Override
+				int getLength() {
+					return elements.get(index).length + elements.get(index + 1).length;
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					emitter.writeBulk(elements.get(index));
+					emitter.writeBulk(elements.get(index + 1));
+				}
+			};
+		}
+	}
+
+	/**
+	 * intset编码的set 整数元素直接格式化
+	 */
+	private static class IntSetWalker extends RedisChunkedCommandWalker {
+		private final RedisSetIntSet intSet;
+
+		IntSetWalker(RedisSetIntSet intSet) {
+			super(SADD, 1);
+			this.intSet = intSet;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			return new Cursor() {
+				private int index = -1;
+
+				@Override
+				boolean next() {
+					if (index + 1 >= intSet.getElementCount()) {
+						return false;
+					}
+					index++;
+					return true;
+				}
+
+				@Override
+				int getLength() {
+					return RedisLongCommandData.stringSize(intSet.getElement(index));
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					emitter.writeBulk(intSet.getElement(index));
+				}
+			};
+		}
+	}
+
+	/**
+	 * skiplist编码的zset 整数score直接格式化
+	 */
+	private static class ZSetWalker extends RedisChunkedCommandWalker {
+		private final RedisZSetObject zset;
+
+		ZSetWalker(RedisZSetObject zset) {
+			super(ZADD, 2);
+			this.zset = zset;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			return new Cursor() {
+				private int index = -1;
+				private long longScore;
+				private byte[] score;
+				private int scoreLength;
+
+				@Override
+				boolean next() {
+					if (index + 1 >= zset.getElementCount()) {
+						return false;
+					}
+					index++;
+					double value = zset.getScore(index);
+					if (RedisZSetObject.isLongScore(value)) {
+						longScore = (long) value;
+						score = null;
+						scoreLength = RedisLongCommandData.stringSize(longScore);
+					} else {
+						score = RedisZSetObject.formatScore(value).getBytes();
+						scoreLength = score.length;
+					}
+					return true;
+				}
+
+				@Override
+				int getLength() {
+					return scoreLength + lengthOf(zset.getMember(index));
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					if (score == null) {
+						emitter.writeBulk(longScore);
+					} else {
+						emitter.writeBulk(score);
+					}
+					emitter.writeBulk(zset.getMember(index));
+				}
+			};
+		}
+	}
+
+	/**
+	 * ziplist编码的list hash以及zset<br>
+	 * 字符串元素直接输出编码数据中的一段 整数元素直接格式化
+	 */
+	private static class ZipListWalker extends RedisChunkedCommandWalker {
+		private final RedisZipListEncodedObject zipList;
+		/**
+		 * 两个参数的元素是否交换顺序输出
+		 */
+		private final boolean swap;
+
+		ZipListWalker(String command, RedisZipListEncodedObject zipList, int group, boolean swap) {
+			super(command, group);
+			this.zipList = zipList;
+			this.swap = swap;
+		}
+
+		@Override
+		protected Cursor newCursor() {
+			final RedisZipListCursor cursor = zipList.getCursor();
+			return new Cursor() {
+				// 两个参数的元素中第一个ziplist元素 游标已经移动到第二个ziplist元素
+				private boolean firstInteger;
+				private long firstLong;
+				private int firstOffset;
+				private int firstLength;
+
+				@Override
+				boolean next() throws RedisRDBException {
+					if (!cursor.next()) {
+						return false;
+					}
+					if (group == 1) {
+						return true;
+					}
+					firstInteger = cursor.isInteger();
+					firstLong = cursor.getLong();
+					firstOffset = cursor.getStringOffset();
+					firstLength = cursor.getStringLength();
+					// 元素数量为奇数时忽略最后一个不完整的元素
+					return cursor.next();
+				}
+
+				@Override
+				int getLength() {
+					int length = cursor.isInteger() ? RedisLongCommandData.stringSize(cursor.getLong())
+							: cursor.getStringLength();
+					if (group == 1) {
+						return length;
+					}
+					return length + (firstInteger ? RedisLongCommandData.stringSize(firstLong) : firstLength);
+				}
+
+				@Override
+				void write(RedisCommandEmitter emitter) throws Exception {
+					if (group == 2 && !swap) {
+						writeFirst(emitter);
+					}
+					if (cursor.isInteger()) {
+						emitter.writeBulk(cursor.getLong());
+					} else {
+						emitter.writeBulk(cursor.getBuffer(), cursor.getStringOffset(), cursor.getStringLength());
+					}
+					if (group == 2 && swap) {
+						writeFirst(emitter);
+					}
+				}
+
+				private void writeFirst(RedisCommandEmitter emitter) throws Exception {
+					if (firstInteger) {
+						emitter.writeBulk(firstLong);
+					} else {
+						emitter.writeBulk(cursor.getBuffer(), firstOffset, firstLength);
+					}
+				}
+			};
+		}
+	}
+}
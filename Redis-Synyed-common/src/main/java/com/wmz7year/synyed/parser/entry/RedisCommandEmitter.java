@@ -0,0 +1,89 @@
+package com.wmz7year.synyed.parser.entry;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * rdb数据转换出的命令的输出接口<br>
+ * RedisRDBCommand按命令以及参数的顺序依次输出 实现类可以生成RedisCommand对象或者直接写入RESP格式<br>
+ * 每条命令以beginCommand开始 写入args个参数后以endCommand结束
+ *
+ * @Title: RedisCommandEmitter.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 下午5:12:40
+ * @version V1.0
+ */
+interface RedisCommandEmitter {
+
+	/**
+	 * 开始一条命令的方法
+	 *
+	 * @param command
+	 *            命令名称
+	 * @param args
+	 *            命令参数数量 不包含命令名称
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void beginCommand(String command, int args) throws Exception;
+
+	/**
+	 * 输出一个参数的方法
+	 *
+	 * @param data
+	 *            参数数据
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void writeBulk(byte[] data) throws Exception;
+
+	/**
+	 * 输出数组中一段数据作为参数的方法
+	 *
+	 * @param data
+	 *            数据所在的数组
+	 * @param offset
+	 *            起始位
+	 * @param length
+	 *            长度
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void writeBulk(byte[] data, int offset, int length) throws Exception;
+
+	/**
+	 * 输出一个整数参数的方法
+	 *
+	 * @param value
+	 *            整数值
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void writeBulk(long value) throws Exception;
+
+	/**
+	 * 输出一个命令数据参数的方法
+	 *
+	 * @param data
+	 *            命令数据
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void writeBulk(RedisCommandData data) throws Exception;
+
+	/**
+	 * 输出一个字符串对象参数的方法<br>
+	 * 压缩的字符串由实现类决定何时解压
+	 *
+	 * @param value
+	 *            字符串对象
+	 * @throws Exception
+	 *             输出出现问题时抛出该异常
+	 */
+	public void writeBulk(RedisStringObject value) throws Exception;
+
+	/**
+	 * 结束一条命令的方法
+	 */
+	public void endCommand();
+}
@@ -1,5 +1,7 @@
 package com.wmz7year.synyed.parser.entry;
 
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_COMMAND;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,9 +22,9 @@ public class RedisDB {
 	 */
 	private int num;
 	/**
-	 * rdb中的命令列表
+	 * rdb中的key value列表
 	 */
-	private List<RedisCommand> command = new ArrayList<RedisCommand>();
+	private List<RedisRDBCommand> rdbCommands = new ArrayList<RedisRDBCommand>();
 
 	public RedisDB(int num) {
 		this.num = num;
@@ -38,13 +40,22 @@ public class RedisDB {
 
 	/**
 	 * 添加redis命令的方法<br>
-	 * 将命令对象添加到命令集合中
+	 * 将rdb中的key value对象添加到集合中 同步时再生成命令
 	 * 
 	 * @param rdbCommand
 	 *            redis命令对象
 	 */
 	public void addCommand(RedisRDBCommand rdbCommand) {
-		command.addAll(rdbCommand.getCommands());
+		rdbCommands.add(rdbCommand);
+	}
+
+	/**
+	 * 获取rdb中所有key value对象的方法
+	 * 
+	 * @return rdb key value对象列表
+	 */
+	public List<RedisRDBCommand> getRDBCommands() {
+		return this.rdbCommands;
 	}
 
 	/**
@@ -53,7 +64,35 @@ public class RedisDB {
 	 * @return redis命令列表集合
 	 */
 	public List<RedisCommand> getCommands() {
-		return this.command;
+		return getCommands(REDIS_RDB_SYNC_MODE_COMMAND);
+	}
+
+	/**
+	 * 根据同步模式获取rdb中所有需要同步的命令列表的方法
+	 * 
+	 * @param syncMode
+	 *            rdb同步模式
+	 * @return redis命令列表集合
+	 */
+	public List<RedisCommand> getCommands(String syncMode) {
+		return getCommands(syncMode, RedisChunkPolicy.DEFAULT);
+	}
+
+	/**
+	 * 根据同步模式以及分块策略获取rdb中所有需要同步的命令列表的方法
+	 * 
+	 * @param syncMode
+	 *            rdb同步模式
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @return redis命令列表集合
+	 */
+	public List<RedisCommand> getCommands(String syncMode, RedisChunkPolicy chunkPolicy) {
+		List<RedisCommand> result = new ArrayList<RedisCommand>(rdbCommands.size());
+		for (RedisRDBCommand rdbCommand : rdbCommands) {
+			result.addAll(rdbCommand.getCommands(syncMode, chunkPolicy));
+		}
+		return result;
 	}
 
 }
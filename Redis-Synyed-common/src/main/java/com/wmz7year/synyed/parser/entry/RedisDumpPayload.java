@@ -0,0 +1,114 @@
+package com.wmz7year.synyed.parser.entry;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_VERSION;
+
+import java.nio.ByteBuffer;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.util.CRC64;
+
+/**
+ * DUMP格式序列化数据的命令数据对象<br>
+ * 直接引用rdb文件中value的原始序列化数据 不进行解码<br>
+ * 格式为 类型(1字节) + value数据 + rdb版本(2字节小端) + crc64(8字节小端)<br>
+ * 编码时分段写入到输出缓冲区 不生成中间数组
+ *
+ * @Title: RedisDumpPayload.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月13日 上午10:21:08
+ * @version V1.0
+ */
+public class RedisDumpPayload extends RedisCommandData {
+	/**
+	 * 结尾版本号以及crc64校验值的长度
+	 */
+	private static final int FOOTER_LENGTH = 10;
+	/**
+	 * value的rdb类型
+	 */
+	private byte type;
+	/**
+	 * 包含value序列化数据的缓冲区
+	 */
+	private byte[] source;
+	/**
+	 * value数据在缓冲区中的起始位
+	 */
+	private int offset;
+	/**
+	 * value数据的长度
+	 */
+	private int length;
+	/**
+	 * 结尾数据 包括版本号以及crc64校验值
+	 */
+	private byte[] footer;
+
+	public RedisDumpPayload(byte type, byte[] source, int offset, int length) {
+		super(null);
+		this.type = type;
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+		this.footer = createFooter();
+	}
+
+	/**
+	 * 生成结尾数据的方法<br>
+	 * crc64校验范围为类型、value数据以及版本号
+	 *
+	 * @return 结尾数据
+	 */
+	private byte[] createFooter() {
+		byte[] result = new byte[FOOTER_LENGTH];
+		result[0] = (byte) (REDIS_RDB_VERSION & 0xFF);
+		result[1] = (byte) ((REDIS_RDB_VERSION >> 8) & 0xFF);
+
+		long crc = CRC64.update(0, new byte[] { type }, 0, 1);
+		crc = CRC64.update(crc, source, offset, length);
+		crc = CRC64.update(crc, result, 0, 2);
+		for (int i = 0; i < 8; i++) {
+			result[2 + i] = (byte) (crc >>> (8 * i));
+		}
+		return result;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		ByteBuffer buffer = ByteBuffer.allocate(getLength());
+		writeTo(buffer);
+		return buffer.array();
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getLength()
+	 */
+	@Override
+	public int getLength() {
+		return 1 + length + FOOTER_LENGTH;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#writeTo(java.nio.
+	 * ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) {
+		out.put(type);
+		out.put(source, offset, length);
+		out.put(footer);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RedisDumpPayload [type=" + type + ", length=" + getLength() + "]";
+	}
+
+}
@@ -3,11 +3,15 @@ package com.wmz7year.synyed.parser.entry;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_ENCODING_ZIPLIST;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_HASH;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
+
 /**
  * redis hash类型的对象
  * 
@@ -84,4 +88,28 @@ public class RedisHashObject extends RedisObject {
 		return "RedisHashObject [elements=" + elements + "]";
 	}
 
+	/**
+	 * 获取hash中field与value对应关系的方法<br>
+	 * 直接返回内部的集合 遍历时不创建命令数据对象
+	 * 
+	 * @return field与value的对应关系
+	 */
+	Map<RedisObject, RedisObject> getElementMap() {
+		return elements;
+	}
+
+	/**
+	 * 获取hash中所有元素的方法<br>
+	 * 结果中field与value交替排列
+	 * 
+	 * @return 元素列表
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(elements.size() * 2);
+		for (Entry<RedisObject, RedisObject> entry : elements.entrySet()) {
+			result.add(((RedisStringObject) entry.getKey()).toCommandData());
+			result.add(((RedisStringObject) entry.getValue()).toCommandData());
+		}
+		return result;
+	}
 }
@@ -2,18 +2,17 @@ package com.wmz7year.synyed.parser.entry;
 
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_ENCODING_ZIPLIST;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_HASH;
-import static com.wmz7year.synyed.util.NumberUtil.byte2Int;
 
 import java.io.ByteArrayInputStream;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
 import com.wmz7year.synyed.exception.RedisRDBException;
 
 /**
- * redis hash zipmap类型数据结构对象
+ * redis hash zipmap类型数据结构对象<br>
+ * field与value保持原始的byte数组 二进制数据不经过字符串转换
  * 
  * @Title: RedisHashZipMap.java
  * @Package com.wmz7year.synyed.parser.entry
@@ -23,9 +22,13 @@ import com.wmz7year.synyed.exception.RedisRDBException;
  */
 public class RedisHashZipMap extends RedisObject {
 	/**
-	 * 空格占位符
+	 * 长度使用5个字节表示的标识 之后4个字节为小端长度
 	 */
-	private static final byte FREE = 0x00;
+	private static final int ZIPMAP_BIGLEN = 254;
+	/**
+	 * zipmap结尾标识
+	 */
+	private static final int ZIPMAP_END = 255;
 
 	/**
 	 * hash zipmap数据
@@ -35,7 +38,7 @@ public class RedisHashZipMap extends RedisObject {
 	private ByteArrayInputStream bis = null;
 
 	/**
-	 * zip map中的元素长度
+	 * zip map头中记录的元素数量 大于等于254时需要遍历才能得到准确的数量
 	 */
 	private int zmLen = 0;
 	/**
@@ -44,28 +47,35 @@ public class RedisHashZipMap extends RedisObject {
 	private int entryCount = 0;
 
 	/**
-	 * 解析出的元素列表
+	 * 解析出的元素列表 field与value交替排列
 	 */
-	private Map<String, String> elements = new HashMap<String, String>();
+	private List<byte[]> elements = new ArrayList<byte[]>();
 
+	/**
+	 * 解析zipmap数据
+	 * 
+	 * <pre>
+	 * 	&lt;zmlen&gt;&lt;len&gt;"foo"&lt;len&gt;&lt;free&gt;"bar"&lt;len&gt;"hello"&lt;len&gt;&lt;free&gt;"world"&lt;end&gt;
+	 * </pre>
+	 * 
+	 * @param buffer
+	 *            zipmap编码数据
+	 * @throws RedisRDBException
+	 *             当数据格式错误时抛出该异常
+	 */
 	public RedisHashZipMap(byte[] buffer) throws RedisRDBException {
 		this.buffer = buffer;
 		this.bis = new ByteArrayInputStream(buffer);
 
-		// 读取第1个字节 如果该字节为 0xFE说明该元素长度是不准确的
-		// 需要遍历所有元素长度才可以得到准确的长度
-		this.zmLen = readByte();
-
-		// 读取元素数量
-		this.entryCount = readEntryLength();
+		// 读取第1个字节 如果该字节大于等于254说明该元素长度是不准确的
+		// 需要遍历所有元素才可以得到准确的长度
+		this.zmLen = readByte() & 0xFF;
 
-		// 读取元素
+		// 读取元素 遇到结尾符时结束
 		readEntries();
 
-		// 校验末尾符号
-		byte lastCheckFlag = readByte();
-		if (lastCheckFlag != -1) {
-			throw new RedisRDBException("末尾校验符不匹配");
+		if (zmLen < ZIPMAP_BIGLEN && zmLen != entryCount) {
+			throw new RedisRDBException("zipmap元素数量错误 应为：" + zmLen + " 实际：" + entryCount);
 		}
 	}
 
@@ -76,16 +86,25 @@ public class RedisHashZipMap extends RedisObject {
 	 *             读取过程中出现问题则抛出该异常
 	 */
 	private void readEntries() throws RedisRDBException {
-		for (int i = 0; i < entryCount; i++) {
+		while (true) {
 			int keyLength = readLength();
-			String key = readKey(keyLength);
+			if (keyLength == -1) {
+				break;
+			}
+			byte[] key = readKey(keyLength);
 			int valueLength = readLength();
-			byte checkFlag = readByte();
-			if (checkFlag != FREE) {
-				throw new RedisRDBException("检查符不匹配");
+			if (valueLength == -1) {
+				throw new RedisRDBException("zipmap解析错误");
+			}
+			// value后面空闲的字节数
+			int free = readByte() & 0xFF;
+			byte[] value = readValue(valueLength);
+			if (bis.skip(free) != free) {
+				throw new RedisRDBException("zipmap解析错误");
 			}
-			String value = readValue(valueLength);
-			elements.put(key, value);
+			elements.add(key);
+			elements.add(value);
+			entryCount++;
 		}
 	}
 
@@ -98,12 +117,12 @@ public class RedisHashZipMap extends RedisObject {
 	 * @throws RedisRDBException
 	 *             当读取发生问题时抛出该异常
 	 */
-	private String readKey(int keyLength) throws RedisRDBException {
+	private byte[] readKey(int keyLength) throws RedisRDBException {
 		byte[] buffer = new byte[keyLength];
 		if (!readBytes(buffer, 0, keyLength)) {
 			throw new RedisRDBException("解析错误");
 		}
-		return new String(buffer);
+		return buffer;
 	}
 
 	/**
@@ -111,46 +130,43 @@ public class RedisHashZipMap extends RedisObject {
 	 * 
 	 * @param valueLength
 	 *            value的长度
-	 * @return 读取到的key
+	 * @return 读取到的value
 	 * @throws RedisRDBException
 	 *             当读取发生问题时抛出该异常
 	 */
-	private String readValue(int valueLength) throws RedisRDBException {
+	private byte[] readValue(int valueLength) throws RedisRDBException {
 		byte[] buffer = new byte[valueLength];
 		if (!readBytes(buffer, 0, valueLength)) {
 			throw new RedisRDBException("解析错误");
 		}
-		return new String(buffer);
-	}
-
-	/**
-	 * 读取元素数量的方法
-	 * 
-	 * @return 包含的元素数量
-	 * @throws RedisRDBException
-	 *             当解析发生问题时抛出该异常
-	 */
-	private int readEntryLength() throws RedisRDBException {
-		return readLength();
+		return buffer;
 	}
 
 	/**
 	 * 读取长度的方法<br>
-	 * 先读取1个字节 如果该字节内容为0xFD 则接着向后读取4个字节转换为int作为长度
+	 * 先读取1个字节 如果该字节内容为0xFE 则接着向后读取4个字节转换为int作为长度<br>
+	 * 如果该字节内容为0xFF说明已经到达结尾
 	 * 
-	 * @return 读取到的长度
+	 * @return 读取到的长度 -1为已经到达结尾
 	 * @throws RedisRDBException
 	 *             当读取发生错误时抛出该异常
 	 */
 	private int readLength() throws RedisRDBException {
-		byte b = readByte();
-		if (b == 0xFD) {
+		int b = readByte() & 0xFF;
+		if (b == ZIPMAP_END) {
+			return -1;
+		} else if (b == ZIPMAP_BIGLEN) {
 			// 接着读取4个字节转换为int
 			byte[] buffer = new byte[4];
 			if (!readBytes(buffer, 0, 4)) {
 				throw new RedisRDBException("解析错误");
 			}
-			return byte2Int(buffer);
+			int length = (buffer[0] & 0xFF) | ((buffer[1] & 0xFF) << 8) | ((buffer[2] & 0xFF) << 16)
+					| ((buffer[3] & 0xFF) << 24);
+			if (length < 0) {
+				throw new RedisRDBException("zipmap解析错误");
+			}
+			return length;
 		} else {
 			return b;
 		}
@@ -178,13 +194,11 @@ public class RedisHashZipMap extends RedisObject {
 	@Override
 	public String toCommand() {
 		StringBuilder result = new StringBuilder();
-		Iterator<Entry<String, String>> iterator = this.elements.entrySet().iterator();
-		while (iterator.hasNext()) {
-			Entry<String, String> entry = iterator.next();
-			result.append(entry.getKey()).append(' ').append(entry.getValue()).append(' ');
-		}
-		if (result.length() > 0 && result.charAt(result.length() - 1) == ' ') {
-			return result.substring(0, result.length() - 1);
+		for (int i = 0; i < elements.size(); i++) {
+			if (i > 0) {
+				result.append(' ');
+			}
+			result.append(new String(elements.get(i)));
 		}
 		return result.toString();
 	}
@@ -214,6 +228,9 @@ public class RedisHashZipMap extends RedisObject {
 	 */
 	private byte readByte() throws RedisRDBException {
 		int data = bis.read();
+		if (data == -1) {
+			throw new RedisRDBException("zipmap解析错误");
+		}
 		// 强转成byte
 		byte b = (byte) data;
 		return b;
@@ -253,4 +270,28 @@ public class RedisHashZipMap extends RedisObject {
 	public int getElementCount() {
 		return this.entryCount;
 	}
+
+	/**
+	 * 获取hash中元素数据的方法<br>
+	 * field与value交替排列 直接返回内部的列表 遍历时不创建命令数据对象
+	 * 
+	 * @return 元素数据列表
+	 */
+	List<byte[]> getElementBuffers() {
+		return elements;
+	}
+
+	/**
+	 * 获取hash中所有元素的方法<br>
+	 * 结果中field与value交替排列
+	 * 
+	 * @return 元素列表
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(elements.size());
+		for (byte[] element : elements) {
+			result.add(new RedisCommandData(element));
+		}
+		return result;
+	}
 }
@@ -0,0 +1,179 @@
+package com.wmz7year.synyed.parser.entry;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 同步数据的过滤规则<br>
+ * 按数据库编号、key规则、数据类型以及剩余过期时间决定key是否需要同步<br>
+ * 包含规则为空时表示全部包含 排除规则优先于包含规则<br>
+ * rdb解析时在读取value之前判断 被过滤的key直接按长度跳过value
+ *
+ * @Title: RedisKeyFilter.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 下午5:20:46
+ * @version V1.0
+ */
+public class RedisKeyFilter {
+	/**
+	 * 数据类型名称
+	 */
+	public static final String TYPE_STRING = "string";
+	public static final String TYPE_LIST = "list";
+	public static final String TYPE_SET = "set";
+	public static final String TYPE_ZSET = "zset";
+	public static final String TYPE_HASH = "hash";
+
+	/**
+	 * 需要同步的数据库编号
+	 */
+	private final Set<Integer> includeDBs = new HashSet<Integer>();
+	/**
+	 * 不需要同步的数据库编号
+	 */
+	private final Set<Integer> excludeDBs = new HashSet<Integer>();
+	/**
+	 * 需要同步的key规则
+	 */
+	private final RedisKeyPatternMatcher includeKeys = new RedisKeyPatternMatcher();
+	/**
+	 * 不需要同步的key规则
+	 */
+	private final RedisKeyPatternMatcher excludeKeys = new RedisKeyPatternMatcher();
+	/**
+	 * 需要同步的数据类型
+	 */
+	private final Set<String> includeTypes = new HashSet<String>();
+	/**
+	 * 剩余过期时间小于该值的key不同步 毫秒 0为不限制
+	 */
+	private long minTtl = 0;
+
+	public void includeDB(int db) {
+		includeDBs.add(db);
+	}
+
+	public void excludeDB(int db) {
+		excludeDBs.add(db);
+	}
+
+	/**
+	 * 添加需要同步的key规则的方法
+	 *
+	 * @param pattern
+	 *            glob格式的规则
+	 */
+	public void includeKey(String pattern) {
+		includeKeys.add(pattern.getBytes());
+	}
+
+	/**
+	 * 添加不需要同步的key规则的方法
+	 *
+	 * @param pattern
+	 *            glob格式的规则
+	 */
+	public void excludeKey(String pattern) {
+		excludeKeys.add(pattern.getBytes());
+	}
+
+	/**
+	 * 添加需要同步的数据类型的方法
+	 *
+	 * @param type
+	 *            string/list/set/zset/hash
+	 */
+	public void includeType(String type) {
+		String name = type.toLowerCase();
+		if (!TYPE_STRING.equals(name) && !TYPE_LIST.equals(name) && !TYPE_SET.equals(name)
+				&& !TYPE_ZSET.equals(name) && !TYPE_HASH.equals(name)) {
+			throw new IllegalArgumentException("不支持的数据类型：" + type);
+		}
+		includeTypes.add(name);
+	}
+
+	public void setMinTtl(long minTtl) {
+		this.minTtl = minTtl;
+	}
+
+	public long getMinTtl() {
+		return minTtl;
+	}
+
+	/**
+	 * 判断是否没有设置任何规则的方法
+	 *
+	 * @return true为没有规则
+	 */
+	public boolean isEmpty() {
+		return includeDBs.isEmpty() && excludeDBs.isEmpty() && includeKeys.isEmpty() && excludeKeys.isEmpty()
+				&& includeTypes.isEmpty() && minTtl <= 0;
+	}
+
+	/**
+	 * 判断rdb中的key是否需要同步的方法
+	 *
+	 * @param db
+	 *            数据库编号
+	 * @param key
+	 *            key数据
+	 * @param rdbType
+	 *            value在rdb中的类型
+	 * @param expiretime
+	 *            过期时间 毫秒 -1为不过期
+	 * @param now
+	 *            当前时间 毫秒
+	 * @return true为需要同步
+	 */
+	public boolean accept(int db, byte[] key, byte rdbType, long expiretime, long now) {
+		return acceptDB(db) && acceptType(rdbType) && acceptExpireTime(expiretime, now) && acceptKey(key);
+	}
+
+	public boolean acceptDB(int db) {
+		return !excludeDBs.contains(db) && (includeDBs.isEmpty() || includeDBs.contains(db));
+	}
+
+	public boolean acceptKey(byte[] key) {
+		return !excludeKeys.matches(key) && (includeKeys.isEmpty() || includeKeys.matches(key));
+	}
+
+	public boolean acceptType(byte rdbType) {
+		return includeTypes.isEmpty() || includeTypes.contains(getTypeName(rdbType));
+	}
+
+	public boolean acceptExpireTime(long expiretime, long now) {
+		return expiretime == -1 || expiretime - now >= minTtl;
+	}
+
+	/**
+	 * 获取rdb类型对应的数据类型名称的方法
+	 *
+	 * @param rdbType
+	 *            value在rdb中的类型
+	 * @return 数据类型名称 未知类型返回null
+	 */
+	public static String getTypeName(byte rdbType) {
+		switch (rdbType) {
+		case REDIS_RDB_TYPE_STRING:
+			return TYPE_STRING;
+		case REDIS_RDB_TYPE_LIST:
+		case REDIS_RDB_TYPE_LIST_ZIPLIST:
+			return TYPE_LIST;
+		case REDIS_RDB_TYPE_SET:
+		case REDIS_RDB_TYPE_SET_INTSET:
+			return TYPE_SET;
+		case REDIS_RDB_TYPE_ZSET:
+		case REDIS_RDB_TYPE_ZSET_ZIPLIST:
+			return TYPE_ZSET;
+		case REDIS_RDB_TYPE_HASH:
+		case REDIS_RDB_TYPE_HASH_ZIPMAP:
+		case REDIS_RDB_TYPE_HASH_ZIPLIST:
+			return TYPE_HASH;
+		default:
+			return null;
+		}
+	}
+}
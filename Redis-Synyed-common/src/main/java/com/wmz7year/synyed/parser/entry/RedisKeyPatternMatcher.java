@@ -0,0 +1,259 @@
+package com.wmz7year.synyed.parser.entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编译后的key匹配规则集合<br>
+ * 支持与redis KEYS命令一致的glob格式 * ? [abc] [^a-z] 以及\转义<br>
+ * 所有规则中通配符之前的字面量前缀编译为一棵按字节索引的前缀树<br>
+ * 纯前缀规则(prefix*)与完全匹配规则只需要沿着key的字节走一遍前缀树<br>
+ * 其他规则在前缀树的节点上保存剩余的glob部分 走到该节点时才对剩余的key进行匹配
+ *
+ * @Title: RedisKeyPatternMatcher.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月26日 下午4:35:18
+ * @version V1.0
+ */
+public class RedisKeyPatternMatcher {
+	/**
+	 * 前缀树根节点
+	 */
+	private final Node root = new Node();
+	/**
+	 * 规则数量
+	 */
+	private int size;
+
+	/**
+	 * 添加匹配规则的方法
+	 *
+	 * @param pattern
+	 *            glob格式的规则
+	 */
+	public void add(byte[] pattern) {
+		Node node = root;
+		int i = 0;
+		// 沿着字面量前缀建立节点
+		while (i < pattern.length) {
+			byte b = pattern[i];
+			if (b == '*' || b == '?' || b == '[') {
+				break;
+			}
+			if (b == '\\') {
+				if (i + 1 == pattern.length) {
+					break;
+				}
+				b = pattern[++i];
+			}
+			node = node.child(b);
+			i++;
+		}
+		if (i == pattern.length) {
+			node.exact = true;
+		} else if (isAllStars(pattern, i)) {
+			node.prefix = true;
+		} else {
+			byte[] glob = new byte[pattern.length - i];
+			System.arraycopy(pattern, i, glob, 0, glob.length);
+			if (node.globs == null) {
+				node.globs = new ArrayList<byte[]>(1);
+			}
+			node.globs.add(glob);
+		}
+		size++;
+	}
+
+	/**
+	 * 判断key是否匹配任意一条规则的方法
+	 *
+	 * @param key
+	 *            key数据
+	 * @return true为匹配 false为不匹配
+	 */
+	public boolean matches(byte[] key) {
+		Node node = root;
+		for (int i = 0;; i++) {
+			if (node.prefix) {
+				return true;
+			}
+			if (node.globs != null) {
+				for (byte[] glob : node.globs) {
+					if (globMatch(glob, 0, key, i)) {
+						return true;
+					}
+				}
+			}
+			if (i == key.length) {
+				return node.exact;
+			}
+			node = node.get(key[i]);
+			if (node == null) {
+				return false;
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private static boolean isAllStars(byte[] pattern, int from) {
+		for (int i = from; i < pattern.length; i++) {
+			if (pattern[i] != '*') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * glob匹配的方法<br>
+	 * 与redis的stringmatchlen规则一致
+	 *
+	 * @param p
+	 *            规则
+	 * @param pi
+	 *            规则起始位
+	 * @param s
+	 *            key数据
+	 * @param si
+	 *            key起始位
+	 * @return true为匹配 false为不匹配
+	 */
+	static boolean globMatch(byte[] p, int pi, byte[] s, int si) {
+		int plen = p.length;
+		int slen = s.length;
+		while (pi < plen && si < slen) {
+			switch (p[pi]) {
+			case '*':
+				while (pi + 1 < plen && p[pi + 1] == '*') {
+					pi++;
+				}
+				if (pi + 1 == plen) {
+					return true;
+				}
+				for (int k = si; k <= slen; k++) {
+					if (globMatch(p, pi + 1, s, k)) {
+						return true;
+					}
+				}
+				return false;
+			case '?':
+				si++;
+				break;
+			case '[': {
+				pi++;
+				boolean not = pi < plen && p[pi] == '^';
+				if (not) {
+					pi++;
+				}
+				boolean match = false;
+				int c = s[si] & 0xFF;
+				while (true) {
+					if (pi >= plen) {
+						pi--;
+						break;
+					}
+					if (p[pi] == '\\' && pi + 1 < plen) {
+						pi++;
+						if ((p[pi] & 0xFF) == c) {
+							match = true;
+						}
+					} else if (p[pi] == ']') {
+						break;
+					} else if (pi + 2 < plen && p[pi + 1] == '-') {
+						int start = p[pi] & 0xFF;
+						int end = p[pi + 2] & 0xFF;
+						if (start > end) {
+							int tmp = start;
+							start = end;
+							end = tmp;
+						}
+						pi += 2;
+						if (c >= start && c <= end) {
+							match = true;
+						}
+					} else if ((p[pi] & 0xFF) == c) {
+						match = true;
+					}
+					pi++;
+				}
+				if (not) {
+					match = !match;
+				}
+				if (!match) {
+					return false;
+				}
+				si++;
+				break;
+			}
+			case '\\':
+				if (pi + 1 < plen) {
+					pi++;
+				}
+				if (p[pi] != s[si]) {
+					return false;
+				}
+				si++;
+				break;
+			default:
+				if (p[pi] != s[si]) {
+					return false;
+				}
+				si++;
+				break;
+			}
+			pi++;
+		}
+		if (si == slen) {
+			while (pi < plen && p[pi] == '*') {
+				pi++;
+			}
+		}
+		return pi == plen && si == slen;
+	}
+
+	/**
+	 * 前缀树节点
+	 */
+	private static class Node {
+		/**
+		 * 按字节索引的子节点 第一次添加时创建
+		 */
+		private Node[] children;
+		/**
+		 * 是否有规则完全匹配到该节点
+		 */
+		private boolean exact;
+		/**
+		 * 是否有规则为该节点之前的前缀加*
+		 */
+		private boolean prefix;
+		/**
+		 * 以该节点之前的前缀开头的规则剩余的glob部分
+		 */
+		private List<byte[]> globs;
+
+		private Node get(byte b) {
+			return children == null ? null : children[b & 0xFF];
+		}
+
+		private Node child(byte b) {
+			if (children == null) {
+				children = new Node[256];
+			}
+			Node node = children[b & 0xFF];
+			if (node == null) {
+				node = new Node();
+				children[b & 0xFF] = node;
+			}
+			return node;
+		}
+	}
+}
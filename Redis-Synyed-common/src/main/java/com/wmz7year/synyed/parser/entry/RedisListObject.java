@@ -6,6 +6,8 @@ import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_LIST;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
+
 /**
  * redis list类型数据结构对象
  * 
@@ -78,4 +80,27 @@ public class RedisListObject extends RedisObject {
 		return "RedisListObject [elements=" + elements + "]";
 	}
 
+	/**
+	 * 获取list中元素对象的方法<br>
+	 * 直接返回内部的元素列表 遍历时不创建命令数据对象
+	 * 
+	 * @return 元素对象列表
+	 */
+	List<RedisStringObject> getStringElements() {
+		return elements;
+	}
+
+	/**
+	 * 获取list中所有元素的方法<br>
+	 * 元素顺序与list中从头到尾的顺序一致
+	 * 
+	 * @return 元素列表
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(elements.size());
+		for (RedisStringObject element : elements) {
+			result.add(element.toCommandData());
+		}
+		return result;
+	}
 }
@@ -0,0 +1,62 @@
+package com.wmz7year.synyed.parser.entry;
+
+import java.nio.ByteBuffer;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+
+/**
+ * 基于LZF压缩字符串的命令数据对象<br>
+ * 编码时直接解压到输出缓冲区 不生成中间数组
+ *
+ * @Title: RedisLzfCommandData.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月12日 下午2:31:40
+ * @version V1.0
+ */
+public class RedisLzfCommandData extends RedisCommandData {
+	/**
+	 * 压缩的字符串对象
+	 */
+	private RedisLzfStringObject lzfStringObject;
+
+	public RedisLzfCommandData(RedisLzfStringObject lzfStringObject) {
+		super(null);
+		this.lzfStringObject = lzfStringObject;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getData()
+	 */
+	@Override
+	public byte[] getData() {
+		return lzfStringObject.getBuffer();
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#getLength()
+	 */
+	@Override
+	public int getLength() {
+		return lzfStringObject.getLength();
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.entity.RedisCommandData#writeTo(java.nio.
+	 * ByteBuffer)
+	 */
+	@Override
+	public void writeTo(ByteBuffer out) throws Exception {
+		lzfStringObject.decompressTo(out);
+	}
+
+	/**
+	 * 获取压缩字符串对象的方法
+	 *
+	 * @return 压缩字符串对象
+	 */
+	public RedisLzfStringObject getLzfStringObject() {
+		return lzfStringObject;
+	}
+
+}
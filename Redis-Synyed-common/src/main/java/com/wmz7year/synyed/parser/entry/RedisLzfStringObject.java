@@ -0,0 +1,119 @@
+package com.wmz7year.synyed.parser.entry;
+
+import java.nio.ByteBuffer;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.util.LZFDecoder;
+
+/**
+ * LZF压缩的Redis字符串类型数据对象<br>
+ * 保存rdb中压缩后的原始数据 第一次访问getBuffer时才进行解压<br>
+ * 生成命令时可以直接使用压缩数据(RESTORE载荷)或者解压到输出缓冲区 避免中间数组
+ *
+ * @Title: RedisLzfStringObject.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月12日 下午2:05:17
+ * @version V1.0
+ */
+public class RedisLzfStringObject extends RedisStringObject {
+	/**
+	 * 压缩后的数据
+	 */
+	private byte[] compressed;
+	/**
+	 * 解压后数据的长度
+	 */
+	private int length;
+	/**
+	 * 解压后的数据 第一次访问时生成
+	 */
+	private byte[] data;
+
+	public RedisLzfStringObject(byte[] compressed, int length) {
+		super(null);
+		this.compressed = compressed;
+		this.length = length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisStringObject#getBuffer()
+	 */
+	@Override
+	public byte[] getBuffer() {
+		if (data == null) {
+			byte[] result = new byte[length];
+			try {
+				LZFDecoder.decode(compressed, 0, compressed.length, result, 0, length);
+			} catch (Exception e) {
+				throw new IllegalStateException("LZF解压数据失败", e);
+			}
+			data = result;
+		}
+		return data;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisStringObject#toCommandData()
+	 */
+	@Override
+	public RedisCommandData toCommandData() {
+		return new RedisLzfCommandData(this);
+	}
+
+	/**
+	 * 将数据解压到输出缓冲区的方法<br>
+	 * 如果已经解压过则直接拷贝解压后的数据
+	 *
+	 * @param out
+	 *            输出缓冲区 剩余空间不能小于解压后的长度
+	 * @throws Exception
+	 *             当解压出现问题时抛出该异常
+	 */
+	public void decompressTo(ByteBuffer out) throws Exception {
+		if (data != null) {
+			out.put(data);
+			return;
+		}
+		ByteBuffer window = out.duplicate();
+		window.limit(out.position() + length);
+		LZFDecoder.decode(ByteBuffer.wrap(compressed), window);
+		out.position(out.position() + length);
+	}
+
+	/**
+	 * 判断是否已经解压过的方法
+	 *
+	 * @return true为已经解压 false为未解压
+	 */
+	public boolean isDecompressed() {
+		return data != null;
+	}
+
+	/**
+	 * 获取压缩后原始数据的方法
+	 *
+	 * @return 压缩后的数据
+	 */
+	public byte[] getCompressedBuffer() {
+		return compressed;
+	}
+
+	/**
+	 * 获取解压后数据长度的方法
+	 *
+	 * @return 解压后数据长度
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisStringObject#toString()
+	 */
+	@Override
+	public String toString() {
+		return "RedisLzfStringObject [compressedLength=" + compressed.length + ", length=" + length + "]";
+	}
+
+}
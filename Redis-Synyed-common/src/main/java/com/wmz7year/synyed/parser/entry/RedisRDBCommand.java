@@ -1,12 +1,15 @@
 package com.wmz7year.synyed.parser.entry;
 
 import static com.wmz7year.synyed.constant.RedisCommandSymbol.*;
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_RDB_SYNC_MODE_RESTORE;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import com.wmz7year.synyed.entity.RedisCommand;
 import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
+import com.wmz7year.synyed.entity.RedisSliceCommandData;
 
 /**
  * rdb文件内容转换为redis命令的方法
@@ -30,6 +33,32 @@ public class RedisRDBCommand {
 	 * 命令的过期时间
 	 */
 	private long expiretime = -1;
+	/**
+	 * value在rdb中的类型
+	 */
+	private byte rdbType;
+	/**
+	 * 包含value原始序列化数据的rdb内容<br>
+	 * 为null时表示没有记录原始数据 只能展开为普通命令
+	 */
+	private byte[] rdbContent;
+	/**
+	 * value原始序列化数据在rdb内容中的起始位
+	 */
+	private int valueOffset;
+	/**
+	 * value原始序列化数据的长度
+	 */
+	private int valueLength;
+	/**
+	 * 该key在rdb文件中结束的位置 用于记录同步断点 -1为未知
+	 */
+	private long offset = -1;
+	/**
+	 * 是否覆盖目标服务器中已有的数据<br>
+	 * 为true时集合类型数据在写入之前先删除key 重复写入不会产生重复元素
+	 */
+	private boolean replace;
 
 	public RedisRDBCommand(RedisObject key, RedisObject value, long expiretime) {
 		this.key = key;
@@ -38,145 +67,216 @@ public class RedisRDBCommand {
 	}
 
 	/**
-	 * 根据value值分析生成redis命令的方法<br>
+	 * 设置value在rdb中原始序列化数据的方法<br>
+	 * 只记录位置 不拷贝数据
 	 * 
+	 * @param rdbType
+	 *            value在rdb中的类型
+	 * @param rdbContent
+	 *            rdb内容
+	 * @param valueOffset
+	 *            value数据起始位
+	 * @param valueLength
+	 *            value数据长度
+	 */
+	public void setSerializedValue(byte rdbType, byte[] rdbContent, int valueOffset, int valueLength) {
+		this.rdbType = rdbType;
+		this.rdbContent = rdbContent;
+		this.valueOffset = valueOffset;
+		this.valueLength = valueLength;
+	}
+
+	/**
+	 * 根据同步模式生成redis命令的方法<br>
+	 * restore模式下如果没有记录原始序列化数据则退回到普通命令
+	 * 
+	 * @param syncMode
+	 *            rdb同步模式
 	 * @return redis命令集合
 	 */
-	public List<RedisCommand> getCommands() {
-		List<RedisCommand> commands = new ArrayList<RedisCommand>();
-		if (value instanceof RedisHashObject) {
-			// TODO
-			System.out.println("RedisHashObject");
-		} else if (value instanceof RedisHashZipList) {
-			// hash set类型数据 生成hset命令
-			commands.addAll(createHSETCommand());
-		} else if (value instanceof RedisHashZipMap) {
-			// TODO
-			System.out.println("RedisHashZipMap");
-		} else if (value instanceof RedisListObject) {
-			// TODO
-			System.out.println("RedisListObject");
-		} else if (value instanceof RedisSetIntSet) {
-			// TODO
-			System.out.println("RedisSetIntSet");
-		} else if (value instanceof RedisSetObject) {
-			// set 类型的value 生成redis sadd命令
-			commands.add(createSADDCommand());
-		} else if (value instanceof RedisStringObject) {
-			// string 类型的value 生成redis set命令
-			commands.add(createSETCommand());
-		} else if (value instanceof RedisZipListObject) {
-			// list类型的value 生成lpush命令
-			commands.add(createLPUSHCommand());
-		} else if (value instanceof RedisZSetObject) {
-			// TODO
-			System.out.println("RedisZSetObject");
-		} else if (value instanceof RedisZSetZipList) {
-			// sorted set类型数据 生成zadd命令
-			commands.add(createZADDCommand());
-		} else {
-			throw new IllegalStateException("不支持的数据类型：" + value.getClass().getName());
-		}
+	public List<RedisCommand> getCommands(String syncMode) {
+		return getCommands(syncMode, RedisChunkPolicy.DEFAULT);
+	}
 
-		// 设置过期时间
-		if (expiretime != -1) {
-			RedisCommand expireatCommand = new RedisCommand(EXPIREAT);
-			expireatCommand.addValue(this.key.getBuffer());
-			expireatCommand.addValue(String.valueOf(expiretime));
-			commands.add(expireatCommand);
-		}
-		return commands;
+	/**
+	 * 根据同步模式以及分块策略生成redis命令的方法<br>
+	 * restore模式下如果没有记录原始序列化数据则退回到普通命令
+	 * 
+	 * @param syncMode
+	 *            rdb同步模式
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @return redis命令集合
+	 */
+	public List<RedisCommand> getCommands(String syncMode, RedisChunkPolicy chunkPolicy) {
+		return collectCommands(isRestore(syncMode), chunkPolicy);
 	}
 
 	/**
-	 * 根据key value 创建sadd命令的方法<br>
+	 * 生成RESTORE命令的方法<br>
+	 * value的原始序列化数据重新封装为DUMP格式 一次性发送整个key<br>
 	 * 
-	 * sadd key value
+	 * RESTORE key ttl serialized-value REPLACE
 	 * 
-	 * return sadd命令
-	 */
-	private RedisCommand createSADDCommand() {
-		RedisCommand result = new RedisCommand(SADD);
-		result.addValue(key.getBuffer());
-		RedisSetObject redisSet = (RedisSetObject) value;
-		List<RedisCommandData> elements = redisSet.getElements();
-		for (int i = 0; i < elements.size(); i++) {
-			result.addValue(elements.get(i).getData());
+	 * @return redis命令集合 key在发送前已经过期则返回空集合
+	 */
+	public List<RedisCommand> getRestoreCommands() {
+		if (rdbContent == null) {
+			throw new IllegalStateException("没有value的原始序列化数据：" + this);
 		}
-		return result;
+		return collectCommands(true, RedisChunkPolicy.DEFAULT);
 	}
 
 	/**
-	 * 根据key value 创建set命令的方法<br>
-	 * 
-	 * set key value
+	 * 根据value值分析生成redis命令的方法<br>
+	 * 使用默认的分块策略
 	 * 
-	 * @return set命令
+	 * @return redis命令集合
 	 */
-	private RedisCommand createSETCommand() {
-		RedisCommand result = new RedisCommand(SET);
-		result.addValue(key.getBuffer());
-		result.addValue(value.getBuffer());
-		return result;
+	public List<RedisCommand> getCommands() {
+		return getCommands(RedisChunkPolicy.DEFAULT);
 	}
 
 	/**
-	 * 根据key value创建lpush命令的方法<br>
-	 * 
-	 * lpush key value value..
+	 * 根据value值分析生成redis命令的方法<br>
+	 * 集合类型的数据按照分块策略切分成多条命令
 	 * 
-	 * @return lpush命令
-	 */
-	private RedisCommand createLPUSHCommand() {
-		RedisZipListObject ziplist = (RedisZipListObject) value;
-		RedisCommand result = new RedisCommand(LPUSH);
-		result.addValue(key.getBuffer());
-		List<RedisCommandData> elements = ziplist.getElements();
-		for (RedisCommandData redisCommandData : elements) {
-			result.addValue(redisCommandData.getData());
-		}
-		return result;
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @return redis命令集合
+	 */
+	public List<RedisCommand> getCommands(RedisChunkPolicy chunkPolicy) {
+		return collectCommands(false, chunkPolicy);
 	}
 
 	/**
-	 * 根据key value创建hset命令<br>
+	 * 根据同步模式以及分块策略直接写入RESP格式命令的方法<br>
+	 * 生成的命令与getCommands一致 但是不创建RedisCommand对象
 	 * 
-	 * hset key flag value
+	 * @param writer
+	 *            RESP写入器
+	 * @param syncMode
+	 *            rdb同步模式
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @throws Exception
+	 *             写入出现问题时抛出该异常
+	 */
+	public void writeCommands(RedisRESPWriter writer, String syncMode, RedisChunkPolicy chunkPolicy)
+			throws Exception {
+		writeCommands(writer, isRestore(syncMode), chunkPolicy);
+	}
+
+	/**
+	 * 判断是否生成RESTORE命令的方法<br>
+	 * restore模式下如果没有记录原始序列化数据则退回到普通命令
+	 */
+	private boolean isRestore(String syncMode) {
+		return REDIS_RDB_SYNC_MODE_RESTORE.equals(syncMode) && rdbContent != null;
+	}
+
+	/**
+	 * 将命令输出为RedisCommand对象的方法
 	 * 
-	 * @return hset命令
-	 */
-	private List<RedisCommand> createHSETCommand() {
-		List<RedisCommand> commands = new ArrayList<RedisCommand>();
-		RedisHashZipList hashZipList = (RedisHashZipList) value;
-		List<RedisCommandData> elements = hashZipList.getElements();
-		for (int i = 0; i < hashZipList.getElementCount(); i += 2) {
-			RedisCommand result = new RedisCommand(HSET);
-			result.addValue(key.getBuffer());
-			result.addValue(elements.get(i).getData());
-			result.addValue(elements.get(i + 1).getData());
-			commands.add(result);
+	 * @param restore
+	 *            是否生成RESTORE命令
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @return redis命令集合
+	 */
+	private List<RedisCommand> collectCommands(boolean restore, RedisChunkPolicy chunkPolicy) {
+		RedisCommandCollector collector = new RedisCommandCollector();
+		try {
+			writeCommands(collector, restore, chunkPolicy);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
 		}
-		return commands;
+		return collector.getCommands();
 	}
 
 	/**
-	 * 根据key value创建zadd命令<br>
-	 * 
-	 * zadd key field value
+	 * 按命令以及参数的顺序输出命令的方法<br>
+	 * 生成RedisCommand对象以及直接写入RESP格式都通过该方法 集合类型数据由RedisChunkedCommandWalker遍历
 	 * 
-	 * @return zadd命令
-	 */
-	private RedisCommand createZADDCommand() {
-		RedisZSetZipList zsetZipList = (RedisZSetZipList) value;
-		RedisCommand result = new RedisCommand(ZADD);
-		result.addValue(key.getBuffer());
-		List<RedisCommandData> elements = zsetZipList.getElements();
-		int entryCount = zsetZipList.getElementCount();
-		for (int i = 0; i < entryCount; i += 2) {
-			result.addValue(elements.get(i + 1).getData());
-			result.addValue(elements.get(i).getData());
+	 * @param emitter
+	 *            命令输出
+	 * @param restore
+	 *            是否生成RESTORE命令
+	 * @param chunkPolicy
+	 *            集合类型数据的分块策略
+	 * @throws Exception
+	 *             遍历或者输出出现问题时抛出该异常
+	 */
+	private void writeCommands(RedisCommandEmitter emitter, boolean restore, RedisChunkPolicy chunkPolicy)
+			throws Exception {
+		byte[] keyData = key.getBuffer();
+		if (restore) {
+			long ttl = 0;
+			if (expiretime != -1) {
+				ttl = expiretime - System.currentTimeMillis();
+				if (ttl <= 0) {
+					return;
+				}
+			}
+			emitter.beginCommand(RESTORE, 4);
+			emitter.writeBulk(keyData);
+			emitter.writeBulk(ttl);
+			emitter.writeBulk(new RedisDumpPayload(rdbType, rdbContent, valueOffset, valueLength));
+			emitter.writeBulk(REPLACE.getBytes());
+			emitter.endCommand();
+			return;
+		}
+		if (value instanceof RedisStringObject) {
+			// 有过期时间时使用PXAT参数一起设置 不再单独发送过期命令
+			emitter.beginCommand(SET, expiretime != -1 ? 4 : 2);
+			emitter.writeBulk(keyData);
+			emitter.writeBulk((RedisStringObject) value);
+			if (expiretime != -1) {
+				emitter.writeBulk(PXAT.getBytes());
+				emitter.writeBulk(expiretime);
+			}
+			emitter.endCommand();
+			return;
+		}
+		RedisChunkedCommandWalker walker = RedisChunkedCommandWalker.create(value);
+		if (walker == null) {
+			throw new IllegalStateException("不支持的数据类型：" + value.getClass().getName());
+		}
+		// 覆盖时集合类型先删除key 字符串类型SET本身就是覆盖
+		if (replace) {
+			emitter.beginCommand(DEL, 1);
+			emitter.writeBulk(keyData);
+			emitter.endCommand();
 		}
-		return result;
+		walker.walk(emitter, keyData, chunkPolicy);
+		if (expiretime != -1) {
+			emitter.beginCommand(PEXPIREAT, 2);
+			emitter.writeBulk(keyData);
+			emitter.writeBulk(expiretime);
+			emitter.endCommand();
+		}
+	}
+
+	public RedisObject getKey() {
+		return key;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
+
+	public boolean isReplace() {
+		return replace;
+	}
+
+	public void setReplace(boolean replace) {
+		this.replace = replace;
 	}
 
 	/*
@@ -187,4 +287,52 @@ public class RedisRDBCommand {
 		return "RedisRDBCommand [key=" + key + ", value=" + value + ", expiretime=" + expiretime + "]";
 	}
 
+	/**
+	 * 将输出的命令收集为RedisCommand对象的命令输出<br>
+	 * 第一个参数作为命令的key 之后的参数依次作为value
+	 */
+	private static class RedisCommandCollector implements RedisCommandEmitter {
+		private List<RedisCommand> commands = new ArrayList<RedisCommand>();
+		private RedisCommand current;
+
+		@Override
+		public void beginCommand(String command, int args) {
+			current = new RedisCommand(command);
+		}
+
+		@Override
+		public void writeBulk(byte[] data) {
+			current.addValue(data);
+		}
+
+		@Override
+		public void writeBulk(byte[] data, int offset, int length) {
+			current.addValue(new RedisSliceCommandData(data, offset, length));
+		}
+
+		@Override
+		public void writeBulk(long value) {
+			current.addValue(new RedisLongCommandData(value));
+		}
+
+		@Override
+		public void writeBulk(RedisCommandData data) {
+			current.addValue(data);
+		}
+
+		@Override
+		public void writeBulk(RedisStringObject value) {
+			current.addValue(value.toCommandData());
+		}
+
+		@Override
+		public void endCommand() {
+			commands.add(current);
+			current = null;
+		}
+
+		public List<RedisCommand> getCommands() {
+			return commands;
+		}
+	}
 }
@@ -0,0 +1,38 @@
+package com.wmz7year.synyed.parser.entry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RESP格式数据的输出目标<br>
+ * RedisRESPWriter写满一个缓冲区后交给该接口发送 并由该接口提供新的缓冲区
+ *
+ * @Title: RedisRESPSink.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月22日 下午2:41:06
+ * @version V1.0
+ */
+public interface RedisRESPSink {
+
+	/**
+	 * 分配输出缓冲区的方法
+	 * 
+	 * @param minCapacity
+	 *            最小容量
+	 * @return 容量不小于minCapacity的空缓冲区
+	 */
+	public ByteBuffer allocate(int minCapacity);
+
+	/**
+	 * 发送写好的缓冲区的方法<br>
+	 * 缓冲区已经flip 发送后不再被写入
+	 * 
+	 * @param buffer
+	 *            写好数据的缓冲区
+	 * @param commandCount
+	 *            缓冲区中结束的完整命令数量
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	public void write(ByteBuffer buffer, int commandCount) throws Exception;
+}
@@ -0,0 +1,257 @@
+package com.wmz7year.synyed.parser.entry;
+
+import static com.wmz7year.synyed.constant.RedisCommandSymbol.SELECT;
+
+import java.nio.ByteBuffer;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
+
+/**
+ * 直接输出RESP格式命令的写入器<br>
+ * rdb中的数据遍历时直接写入输出缓冲区 不生成中间的RedisCommand对象<br>
+ * 缓冲区写满后交给RedisRESPSink发送 单个参数超过缓冲区大小时分配足够大的缓冲区<br>
+ * 与生成RedisCommand对象共用RedisChunkedCommandWalker的遍历以及分块规则
+ *
+ * @Title: RedisRESPWriter.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月22日 下午2:48:33
+ * @version V1.0
+ */
+public class RedisRESPWriter implements RedisCommandEmitter {
+	/**
+	 * 默认缓冲区大小 64K
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * 输出目标
+	 */
+	private final RedisRESPSink sink;
+	/**
+	 * 缓冲区大小
+	 */
+	private final int bufferSize;
+	/**
+	 * 当前输出缓冲区
+	 */
+	private ByteBuffer out;
+	/**
+	 * 当前缓冲区中结束的命令数量
+	 */
+	private int bufferCommandCount;
+	/**
+	 * 写入的命令总数
+	 */
+	private long commandCount;
+
+	public RedisRESPWriter(RedisRESPSink sink) {
+		this(sink, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param sink
+	 *            输出目标
+	 * @param bufferSize
+	 *            缓冲区大小
+	 */
+	public RedisRESPWriter(RedisRESPSink sink, int bufferSize) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("bufferSize:" + bufferSize);
+		}
+		this.sink = sink;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * 写入SELECT命令的方法
+	 * 
+	 * @param db
+	 *            数据库编号
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	public void writeSelect(int db) throws Exception {
+		beginCommand(SELECT, 1);
+		writeBulk(db);
+		endCommand();
+	}
+
+	/**
+	 * 开始写入一条命令的方法<br>
+	 * 写入数组头以及命令名称 之后需要写入args个参数并调用endCommand
+	 * 
+	 * @param command
+	 *            命令名称
+	 * @param args
+	 *            命令参数数量 不包含命令名称
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void beginCommand(String command, int args) throws Exception {
+		ensure(1 + RedisLongCommandData.stringSize(args + 1) + 2);
+		out.put((byte) '*');
+		writeIntCrLf(args + 1);
+		writeBulk(command.getBytes());
+	}
+
+	/**
+	 * 写入一个bulk string参数的方法
+	 * 
+	 * @param data
+	 *            参数数据
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void writeBulk(byte[] data) throws Exception {
+		writeHeader(data.length);
+		out.put(data);
+		writeCrLf();
+	}
+
+	/**
+	 * 写入数组中一段数据作为bulk string参数的方法<br>
+	 * ziplist中的字符串元素直接从编码数据拷贝 不创建中间对象
+	 * 
+	 * @param data
+	 *            数据所在的数组
+	 * @param offset
+	 *            起始位
+	 * @param length
+	 *            长度
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void writeBulk(byte[] data, int offset, int length) throws Exception {
+		writeHeader(length);
+		out.put(data, offset, length);
+		writeCrLf();
+	}
+
+	/**
+	 * 写入一个bulk string参数的方法<br>
+	 * 数据通过RedisCommandData.writeTo直接写入缓冲区 压缩的数据直接解压
+	 * 
+	 * @param data
+	 *            参数数据
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void writeBulk(RedisCommandData data) throws Exception {
+		writeHeader(data.getLength());
+		data.writeTo(out);
+		writeCrLf();
+	}
+
+	/**
+	 * 写入一个字符串对象参数的方法<br>
+	 * 压缩的字符串直接解压到缓冲区中
+	 * 
+	 * @param value
+	 *            字符串对象
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void writeBulk(RedisStringObject value) throws Exception {
+		if (value instanceof RedisLzfStringObject) {
+			RedisLzfStringObject lzfValue = (RedisLzfStringObject) value;
+			writeHeader(lzfValue.getLength());
+			lzfValue.decompressTo(out);
+			writeCrLf();
+			return;
+		}
+		writeBulk(value.getBuffer());
+	}
+
+	/**
+	 * 写入一个整数bulk string参数的方法<br>
+	 * 十进制字符直接格式化到缓冲区 不创建中间对象
+	 * 
+	 * @param value
+	 *            整数值
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	@Override
+	public void writeBulk(long value) throws Exception {
+		writeHeader(RedisLongCommandData.stringSize(value));
+		RedisLongCommandData.writeDecimal(value, out);
+		writeCrLf();
+	}
+
+	/**
+	 * 结束一条命令的方法
+	 */
+	@Override
+	public void endCommand() {
+		bufferCommandCount++;
+		commandCount++;
+	}
+
+	/**
+	 * 发送缓冲区中剩余数据的方法
+	 * 
+	 * @throws Exception
+	 *             发送出现问题时抛出该异常
+	 */
+	public void flush() throws Exception {
+		if (out != null && out.position() > 0) {
+			ByteBuffer buffer = out;
+			int count = bufferCommandCount;
+			out = null;
+			bufferCommandCount = 0;
+			buffer.flip();
+			sink.write(buffer, count);
+		}
+	}
+
+	/**
+	 * 获取写入的命令总数的方法
+	 * 
+	 * @return 命令总数
+	 */
+	public long getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * 写入bulk string长度头的方法<br>
+	 * 同时保证缓冲区可以放下整个参数
+	 */
+	private void writeHeader(int length) throws Exception {
+		ensure(1 + RedisLongCommandData.stringSize(length) + 2 + length + 2);
+		out.put((byte) '$');
+		writeIntCrLf(length);
+	}
+
+	private void writeIntCrLf(int value) {
+		RedisLongCommandData.writeDecimal(value, out);
+		writeCrLf();
+	}
+
+	private void writeCrLf() {
+		out.put((byte) '\r');
+		out.put((byte) '\n');
+	}
+
+	/**
+	 * 保证缓冲区剩余空间的方法<br>
+	 * 空间不足时发送当前缓冲区并分配新的缓冲区
+	 * 
+	 * @param length
+	 *            需要的空间
+	 */
+	private void ensure(int length) throws Exception {
+		if (out != null && out.remaining() >= length) {
+			return;
+		}
+		flush();
+		out = sink.allocate(Math.max(bufferSize, length));
+	}
+}
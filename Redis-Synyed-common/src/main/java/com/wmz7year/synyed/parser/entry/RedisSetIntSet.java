@@ -2,16 +2,18 @@ package com.wmz7year.synyed.parser.entry;
 
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_ENCODING_INTSET;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_SET;
-import static com.wmz7year.synyed.util.NumberUtil.*;
 
-import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
 import com.wmz7year.synyed.exception.RedisRDBException;
 
 /**
- * redis intset类型结构对象
+ * redis intset类型结构对象<br>
+ * 元素直接从编码数据中读取到long数组中 不进行装箱<br>
+ * 生成命令时元素以整数形式直接格式化到输出缓冲区
  * 
  * @Title: RedisSetIntSet.java
  * @Package com.wmz7year.synyed.parser.entry
@@ -20,14 +22,16 @@ import com.wmz7year.synyed.exception.RedisRDBException;
  * @version V1.0
  */
 public class RedisSetIntSet extends RedisObject {
+	/**
+	 * intset头信息长度 包括元素长度以及元素数量
+	 */
+	private static final int HEADER_LENGTH = 8;
 
 	/**
 	 * intset数据
 	 */
 	private byte[] buffer;
 
-	private ByteArrayInputStream bis = null;
-
 	/**
 	 * 每个元素的长度
 	 */
@@ -40,16 +44,18 @@ public class RedisSetIntSet extends RedisObject {
 	/**
 	 * 元素列表
 	 */
-	private List<Long> elements = new ArrayList<Long>();
+	private long[] elements;
 
 	public RedisSetIntSet(byte[] buffer) throws RedisRDBException {
 		this.buffer = buffer;
-		this.bis = new ByteArrayInputStream(buffer);
+		if (buffer.length < HEADER_LENGTH) {
+			throw new RedisRDBException("解析错误");
+		}
 
 		// 读取每个元素的长度
-		this.elementByteLength = readElementByteLength();
+		this.elementByteLength = (int) readLittleEndian(0, 4);
 		// 读取元素数量
-		this.elementCount = readElementCount();
+		this.elementCount = (int) readLittleEndian(4, 4);
 
 		// 读取元素
 		readElements();
@@ -62,54 +68,37 @@ public class RedisSetIntSet extends RedisObject {
 	 *             元素列表
 	 */
 	private void readElements() throws RedisRDBException {
-		for (int i = 0; i < elementCount; i++) {
-			byte[] buffer = new byte[elementByteLength];
-			if (!readBytes(buffer, 0, elementByteLength)) {
-				throw new RedisRDBException("解析错误");
-			}
-			// 转换为元素
-			if (elementByteLength == 1) { // 8位数据
-				elements.add((long) buffer[1]);
-			} else if (elementByteLength == 2) { // 16位数据
-				elements.add((long) byte216bitInt(buffer));
-			} else if (elementByteLength == 4) { // 32位数据
-				elements.add((long) byte2Int(buffer));
-			} else if (elementByteLength == 8) { // 64数据
-				elements.add(byte2Long(buffer));
-			} else {
-				throw new RedisRDBException("不识别的元素长度：" + elementByteLength);
-			}
+		if (elementByteLength != 2 && elementByteLength != 4 && elementByteLength != 8) {
+			throw new RedisRDBException("不识别的元素长度：" + elementByteLength);
 		}
-	}
-
-	/**
-	 * 读取每个元素占位长度符号的方法
-	 * 
-	 * @return 每个元素的占位长度符号
-	 * @throws RedisRDBException
-	 *             当读取发生错误时抛出该异常
-	 */
-	private int readElementByteLength() throws RedisRDBException {
-		byte[] buffer = new byte[4];
-		if (!readBytes(buffer, 0, 4)) {
+		if (elementCount < 0 || (long) elementCount * elementByteLength > buffer.length - HEADER_LENGTH) {
 			throw new RedisRDBException("解析错误");
 		}
-		return byte2Int(buffer);
+		elements = new long[elementCount];
+		int position = HEADER_LENGTH;
+		for (int i = 0; i < elementCount; i++) {
+			elements[i] = readLittleEndian(position, elementByteLength);
+			position += elementByteLength;
+		}
 	}
 
 	/**
-	 * 读取元素数量的方法
+	 * 从编码数据中读取小端有符号整数的方法
 	 * 
-	 * @return 元素数量
-	 * @throws RedisRDBException
-	 *             当读取发生错误时抛出该异常
+	 * @param offset
+	 *            起始位
+	 * @param length
+	 *            字节数 2、4或8
+	 * @return 读取到的整数
 	 */
-	private int readElementCount() throws RedisRDBException {
-		byte[] buffer = new byte[4];
-		if (!readBytes(buffer, 0, 4)) {
-			throw new RedisRDBException("解析错误");
+	private long readLittleEndian(int offset, int length) {
+		long value = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			value = (value << 8) | (buffer[offset + i] & 0xFF);
 		}
-		return byte2Int(buffer);
+		// 符号扩展
+		int shift = 64 - length * 8;
+		return (value << shift) >> shift;
 	}
 
 	/*
@@ -134,7 +123,7 @@ public class RedisSetIntSet extends RedisObject {
 	@Override
 	public String toCommand() {
 		StringBuilder result = new StringBuilder();
-		for (Long element : elements) {
+		for (long element : elements) {
 			result.append(element).append(' ');
 		}
 		if (result.length() > 0 && result.charAt(result.length() - 1) == ' ') {
@@ -159,34 +148,32 @@ public class RedisSetIntSet extends RedisObject {
 		return "RedisSetIntSet [buffer length=" + buffer.length + ",command=" + toCommand() + "]";
 	}
 
+	public int getElementCount() {
+		return this.elementCount;
+	}
+
 	/**
-	 * 读取一个byte数组的方法
+	 * 获取指定位置元素的方法
 	 * 
-	 * @param buf
-	 *            需要读取的byte数组
-	 * @param start
-	 *            读取的起始位
-	 * @param num
-	 *            读取数量
-	 * @return true为读取成功 false为读取失败
-	 * @throws RedisRDBException
-	 *             读取过程中可能出现的异常
+	 * @param index
+	 *            元素下标
+	 * @return 元素值
 	 */
-	private boolean readBytes(byte[] buf, int start, int num) throws RedisRDBException {
-		if (num < 0) {
-			throw new RedisRDBException("Num must bigger than zero");
-		}
-		if (start < 0) {
-			throw new RedisRDBException("Start must bigger than zero");
-		}
-		if (num > buf.length) {
-			throw new RedisRDBException("Num must less than buf length");
-		}
-		int flag = bis.read(buf, start, num);
-		return flag == num;
+	public long getElement(int index) {
+		return elements[index];
 	}
 
-	public int getElementCount() {
-		return this.elementCount;
+	/**
+	 * 获取set中所有元素的方法<br>
+	 * 整数元素编码时直接格式化到输出缓冲区
+	 * 
+	 * @return 元素列表
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(elementCount);
+		for (long element : elements) {
+			result.add(new RedisLongCommandData(element));
+		}
+		return result;
 	}
 }
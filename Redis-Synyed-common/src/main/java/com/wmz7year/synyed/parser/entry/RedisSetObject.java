@@ -82,10 +82,20 @@ public class RedisSetObject extends RedisObject {
 		return "RedisSetObject [elements=" + elements + "]";
 	}
 
+	/**
+	 * 获取set中元素对象的方法<br>
+	 * 直接返回内部的元素集合 遍历时不创建命令数据对象
+	 * 
+	 * @return 元素对象集合
+	 */
+	Set<RedisStringObject> getStringElements() {
+		return elements;
+	}
+
 	public List<RedisCommandData> getElements() {
 		List<RedisCommandData> result = new ArrayList<RedisCommandData>();
 		for (RedisStringObject element : elements) {
-			result.add(new RedisCommandData(element.getBuffer()));
+			result.add(element.toCommandData());
 		}
 		return result;
 	}
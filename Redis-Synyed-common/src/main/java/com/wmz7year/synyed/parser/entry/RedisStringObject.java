@@ -3,6 +3,8 @@ package com.wmz7year.synyed.parser.entry;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_ENCODING_RAW;
 import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_STRING;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
+
 /**
  * Redis 字符串类型数据对象
  * 
@@ -43,7 +45,7 @@ public class RedisStringObject extends RedisObject {
 	 */
 	@Override
 	public String toCommand() {
-		return new String(data);
+		return new String(getBuffer());
 	}
 
 	/*
@@ -54,12 +56,22 @@ public class RedisStringObject extends RedisObject {
 		return this.data;
 	}
 
+	/**
+	 * 转换为命令数据对象的方法<br>
+	 * 生成命令时使用该方法代替getBuffer 子类可以延迟生成原始数据
+	 * 
+	 * @return 命令数据对象
+	 */
+	public RedisCommandData toCommandData() {
+		return new RedisCommandData(this.data);
+	}
+
 	/*
 	 * @see java.lang.Object#toString()
 	 */
 	@Override
 	public String toString() {
-		return "RedisStringObject [data=" + new String(data) + "]";
+		return "RedisStringObject [data=" + new String(getBuffer()) + "]";
 	}
 
 }
@@ -8,6 +8,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import com.wmz7year.synyed.entity.RedisCommandData;
+
 /**
  * redis zset类型数据结构对象
  * 
@@ -119,4 +121,78 @@ public class RedisZSetObject extends RedisObject {
 		}
 
 	}
+
+	/**
+	 * 获取zset中元素数量的方法
+	 * 
+	 * @return 元素数量
+	 */
+	int getElementCount() {
+		return elements.size();
+	}
+
+	/**
+	 * 获取指定位置元素member的方法
+	 * 
+	 * @param index
+	 *            元素位置
+	 * @return member
+	 */
+	RedisStringObject getMember(int index) {
+		return (RedisStringObject) elements.get(index).getRedisObject();
+	}
+
+	/**
+	 * 获取指定位置元素score的方法
+	 * 
+	 * @param index
+	 *            元素位置
+	 * @return score
+	 */
+	double getScore(int index) {
+		return elements.get(index).getScore();
+	}
+
+	/**
+	 * 获取zset中所有元素的方法<br>
+	 * 结果中member与score交替排列 与RedisZSetZipList保持一致
+	 * 
+	 * @return 元素列表
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(elements.size() * 2);
+		for (ZSetValue element : elements) {
+			result.add(((RedisStringObject) element.getRedisObject()).toCommandData());
+			result.add(new RedisCommandData(formatScore(element.getScore()).getBytes()));
+		}
+		return result;
+	}
+
+	/**
+	 * 将score转换为redis可以识别的字符串的方法
+	 * 
+	 * @param score
+	 *            score值
+	 * @return score字符串
+	 */
+	static String formatScore(double score) {
+		if (Double.isInfinite(score)) {
+			return score > 0 ? "+inf" : "-inf";
+		}
+		if (isLongScore(score)) {
+			return String.valueOf((long) score);
+		}
+		return String.valueOf(score);
+	}
+
+	/**
+	 * 判断score是否可以按整数格式化的方法
+	 * 
+	 * @param score
+	 *            score值
+	 * @return true为按整数格式化
+	 */
+	static boolean isLongScore(double score) {
+		return score == Math.rint(score) && Math.abs(score) < 1e15;
+	}
 }
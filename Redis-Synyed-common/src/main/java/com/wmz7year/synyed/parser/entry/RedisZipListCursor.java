@@ -0,0 +1,417 @@
+package com.wmz7year.synyed.parser.entry;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.entity.RedisLongCommandData;
+import com.wmz7year.synyed.entity.RedisSliceCommandData;
+import com.wmz7year.synyed.exception.RedisRDBException;
+
+/**
+ * ziplist编码数据的游标<br>
+ * 直接在编码数据上正向或者反向遍历元素 遍历过程中不分配对象<br>
+ * 字符串元素只记录在缓冲区中的位置 整数元素解码为long值<br>
+ *
+ * <pre>
+ * 	&lt;zlbytes&gt;&lt;zltail&gt;&lt;zllen&gt;&lt;entry&gt;...&lt;entry&gt;&lt;zlend&gt;
+ *  entry: &lt;prevlen&gt;&lt;encoding&gt;&lt;data&gt;
+ *  prevlen: 小于254时为1个字节 否则为0xFE加4个字节小端长度
+ *  |00pppppp| – 1 byte : String value with length less than or equal to 63 bytes (6 bits).
+ *  |01pppppp|qqqqqqqq| – 2 bytes : String value with length less than or equal to 16383 bytes (14 bits).
+ *  |10______|qqqqqqqq|rrrrrrrr|ssssssss|tttttttt| – 5 bytes : String value with length greater than or equal to 16384 bytes.
+ *  |11000000| – Read next 2 bytes as a 16 bit signed integer
+ *  |11010000| – Read next 4 bytes as a 32 bit signed integer
+ *  |11100000| – Read next 8 bytes as a 64 bit signed integer
+ *  |11110000| – Read next 3 bytes as a 24 bit signed integer
+ *  |11111110| – Read next byte as an 8 bit signed integer
+ *  |1111xxxx| – immediate 4 bit integer from 0 to 12 (xxxx - 1)
+ * </pre>
+ *
+ * @Title: RedisZipListCursor.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月14日 下午2:30:16
+ * @version V1.0
+ */
+public class RedisZipListCursor {
+	/**
+	 * ziplist头信息长度 zlbytes + zltail + zllen
+	 */
+	private static final int HEADER_LENGTH = 10;
+	/**
+	 * 代表zlist结尾
+	 */
+	private static final int ZLEND = 0xFF;
+	/**
+	 * prevlen使用5个字节表示的标识
+	 */
+	private static final int BIG_PREVLEN = 0xFE;
+	/**
+	 * zllen无法表示元素数量时的值 需要遍历才能得到元素数量
+	 */
+	private static final int UNKNOWN_LENGTH = 0xFFFF;
+
+	private static final int ZIP_STR_06B = 0x00;
+	private static final int ZIP_STR_14B = 0x40;
+	private static final int ZIP_STR_32B = 0x80;
+	private static final int ZIP_INT_16B = 0xC0;
+	private static final int ZIP_INT_32B = 0xD0;
+	private static final int ZIP_INT_64B = 0xE0;
+	private static final int ZIP_INT_24B = 0xF0;
+	private static final int ZIP_INT_8B = 0xFE;
+
+	/**
+	 * ziplist编码数据
+	 */
+	private byte[] buffer;
+	/**
+	 * 最后一个元素的起始位
+	 */
+	private int tailOffset;
+	/**
+	 * 元素数量
+	 */
+	private int entryCount;
+
+	/**
+	 * 当前元素的起始位 -1为没有当前元素
+	 */
+	private int entryOffset = -1;
+	/**
+	 * 当前元素prevlen的值
+	 */
+	private int prevLength;
+	/**
+	 * 当前元素数据的起始位
+	 */
+	private int dataOffset;
+	/**
+	 * 当前元素数据的长度 整数元素为编码后的字节数
+	 */
+	private int dataLength;
+	/**
+	 * 当前元素是否为整数
+	 */
+	private boolean integer;
+	/**
+	 * 当前整数元素的值
+	 */
+	private long longValue;
+
+	public RedisZipListCursor(byte[] buffer) throws RedisRDBException {
+		this.buffer = buffer;
+		if (buffer.length < HEADER_LENGTH + 1) {
+			throw new RedisRDBException("ziplist解析错误");
+		}
+		int zlbytes = (int) readLittleEndian(0, 4);
+		if (zlbytes != buffer.length) {
+			throw new RedisRDBException("错误长度的ziplist数据");
+		}
+		if ((buffer[buffer.length - 1] & 0xFF) != ZLEND) {
+			throw new RedisRDBException("ziplist解析错误");
+		}
+		this.tailOffset = (int) readLittleEndian(4, 4);
+		if (tailOffset < HEADER_LENGTH || tailOffset >= buffer.length) {
+			throw new RedisRDBException("ziplist解析错误");
+		}
+		int zllen = (int) readLittleEndian(8, 2) & 0xFFFF;
+		// 遍历一次校验元素结构 同时在zllen溢出时得到真实的元素数量
+		int count = 0;
+		while (next()) {
+			count++;
+		}
+		if (zllen != UNKNOWN_LENGTH && zllen != count) {
+			throw new RedisRDBException("ziplist元素数量错误 应为：" + zllen + " 实际：" + count);
+		}
+		this.entryCount = count;
+		reset();
+	}
+
+	/**
+	 * 复制游标使用的构造方法 数据已经校验过 不再重复遍历
+	 */
+	private RedisZipListCursor(RedisZipListCursor source) {
+		this.buffer = source.buffer;
+		this.tailOffset = source.tailOffset;
+		this.entryCount = source.entryCount;
+	}
+
+	/**
+	 * 创建一个共享编码数据的新游标的方法<br>
+	 * 新游标位于第一个元素之前 与当前游标的遍历状态互不影响
+	 * 
+	 * @return 新的游标
+	 */
+	public RedisZipListCursor duplicate() {
+		return new RedisZipListCursor(this);
+	}
+
+	/**
+	 * 将游标移动到第一个元素之前的方法<br>
+	 * 之后调用next正向遍历
+	 */
+	public void reset() {
+		entryOffset = -1;
+	}
+
+	/**
+	 * 将游标移动到最后一个元素之后的方法<br>
+	 * 之后调用previous反向遍历
+	 */
+	public void resetToTail() {
+		entryOffset = buffer.length - 1;
+	}
+
+	/**
+	 * 移动到下一个元素的方法
+	 *
+	 * @return true为移动成功 false为已经没有元素
+	 * @throws RedisRDBException
+	 *             当元素编码错误时抛出该异常
+	 */
+	public boolean next() throws RedisRDBException {
+		if (entryOffset == buffer.length - 1) {
+			return false;
+		}
+		int offset = entryOffset == -1 ? HEADER_LENGTH : dataOffset + dataLength;
+		if (offset >= buffer.length - 1 || (buffer[offset] & 0xFF) == ZLEND) {
+			entryOffset = buffer.length - 1;
+			return false;
+		}
+		decodeEntry(offset);
+		return true;
+	}
+
+	/**
+	 * 移动到上一个元素的方法
+	 *
+	 * @return true为移动成功 false为已经没有元素
+	 * @throws RedisRDBException
+	 *             当元素编码错误时抛出该异常
+	 */
+	public boolean previous() throws RedisRDBException {
+		int offset;
+		if (entryOffset == -1) {
+			return false;
+		} else if (entryOffset == buffer.length - 1) {
+			if (entryCount == 0 || (buffer[tailOffset] & 0xFF) == ZLEND) {
+				entryOffset = -1;
+				return false;
+			}
+			offset = tailOffset;
+		} else {
+			if (prevLength == 0) {
+				entryOffset = -1;
+				return false;
+			}
+			offset = entryOffset - prevLength;
+		}
+		if (offset < HEADER_LENGTH) {
+			throw new RedisRDBException("ziplist解析错误");
+		}
+		decodeEntry(offset);
+		return true;
+	}
+
+	/**
+	 * 解析指定位置元素头信息的方法
+	 *
+	 * @param offset
+	 *            元素起始位
+	 * @throws RedisRDBException
+	 *             当元素编码错误时抛出该异常
+	 */
+	private void decodeEntry(int offset) throws RedisRDBException {
+		int position = offset;
+		int prevlen = buffer[position++] & 0xFF;
+		if (prevlen == BIG_PREVLEN) {
+			checkBounds(position, 4);
+			prevlen = (int) readLittleEndian(position, 4);
+			position += 4;
+		}
+		checkBounds(position, 1);
+		int encoding = buffer[position++] & 0xFF;
+		switch (encoding & 0xC0) {
+		case ZIP_STR_06B:
+			setString(position, encoding & 0x3F);
+			break;
+		case ZIP_STR_14B:
+			checkBounds(position, 1);
+			setString(position + 1, ((encoding & 0x3F) << 8) | (buffer[position] & 0xFF));
+			break;
+		case ZIP_STR_32B:
+			checkBounds(position, 4);
+			// 32位字符串长度为大端
+			int length = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+					| ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+			setString(position + 4, length);
+			break;
+		default:
+			decodeInteger(position, encoding);
+			break;
+		}
+		checkBounds(dataOffset, dataLength);
+		this.entryOffset = offset;
+		this.prevLength = prevlen;
+	}
+
+	/**
+	 * 解析整数元素的方法
+	 *
+	 * @param position
+	 *            整数数据的起始位
+	 * @param encoding
+	 *            元素编码
+	 * @throws RedisRDBException
+	 *             当元素编码错误时抛出该异常
+	 */
+	private void decodeInteger(int position, int encoding) throws RedisRDBException {
+		int length;
+		if (encoding == ZIP_INT_16B) {
+			length = 2;
+		} else if (encoding == ZIP_INT_32B) {
+			length = 4;
+		} else if (encoding == ZIP_INT_64B) {
+			length = 8;
+		} else if (encoding == ZIP_INT_24B) {
+			length = 3;
+		} else if (encoding == ZIP_INT_8B) {
+			length = 1;
+		} else if (encoding > ZIP_INT_24B && encoding < ZIP_INT_8B) {
+			length = 0;
+		} else {
+			throw new RedisRDBException("不支持的entry special符号：" + encoding);
+		}
+		checkBounds(position, length);
+		this.integer = true;
+		this.dataOffset = position;
+		this.dataLength = length;
+		if (length == 0) {
+			this.longValue = (encoding & 0x0F) - 1;
+		} else {
+			long value = readLittleEndian(position, length);
+			// 符号扩展
+			int shift = 64 - length * 8;
+			this.longValue = (value << shift) >> shift;
+		}
+	}
+
+	/**
+	 * 设置当前元素为字符串的方法
+	 *
+	 * @param offset
+	 *            字符串起始位
+	 * @param length
+	 *            字符串长度
+	 */
+	private void setString(int offset, int length) {
+		this.integer = false;
+		this.dataOffset = offset;
+		this.dataLength = length;
+	}
+
+	/**
+	 * 检查读取范围是否超出ziplist数据的方法
+	 *
+	 * @param offset
+	 *            起始位
+	 * @param length
+	 *            长度
+	 * @throws RedisRDBException
+	 *             超出范围时抛出该异常
+	 */
+	private void checkBounds(int offset, int length) throws RedisRDBException {
+		if (length < 0 || offset + length > buffer.length - 1) {
+			throw new RedisRDBException("ziplist解析错误");
+		}
+	}
+
+	/**
+	 * 读取小端无符号整数的方法
+	 *
+	 * @param offset
+	 *            起始位
+	 * @param length
+	 *            字节数
+	 * @return 读取到的值
+	 */
+	private long readLittleEndian(int offset, int length) {
+		long value = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			value = (value << 8) | (buffer[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * 当前元素是否为整数的方法
+	 *
+	 * @return true为整数 false为字符串
+	 */
+	public boolean isInteger() {
+		return integer;
+	}
+
+	/**
+	 * 获取当前整数元素值的方法
+	 *
+	 * @return 整数值
+	 */
+	public long getLong() {
+		return longValue;
+	}
+
+	/**
+	 * 获取当前字符串元素在缓冲区中起始位的方法
+	 *
+	 * @return 起始位
+	 */
+	public int getStringOffset() {
+		return dataOffset;
+	}
+
+	/**
+	 * 获取当前字符串元素长度的方法
+	 *
+	 * @return 字符串长度
+	 */
+	public int getStringLength() {
+		return dataLength;
+	}
+
+	/**
+	 * 将当前元素转换为命令数据的方法<br>
+	 * 字符串引用原始缓冲区 整数在编码时直接格式化
+	 *
+	 * @return 命令数据
+	 */
+	public RedisCommandData toCommandData() {
+		if (integer) {
+			return new RedisLongCommandData(longValue);
+		}
+		return new RedisSliceCommandData(buffer, dataOffset, dataLength);
+	}
+
+	/**
+	 * 将当前元素转换为字符串的方法
+	 *
+	 * @return 元素字符串
+	 */
+	public String getContent() {
+		if (integer) {
+			return String.valueOf(longValue);
+		}
+		return new String(buffer, dataOffset, dataLength);
+	}
+
+	/**
+	 * 获取元素数量的方法
+	 *
+	 * @return 元素数量
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	public byte[] getBuffer() {
+		return buffer;
+	}
+}
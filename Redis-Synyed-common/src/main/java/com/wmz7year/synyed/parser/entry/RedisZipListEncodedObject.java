@@ -0,0 +1,119 @@
+package com.wmz7year.synyed.parser.entry;
+
+import static com.wmz7year.synyed.constant.RedisRDBConstant.REDIS_ENCODING_ZIPLIST;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wmz7year.synyed.entity.RedisCommandData;
+import com.wmz7year.synyed.exception.RedisRDBException;
+
+/**
+ * ziplist编码类型数据结构对象的基类<br>
+ * 通过RedisZipListCursor直接在编码数据上遍历元素 不预先解析出元素对象
+ * 
+ * @Title: RedisZipListEncodedObject.java
+ * @Package com.wmz7year.synyed.parser.entry
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月29日 上午10:21:37
+ * @version V1.0
+ */
+public abstract class RedisZipListEncodedObject extends RedisObject {
+
+	private byte[] buffer;
+
+	/**
+	 * 创建时校验过数据的游标 只作为复制新游标的模板 不用于遍历
+	 */
+	private RedisZipListCursor cursor;
+
+	public RedisZipListEncodedObject(byte[] buffer) throws RedisRDBException {
+		this.buffer = buffer;
+		// 创建游标时会校验ziplist的数据完整性
+		this.cursor = new RedisZipListCursor(buffer);
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisObject#getEncoding()
+	 */
+	@Override
+	public byte getEncoding() {
+		return REDIS_ENCODING_ZIPLIST;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisObject#toCommand()
+	 */
+	@Override
+	public String toCommand() {
+		StringBuilder result = new StringBuilder();
+		try {
+			RedisZipListCursor cursor = getCursor();
+			while (cursor.next()) {
+				result.append(cursor.getContent()).append(' ');
+			}
+		} catch (RedisRDBException e) {
+			throw new IllegalStateException(e);
+		}
+		if (result.length() > 0 && result.charAt(result.length() - 1) == ' ') {
+			return result.substring(0, result.length() - 1);
+		}
+		return result.toString();
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.entry.RedisObject#getBuffer()
+	 */
+	@Override
+	public byte[] getBuffer() {
+		return this.buffer;
+	}
+
+	/**
+	 * 获取ziplist中元素数量的方法
+	 * 
+	 * @return 元素数量
+	 */
+	public int getElementCount() {
+		return cursor.getEntryCount();
+	}
+
+	/**
+	 * 获取ziplist游标的方法<br>
+	 * 每次调用返回位于第一个元素之前的新游标 多个调用方之间互不影响
+	 * 
+	 * @return ziplist游标
+	 */
+	public RedisZipListCursor getCursor() {
+		return cursor.duplicate();
+	}
+
+	/**
+	 * 获取ziplist中元素列表的方法<br>
+	 * 元素顺序与ziplist中从头到尾的顺序一致<br>
+	 * 字符串元素引用原始编码数据 整数元素在编码时直接格式化
+	 * 
+	 * @return 元素列表集合
+	 */
+	public List<RedisCommandData> getElements() {
+		List<RedisCommandData> result = new ArrayList<RedisCommandData>(cursor.getEntryCount());
+		try {
+			RedisZipListCursor cursor = getCursor();
+			while (cursor.next()) {
+				result.add(cursor.toCommandData());
+			}
+		} catch (RedisRDBException e) {
+			throw new IllegalStateException(e);
+		}
+		return result;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [buffer length=" + buffer.length + ",command=" + toCommand() + "]";
+	}
+
+}
@@ -19,7 +19,9 @@ import com.wmz7year.synyed.parser.entry.RedisDB;
 import com.wmz7year.synyed.parser.entry.RedisHashObject;
 import com.wmz7year.synyed.parser.entry.RedisHashZipList;
 import com.wmz7year.synyed.parser.entry.RedisHashZipMap;
+import com.wmz7year.synyed.parser.entry.RedisKeyFilter;
 import com.wmz7year.synyed.parser.entry.RedisListObject;
+import com.wmz7year.synyed.parser.entry.RedisLzfStringObject;
 import com.wmz7year.synyed.parser.entry.RedisObject;
 import com.wmz7year.synyed.parser.entry.RedisRDBCommand;
 import com.wmz7year.synyed.parser.entry.RedisSetIntSet;
@@ -50,6 +52,11 @@ public class RDBParserImpl0006 implements RDBParser {
 	 * 数据文件数据流对象
 	 */
 	private ByteArrayInputStream bis;
+	/**
+	 * rdb文件内容<br>
+	 * 用于记录每个value原始序列化数据的位置
+	 */
+	private byte[] rdbContent;
 
 	/**
 	 * rdb文件中的 redis数据库集合列表<br>
@@ -57,6 +64,26 @@ public class RDBParserImpl0006 implements RDBParser {
 	 */
 	private Map<Integer, RedisDB> redisDBs = new HashMap<Integer, RedisDB>();
 
+	/**
+	 * key过滤规则 为null时同步所有key
+	 */
+	private RedisKeyFilter keyFilter;
+
+	/**
+	 * 过滤或者过期后跳过的key数量
+	 */
+	private int skippedCount;
+
+	/**
+	 * 断点位置 在该位置之前开始的key已经同步过
+	 */
+	private long resumeOffset = 0;
+
+	/**
+	 * 断点之前跳过的key数量
+	 */
+	private int resumedCount;
+
 	/*
 	 * @see com.wmz7year.synyed.parser.RDBParser#gerVersion()
 	 */
@@ -77,12 +104,19 @@ public class RDBParserImpl0006 implements RDBParser {
 		// 获取crc64校验值
 		long crc64 = CRC64.checksum(rdbContent, rdbContent.length - 8);
 		// byte
+		this.rdbContent = rdbContent;
 		bis = new ByteArrayInputStream(rdbContent);
 		// 校验版本是否正确
 		checkVersion();
 
 		// 开始解析rdb文件内容
 		parseRDBContent();
+		if (skippedCount > 0) {
+			logger.info("rdb文件中被过滤或者已过期跳过的key数量:" + skippedCount);
+		}
+		if (resumeOffset > 0) {
+			logger.info("从断点位置:" + resumeOffset + " 继续同步 跳过已同步的key数量:" + resumedCount);
+		}
 
 		// 读取crc校验值
 		// 校验8字节的CRC
@@ -145,6 +179,8 @@ public class RDBParserImpl0006 implements RDBParser {
 			// redis的key value对象
 			RedisObject key, value;
 			expiretime = -1;
+			// 记录key在rdb中开始的位置 包括过期时间
+			int entryOffset = position();
 			// 读取类型
 			type = rdbLoadType();
 			if (type == REDIS_RDB_OPCODE_EXPIRETIME) {
@@ -183,16 +219,34 @@ public class RDBParserImpl0006 implements RDBParser {
 
 			// 读取key
 			key = rdbLoadStringObject();
-			// 读取value
-			value = rdbLoadObject(type);
 
-			// 校验过期时间 如果数据过期则不处理
-			if (expiretime != -1 && expiretime < now) {
+			// 断点之前已经同步过的key按长度跳过value
+			if (entryOffset < resumeOffset) {
+				rdbSkipObject(type);
+				resumedCount++;
 				continue;
 			}
 
+			// 已经过期或者被过滤的key按长度跳过value 不解压也不解析value内容
+			boolean expired = expiretime != -1 && expiretime < now;
+			int dbNum = redisDB == null ? 0 : redisDB.getNum();
+			if (expired || (keyFilter != null && !keyFilter.accept(dbNum, key.getBuffer(), type, expiretime, now))) {
+				rdbSkipObject(type);
+				skippedCount++;
+				continue;
+			}
+
+			// 读取value 并记录value原始数据的位置
+			int valueOffset = position();
+			value = rdbLoadObject(type);
+			int valueLength = position() - valueOffset;
+
 			// 转换为rdb command对象
 			RedisRDBCommand rdbCommand = new RedisRDBCommand(key, value, expiretime);
+			rdbCommand.setSerializedValue(type, rdbContent, valueOffset, valueLength);
+			rdbCommand.setOffset(position());
+			// 断点之后的key可能已经部分写入 需要覆盖
+			rdbCommand.setReplace(resumeOffset > 0);
 
 			// 添加到rdb中
 			redisDB.addCommand(rdbCommand);
@@ -250,6 +304,94 @@ public class RDBParserImpl0006 implements RDBParser {
 		return result;
 	}
 
+	/**
+	 * 跳过指定类型value的方法<br>
+	 * 只读取长度信息 不创建对象
+	 * 
+	 * @param type
+	 *            对象类型
+	 * @throws RedisRDBException
+	 *             解析过程中发生错误则抛出该异常信息
+	 */
+	private void rdbSkipObject(byte type) throws RedisRDBException {
+		if (type == REDIS_RDB_TYPE_STRING) {
+			rdbSkipStringObject();
+		} else if (type == REDIS_RDB_TYPE_LIST || type == REDIS_RDB_TYPE_SET) {
+			int len = rdbLoadLen().getLen();
+			while (len-- > 0) {
+				rdbSkipStringObject();
+			}
+		} else if (type == REDIS_RDB_TYPE_ZSET) {
+			int len = rdbLoadLen().getLen();
+			while (len-- > 0) {
+				rdbSkipStringObject();
+				rdbSkipDoubleValue();
+			}
+		} else if (type == REDIS_RDB_TYPE_HASH) {
+			int len = rdbLoadLen().getLen();
+			while (len-- > 0) {
+				rdbSkipStringObject();
+				rdbSkipStringObject();
+			}
+		} else if (type == REDIS_RDB_TYPE_HASH_ZIPMAP || type == REDIS_RDB_TYPE_LIST_ZIPLIST
+				|| type == REDIS_RDB_TYPE_SET_INTSET || type == REDIS_RDB_TYPE_ZSET_ZIPLIST
+				|| type == REDIS_RDB_TYPE_HASH_ZIPLIST) {
+			rdbSkipStringObject();
+		} else {
+			throw new RedisRDBException("未知的类型：" + type);
+		}
+	}
+
+	/**
+	 * 跳过字符串编码对象的方法<br>
+	 * lzf压缩的数据按压缩后的长度跳过
+	 * 
+	 * @throws RedisRDBException
+	 *             当读取过程中发生错误则抛出该异常信息
+	 */
+	private void rdbSkipStringObject() throws RedisRDBException {
+		RdbLen len = rdbLoadLen();
+		if (len.isEncoded()) {
+			switch (len.getLen()) {
+			case REDIS_RDB_ENC_INT8:
+				skipBytes(1);
+				return;
+			case REDIS_RDB_ENC_INT16:
+				skipBytes(2);
+				return;
+			case REDIS_RDB_ENC_INT32:
+				skipBytes(4);
+				return;
+			case REDIS_RDB_ENC_LZF:
+				int clen = rdbLoadLen().getLen();
+				// 解压后的长度
+				rdbLoadLen();
+				skipBytes(clen);
+				return;
+			default:
+				throw new RedisRDBException("Unknown RDB encoding type");
+			}
+		}
+		if (len.getLen() == REDIS_RDB_LENERR) {
+			throw new RedisRDBException("RDB parser error");
+		}
+		skipBytes(len.getLen());
+	}
+
+	/**
+	 * 跳过double值的方法
+	 * 
+	 * @throws RedisRDBException
+	 *             当读取过程中发生问题则抛出该异常
+	 */
+	private void rdbSkipDoubleValue() throws RedisRDBException {
+		int len = readByte() & 0xFF;
+		// 253-255为NaN以及正负无穷 没有后续数据
+		if (len < 253) {
+			skipBytes(len);
+		}
+	}
+
 	/**
 	 * 读取string类型值转换为redis数据对象的方法
 	 * 
@@ -481,7 +623,8 @@ public class RDBParserImpl0006 implements RDBParser {
 	}
 
 	/**
-	 * 读取LZF压缩格式的字符串的方法
+	 * 读取LZF压缩格式的字符串的方法<br>
+	 * 值经常只是原样发送到目标服务器 因此这里只校验不进行解压
 	 * 
 	 * @return redis数据对象
 	 * @throws RedisRDBException
@@ -490,7 +633,6 @@ public class RDBParserImpl0006 implements RDBParser {
 	private RedisObject rdbLoadLzfStringObject() throws RedisRDBException {
 		int len, clen;
 		byte[] buf = null;
-		byte[] val = null;
 		clen = rdbLoadLen().getLen();
 		len = rdbLoadLen().getLen();
 
@@ -498,15 +640,14 @@ public class RDBParserImpl0006 implements RDBParser {
 		if (!readBytes(buf, 0, clen)) {
 			throw new RedisRDBException("解析错误");
 		}
-		// lzf解压缩
+		// 只校验压缩数据结构 损坏的数据在解析时就报错
 		try {
-			val = new byte[len];
-			LZFDecoder.decode(buf, 0, clen, val, 0, len);
+			LZFDecoder.validate(buf, 0, clen, len);
 		} catch (Exception e) {
 			throw new RedisRDBException("LZF解压数据失败", e);
 		}
-
-		return createRedisStringObject(val);
+		// 保留压缩数据 第一次使用时才解压
+		return new RedisLzfStringObject(buf, len);
 	}
 
 	/**
@@ -615,6 +756,29 @@ public class RDBParserImpl0006 implements RDBParser {
 		}
 	}
 
+	/**
+	 * 获取当前读取位置的方法
+	 * 
+	 * @return 当前读取位置在rdb内容中的下标
+	 */
+	private int position() {
+		return rdbContent.length - bis.available();
+	}
+
+	/**
+	 * 跳过指定数量字节的方法
+	 * 
+	 * @param num
+	 *            跳过的字节数
+	 * @throws RedisRDBException
+	 *             数据不足时抛出该异常
+	 */
+	private void skipBytes(int num) throws RedisRDBException {
+		if (num < 0 || bis.skip(num) != num) {
+			throw new RedisRDBException("RDB skip value error");
+		}
+	}
+
 	/**
 	 * 读取1个字节的方法
 	 * 
@@ -664,6 +828,42 @@ public class RDBParserImpl0006 implements RDBParser {
 		return this.redisDBs.values();
 	}
 
+	/*
+	 * @see
+	 * com.wmz7year.synyed.parser.RDBParser#setKeyFilter(com.wmz7year.synyed.
+	 * parser.entry.RedisKeyFilter)
+	 */
+	@Override
+	public void setKeyFilter(RedisKeyFilter keyFilter) {
+		this.keyFilter = keyFilter;
+	}
+
+	/*
+	 * @see com.wmz7year.synyed.parser.RDBParser#setResumeOffset(long)
+	 */
+	@Override
+	public void setResumeOffset(long resumeOffset) {
+		this.resumeOffset = resumeOffset;
+	}
+
+	/**
+	 * 获取断点之前跳过的key数量的方法
+	 * 
+	 * @return key数量
+	 */
+	public int getResumedCount() {
+		return resumedCount;
+	}
+
+	/**
+	 * 获取过滤或者过期后跳过的key数量的方法
+	 * 
+	 * @return key数量
+	 */
+	public int getSkippedCount() {
+		return skippedCount;
+	}
+
 	/**
 	 * 封装rdb数据长度已经是否编码的实体类
 	 * 
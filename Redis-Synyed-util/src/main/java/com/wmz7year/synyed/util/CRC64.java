@@ -72,8 +72,42 @@ public class CRC64 {
 	 * @return 校验和
 	 */
 	public static long checksum(final byte[] data, int length) {
-		long sum = 0;
-		for (int i = 0; i < length; i++) {
+		return update(0, data, 0, length);
+	}
+
+	/**
+	 * 针对缓冲区中的一段数据进行crc64求校验和的方法
+	 * 
+	 * @param data
+	 *            需要校验的缓冲区
+	 * @param offset
+	 *            数据起始位
+	 * @param length
+	 *            数据长度
+	 * @return 校验和
+	 */
+	public static long checksum(final byte[] data, int offset, int length) {
+		return update(0, data, offset, length);
+	}
+
+	/**
+	 * 在已有校验和的基础上继续计算crc64的方法<br>
+	 * 用于分段计算不连续数据的校验和
+	 * 
+	 * @param crc
+	 *            之前计算出的校验和 首次计算为0
+	 * @param data
+	 *            需要校验的缓冲区
+	 * @param offset
+	 *            数据起始位
+	 * @param length
+	 *            数据长度
+	 * @return 校验和
+	 */
+	public static long update(long crc, final byte[] data, int offset, int length) {
+		long sum = crc;
+		final int end = offset + length;
+		for (int i = offset; i < end; i++) {
 			final int lookupidx = ((int) sum ^ data[i]) & 0xff;
 			sum = (sum >>> 8) ^ CRC64_TAB[lookupidx];
 		}
@@ -1,8 +1,14 @@
 package com.wmz7year.synyed.util;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * lzf数据解压缩工具类
- * 
+ * lzf数据解压缩工具类<br>
+ * 回溯引用不重叠时使用System.arraycopy批量拷贝<br>
+ * 重叠的短回溯引用展开循环逐字节拷贝<br>
+ * 同时支持直接从ByteBuffer(如mmap映射的rdb文件)中解压
+ *
  * @Title: LZFDecoder.java
  * @Package org.Redis.Synyed.util
  * @author jiangwei (ydswcy513@gmail.com)
@@ -15,9 +21,19 @@ public class LZFDecoder {
 	 */
 	private static final int MAX_LITERAL = 1 << 5;
 
+	/**
+	 * 重叠回溯引用的距离小于该值时逐字节展开拷贝<br>
+	 * 否则按照距离分段使用System.arraycopy拷贝
+	 */
+	private static final int MIN_CHUNK_COPY_DISTANCE = 8;
+
+	private LZFDecoder() {
+
+	}
+
 	/**
 	 * lzf解压缩的方法<br>
-	 * 
+	 *
 	 * @param in
 	 *            带解压的数据缓冲区
 	 * @param inPos
@@ -37,46 +53,239 @@ public class LZFDecoder {
 		if (inPos < 0 || inLen < 0 || outPos < 0 || outLen < 0) {
 			throw new IllegalArgumentException();
 		}
-		do {
+		final int inEnd = inPos + inLen;
+		final int outStart = outPos;
+		final int outEnd = outPos + outLen;
+		if (inEnd > in.length || outEnd > out.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		while (outPos < outEnd) {
+			if (inPos >= inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
 			int ctrl = in[inPos++] & 255;
 			if (ctrl < MAX_LITERAL) {
 				// literal run of length = ctrl + 1,
 				ctrl++;
+				if (outPos + ctrl > outEnd || inPos + ctrl > inEnd) {
+					throw new ArrayIndexOutOfBoundsException();
+				}
 				// copy to output and move forward this many bytes
 				System.arraycopy(in, inPos, out, outPos, ctrl);
 				outPos += ctrl;
 				inPos += ctrl;
-			} else {
-				// back reference
-				// the highest 3 bits are the match length
-				int len = ctrl >> 5;
-				// if the length is maxed, add the next byte to the length
-				if (len == 7) {
-					len += in[inPos++] & 255;
-				}
-				// minimum back-reference is 3 bytes,
-				// so 2 was subtracted before storing size
-				len += 2;
-
-				// ctrl is now the offset for a back-reference...
-				// the logical AND operation removes the length bits
-				ctrl = -((ctrl & 0x1f) << 8) - 1;
+				continue;
+			}
+			// back reference
+			// the highest 3 bits are the match length
+			int len = ctrl >> 5;
+			// 回溯引用还需要读取偏移量字节 长度为7时还有一个长度字节
+			if (inPos + (len == 7 ? 2 : 1) > inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
+			// if the length is maxed, add the next byte to the length
+			if (len == 7) {
+				len += in[inPos++] & 255;
+			}
+			// minimum back-reference is 3 bytes,
+			// so 2 was subtracted before storing size
+			len += 2;
 
-				// the next byte augments/increases the offset
-				ctrl -= in[inPos++] & 255;
+			// the logical AND operation removes the length bits
+			// the next byte augments/increases the offset
+			int distance = (((ctrl & 0x1f) << 8) | (in[inPos++] & 255)) + 1;
+			int ref = outPos - distance;
+			if (ref < outStart || outPos + len > outEnd) {
+				throw new ArrayIndexOutOfBoundsException();
+			}
+			copyBackReference(out, ref, outPos, len, distance);
+			outPos += len;
+		}
+	}
 
-				// copy the back-reference bytes from the given
-				// location in output to current position
-				ctrl += outPos;
-				if (outPos + len > outLen) {
-					// reduce array bounds checking
+	/**
+	 * 校验lzf数据结构的方法<br>
+	 * 只遍历控制字节 不写出解压后的数据 用于延迟解压前尽早发现损坏的数据<br>
+	 * 压缩数据必须正好解压出outLen长度的数据并且没有多余的字节
+	 *
+	 * @param in
+	 *            带校验的数据缓冲区
+	 * @param inPos
+	 *            数据起始位
+	 * @param inLen
+	 *            数据长度
+	 * @param outLen
+	 *            解压后的长度
+	 * @throws Exception
+	 *             当数据损坏时抛出该异常
+	 */
+	public static void validate(byte[] in, int inPos, int inLen, int outLen) throws Exception {
+		if (inPos < 0 || inLen < 0 || outLen < 0) {
+			throw new IllegalArgumentException();
+		}
+		final int inEnd = inPos + inLen;
+		if (inEnd > in.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int outPos = 0;
+		while (outPos < outLen) {
+			if (inPos >= inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
+			int ctrl = in[inPos++] & 255;
+			if (ctrl < MAX_LITERAL) {
+				ctrl++;
+				if (outPos + ctrl > outLen || inPos + ctrl > inEnd) {
 					throw new ArrayIndexOutOfBoundsException();
 				}
+				outPos += ctrl;
+				inPos += ctrl;
+				continue;
+			}
+			int len = ctrl >> 5;
+			if (inPos + (len == 7 ? 2 : 1) > inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
+			if (len == 7) {
+				len += in[inPos++] & 255;
+			}
+			len += 2;
+			int distance = (((ctrl & 0x1f) << 8) | (in[inPos++] & 255)) + 1;
+			if (outPos - distance < 0 || outPos + len > outLen) {
+				throw new ArrayIndexOutOfBoundsException();
+			}
+			outPos += len;
+		}
+		if (inPos != inEnd) {
+			throw new IllegalStateException("lzf数据长度与解压后长度不一致");
+		}
+	}
+
+	/**
+	 * 从ByteBuffer中解压lzf数据的方法<br>
+	 * 读取in中position到limit之间的数据 解压到out的position位置<br>
+	 * 两个缓冲区都基于数组时直接使用数组解压 否则使用绝对位置读写<br>
+	 * 解压完成后in与out的position会向后移动
+	 *
+	 * @param in
+	 *            带解压的数据缓冲区
+	 * @param out
+	 *            解压后数据的缓冲区 剩余空间必须等于解压后的长度
+	 * @return 解压后数据的长度
+	 * @throws Exception
+	 *             当解压发生错误时抛出该异常
+	 */
+	public static int decode(ByteBuffer in, ByteBuffer out) throws Exception {
+		final int inLen = in.remaining();
+		final int outLen = out.remaining();
+		if (in.hasArray() && out.hasArray()) {
+			decode(in.array(), in.arrayOffset() + in.position(), inLen, out.array(),
+					out.arrayOffset() + out.position(), outLen);
+			in.position(in.limit());
+			out.position(out.limit());
+			return outLen;
+		}
+
+		int inPos = in.position();
+		final int inEnd = in.limit();
+		int outPos = out.position();
+		final int outStart = outPos;
+		final int outEnd = out.limit();
+		while (outPos < outEnd) {
+			if (inPos >= inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
+			int ctrl = in.get(inPos++) & 255;
+			if (ctrl < MAX_LITERAL) {
+				ctrl++;
+				if (outPos + ctrl > outEnd || inPos + ctrl > inEnd) {
+					throw new IndexOutOfBoundsException();
+				}
+				// 使用切片批量拷贝字面量
+				ByteBuffer literal = in.duplicate();
+				literal.limit(inPos + ctrl).position(inPos);
+				out.position(outPos);
+				out.put(literal);
+				outPos += ctrl;
+				inPos += ctrl;
+				continue;
+			}
+			int len = ctrl >> 5;
+			if (inPos + (len == 7 ? 2 : 1) > inEnd) {
+				throw new IllegalStateException("lzf数据不完整");
+			}
+			if (len == 7) {
+				len += in.get(inPos++) & 255;
+			}
+			len += 2;
+			int distance = (((ctrl & 0x1f) << 8) | (in.get(inPos++) & 255)) + 1;
+			int ref = outPos - distance;
+			if (ref < outStart || outPos + len > outEnd) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (distance >= len) {
+				// 不重叠 批量拷贝
+				ByteBuffer match = out.duplicate();
+				match.limit(ref + len).position(ref);
+				out.position(outPos);
+				out.put(match);
+			} else {
 				for (int i = 0; i < len; i++) {
-					out[outPos++] = out[ctrl++];
+					out.put(outPos + i, out.get(ref + i));
 				}
 			}
-		} while (outPos < outLen);
+			outPos += len;
+		}
+		in.position(inPos);
+		out.position(outPos);
+		return outPos - outStart;
+	}
+
+	/**
+	 * 拷贝回溯引用数据的方法<br>
+	 * 不重叠时一次性拷贝 重叠时根据引用距离选择填充、展开循环或者分段拷贝
+	 *
+	 * @param out
+	 *            解压后数据的缓冲区
+	 * @param ref
+	 *            引用数据的起始位
+	 * @param outPos
+	 *            写入位置
+	 * @param len
+	 *            引用数据的长度
+	 * @param distance
+	 *            写入位置与引用位置的距离
+	 */
+	private static void copyBackReference(byte[] out, int ref, int outPos, int len, int distance) {
+		if (distance >= len) {
+			System.arraycopy(out, ref, out, outPos, len);
+		} else if (distance == 1) {
+			// 单字节重复
+			Arrays.fill(out, outPos, outPos + len, out[ref]);
+		} else if (distance < MIN_CHUNK_COPY_DISTANCE) {
+			// 短距离重叠 展开循环逐字节拷贝
+			final int end = outPos + len;
+			while (outPos + 4 <= end) {
+				out[outPos] = out[ref];
+				out[outPos + 1] = out[ref + 1];
+				out[outPos + 2] = out[ref + 2];
+				out[outPos + 3] = out[ref + 3];
+				outPos += 4;
+				ref += 4;
+			}
+			while (outPos < end) {
+				out[outPos++] = out[ref++];
+			}
+		} else {
+			// 按照引用距离分段 每一段之间不重叠
+			while (len > 0) {
+				int chunk = distance < len ? distance : len;
+				System.arraycopy(out, ref, out, outPos, chunk);
+				outPos += chunk;
+				ref += chunk;
+				len -= chunk;
+			}
+		}
 	}
 
 }
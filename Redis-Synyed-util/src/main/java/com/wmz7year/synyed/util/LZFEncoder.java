@@ -0,0 +1,180 @@
+package com.wmz7year.synyed.util;
+
+/**
+ * lzf数据压缩工具类<br>
+ * 输出格式与redis使用的lzf格式一致 可以使用LZFDecoder解压<br>
+ * 使用3字节hash表查找回溯引用 最大回溯距离8K 最大引用长度264
+ *
+ * @Title: LZFEncoder.java
+ * @Package com.wmz7year.synyed.util
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月20日 下午2:15:40
+ * @version V1.0
+ */
+public class LZFEncoder {
+	/**
+	 * 一次字面量最大长度
+	 */
+	private static final int MAX_LITERAL = 1 << 5;
+	/**
+	 * 最大回溯距离
+	 */
+	private static final int MAX_OFF = 1 << 13;
+	/**
+	 * 最大引用长度
+	 */
+	private static final int MAX_REF = (1 << 8) + (1 << 3);
+	/**
+	 * hash表大小
+	 */
+	private static final int HASH_SIZE = 1 << 14;
+
+	private LZFEncoder() {
+
+	}
+
+	/**
+	 * 计算压缩后最大长度的方法<br>
+	 * 数据无法压缩时每32字节需要额外的一个控制字节
+	 *
+	 * @param length
+	 *            原始数据长度
+	 * @return 压缩后的最大长度
+	 */
+	public static int maxEncodedLength(int length) {
+		return length + (length + MAX_LITERAL - 1) / MAX_LITERAL + 1;
+	}
+
+	/**
+	 * lzf压缩的方法<br>
+	 *
+	 * @param in
+	 *            需要压缩的数据
+	 * @param inPos
+	 *            数据起始位
+	 * @param inLen
+	 *            数据长度
+	 * @param out
+	 *            压缩后数据的缓冲区 长度不小于maxEncodedLength(inLen)时一定能写下
+	 * @param outPos
+	 *            压缩后数据起始位
+	 * @return 压缩后的数据长度 缓冲区不足时返回0
+	 */
+	public static int encode(byte[] in, int inPos, int inLen, byte[] out, int outPos) {
+		if (inPos < 0 || inLen < 0 || outPos < 0 || inPos + inLen > in.length) {
+			throw new IllegalArgumentException();
+		}
+		if (inLen == 0) {
+			return 0;
+		}
+		final int inEnd = inPos + inLen;
+		final int outEnd = out.length;
+		final int[] hashTable = new int[HASH_SIZE];
+
+		int ip = inPos;
+		int op = outPos;
+		// 当前字面量的控制字节位置与长度
+		int literalStart = op++;
+		int literals = 0;
+		if (op > outEnd) {
+			return 0;
+		}
+
+		while (ip < inEnd - 2) {
+			int hash = hash(in, ip);
+			int ref = hashTable[hash] - 1;
+			hashTable[hash] = ip + 1;
+			int off = ip - ref - 1;
+			if (ref >= inPos && off < MAX_OFF && in[ref] == in[ip] && in[ref + 1] == in[ip + 1]
+					&& in[ref + 2] == in[ip + 2]) {
+				// 计算匹配长度
+				int maxLen = Math.min(MAX_REF, inEnd - ip);
+				int len = 3;
+				while (len < maxLen && in[ref + len] == in[ip + len]) {
+					len++;
+				}
+				// 结束当前字面量
+				if (literals == 0) {
+					op--;
+				} else {
+					out[literalStart] = (byte) (literals - 1);
+				}
+				if (op + 3 + 1 > outEnd) {
+					return 0;
+				}
+				int encodedLen = len - 2;
+				if (encodedLen < 7) {
+					out[op++] = (byte) ((off >> 8) + (encodedLen << 5));
+				} else {
+					out[op++] = (byte) ((off >> 8) + (7 << 5));
+					out[op++] = (byte) (encodedLen - 7);
+				}
+				out[op++] = (byte) off;
+				// 开始新的字面量
+				literalStart = op++;
+				literals = 0;
+
+				// 把匹配部分的位置加入hash表
+				int end = ip + len;
+				ip++;
+				while (ip < end && ip < inEnd - 2) {
+					hashTable[hash(in, ip)] = ip + 1;
+					ip++;
+				}
+				ip = end;
+			} else {
+				if (op >= outEnd) {
+					return 0;
+				}
+				out[op++] = in[ip++];
+				if (++literals == MAX_LITERAL) {
+					out[literalStart] = (byte) (MAX_LITERAL - 1);
+					literalStart = op++;
+					literals = 0;
+				}
+			}
+		}
+		// 剩余不足3字节的数据作为字面量
+		while (ip < inEnd) {
+			if (op >= outEnd) {
+				return 0;
+			}
+			out[op++] = in[ip++];
+			if (++literals == MAX_LITERAL) {
+				out[literalStart] = (byte) (MAX_LITERAL - 1);
+				literalStart = op++;
+				literals = 0;
+			}
+		}
+		if (literals == 0) {
+			// 去掉没有使用的控制字节
+			op--;
+		} else {
+			out[literalStart] = (byte) (literals - 1);
+		}
+		if (op > outEnd) {
+			return 0;
+		}
+		return op - outPos;
+	}
+
+	/**
+	 * 压缩数据的方法
+	 *
+	 * @param in
+	 *            需要压缩的数据
+	 * @return 压缩后的数据
+	 */
+	public static byte[] encode(byte[] in) {
+		byte[] out = new byte[maxEncodedLength(in.length)];
+		int length = encode(in, 0, in.length, out, 0);
+		byte[] result = new byte[length];
+		System.arraycopy(out, 0, result, 0, length);
+		return result;
+	}
+
+	private static int hash(byte[] in, int pos) {
+		int value = ((in[pos] & 0xFF) << 16) | ((in[pos + 1] & 0xFF) << 8) | (in[pos + 2] & 0xFF);
+		return (int) ((value * 2654435761L) >>> 18) & (HASH_SIZE - 1);
+	}
+}
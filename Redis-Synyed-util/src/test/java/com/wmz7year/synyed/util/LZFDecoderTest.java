@@ -0,0 +1,141 @@
+package com.wmz7year.synyed.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * lzf解压缩工具类测试
+ *
+ * @Title: LZFDecoderTest.java
+ * @Package com.wmz7year.synyed.util
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月11日 上午10:12:31
+ * @version V1.0
+ */
+public class LZFDecoderTest {
+
+	/**
+	 * 字面量abcdefgh + 不重叠的8字节回溯引用
+	 */
+	private static final byte[] NON_OVERLAP = new byte[] { 7, 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', (byte) 0xC0, 7 };
+
+	/**
+	 * 字面量abc + 距离为3长度为9的重叠回溯引用 + 字面量z + 距离为1长度为5的单字节重复
+	 */
+	private static final byte[] OVERLAP = new byte[] { 2, 'a', 'b', 'c', (byte) 0xE0, 0, 2, 0, 'z', (byte) 0x60, 0 };
+
+	/**
+	 * 测试不重叠回溯引用解压
+	 */
+	@Test
+	public void testNonOverlappingBackReference() throws Exception {
+		byte[] out = new byte[16];
+		LZFDecoder.decode(NON_OVERLAP, 0, NON_OVERLAP.length, out, 0, out.length);
+		assertEquals("abcdefghabcdefgh", new String(out));
+	}
+
+	/**
+	 * 测试重叠回溯引用解压
+	 */
+	@Test
+	public void testOverlappingBackReference() throws Exception {
+		byte[] out = new byte[18];
+		LZFDecoder.decode(OVERLAP, 0, OVERLAP.length, out, 0, out.length);
+		assertEquals("abcabcabcabczzzzzz", new String(out));
+	}
+
+	/**
+	 * 测试使用长距离重叠引用分段拷贝
+	 */
+	@Test
+	public void testLongDistanceOverlap() throws Exception {
+		// 字面量0-9 + 距离10长度30的重叠引用
+		byte[] in = new byte[] { 9, '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', (byte) 0xE0, 21, 9 };
+		byte[] out = new byte[40];
+		LZFDecoder.decode(in, 0, in.length, out, 0, out.length);
+		assertEquals("0123456789012345678901234567890123456789", new String(out));
+	}
+
+	/**
+	 * 测试直接内存缓冲区解压
+	 */
+	@Test
+	public void testDirectByteBuffer() throws Exception {
+		ByteBuffer in = ByteBuffer.allocateDirect(OVERLAP.length);
+		in.put(OVERLAP).flip();
+		ByteBuffer out = ByteBuffer.allocateDirect(18);
+		int length = LZFDecoder.decode(in, out);
+		assertEquals(18, length);
+		assertFalse(in.hasRemaining());
+		out.flip();
+		byte[] result = new byte[out.remaining()];
+		out.get(result);
+		assertEquals("abcabcabcabczzzzzz", new String(result));
+	}
+
+	/**
+	 * 测试错误的回溯引用
+	 */
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testIllegalBackReference() throws Exception {
+		byte[] in = new byte[] { 0, 'a', (byte) 0x20, 5 };
+		LZFDecoder.decode(in, 0, in.length, new byte[4], 0, 4);
+	}
+
+	/**
+	 * 测试回溯引用缺少长度字节或者偏移量字节的截断数据 数组与直接内存缓冲区都抛出数据不完整异常
+	 */
+	@Test
+	public void testTruncatedBackReference() throws Exception {
+		// 长度为7的回溯引用缺少长度字节
+		byte[] missingLength = new byte[] { 0, 'a', (byte) 0xE0 };
+		// 回溯引用缺少偏移量字节
+		byte[] missingDistance = new byte[] { 0, 'a', (byte) 0x20 };
+		// 长度为7的回溯引用缺少偏移量字节
+		byte[] missingLongDistance = new byte[] { 0, 'a', (byte) 0xE0, 1 };
+		for (byte[] in : new byte[][] { missingLength, missingDistance, missingLongDistance }) {
+			try {
+				LZFDecoder.decode(in, 0, in.length, new byte[16], 0, 16);
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			ByteBuffer direct = ByteBuffer.allocateDirect(in.length);
+			direct.put(in).flip();
+			try {
+				LZFDecoder.decode(direct, ByteBuffer.allocateDirect(16));
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * 测试只校验数据结构不解压
+	 */
+	@Test
+	public void testValidate() throws Exception {
+		LZFDecoder.validate(OVERLAP, 0, OVERLAP.length, 18);
+		LZFDecoder.validate(NON_OVERLAP, 0, NON_OVERLAP.length, 16);
+		// 解压后长度不一致
+		for (int outLen : new int[] { 17, 19 }) {
+			try {
+				LZFDecoder.validate(OVERLAP, 0, OVERLAP.length, outLen);
+				fail();
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+		// 引用位置超出已解压的数据
+		try {
+			LZFDecoder.validate(new byte[] { 0, 'a', (byte) 0x20, 5 }, 0, 4, 4);
+			fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+}
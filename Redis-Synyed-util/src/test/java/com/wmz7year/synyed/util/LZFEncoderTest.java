@@ -0,0 +1,79 @@
+package com.wmz7year.synyed.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * lzf压缩工具类测试
+ *
+ * @Title: LZFEncoderTest.java
+ * @Package com.wmz7year.synyed.util
+ * @author jiangwei (ydswcy513@gmail.com)
+ * @date 2016年1月20日 下午3:02:18
+ * @version V1.0
+ */
+public class LZFEncoderTest {
+
+	/**
+	 * 测试重复数据压缩后可以正确解压 并且长度明显减小
+	 */
+	@Test
+	public void testRepeatedData() throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append("*3\r\n$3\r\nSET\r\n$8\r\nkey:").append(i % 1000 + 1000).append("\r\n$5\r\nvalue\r\n");
+		}
+		byte[] data = builder.toString().getBytes();
+		byte[] encoded = assertRoundTrip(data);
+		assertTrue(encoded.length * 3 < data.length);
+	}
+
+	/**
+	 * 测试随机数据以及各种长度的数据
+	 */
+	@Test
+	public void testRandomData() throws Exception {
+		Random random = new Random(7);
+		for (int length = 0; length < 100; length++) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			assertRoundTrip(data);
+			// 取值范围很小的数据 包含大量重叠引用
+			for (int i = 0; i < length; i++) {
+				data[i] = (byte) random.nextInt(2);
+			}
+			assertRoundTrip(data);
+		}
+		byte[] data = new byte[100000];
+		random.nextBytes(data);
+		byte[] encoded = assertRoundTrip(data);
+		assertTrue(encoded.length <= LZFEncoder.maxEncodedLength(data.length));
+		// 超过最大引用长度以及最大回溯距离的数据
+		data = new byte[70000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 9000 % 251);
+		}
+		assertRoundTrip(data);
+	}
+
+	/**
+	 * 测试输出缓冲区不足时返回0
+	 */
+	@Test
+	public void testOutputTooSmall() {
+		byte[] data = new byte[100];
+		new Random(1).nextBytes(data);
+		assertEquals(0, LZFEncoder.encode(data, 0, data.length, new byte[50], 0));
+	}
+
+	private byte[] assertRoundTrip(byte[] data) throws Exception {
+		byte[] encoded = LZFEncoder.encode(data);
+		byte[] decoded = new byte[data.length];
+		LZFDecoder.decode(encoded, 0, encoded.length, decoded, 0, decoded.length);
+		assertArrayEquals(data, decoded);
+		return encoded;
+	}
+}